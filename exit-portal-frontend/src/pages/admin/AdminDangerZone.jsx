@@ -47,7 +47,22 @@ export default function AdminDangerZone() {
         if (!targetCode && targetName) body.programName = targetName;
       }
       const res = await axios.delete(`${config.backendUrl}/api/v1/admin/maintenance/program`, { data: body, withCredentials: true });
-      setResult(res.data?.message || 'Program deleted successfully.');
+      setResult(res.data?.message || 'Program deletion started.');
+      // Deletion runs as a background job; poll until it finishes
+      const jobId = res.data?.jobId;
+      let status = res.data?.status;
+      while (jobId && status !== 'COMPLETED' && status !== 'FAILED') {
+        await new Promise((resolve) => setTimeout(resolve, 2000));
+        const { data: job } = await axios.get(`${config.backendUrl}/api/v1/admin/maintenance/jobs/${jobId}`, { withCredentials: true });
+        status = job?.status;
+        if (status === 'FAILED') {
+          setError(`Deletion failed at ${job?.stepName || 'unknown step'}: ${job?.lastError || 'unknown error'}`);
+        } else if (status === 'COMPLETED') {
+          setResult(`Program deleted successfully (${job?.rowsDeleted ?? 0} rows removed).`);
+        } else {
+          setResult(`Deleting… step ${Math.min((job?.currentStep ?? 0) + 1, job?.totalSteps ?? 1)}/${job?.totalSteps ?? '?'} (${job?.stepName || ''}), ${job?.rowsDeleted ?? 0} rows removed`);
+        }
+      }
     } catch (e) {
       const msg = e?.response?.data?.error || e?.message || 'Deletion failed';
       setError(msg);
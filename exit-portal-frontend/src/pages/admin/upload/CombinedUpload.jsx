@@ -2,7 +2,7 @@ import React, { useEffect, useState } from 'react';
 import { useProgramContext } from '../../../context/ProgramContext';
 import { useLocation, useNavigate } from 'react-router-dom';
 import { FiUpload, FiLayers, FiAlertCircle, FiCheckCircle, FiDownload } from 'react-icons/fi';
-import config from '../../../config';
+import { runImportJob, describeProgress } from './importJob';
 import { motion, AnimatePresence } from 'framer-motion';
 
 const CombinedUpload = () => {
@@ -22,6 +22,7 @@ const CombinedUpload = () => {
   const [isDragging, setIsDragging] = useState(false);
   const [dropFeedback, setDropFeedback] = useState(null); // 'accepted' | 'rejected' | null
   const [showUploader, setShowUploader] = useState(true);
+  const [jobProgress, setJobProgress] = useState(null);
   const overlayActive = uploading || !!uploadResult;
 
   // Global drag overlay handlers
@@ -145,27 +146,15 @@ const CombinedUpload = () => {
     
 
     let succeeded = false;
+    setJobProgress(null);
     try {
       const params = new URLSearchParams({ programCode: programCode });
       if (defaultCredits) params.append('defaultCredits', String(defaultCredits));
-      const uploadUrl = `${config.backendUrl}/api/combined/upload?${params.toString()}`;
-      
-      const response = await fetch(uploadUrl, {
-        method: 'POST',
-        body: formData,
-        credentials: 'include'
-      });
-      
-      const contentType = response.headers.get('content-type') || '';
-      if (response.ok) {
-        let messages = [];
-        if (contentType.includes('application/json')) {
-          const data = await response.json();
-          messages = Array.isArray(data) ? data : [JSON.stringify(data)];
-        } else {
-          const txt = await response.text();
-          try { messages = JSON.parse(txt); } catch { messages = txt.split(/\n+/).filter(Boolean); }
-        }
+      const job = await runImportJob(`combined?${params.toString()}`, formData, setJobProgress);
+      const messages = Array.isArray(job.messages) ? job.messages : [];
+      if (job.status === 'FAILED') {
+        setError(job.error || messages.join('\n') || 'Upload failed');
+      } else {
         // Parse combined summary
         const counts = { categories: { created: 0, updated: 0 }, courses: { created: 0, updated: 0 }, mappings: { created: 0, updated: 0 } };
         messages.forEach(m => {
@@ -181,20 +170,12 @@ const CombinedUpload = () => {
         setFile(null);
         setDefaultCredits('');
         document.getElementById('file-input').value = '';
-      } else {
-        if (contentType.includes('application/json')) {
-          const data = await response.json();
-          const msg = Array.isArray(data) ? data.join('\n') : (data.message || JSON.stringify(data));
-          setError(msg || 'Upload failed');
-        } else {
-          const errorText = await response.text();
-          setError(errorText || 'Upload failed');
-        }
       }
     } catch (err) {
-      setError('Network error occurred during upload');
+      setError(err?.message || 'Network error occurred during upload');
     } finally {
       setUploading(false);
+      setJobProgress(null);
       // keep uploader hidden on success, restore on error
       if (!succeeded) {
         setShowUploader(true);
@@ -256,6 +237,7 @@ const CombinedUpload = () => {
                   <div className="mx-auto mb-4 h-12 w-12 border-4 border-purple-600 border-t-transparent rounded-full animate-spin" />
                   <h2 className="text-xl font-semibold text-gray-900">Uploading...</h2>
                   <p className="text-gray-700 mt-1">Please wait while we process your file.</p>
+                  {jobProgress && <p className="text-sm text-gray-500 mt-2">{describeProgress(jobProgress)}</p>}
                 </div>
               ) : (
                 uploadResult && (
@@ -361,7 +343,7 @@ const CombinedUpload = () => {
                 <ul className="text-sm text-purple-800 space-y-1">
                   <li>• Upload a CSV file containing both categories and courses information</li>
                   <li>• Required columns: Sl No, CATEGORY, MIN COURSES , MIN CREDITS , COURSE CODE, COURSE TITLE, CR</li>
-                  <li>• File size limit: 10MB</li>
+                  <li>• Files over 10MB are sent in chunks (up to 2GB)</li>
                   <li>• Categories and courses will be created/updated for the current program</li>
                   <li>• Duplicate categories will be merged automatically</li>
                 </ul>
@@ -2,7 +2,7 @@ import React, { useEffect, useState } from 'react';
 import { useLocation, useNavigate } from 'react-router-dom';
 import { useProgramContext } from '../../../context/ProgramContext';
 import { FiUpload, FiUsers, FiAlertCircle, FiCheckCircle, FiDownload } from 'react-icons/fi';
-import config from '../../../config';
+import { runImportJob, describeProgress } from './importJob';
 import { motion, AnimatePresence } from 'framer-motion';
 
 const RegistrationsUpload = () => {
@@ -14,6 +14,7 @@ const RegistrationsUpload = () => {
   const programCode = urlProgramCode || programInfo?.code || null;
   const [file, setFile] = useState(null);
   const [uploading, setUploading] = useState(false);
+  const [jobProgress, setJobProgress] = useState(null);
   const [uploadResult, setUploadResult] = useState(null);
   const [error, setError] = useState('');
   const [isDragging, setIsDragging] = useState(false);
@@ -30,7 +31,7 @@ const RegistrationsUpload = () => {
       setIsDragging(false);
       const f = e.dataTransfer?.files?.[0];
       if (f) {
-        const isCsv = f.type === 'text/csv' || f.type?.includes('csv') || f.name?.toLowerCase().endsWith('.csv');
+        const isCsv = f.type === 'text/csv' || f.type?.includes('csv') || f.name?.toLowerCase().endsWith('.csv') || f.name?.toLowerCase().endsWith('.xlsx');
         setDropFeedback(isCsv ? 'accepted' : 'rejected');
         setTimeout(() => setDropFeedback(null), 1200);
         if (isCsv) {
@@ -55,14 +56,14 @@ const RegistrationsUpload = () => {
     const isCsv = selectedFile && (
       selectedFile.type === 'text/csv' ||
       selectedFile.type?.includes('csv') ||
-      selectedFile.name?.toLowerCase().endsWith('.csv')
+      selectedFile.name?.toLowerCase().endsWith('.csv') || selectedFile.name?.toLowerCase().endsWith('.xlsx')
     );
     if (isCsv) {
       setFile(selectedFile);
       setError('');
       setUploadResult(null);
     } else {
-      setError('Please select a valid CSV file');
+      setError('Please select a valid CSV or XLSX file');
       setFile(null);
     }
   };
@@ -81,24 +82,14 @@ const RegistrationsUpload = () => {
     const formData = new FormData();
     formData.append('file', file);
 
+    let succeeded = false;
+    setJobProgress(null);
     try {
-      const response = await fetch(`${config.backendUrl}/api/grades/registrations-upload`, {
-        method: 'POST',
-        body: formData,
-        credentials: 'include'
-      });
-
-      const contentType = response.headers.get('content-type') || '';
-      let succeeded = false;
-      if (response.ok) {
-        let messages = [];
-        if (contentType.includes('application/json')) {
-          const data = await response.json();
-          messages = Array.isArray(data) ? data : [JSON.stringify(data)];
-        } else {
-          const txt = await response.text();
-          try { messages = JSON.parse(txt); } catch { messages = txt.split(/\n+/).filter(Boolean); }
-        }
+      const job = await runImportJob('registrations', formData, setJobProgress);
+      const messages = Array.isArray(job.messages) ? job.messages : [];
+      if (job.status === 'FAILED') {
+        setError(job.error || messages.join('\n') || 'Upload failed');
+      } else {
         // Parse warnings and stats from registrations response
         const warnings = [];
         const stats = { gradesUpdated: 0, missingInserted: 0 };
@@ -115,20 +106,12 @@ const RegistrationsUpload = () => {
         setFile(null);
         const input = document.getElementById('file-input');
         if (input) input.value = '';
-      } else {
-        if (contentType.includes('application/json')) {
-          const data = await response.json();
-          const message = Array.isArray(data) ? data.join('\n') : (data.message || JSON.stringify(data));
-          setError(message || 'Upload failed');
-        } else {
-          const errorText = await response.text();
-          setError(errorText || 'Upload failed');
-        }
       }
     } catch (err) {
-      setError('Network error occurred during upload');
+      setError(err?.message || 'Network error occurred during upload');
     } finally {
       setUploading(false);
+      setJobProgress(null);
       if (!succeeded) setShowUploader(true);
     }
   };
@@ -180,6 +163,7 @@ const RegistrationsUpload = () => {
                   <div className="mx-auto mb-4 h-12 w-12 border-4 border-indigo-600 border-t-transparent rounded-full animate-spin" />
                   <h2 className="text-xl font-semibold text-gray-900">Uploading...</h2>
                   <p className="text-gray-700 mt-1">Please wait while we process your file.</p>
+                  {jobProgress && <p className="text-sm text-gray-500 mt-2">{describeProgress(jobProgress)}</p>}
                 </div>
               ) : (
                 uploadResult && (
@@ -248,7 +232,7 @@ const RegistrationsUpload = () => {
             >
               <FiUpload className={`mx-auto h-10 w-10 ${dropFeedback === 'rejected' ? 'text-red-500' : 'text-indigo-600'}`} />
               <div className="mt-3 text-lg font-semibold text-gray-900">Drop CSV anywhere to upload</div>
-              <div className="text-sm text-gray-700">{dropFeedback === 'rejected' ? 'Only .csv files are supported' : 'ERP SRC headers expected as in sample'}</div>
+              <div className="text-sm text-gray-700">{dropFeedback === 'rejected' ? 'Only .csv or .xlsx files are supported' : 'ERP SRC headers expected as in sample'}</div>
             </motion.div>
           </motion.div>
         )}
@@ -274,7 +258,7 @@ const RegistrationsUpload = () => {
               <li>• Upload SRC (Student Registration Courses) data exported from the ERP</li>
               <li>• Expected headers (ERP export): Download the sample file to see the expected headers</li>
               <li className='hidden md:block'>• Minimum required for processing: University ID, CourseCode, AcademicYear, Semester.</li>
-              <li>• File size limit: 10MB</li>
+              <li>• Files over 10MB are sent in chunks (up to 2GB)</li>
               <li>• Course codes must exist in the system</li>
               <li className='hidden md:block'>• AcademicYear examples: 2022-2023, 2023-2024</li>
               <li className='hidden md:block'>• Semester examples: Odd Sem, Even Sem, Summer</li>
@@ -311,14 +295,14 @@ const RegistrationsUpload = () => {
                         const isCsv = droppedFile && (
                           droppedFile.type === 'text/csv' ||
                           droppedFile.type?.includes('csv') ||
-                          droppedFile.name?.toLowerCase().endsWith('.csv')
+                          droppedFile.name?.toLowerCase().endsWith('.csv') || droppedFile.name?.toLowerCase().endsWith('.xlsx')
                         );
                         if (isCsv) {
                           setFile(droppedFile);
                           setError('');
                           setUploadResult(null);
                         } else {
-                          setError('Please select a valid CSV file');
+                          setError('Please select a valid CSV or XLSX file');
                           setFile(null);
                         }
                       }
@@ -334,7 +318,7 @@ const RegistrationsUpload = () => {
                     <input
                       id="file-input"
                       type="file"
-                      accept="text/csv,.csv"
+                      accept="text/csv,.csv,.xlsx"
                       onChange={handleFileChange}
                       className="hidden"
                     />
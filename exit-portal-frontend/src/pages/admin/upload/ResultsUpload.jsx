@@ -2,7 +2,7 @@ import React, { useEffect, useState } from 'react';
 import { useProgramContext } from '../../../context/ProgramContext';
 import { useLocation, useNavigate } from 'react-router-dom';
 import { FiUpload, FiBarChart2, FiAlertCircle, FiCheckCircle, FiDownload } from 'react-icons/fi';
-import config from '../../../config';
+import { runImportJob, describeProgress } from './importJob';
 import { motion, AnimatePresence } from 'framer-motion';
 
 const ResultsUpload = () => {
@@ -15,6 +15,7 @@ const ResultsUpload = () => {
   const [file, setFile] = useState(null);
   const [defaultCredits, setDefaultCredits] = useState('');
   const [uploading, setUploading] = useState(false);
+  const [jobProgress, setJobProgress] = useState(null);
   const [uploadResult, setUploadResult] = useState(null);
   const [error, setError] = useState('');
   const [isDragging, setIsDragging] = useState(false);
@@ -31,7 +32,7 @@ const ResultsUpload = () => {
       setIsDragging(false);
       const f = e.dataTransfer?.files?.[0];
       if (f) {
-        const isCsv = f.type === 'text/csv' || f.type?.includes('csv') || f.name?.toLowerCase().endsWith('.csv');
+        const isCsv = f.type === 'text/csv' || f.type?.includes('csv') || f.name?.toLowerCase().endsWith('.csv') || f.name?.toLowerCase().endsWith('.xlsx');
         setDropFeedback(isCsv ? 'accepted' : 'rejected');
         setTimeout(() => setDropFeedback(null), 1200);
         if (isCsv) {
@@ -57,7 +58,7 @@ const ResultsUpload = () => {
     const isCsv = selectedFile && (
       selectedFile.type === 'text/csv' ||
       selectedFile.type?.includes('csv') ||
-      selectedFile.name?.toLowerCase().endsWith('.csv')
+      selectedFile.name?.toLowerCase().endsWith('.csv') || selectedFile.name?.toLowerCase().endsWith('.xlsx')
     );
     if (isCsv) {
       setFile(selectedFile);
@@ -65,7 +66,7 @@ const ResultsUpload = () => {
       setUploadResult(null);
       setShowUploader(true);
     } else {
-      setError('Please select a valid CSV file');
+      setError('Please select a valid CSV or XLSX file');
       setFile(null);
     }
   };
@@ -83,34 +84,22 @@ const ResultsUpload = () => {
     const formData = new FormData();
     formData.append('file', file);
 
+    let succeeded = false;
+    setJobProgress(null);
     try {
       const params = new URLSearchParams({ programCode: programCode });
       if (defaultCredits) params.append('defaultCredits', String(defaultCredits));
-      const uploadUrl = `${config.backendUrl}/api/grades/results-upload?${params.toString()}`;
-
-      const response = await fetch(uploadUrl, {
-        method: 'POST',
-        body: formData,
-        credentials: 'include'
-      });
-
-      const contentType = response.headers.get('content-type') || '';
-      let succeeded = false;
-      if (response.ok) {
-        let messages = [];
-        if (contentType.includes('application/json')) {
-          const data = await response.json();
-          messages = Array.isArray(data) ? data : [JSON.stringify(data)];
-        } else {
-          const txt = await response.text();
-          try { messages = JSON.parse(txt); } catch { messages = txt.split(/\n+/).filter(Boolean); }
-        }
+      const job = await runImportJob(`results?${params.toString()}`, formData, setJobProgress);
+      const messages = Array.isArray(job.messages) ? job.messages : [];
+      if (job.status === 'FAILED') {
+        setError(job.error || messages.join('\n') || 'Upload failed');
+      } else {
         // Extract stats and warnings
         const stats = { created: 0, updated: 0 };
         const warnings = [];
         messages.forEach(m => {
           const mStr = String(m);
-          const re = /Results CSV processed\.[^\d]*(Created|created):\s*(\d+)\s*,\s*(Updated|updated):\s*(\d+)/;
+          const re = /Results CSV processed(?: \(merge\))?\.[^\d]*(Created|created):\s*(\d+)\s*,\s*(Updated|updated):\s*(\d+)/;
           const match = re.exec(mStr);
           if (match) {
             stats.created = Number(match[2]);
@@ -123,20 +112,12 @@ const ResultsUpload = () => {
         setFile(null);
         setDefaultCredits('');
         document.getElementById('file-input').value = '';
-      } else {
-        if (contentType.includes('application/json')) {
-          const data = await response.json();
-          const msg = Array.isArray(data) ? data.join('\n') : (data.message || JSON.stringify(data));
-          setError(msg || 'Upload failed');
-        } else {
-          const errorText = await response.text();
-          setError(errorText || 'Upload failed');
-        }
       }
     } catch (err) {
-      setError('Network error occurred during upload');
+      setError(err?.message || 'Network error occurred during upload');
     } finally {
       setUploading(false);
+      setJobProgress(null);
       if (!succeeded) setShowUploader(true);
     }
   };
@@ -188,6 +169,7 @@ const ResultsUpload = () => {
                   <div className="mx-auto mb-4 h-12 w-12 border-4 border-orange-600 border-t-transparent rounded-full animate-spin" />
                   <h2 className="text-xl font-semibold text-gray-900">Uploading...</h2>
                   <p className="text-gray-700 mt-1">Please wait while we process your file.</p>
+                  {jobProgress && <p className="text-sm text-gray-500 mt-2">{describeProgress(jobProgress)}</p>}
                 </div>
               ) : (
                 uploadResult && (
@@ -256,7 +238,7 @@ const ResultsUpload = () => {
             >
               <FiUpload className={`mx-auto h-10 w-10 ${dropFeedback === 'rejected' ? 'text-red-500' : 'text-orange-600'}`} />
               <div className="mt-3 text-lg font-semibold text-gray-900">Drop CSV anywhere to upload</div>
-              <div className="text-sm text-gray-700">{dropFeedback === 'rejected' ? 'Only .csv files are supported' : 'Template headers required for best results'}</div>
+              <div className="text-sm text-gray-700">{dropFeedback === 'rejected' ? 'Only .csv or .xlsx files are supported' : 'Template headers required for best results'}</div>
             </motion.div>
           </motion.div>
         )}
@@ -295,7 +277,7 @@ const ResultsUpload = () => {
                   <li>• Upload a CSV file containing student results and grades from ERP</li>
                   <li>• Required columns: Match with the template</li>
                   {/* <li>• Course columns should follow format: Grade|Credits|Type (e.g., A+|4|1-mandatory)</li> */}
-                  <li>• File size limit: 10MB </li>
+                  <li>• Files over 10MB are sent in chunks (up to 2GB)</li>
                   <li>• Results will be associated with the current program</li>
                 </ul>
               </div>
@@ -350,14 +332,14 @@ const ResultsUpload = () => {
                       const isCsv = droppedFile && (
                         droppedFile.type === 'text/csv' ||
                         droppedFile.type?.includes('csv') ||
-                        droppedFile.name?.toLowerCase().endsWith('.csv')
+                        droppedFile.name?.toLowerCase().endsWith('.csv') || droppedFile.name?.toLowerCase().endsWith('.xlsx')
                       );
                       if (isCsv) {
                         setFile(droppedFile);
                         setError('');
                         setUploadResult(null);
                       } else {
-                        setError('Please select a valid CSV file');
+                        setError('Please select a valid CSV or XLSX file');
                         setFile(null);
                       }
                     }
@@ -368,12 +350,12 @@ const ResultsUpload = () => {
                     <p className="mb-2 text-sm text-gray-500">
                       <span className="font-semibold">Click to upload</span> or drag and drop
                     </p>
-                    <p className="text-xs text-gray-500">CSV files only (up to 10MB)</p>
+                    <p className="text-xs text-gray-500">CSV or XLSX files (up to 2GB)</p>
                   </div>
                   <input
                     id="file-input"
                     type="file"
-                    accept="text/csv,.csv"
+                    accept="text/csv,.csv,.xlsx"
                     onChange={handleFileChange}
                     className="hidden"
                   />
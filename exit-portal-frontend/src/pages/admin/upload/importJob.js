@@ -0,0 +1,158 @@
+import config from '../../../config';
+
+const POLL_INTERVAL_MS = 2000;
+// spring.servlet.multipart.max-file-size on the backend; larger files go through an upload session
+const MULTIPART_LIMIT_BYTES = 10 * 1024 * 1024;
+const CHUNK_BYTES = 8 * 1024 * 1024;
+const CHUNK_RETRIES = 3;
+const IMPORTS_URL = `${config.backendUrl}/api/v1/admin/imports`;
+
+const readError = async (response) => {
+  const contentType = response.headers.get('content-type') || '';
+  if (contentType.includes('application/json')) {
+    const data = await response.json();
+    if (Array.isArray(data)) return data.join('\n');
+    return data.error || data.message || JSON.stringify(data);
+  }
+  return response.text();
+};
+
+const fetchJob = async (jobId) => {
+  const response = await fetch(`${IMPORTS_URL}/${jobId}`, { credentials: 'include' });
+  if (!response.ok) throw new Error((await readError(response)) || 'Could not read import job');
+  return response.json();
+};
+
+const isFinished = (job) => job && (job.status === 'COMPLETED' || job.status === 'FAILED');
+
+const postMultipart = async (path, formData) => {
+  const response = await fetch(`${IMPORTS_URL}/${path}`, {
+    method: 'POST',
+    body: formData,
+    credentials: 'include'
+  });
+  if (!response.ok) {
+    throw new Error((await readError(response)) || 'Upload failed');
+  }
+  return response.json();
+};
+
+// Sends one chunk and returns the server's size afterwards; a 409 carries the offset to resume from
+const putChunk = async (uploadId, offset, blob) => {
+  const response = await fetch(`${IMPORTS_URL}/uploads/${uploadId}?offset=${offset}`, {
+    method: 'PUT',
+    headers: { 'Content-Type': 'application/octet-stream' },
+    body: blob,
+    credentials: 'include'
+  });
+  if (response.status === 409) {
+    const data = await response.json();
+    if (typeof data.expectedOffset === 'number') return data.expectedOffset;
+    throw new Error(data.error || 'Upload was rejected');
+  }
+  if (!response.ok) {
+    const err = new Error((await readError(response)) || 'Chunk upload failed');
+    err.fatal = response.status < 500;
+    throw err;
+  }
+  return (await response.json()).receivedBytes;
+};
+
+const receivedBytes = async (uploadId) => {
+  const response = await fetch(`${IMPORTS_URL}/uploads/${uploadId}`, { credentials: 'include' });
+  if (!response.ok) throw new Error((await readError(response)) || 'Upload session was lost');
+  return (await response.json()).receivedBytes;
+};
+
+// Files above the multipart limit: start an upload session with the same query parameters, send the
+// file in chunks (resuming from the server's offset after a failed chunk), then queue the import
+const postChunked = async (path, file, onProgress) => {
+  const [type, query] = path.split('?');
+  const params = new URLSearchParams(query || '');
+  params.set('type', type);
+  params.set('fileName', file.name);
+  const started = await fetch(`${IMPORTS_URL}/uploads?${params.toString()}`, {
+    method: 'POST',
+    credentials: 'include'
+  });
+  if (!started.ok) {
+    throw new Error((await readError(started)) || 'Upload could not be started');
+  }
+  const { uploadId } = await started.json();
+
+  try {
+    let offset = 0;
+    let failures = 0;
+    while (offset < file.size) {
+      if (onProgress) {
+        onProgress({ status: 'UPLOADING', stage: `uploading ${Math.floor((offset * 100) / file.size)}%` });
+      }
+      try {
+        offset = await putChunk(uploadId, offset, file.slice(offset, offset + CHUNK_BYTES));
+        failures = 0;
+      } catch (err) {
+        if (err.fatal || ++failures > CHUNK_RETRIES) throw err;
+        offset = await receivedBytes(uploadId);
+      }
+    }
+    const response = await fetch(`${IMPORTS_URL}/uploads/${uploadId}/complete`, {
+      method: 'POST',
+      credentials: 'include'
+    });
+    if (!response.ok) {
+      throw new Error((await readError(response)) || 'Upload could not be completed');
+    }
+    return response.json();
+  } catch (err) {
+    fetch(`${IMPORTS_URL}/uploads/${uploadId}`, { method: 'DELETE', credentials: 'include' }).catch(() => {});
+    throw err;
+  }
+};
+
+// Submits the upload as a background import job and resolves with the finished job
+// (status COMPLETED or FAILED, plus its messages/error). Files above the multipart limit are
+// sent in chunks through an upload session. Progress snapshots arrive over the job's SSE
+// stream; if the stream drops, the job is polled until it finishes.
+export const runImportJob = async (path, formData, onProgress) => {
+  const file = formData.get('file');
+  const created = file && file.size > MULTIPART_LIMIT_BYTES
+    ? await postChunked(path, file, onProgress)
+    : await postMultipart(path, formData);
+  if (onProgress) onProgress(created);
+  if (isFinished(created)) return created;
+
+  const poll = async () => {
+    for (;;) {
+      const job = await fetchJob(created.jobId);
+      if (onProgress) onProgress(job);
+      if (isFinished(job)) return job;
+      await new Promise((r) => setTimeout(r, POLL_INTERVAL_MS));
+    }
+  };
+
+  if (typeof EventSource === 'undefined') return poll();
+
+  return new Promise((resolve, reject) => {
+    const source = new EventSource(`${IMPORTS_URL}/${created.jobId}/events`, { withCredentials: true });
+    source.addEventListener('progress', (e) => {
+      if (onProgress) onProgress(JSON.parse(e.data));
+    });
+    source.addEventListener('done', (e) => {
+      source.close();
+      resolve(JSON.parse(e.data));
+    });
+    source.onerror = () => {
+      source.close();
+      poll().then(resolve, reject);
+    };
+  });
+};
+
+export const describeProgress = (job) => {
+  if (!job) return null;
+  const parts = [job.stage];
+  if (job.parsedRows) parts.push(`${job.parsedRows} rows parsed`);
+  if (job.totalBatches) parts.push(`batch ${job.batchesWritten}/${job.totalBatches}`);
+  if (job.recomputeStatus) parts.push(`recompute ${job.recomputeStatus.toLowerCase()}`);
+  return parts.filter(Boolean).join(' · ');
+};
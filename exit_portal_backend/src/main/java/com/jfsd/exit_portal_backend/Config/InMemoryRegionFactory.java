@@ -0,0 +1,97 @@
+package com.jfsd.exit_portal_backend.Config;
+
+import org.hibernate.boot.spi.SessionFactoryOptions;
+import org.hibernate.cache.cfg.spi.DomainDataRegionBuildingContext;
+import org.hibernate.cache.cfg.spi.DomainDataRegionConfig;
+import org.hibernate.cache.spi.support.DomainDataStorageAccess;
+import org.hibernate.cache.spi.support.RegionFactoryTemplate;
+import org.hibernate.cache.spi.support.StorageAccess;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hibernate second-level cache regions backed by plain ConcurrentHashMaps (single JVM, no
+ * expiry). Only used for the small curriculum tables (programs, categories, courses and their
+ * mappings/requirements), so no eviction policy or external provider is needed. Cacheable queries
+ * must therefore be keyed by bounded parameters (a program id), never by free-form request input.
+ * Writes that bypass Hibernate (JDBC imports, deletion jobs) evict through CurriculumCacheService.
+ */
+public class InMemoryRegionFactory extends RegionFactoryTemplate {
+
+    @Override
+    protected void prepareForUse(SessionFactoryOptions settings, Map<String, Object> configValues) {
+        // nothing to start
+    }
+
+    @Override
+    protected void releaseFromUse() {
+        // regions are released individually
+    }
+
+    @Override
+    protected DomainDataStorageAccess createDomainDataStorageAccess(DomainDataRegionConfig regionConfig,
+                                                                    DomainDataRegionBuildingContext buildingContext) {
+        return new MapStorageAccess();
+    }
+
+    @Override
+    protected StorageAccess createQueryResultsRegionStorageAccess(String regionName, SessionFactoryImplementor sessionFactory) {
+        return new MapStorageAccess();
+    }
+
+    @Override
+    protected StorageAccess createTimestampsRegionStorageAccess(String regionName, SessionFactoryImplementor sessionFactory) {
+        return new MapStorageAccess();
+    }
+
+    private static final class MapStorageAccess implements DomainDataStorageAccess {
+        private final ConcurrentHashMap<Object, Object> data = new ConcurrentHashMap<>();
+
+        @Override
+        public Object getFromCache(Object key, SharedSessionContractImplementor session) {
+            return data.get(key);
+        }
+
+        @Override
+        public void putIntoCache(Object key, Object value, SharedSessionContractImplementor session) {
+            if (value == null) {
+                data.remove(key);
+            } else {
+                data.put(key, value);
+            }
+        }
+
+        @Override
+        public void removeFromCache(Object key, SharedSessionContractImplementor session) {
+            data.remove(key);
+        }
+
+        @Override
+        public void clearCache(SharedSessionContractImplementor session) {
+            data.clear();
+        }
+
+        @Override
+        public boolean contains(Object key) {
+            return data.containsKey(key);
+        }
+
+        @Override
+        public void evictData() {
+            data.clear();
+        }
+
+        @Override
+        public void evictData(Object key) {
+            data.remove(key);
+        }
+
+        @Override
+        public void release() {
+            data.clear();
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.jfsd.exit_portal_backend.Controller;
 
 import com.jfsd.exit_portal_backend.security.JwtUtil;
 import com.jfsd.exit_portal_backend.Service.AdminInsightsService;
+import com.jfsd.exit_portal_backend.Service.StudentSetIndexService;
 import com.jfsd.exit_portal_backend.dto.honors.HonorsRequirementBulkUpdateRequest;
 import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletRequest;
@@ -26,6 +27,9 @@ public class AdminInsightsController {
     @Autowired
     private AdminInsightsService adminInsightsService;
 
+    @Autowired
+    private StudentSetIndexService studentSetIndexService;
+
     @Autowired
     private CacheManager cacheManager;
 
@@ -227,6 +231,46 @@ public class AdminInsightsController {
         return ResponseEntity.ok(adminInsightsService.getStudentCategoryMatrixPaged(effectiveProgramId, q, Math.max(0, page), Math.max(1, size)));
     }
 
+    // Cross-category student set queries (AND/OR/NOT over met/honors/failure bitmaps)
+    // Body: { "programId": 1, "expr": {"and":[{"met":"Core"},{"not":{"met":"Open Elective"}}]}, "page": 0, "size": 50 }
+    @PostMapping("/insights/student-sets")
+    @PreAuthorize("hasAnyRole('ADMIN','SUPER_ADMIN')")
+    public ResponseEntity<Map<String, Object>> queryStudentSet(
+            @RequestBody Map<String, Object> body,
+            HttpServletRequest request) {
+        String jwt = getJwtFromRequest(request);
+        if (jwt == null) {
+            return ResponseEntity.status(401).body(Map.of("error", "No JWT token found"));
+        }
+        String userType = jwtUtil.getUserTypeFromJwtToken(jwt);
+        Long userProgramId = jwtUtil.getProgramIdFromJwtToken(jwt);
+        Object rawProgramId = body.get("programId");
+        Long requestProgramId = rawProgramId instanceof Number ? ((Number) rawProgramId).longValue() : null;
+        Long effectiveProgramId = "SUPER_ADMIN".equals(userType) ? requestProgramId : userProgramId;
+        int page = body.get("page") instanceof Number ? ((Number) body.get("page")).intValue() : 0;
+        int size = body.get("size") instanceof Number ? ((Number) body.get("size")).intValue() : 50;
+        try {
+            return ResponseEntity.ok(studentSetIndexService.query(effectiveProgramId, body.get("expr"), page, Math.min(size, 1000)));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(Map.of("error", ex.getMessage()));
+        }
+    }
+
+    @GetMapping("/insights/student-sets/categories")
+    @PreAuthorize("hasAnyRole('ADMIN','SUPER_ADMIN')")
+    public ResponseEntity<?> listStudentSetCategories(
+            @RequestParam(value = "programId", required = false) Long requestProgramId,
+            HttpServletRequest request) {
+        String jwt = getJwtFromRequest(request);
+        if (jwt == null) {
+            return ResponseEntity.status(401).body(Map.of("error", "No JWT token found"));
+        }
+        String userType = jwtUtil.getUserTypeFromJwtToken(jwt);
+        Long userProgramId = jwtUtil.getProgramIdFromJwtToken(jwt);
+        Long effectiveProgramId = "SUPER_ADMIN".equals(userType) ? requestProgramId : userProgramId;
+        return ResponseEntity.ok(studentSetIndexService.listCategories(effectiveProgramId));
+    }
+
     // ===== Data Explorer Endpoints =====
     @GetMapping("/data/students")
     @PreAuthorize("hasAnyRole('ADMIN','SUPER_ADMIN')")
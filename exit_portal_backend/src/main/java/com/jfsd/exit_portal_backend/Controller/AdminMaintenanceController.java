@@ -1,17 +1,20 @@
 package com.jfsd.exit_portal_backend.Controller;
 
+import com.jfsd.exit_portal_backend.Model.ProgramDeletionJob;
 import com.jfsd.exit_portal_backend.Service.AdminMaintenanceService;
+import com.jfsd.exit_portal_backend.Service.SchemaMigrationService;
 import com.jfsd.exit_portal_backend.security.JwtUtil;
 import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.cache.CacheManager;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/v1/admin/maintenance")
@@ -21,15 +24,16 @@ public class AdminMaintenanceController {
     private AdminMaintenanceService adminMaintenanceService;
 
     @Autowired
-    private JwtUtil jwtUtil;
+    private SchemaMigrationService schemaMigrationService;
 
     @Autowired
-    private CacheManager cacheManager;
+    private JwtUtil jwtUtil;
 
     /**
      * Destructive: Deletes all data for a program.
      * Admins can only delete their own program. Super admins can specify programCode or programName.
      * Accepts either query params or JSON body with fields { programCode?, programName? }.
+     * Deletion runs as a chunked background job; poll GET /jobs/{jobId} for progress.
      */
     @DeleteMapping("/program")
     @PreAuthorize("hasAnyRole('ADMIN','SUPER_ADMIN')")
@@ -52,29 +56,26 @@ public class AdminMaintenanceController {
             return ResponseEntity.status(401).body(Map.of("error", "No JWT token found"));
         }
         String userType = jwtUtil.getUserTypeFromJwtToken(jwt);
+        String username = jwtUtil.getUsernameFromJwtToken(jwt);
         Long userProgramId = jwtUtil.getProgramIdFromJwtToken(jwt);
 
         try {
-            String message;
+            ProgramDeletionJob job;
             if ("ADMIN".equals(userType)) {
                 // Admins can only delete their own program
-                message = adminMaintenanceService.deleteProgramCascadeById(userProgramId);
+                job = adminMaintenanceService.startProgramDeletionById(userProgramId, username);
             } else if ("SUPER_ADMIN".equals(userType)) {
                 if ((programCode == null || programCode.isBlank()) && (programName == null || programName.isBlank())) {
                     return ResponseEntity.badRequest().body(Map.of("error", "Provide programCode or programName"));
                 }
-                message = adminMaintenanceService.deleteProgramCascade(programCode, programName);
+                job = adminMaintenanceService.startProgramDeletion(programCode, programName, username);
             } else {
                 return ResponseEntity.status(403).body(Map.of("error", "Forbidden"));
             }
-            // Evict admin insights cache so dashboards refresh immediately after deletion
-            if (cacheManager != null && cacheManager.getCache("admin_api") != null) {
-                cacheManager.getCache("admin_api").clear();
-            }
-            Map<String, Object> response = new HashMap<>();
-            response.put("status", "success");
-            response.put("message", message);
-            return ResponseEntity.ok(response);
+            // Caches are evicted by the job once the last chunk is deleted
+            Map<String, Object> response = new HashMap<>(adminMaintenanceService.toJobMap(job));
+            response.put("message", "Deletion of program " + job.getProgramId() + " started in the background (job " + job.getId() + ")");
+            return ResponseEntity.accepted().body(response);
         } catch (IllegalArgumentException ex) {
             return ResponseEntity.badRequest().body(Map.of("error", ex.getMessage()));
         } catch (Exception ex) {
@@ -82,6 +83,34 @@ public class AdminMaintenanceController {
         }
     }
 
+    // Progress of a program deletion job; admins only see jobs for their own program
+    @GetMapping("/jobs/{jobId}")
+    @PreAuthorize("hasAnyRole('ADMIN','SUPER_ADMIN')")
+    public ResponseEntity<?> getDeletionJob(@PathVariable("jobId") Long jobId, HttpServletRequest request) {
+        String jwt = getJwtFromRequest(request);
+        if (jwt == null) {
+            return ResponseEntity.status(401).body(Map.of("error", "No JWT token found"));
+        }
+        String userType = jwtUtil.getUserTypeFromJwtToken(jwt);
+        Long userProgramId = jwtUtil.getProgramIdFromJwtToken(jwt);
+
+        Optional<ProgramDeletionJob> job = adminMaintenanceService.findJob(jobId);
+        if (job.isEmpty()) {
+            return ResponseEntity.status(404).body(Map.of("error", "Job not found"));
+        }
+        if (!"SUPER_ADMIN".equals(userType) && !Objects.equals(userProgramId, job.get().getProgramId())) {
+            return ResponseEntity.status(403).body(Map.of("error", "Forbidden"));
+        }
+        return ResponseEntity.ok(adminMaintenanceService.toJobMap(job.get()));
+    }
+
+    // Migration version, layout fingerprint and feature flags verified at startup
+    @GetMapping("/schema")
+    @PreAuthorize("hasRole('SUPER_ADMIN')")
+    public ResponseEntity<?> getSchemaStatus() {
+        return ResponseEntity.ok(schemaMigrationService.status());
+    }
+
     private String getJwtFromRequest(HttpServletRequest request) {
         String jwt = getJwtFromCookie(request);
         if (jwt != null && !jwt.isBlank()) return jwt;
@@ -26,7 +26,11 @@ public class AnalyticsController {
                 return ResponseEntity.badRequest().body(error);
             }
 
-            Map<String, Object> result = nlQueryService.processNaturalLanguageQuery(query.trim());
+            // Optional server-side paging over the row-capped result
+            Integer page = parseOptionalInt(request.get("page"));
+            Integer size = parseOptionalInt(request.get("size"));
+
+            Map<String, Object> result = nlQueryService.processNaturalLanguageQuery(query.trim(), page, size);
             return ResponseEntity.ok(result);
 
         } catch (SecurityException e) {
@@ -141,4 +145,13 @@ public class AnalyticsController {
         
         return ResponseEntity.ok(schema);
     }
+
+    private Integer parseOptionalInt(String value) {
+        if (value == null || value.isBlank()) return null;
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException ignored) {
+            return null;
+        }
+    }
 }
@@ -0,0 +1,280 @@
+package com.jfsd.exit_portal_backend.Controller;
+
+import com.jfsd.exit_portal_backend.Service.ImportJobService;
+import com.jfsd.exit_portal_backend.security.JwtUtil;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * Asynchronous variants of the results, registrations and combined uploads. Each POST spools the
+ * file and returns 202 with a job id; follow progress via GET /{jobId} or the SSE stream at
+ * GET /{jobId}/events ("progress" events, then a final "done" event). Files beyond the multipart
+ * limit go through /uploads: start a session, PUT raw chunks at increasing offsets, then complete.
+ */
+@RestController
+@RequestMapping("/api/v1/admin/imports")
+public class ImportJobController {
+
+    @Autowired
+    private ImportJobService importJobService;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @PostMapping("/results")
+    @PreAuthorize("hasAnyRole('ADMIN','SUPER_ADMIN')")
+    public ResponseEntity<?> submitResults(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam(value = "programCode", required = false) String programCode,
+            @RequestParam(value = "defaultCredits", required = false) Double defaultCredits,
+            @RequestParam(value = "mode", required = false) String mode,
+            HttpServletRequest request
+    ) {
+        String username = currentUsername(request);
+        if (username == null) {
+            return ResponseEntity.status(401).body(Map.of("error", "No JWT token found"));
+        }
+        boolean merge = ImportJobService.isMergeMode(mode);
+        return accepted(() -> importJobService.submitResults(file, programCode, defaultCredits, merge, username));
+    }
+
+    @PostMapping("/registrations")
+    @PreAuthorize("hasAnyRole('ADMIN','SUPER_ADMIN')")
+    public ResponseEntity<?> submitRegistrations(@RequestParam("file") MultipartFile file, HttpServletRequest request) {
+        String username = currentUsername(request);
+        if (username == null) {
+            return ResponseEntity.status(401).body(Map.of("error", "No JWT token found"));
+        }
+        return accepted(() -> importJobService.submitRegistrations(file, username));
+    }
+
+    @PostMapping("/combined")
+    @PreAuthorize("hasAnyRole('ADMIN','SUPER_ADMIN')")
+    public ResponseEntity<?> submitCombined(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam("programCode") String programCode,
+            @RequestParam(value = "defaultCredits", required = false) Double defaultCredits,
+            HttpServletRequest request
+    ) {
+        String username = currentUsername(request);
+        if (username == null) {
+            return ResponseEntity.status(401).body(Map.of("error", "No JWT token found"));
+        }
+        return accepted(() -> importJobService.submitCombined(file, programCode, defaultCredits, username));
+    }
+
+    // Recent jobs; admins only see their own, super admins see all
+    @GetMapping
+    @PreAuthorize("hasAnyRole('ADMIN','SUPER_ADMIN')")
+    public ResponseEntity<?> listJobs(HttpServletRequest request) {
+        String jwt = getJwtFromRequest(request);
+        if (jwt == null) {
+            return ResponseEntity.status(401).body(Map.of("error", "No JWT token found"));
+        }
+        List<Map<String, Object>> jobs = importJobService.listJobs().stream()
+                .filter(j -> canSee(jwt, j))
+                .map(ImportJobService.ImportJob::toMap)
+                .collect(Collectors.toList());
+        return ResponseEntity.ok(jobs);
+    }
+
+    @GetMapping("/{jobId}")
+    @PreAuthorize("hasAnyRole('ADMIN','SUPER_ADMIN')")
+    public ResponseEntity<?> getJob(@PathVariable("jobId") String jobId, HttpServletRequest request) {
+        String jwt = getJwtFromRequest(request);
+        if (jwt == null) {
+            return ResponseEntity.status(401).body(Map.of("error", "No JWT token found"));
+        }
+        ImportJobService.ImportJob job = importJobService.findJob(jobId);
+        if (job == null) {
+            return ResponseEntity.status(404).body(Map.of("error", "Job not found"));
+        }
+        if (!canSee(jwt, job)) {
+            return ResponseEntity.status(403).body(Map.of("error", "Forbidden"));
+        }
+        return ResponseEntity.ok(job.toMap());
+    }
+
+    @GetMapping(value = "/{jobId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasAnyRole('ADMIN','SUPER_ADMIN')")
+    public ResponseEntity<?> streamJob(@PathVariable("jobId") String jobId, HttpServletRequest request) {
+        String jwt = getJwtFromRequest(request);
+        if (jwt == null) {
+            return ResponseEntity.status(401).body(Map.of("error", "No JWT token found"));
+        }
+        ImportJobService.ImportJob job = importJobService.findJob(jobId);
+        if (job == null) {
+            return ResponseEntity.status(404).body(Map.of("error", "Job not found"));
+        }
+        if (!canSee(jwt, job)) {
+            return ResponseEntity.status(403).body(Map.of("error", "Forbidden"));
+        }
+        SseEmitter emitter = importJobService.subscribe(job);
+        return ResponseEntity.ok().contentType(MediaType.TEXT_EVENT_STREAM).body(emitter);
+    }
+
+    // ---------- Chunked, resumable uploads (no multipart size limit) ----------
+
+    // Start a session: type = results | registrations | combined; gzip=true (or a .gz fileName) for compressed uploads
+    @PostMapping("/uploads")
+    @PreAuthorize("hasAnyRole('ADMIN','SUPER_ADMIN')")
+    public ResponseEntity<?> startUpload(
+            @RequestParam("type") String type,
+            @RequestParam(value = "fileName", required = false) String fileName,
+            @RequestParam(value = "gzip", required = false, defaultValue = "false") boolean gzip,
+            @RequestParam(value = "programCode", required = false) String programCode,
+            @RequestParam(value = "defaultCredits", required = false) Double defaultCredits,
+            @RequestParam(value = "mode", required = false) String mode,
+            HttpServletRequest request
+    ) {
+        String username = currentUsername(request);
+        if (username == null) {
+            return ResponseEntity.status(401).body(Map.of("error", "No JWT token found"));
+        }
+        try {
+            ImportJobService.UploadSession session = importJobService.startUpload(
+                    type == null ? null : type.trim().toLowerCase(), fileName, gzip, programCode, defaultCredits,
+                    ImportJobService.isMergeMode(mode), username);
+            return ResponseEntity.status(201).body(session.toMap());
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(Map.of("error", ex.getMessage()));
+        } catch (Exception ex) {
+            return ResponseEntity.status(500).body(Map.of("error", "Upload could not be started: " + ex.getMessage()));
+        }
+    }
+
+    // Resume point for an interrupted upload
+    @GetMapping("/uploads/{uploadId}")
+    @PreAuthorize("hasAnyRole('ADMIN','SUPER_ADMIN')")
+    public ResponseEntity<?> getUpload(@PathVariable("uploadId") String uploadId, HttpServletRequest request) {
+        ImportJobService.UploadSession session = importJobService.findUpload(uploadId);
+        ResponseEntity<?> denied = checkUpload(session, request);
+        if (denied != null) return denied;
+        return ResponseEntity.ok(session.toMap());
+    }
+
+    // Raw chunk bytes as the request body, appended at ?offset=; 409 carries the offset to resume from
+    @PutMapping(value = "/uploads/{uploadId}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    @PreAuthorize("hasAnyRole('ADMIN','SUPER_ADMIN')")
+    public ResponseEntity<?> appendChunk(
+            @PathVariable("uploadId") String uploadId,
+            @RequestParam("offset") long offset,
+            HttpServletRequest request
+    ) {
+        ImportJobService.UploadSession session = importJobService.findUpload(uploadId);
+        ResponseEntity<?> denied = checkUpload(session, request);
+        if (denied != null) return denied;
+        try {
+            long received = importJobService.appendChunk(session, offset, request.getInputStream());
+            return ResponseEntity.ok(Map.of("uploadId", uploadId, "receivedBytes", received));
+        } catch (ImportJobService.UploadOffsetException ex) {
+            return ResponseEntity.status(409).body(Map.of("error", ex.getMessage(), "expectedOffset", ex.getExpectedOffset()));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.status(413).body(Map.of("error", ex.getMessage()));
+        } catch (IllegalStateException ex) {
+            return ResponseEntity.status(409).body(Map.of("error", ex.getMessage()));
+        } catch (Exception ex) {
+            return ResponseEntity.status(500).body(Map.of("error", "Chunk could not be stored: " + ex.getMessage(),
+                    "expectedOffset", session.getReceivedBytes()));
+        }
+    }
+
+    // Final chunk landed: queue the import from the spool file
+    @PostMapping("/uploads/{uploadId}/complete")
+    @PreAuthorize("hasAnyRole('ADMIN','SUPER_ADMIN')")
+    public ResponseEntity<?> completeUpload(@PathVariable("uploadId") String uploadId, HttpServletRequest request) {
+        ImportJobService.UploadSession session = importJobService.findUpload(uploadId);
+        ResponseEntity<?> denied = checkUpload(session, request);
+        if (denied != null) return denied;
+        return accepted(() -> importJobService.completeUpload(session));
+    }
+
+    @DeleteMapping("/uploads/{uploadId}")
+    @PreAuthorize("hasAnyRole('ADMIN','SUPER_ADMIN')")
+    public ResponseEntity<?> abortUpload(@PathVariable("uploadId") String uploadId, HttpServletRequest request) {
+        ImportJobService.UploadSession session = importJobService.findUpload(uploadId);
+        ResponseEntity<?> denied = checkUpload(session, request);
+        if (denied != null) return denied;
+        importJobService.abortUpload(session);
+        return ResponseEntity.ok(Map.of("message", "Upload " + uploadId + " discarded"));
+    }
+
+    // Only the admin who started an upload may continue it
+    private ResponseEntity<?> checkUpload(ImportJobService.UploadSession session, HttpServletRequest request) {
+        String username = currentUsername(request);
+        if (username == null) {
+            return ResponseEntity.status(401).body(Map.of("error", "No JWT token found"));
+        }
+        if (session == null) {
+            return ResponseEntity.status(404).body(Map.of("error", "Upload not found"));
+        }
+        if (!Objects.equals(username, session.getRequestedBy())) {
+            return ResponseEntity.status(403).body(Map.of("error", "Forbidden"));
+        }
+        return null;
+    }
+
+    private interface JobSubmission {
+        ImportJobService.ImportJob submit();
+    }
+
+    private ResponseEntity<?> accepted(JobSubmission submission) {
+        try {
+            ImportJobService.ImportJob job = submission.submit();
+            Map<String, Object> response = new HashMap<>(job.toMap());
+            response.put("message", "Import queued as job " + job.getId());
+            return ResponseEntity.accepted().body(response);
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(Map.of("error", ex.getMessage()));
+        } catch (IllegalStateException ex) {
+            return ResponseEntity.status(503).body(Map.of("error", ex.getMessage()));
+        } catch (Exception ex) {
+            return ResponseEntity.status(500).body(Map.of("error", "Import could not be queued: " + ex.getMessage()));
+        }
+    }
+
+    private boolean canSee(String jwt, ImportJobService.ImportJob job) {
+        if ("SUPER_ADMIN".equals(jwtUtil.getUserTypeFromJwtToken(jwt))) return true;
+        return Objects.equals(jwtUtil.getUsernameFromJwtToken(jwt), job.getRequestedBy());
+    }
+
+    private String currentUsername(HttpServletRequest request) {
+        String jwt = getJwtFromRequest(request);
+        return jwt == null ? null : jwtUtil.getUsernameFromJwtToken(jwt);
+    }
+
+    private String getJwtFromRequest(HttpServletRequest request) {
+        String jwt = getJwtFromCookie(request);
+        if (jwt != null && !jwt.isBlank()) return jwt;
+        String authHeader = request.getHeader("Authorization");
+        if (authHeader != null && authHeader.regionMatches(true, 0, "Bearer ", 0, 7)) {
+            return authHeader.substring(7).trim();
+        }
+        return null;
+    }
+
+    private String getJwtFromCookie(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies != null) {
+            for (Cookie cookie : cookies) {
+                if ("jwt".equals(cookie.getName())) {
+                    return cookie.getValue();
+                }
+            }
+        }
+        return null;
+    }
+}
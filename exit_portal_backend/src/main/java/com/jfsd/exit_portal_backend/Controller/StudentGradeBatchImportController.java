@@ -1,5 +1,6 @@
 package com.jfsd.exit_portal_backend.Controller;
 
+import com.jfsd.exit_portal_backend.Service.ImportJobService;
 import com.jfsd.exit_portal_backend.Service.StudentGradeBatchImportService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
@@ -21,10 +22,14 @@ public class StudentGradeBatchImportController {
     public ResponseEntity<List<String>> uploadResultsCsv(
             @RequestParam("file") MultipartFile file,
             @RequestParam(value = "programCode", required = false) String programCode,
-            @RequestParam(value = "defaultCredits", required = false) Double defaultCredits
+            @RequestParam(value = "defaultCredits", required = false) Double defaultCredits,
+            @RequestParam(value = "mode", required = false) String mode
     ) {
         try {
-            List<String> messages = batchImportService.importResultsCsv(file, programCode, defaultCredits);
+            // Merge (default) writes only new/changed grades and reports created/updated/unchanged;
+            // mode=upsert rewrites every row
+            boolean merge = ImportJobService.isMergeMode(mode);
+            List<String> messages = batchImportService.importResultsCsv(file, programCode, defaultCredits, merge);
             return ResponseEntity.ok(messages);
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(List.of("Error: " + e.getMessage()));
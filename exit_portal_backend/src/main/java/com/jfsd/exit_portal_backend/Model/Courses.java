@@ -2,8 +2,12 @@ package com.jfsd.exit_portal_backend.Model;
 
 import java.util.Objects;
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Table(name = "courses")
 public class Courses {
 
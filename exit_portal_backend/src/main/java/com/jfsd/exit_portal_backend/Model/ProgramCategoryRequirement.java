@@ -1,8 +1,12 @@
 package com.jfsd.exit_portal_backend.Model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Table(
     name = "program_category_requirement",
     uniqueConstraints = @UniqueConstraint(columnNames = {"program_id", "category_id"}),
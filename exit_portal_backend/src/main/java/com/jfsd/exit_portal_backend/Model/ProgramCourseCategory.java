@@ -1,8 +1,12 @@
 package com.jfsd.exit_portal_backend.Model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Table(
     name = "program_course_category",
     uniqueConstraints = @UniqueConstraint(columnNames = {"program_id", "course_id"}),
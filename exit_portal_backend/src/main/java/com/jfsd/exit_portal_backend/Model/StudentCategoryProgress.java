@@ -1,5 +1,6 @@
 package com.jfsd.exit_portal_backend.Model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 import jakarta.persistence.*;
 
@@ -10,7 +11,8 @@ import jakarta.persistence.*;
         @Index(name = "idx_scp_university", columnList = "university_id"),
         @Index(name = "idx_scp_category_name", columnList = "category_name"),
         @Index(name = "idx_scp_program", columnList = "program_id"),
-        @Index(name = "idx_scp_program_category", columnList = "program_id, category_id")
+        @Index(name = "idx_scp_program_category_met", columnList = "program_id, category_id, met"),
+        @Index(name = "idx_scp_program_category_name_met", columnList = "program_id, category_name, met")
     }
 )
 @JsonPropertyOrder({
@@ -58,6 +60,12 @@ public class StudentCategoryProgress {
     @Column(name = "completed_credits", nullable = false)
     private Double completedCredits;
 
+    // Generated by the database from the stored minimums and completed totals (SchemaMigrationService),
+    // so completion lists and aggregates can be answered from the (program, category, met) indexes
+    @JsonIgnore
+    @Column(name = "met", insertable = false, updatable = false)
+    private boolean met;
+
     // Default constructor 
     public StudentCategoryProgress() {}
 
@@ -158,6 +166,10 @@ public class StudentCategoryProgress {
         this.completedCredits = completedCredits;
     }
 
+    public boolean isMet() {
+        return met;
+    }
+
     @Override
     public String toString() {
         return "StudentCategoryProgress{" +
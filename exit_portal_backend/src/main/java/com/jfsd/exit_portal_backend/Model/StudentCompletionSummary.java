@@ -0,0 +1,122 @@
+package com.jfsd.exit_portal_backend.Model;
+
+import jakarta.persistence.*;
+import java.util.Date;
+
+// One row per student, rewritten by the progress recompute. Lets risk/completion counts run as
+// indexed range counts instead of re-aggregating student_category_progress per request.
+@Entity
+@Table(
+    name = "student_completion_summary",
+    indexes = {
+        @Index(name = "idx_scs_program_unmet", columnList = "program_id, category_count, unmet_categories"),
+        @Index(name = "idx_scs_program_non_pass", columnList = "program_id, has_non_pass"),
+        @Index(name = "idx_scs_program_honors", columnList = "program_id, honors_eligible")
+    }
+)
+public class StudentCompletionSummary {
+
+    @Id
+    @Column(name = "university_id", nullable = false, length = 64)
+    private String universityId;
+
+    @Column(name = "program_id")
+    private Long programId;
+
+    // Number of category progress rows; students without any are never counted as completed
+    @Column(name = "category_count", nullable = false)
+    private int categoryCount;
+
+    @Column(name = "unmet_categories", nullable = false)
+    private int unmetCategories;
+
+    @Column(name = "total_completed_credits", nullable = false)
+    private double totalCompletedCredits;
+
+    @Column(name = "has_any_failure", nullable = false)
+    private boolean hasAnyFailure;
+
+    // Any grade whose promotion is not 'P' (failures and registered courses alike)
+    @Column(name = "has_non_pass", nullable = false)
+    private boolean hasNonPass;
+
+    @Column(name = "honors_eligible", nullable = false)
+    private boolean honorsEligible;
+
+    @Column(name = "updated_at", nullable = false)
+    private Date updatedAt;
+
+    public StudentCompletionSummary() {}
+
+    public String getUniversityId() {
+        return universityId;
+    }
+
+    public void setUniversityId(String universityId) {
+        this.universityId = universityId;
+    }
+
+    public Long getProgramId() {
+        return programId;
+    }
+
+    public void setProgramId(Long programId) {
+        this.programId = programId;
+    }
+
+    public int getCategoryCount() {
+        return categoryCount;
+    }
+
+    public void setCategoryCount(int categoryCount) {
+        this.categoryCount = categoryCount;
+    }
+
+    public int getUnmetCategories() {
+        return unmetCategories;
+    }
+
+    public void setUnmetCategories(int unmetCategories) {
+        this.unmetCategories = unmetCategories;
+    }
+
+    public double getTotalCompletedCredits() {
+        return totalCompletedCredits;
+    }
+
+    public void setTotalCompletedCredits(double totalCompletedCredits) {
+        this.totalCompletedCredits = totalCompletedCredits;
+    }
+
+    public boolean isHasAnyFailure() {
+        return hasAnyFailure;
+    }
+
+    public void setHasAnyFailure(boolean hasAnyFailure) {
+        this.hasAnyFailure = hasAnyFailure;
+    }
+
+    public boolean isHasNonPass() {
+        return hasNonPass;
+    }
+
+    public void setHasNonPass(boolean hasNonPass) {
+        this.hasNonPass = hasNonPass;
+    }
+
+    public boolean isHonorsEligible() {
+        return honorsEligible;
+    }
+
+    public void setHonorsEligible(boolean honorsEligible) {
+        this.honorsEligible = honorsEligible;
+    }
+
+    public Date getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(Date updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
@@ -0,0 +1,52 @@
+package com.jfsd.exit_portal_backend.Repository;
+
+import com.jfsd.exit_portal_backend.Model.OutboundEmail;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Date;
+import java.util.List;
+
+@Repository
+public interface OutboundEmailRepository extends JpaRepository<OutboundEmail, Long> {
+
+    // Atomically claim a batch of due messages; safe with several app instances draining the same table
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE outbound_email SET status = 'SENDING', claim_token = :claimToken, claimed_at = :now " +
+            "WHERE status = 'PENDING' AND next_attempt_at <= :now AND (expires_at IS NULL OR expires_at > :now) " +
+            "ORDER BY id LIMIT :limit",
+            nativeQuery = true)
+    int claimDue(@Param("claimToken") String claimToken, @Param("now") Date now, @Param("limit") int limit);
+
+    List<OutboundEmail> findByClaimTokenAndStatus(String claimToken, String status);
+
+    // Claims whose process died mid-send go back to the queue once no live worker can still hold them
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE outbound_email SET status = 'PENDING', claim_token = NULL " +
+            "WHERE status = 'SENDING' AND claimed_at < :claimedBefore",
+            nativeQuery = true)
+    int releaseStaleClaims(@Param("claimedBefore") Date claimedBefore);
+
+    // A timed-out slice may still be inside send(): close out only rows this claim still holds, never re-queue them
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE outbound_email SET status = 'UNKNOWN', claim_token = NULL, last_error = :error, body = :redacted " +
+            "WHERE claim_token = :claimToken AND status = 'SENDING' AND id IN (:ids)",
+            nativeQuery = true)
+    int markOutcomeUnknown(@Param("claimToken") String claimToken, @Param("ids") List<Long> ids,
+                           @Param("error") String error, @Param("redacted") String redacted);
+
+    // Unsent messages whose link has expired are dropped and their body (with the token) redacted
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE outbound_email SET status = 'EXPIRED', claim_token = NULL, body = :redacted " +
+            "WHERE status = 'PENDING' AND expires_at <= :now",
+            nativeQuery = true)
+    int expireOverdue(@Param("now") Date now, @Param("redacted") String redacted);
+}
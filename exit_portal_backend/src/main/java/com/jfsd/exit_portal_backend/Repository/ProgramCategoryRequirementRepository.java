@@ -3,8 +3,11 @@ package com.jfsd.exit_portal_backend.Repository;
 import com.jfsd.exit_portal_backend.Model.ProgramCategoryRequirement;
 import com.jfsd.exit_portal_backend.Model.Program;
 import com.jfsd.exit_portal_backend.Model.Categories;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.AvailableHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
@@ -20,12 +23,24 @@ public interface ProgramCategoryRequirementRepository extends JpaRepository<Prog
     
     List<ProgramCategoryRequirement> findByProgram(Program program);
     
+    @QueryHints({
+        @QueryHint(name = AvailableHints.HINT_CACHEABLE, value = "true"),
+        @QueryHint(name = AvailableHints.HINT_CACHE_REGION, value = "curriculum_queries")
+    })
     @Query("SELECT pcr FROM ProgramCategoryRequirement pcr WHERE pcr.program.code = :programCode")
     List<ProgramCategoryRequirement> findByProgramCode(@Param("programCode") String programCode);
 
+    @QueryHints({
+        @QueryHint(name = AvailableHints.HINT_CACHEABLE, value = "true"),
+        @QueryHint(name = AvailableHints.HINT_CACHE_REGION, value = "curriculum_queries")
+    })
     @Query("SELECT pcr FROM ProgramCategoryRequirement pcr WHERE pcr.program.id = :programId AND pcr.honorsMinCredits IS NOT NULL")
     List<ProgramCategoryRequirement> findHonorsRequirementsByProgramId(@Param("programId") Long programId);
 
+    @QueryHints({
+        @QueryHint(name = AvailableHints.HINT_CACHEABLE, value = "true"),
+        @QueryHint(name = AvailableHints.HINT_CACHE_REGION, value = "curriculum_queries")
+    })
     List<ProgramCategoryRequirement> findByProgram_ProgramId(Long programId);
 
     List<ProgramCategoryRequirement> findByHonorsMinCreditsIsNotNull();
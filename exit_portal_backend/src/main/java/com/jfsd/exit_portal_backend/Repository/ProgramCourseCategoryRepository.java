@@ -3,8 +3,11 @@ package com.jfsd.exit_portal_backend.Repository;
 import com.jfsd.exit_portal_backend.Model.ProgramCourseCategory;
 import com.jfsd.exit_portal_backend.Model.Program;
 import com.jfsd.exit_portal_backend.Model.Courses;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.AvailableHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
@@ -20,6 +23,10 @@ public interface ProgramCourseCategoryRepository extends JpaRepository<ProgramCo
     
     List<ProgramCourseCategory> findByProgram(Program program);
     
+    @QueryHints({
+        @QueryHint(name = AvailableHints.HINT_CACHEABLE, value = "true"),
+        @QueryHint(name = AvailableHints.HINT_CACHE_REGION, value = "curriculum_queries")
+    })
     @Query("SELECT pcc FROM ProgramCourseCategory pcc WHERE pcc.program.code = :programCode")
     List<ProgramCourseCategory> findByProgramCode(@Param("programCode") String programCode);
 
@@ -27,11 +34,16 @@ public interface ProgramCourseCategoryRepository extends JpaRepository<ProgramCo
     @Query("SELECT pcc FROM ProgramCourseCategory pcc WHERE LOWER(TRIM(pcc.category.categoryName)) = LOWER(TRIM(:categoryName))")
     List<ProgramCourseCategory> findByCategoryName(@Param("categoryName") String categoryName);
 
-    // Program-scoped category lookup for accurate suggestions
+    // Program-scoped category lookup for accurate suggestions. Not query-cached: the category name
+    // comes from the request, so cached results would grow without bound (entities are still cached)
     @Query("SELECT pcc FROM ProgramCourseCategory pcc WHERE pcc.program.programId = :programId AND LOWER(TRIM(pcc.category.categoryName)) = LOWER(TRIM(:categoryName))")
     List<ProgramCourseCategory> findByProgramIdAndCategoryName(@Param("programId") Long programId, @Param("categoryName") String categoryName);
 
     // Eagerly load course and category for all mappings of a program in one query
+    @QueryHints({
+        @QueryHint(name = AvailableHints.HINT_CACHEABLE, value = "true"),
+        @QueryHint(name = AvailableHints.HINT_CACHE_REGION, value = "curriculum_queries")
+    })
     @Query("SELECT pcc FROM ProgramCourseCategory pcc JOIN FETCH pcc.course c JOIN FETCH pcc.category cat WHERE pcc.program.programId = :programId")
     List<ProgramCourseCategory> findByProgramIdWithCourseAndCategory(@Param("programId") Long programId);
 }
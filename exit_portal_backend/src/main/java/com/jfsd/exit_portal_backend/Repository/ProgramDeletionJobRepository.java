@@ -0,0 +1,17 @@
+package com.jfsd.exit_portal_backend.Repository;
+
+import com.jfsd.exit_portal_backend.Model.ProgramDeletionJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface ProgramDeletionJobRepository extends JpaRepository<ProgramDeletionJob, Long> {
+
+    List<ProgramDeletionJob> findByStatusInOrderByIdAsc(Collection<String> statuses);
+
+    Optional<ProgramDeletionJob> findFirstByProgramIdAndStatusIn(Long programId, Collection<String> statuses);
+}
@@ -92,29 +92,13 @@ public interface StudentCategoryProgressRepository extends JpaRepository<Student
             org.springframework.data.domain.Pageable pageable);
 
     // ===== Optimized Aggregates for Dashboard (avoid loading large entity lists) =====
-    // Count students who have met ALL their category requirements within optional program scope.
-    @Query(value = "SELECT COUNT(*) FROM (\n" +
-            "  SELECT scp.university_id\n" +
-            "  FROM student_category_progress scp\n" +
-            "  WHERE (:programId IS NULL OR scp.program_id = :programId)\n" +
-            "  GROUP BY scp.university_id\n" +
-            "  HAVING SUM(\n" +
-            "    CASE\n" +
-            "      WHEN (COALESCE(scp.min_required_courses,0) > 0 AND COALESCE(scp.completed_courses,0) < scp.min_required_courses)\n" +
-            "        OR (COALESCE(scp.min_required_credits,0) > 0 AND COALESCE(scp.completed_credits,0) < scp.min_required_credits)\n" +
-            "      THEN 1 ELSE 0 END\n" +
-            "  ) = 0\n" +
-            ") t",
-            nativeQuery = true)
-    long countCompletedStudents(@Param("programId") Long programId);
+    // Per-student completion counts live in StudentCompletionSummaryRepository
 
     // Category-level aggregates: total rows, met count, and average credit completion ratio (capped at 1.0)
     @Query(value = "SELECT\n" +
             "  scp.category_name AS categoryName,\n" +
             "  COUNT(*) AS total,\n" +
-            "  SUM(CASE WHEN ( (COALESCE(scp.min_required_courses,0) <= 0 OR COALESCE(scp.completed_courses,0) >= scp.min_required_courses)\n" +
-            "              AND (COALESCE(scp.min_required_credits,0) <= 0 OR COALESCE(scp.completed_credits,0) >= scp.min_required_credits) )\n" +
-            "      THEN 1 ELSE 0 END) AS met,\n" +
+            "  SUM(scp.met) AS met,\n" +
             "  AVG(\n" +
             "    CASE WHEN COALESCE(scp.min_required_credits,0) > 0 THEN\n" +
             "      LEAST(1.0, (COALESCE(scp.completed_credits,0) * 1.0) / NULLIF(scp.min_required_credits,0))\n" +
@@ -133,45 +117,12 @@ public interface StudentCategoryProgressRepository extends JpaRepository<Student
         double getAvgCreditCompletion();
     }
 
-    // Projected aggregates: metProjected assumes registered courses/credits pass
-    interface CategoryAggregateProjected {
-        String getCategoryName();
-        long getTotal();
-        long getMetActual();
-        long getMetProjected();
-    }
-
-    @Query(value = "SELECT\n" +
-            "  scp.category_name AS categoryName,\n" +
-            "  COUNT(*) AS total,\n" +
-            "  SUM(CASE WHEN ( (COALESCE(scp.min_required_courses,0) <= 0 OR COALESCE(scp.completed_courses,0) >= scp.min_required_courses)\n" +
-            "                AND (COALESCE(scp.min_required_credits,0) <= 0 OR COALESCE(scp.completed_credits,0) >= scp.min_required_credits) )\n" +
-            "      THEN 1 ELSE 0 END) AS metActual,\n" +
-            "  SUM(CASE WHEN ( (COALESCE(scp.min_required_courses,0) <= 0 OR (COALESCE(scp.completed_courses,0) + COALESCE(reg.registered_courses,0)) >= scp.min_required_courses)\n" +
-            "                AND (COALESCE(scp.min_required_credits,0) <= 0 OR (COALESCE(scp.completed_credits,0) + COALESCE(reg.registered_credits,0)) >= scp.min_required_credits) )\n" +
-            "      THEN 1 ELSE 0 END) AS metProjected\n" +
-            "FROM student_category_progress scp\n" +
-            "LEFT JOIN (\n" +
-            "  SELECT sg.university_id, pcc.category_id, COUNT(*) AS registered_courses, SUM(co.course_credits) AS registered_credits\n" +
-            "  FROM student_grades sg\n" +
-            "  JOIN courses co ON co.course_id = sg.course_id\n" +
-            "  JOIN program_course_category pcc ON pcc.course_id = co.course_id\n" +
-            "  JOIN students st2 ON st2.student_id = sg.university_id\n" +
-            "  WHERE sg.promotion = 'R' AND (:programId IS NULL OR pcc.program_id = :programId)\n" +
-            "  GROUP BY sg.university_id, pcc.category_id\n" +
-            ") reg ON reg.university_id = scp.university_id AND reg.category_id = scp.category_id\n" +
-            "WHERE (:programId IS NULL OR scp.program_id = :programId)\n" +
-            "GROUP BY scp.category_name",
-            nativeQuery = true)
-    List<CategoryAggregateProjected> aggregateByCategoryProjected(@Param("programId") Long programId);
-
     // Students who met a given category (optionally scoped by program)
     @Query(value = "SELECT scp.university_id AS universityId, scp.student_name AS studentName\n" +
             "FROM student_category_progress scp\n" +
             "WHERE scp.category_name = :categoryName\n" +
             "  AND (:programId IS NULL OR scp.program_id = :programId)\n" +
-            "  AND ( (COALESCE(scp.min_required_courses,0) <= 0 OR COALESCE(scp.completed_courses,0) >= scp.min_required_courses)\n" +
-            "        AND (COALESCE(scp.min_required_credits,0) <= 0 OR COALESCE(scp.completed_credits,0) >= scp.min_required_credits) )\n" +
+            "  AND scp.met = 1\n" +
             "GROUP BY scp.university_id, scp.student_name",
             nativeQuery = true)
     List<MetProjection> findStudentsWhoMetCategory(@Param("programId") Long programId, @Param("categoryName") String categoryName);
@@ -194,8 +145,7 @@ public interface StudentCategoryProgressRepository extends JpaRepository<Student
             "FROM student_category_progress scp\n" +
             "WHERE scp.category_name = :categoryName\n" +
             "  AND (:programId IS NULL OR scp.program_id = :programId)\n" +
-            "  AND ( (COALESCE(scp.min_required_courses,0) <= 0 OR COALESCE(scp.completed_courses,0) >= scp.min_required_courses)\n" +
-            "        AND (COALESCE(scp.min_required_credits,0) <= 0 OR COALESCE(scp.completed_credits,0) >= scp.min_required_credits) )\n" +
+            "  AND scp.met = 1\n" +
             "GROUP BY scp.university_id, scp.student_name, scp.completed_courses, scp.completed_credits",
             nativeQuery = true)
     List<CompletedDetailProjection> findCompletedDetails(@Param("programId") Long programId, @Param("categoryName") String categoryName);
@@ -248,8 +198,7 @@ public interface StudentCategoryProgressRepository extends JpaRepository<Student
             ") reg ON reg.university_id = scp.university_id AND reg.category_id = scp.category_id\n" +
             "WHERE scp.category_name = :categoryName\n" +
             "  AND (:programId IS NULL OR scp.program_id = :programId)\n" +
-            "  AND ( (COALESCE(scp.min_required_courses,0) > 0 AND COALESCE(scp.completed_courses,0) < scp.min_required_courses)\n" +
-            "        OR (COALESCE(scp.min_required_credits,0) > 0 AND COALESCE(scp.completed_credits,0) < scp.min_required_credits) )\n" +
+            "  AND scp.met = 0\n" +
             "GROUP BY scp.university_id, scp.student_name, scp.min_required_courses, scp.min_required_credits, scp.completed_courses, scp.completed_credits, reg.registered_courses, reg.registered_credits",
             nativeQuery = true)
     List<IncompleteDetailProjection> findIncompleteDetails(@Param("programId") Long programId, @Param("categoryName") String categoryName);
@@ -258,8 +207,7 @@ public interface StudentCategoryProgressRepository extends JpaRepository<Student
             "FROM student_category_progress scp\n" +
             "WHERE scp.category_name = :categoryName\n" +
             "  AND (:programId IS NULL OR scp.program_id = :programId)\n" +
-            "  AND ( (COALESCE(scp.min_required_courses,0) > 0 AND COALESCE(scp.completed_courses,0) < scp.min_required_courses)\n" +
-            "        OR (COALESCE(scp.min_required_credits,0) > 0 AND COALESCE(scp.completed_credits,0) < scp.min_required_credits) )\n" +
+            "  AND scp.met = 0\n" +
             "GROUP BY scp.university_id, scp.student_name",
             nativeQuery = true)
     List<MetProjection> findStudentsWhoNotMetCategory(@Param("programId") Long programId, @Param("categoryName") String categoryName);
@@ -324,32 +272,4 @@ public interface StudentCategoryProgressRepository extends JpaRepository<Student
             "ORDER BY scp.university_id, scp.category_id",
             nativeQuery = true)
     List<StudentCategoryCellProjection> findStudentCategoryCellsForStudents(@Param("programId") Long programId, @Param("studentIds") List<String> studentIds);
-
-    // Count students whose number of unmet categories equals a specific value (e.g., 1 for "close to completion")
-    @Query(value = "SELECT COUNT(*) FROM (\n" +
-            "  SELECT scp.university_id,\n" +
-            "         SUM(CASE WHEN ( (COALESCE(scp.min_required_courses,0) <= 0 OR COALESCE(scp.completed_courses,0) >= scp.min_required_courses)\n" +
-            "                       AND (COALESCE(scp.min_required_credits,0) <= 0 OR COALESCE(scp.completed_credits,0) >= scp.min_required_credits) )\n" +
-            "                  THEN 0 ELSE 1 END) AS notMetCnt\n" +
-            "  FROM student_category_progress scp\n" +
-            "  WHERE (:programId IS NULL OR scp.program_id = :programId)\n" +
-            "  GROUP BY scp.university_id\n" +
-            ") t\n" +
-            "WHERE t.notMetCnt = :k",
-            nativeQuery = true)
-    long countStudentsWithNotMetCategories(@Param("programId") Long programId, @Param("k") int k);
-
-    // Count students whose number of unmet categories is at most K (<= K)
-    @Query(value = "SELECT COUNT(*) FROM (\n" +
-            "  SELECT scp.university_id,\n" +
-            "         SUM(CASE WHEN ( (COALESCE(scp.min_required_courses,0) <= 0 OR COALESCE(scp.completed_courses,0) >= scp.min_required_courses)\n" +
-            "                       AND (COALESCE(scp.min_required_credits,0) <= 0 OR COALESCE(scp.completed_credits,0) >= scp.min_required_credits) )\n" +
-            "                  THEN 0 ELSE 1 END) AS notMetCnt\n" +
-            "  FROM student_category_progress scp\n" +
-            "  WHERE (:programId IS NULL OR scp.program_id = :programId)\n" +
-            "  GROUP BY scp.university_id\n" +
-            ") t\n" +
-            "WHERE t.notMetCnt <= :k",
-            nativeQuery = true)
-    long countStudentsWithNotMetCategoriesAtMost(@Param("programId") Long programId, @Param("k") int k);
 }
\ No newline at end of file
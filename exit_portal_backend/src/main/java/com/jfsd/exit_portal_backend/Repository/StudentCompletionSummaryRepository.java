@@ -0,0 +1,38 @@
+package com.jfsd.exit_portal_backend.Repository;
+
+import com.jfsd.exit_portal_backend.Model.StudentCompletionSummary;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface StudentCompletionSummaryRepository extends JpaRepository<StudentCompletionSummary, String> {
+
+    // Students who have met ALL their category requirements within optional program scope
+    @Query(value = "SELECT COUNT(*) FROM student_completion_summary s\n" +
+            "WHERE (:programId IS NULL OR s.program_id = :programId)\n" +
+            "  AND s.category_count > 0 AND s.unmet_categories = 0",
+            nativeQuery = true)
+    long countCompletedStudents(@Param("programId") Long programId);
+
+    // Students with exactly K unmet categories
+    @Query(value = "SELECT COUNT(*) FROM student_completion_summary s\n" +
+            "WHERE (:programId IS NULL OR s.program_id = :programId)\n" +
+            "  AND s.category_count > 0 AND s.unmet_categories = :k",
+            nativeQuery = true)
+    long countStudentsWithNotMetCategories(@Param("programId") Long programId, @Param("k") int k);
+
+    // Students whose number of unmet categories is at most K (<= K)
+    @Query(value = "SELECT COUNT(*) FROM student_completion_summary s\n" +
+            "WHERE (:programId IS NULL OR s.program_id = :programId)\n" +
+            "  AND s.category_count > 0 AND s.unmet_categories <= :k",
+            nativeQuery = true)
+    long countStudentsWithNotMetCategoriesAtMost(@Param("programId") Long programId, @Param("k") int k);
+
+    // Students with any non-pass promotion (risk indicator)
+    @Query(value = "SELECT COUNT(*) FROM student_completion_summary s\n" +
+            "WHERE (:programId IS NULL OR s.program_id = :programId) AND s.has_non_pass = 1",
+            nativeQuery = true)
+    long countStudentsWithAnyNonPass(@Param("programId") Long programId);
+}
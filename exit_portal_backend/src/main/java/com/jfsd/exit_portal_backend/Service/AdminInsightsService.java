@@ -10,6 +10,7 @@ import com.jfsd.exit_portal_backend.Repository.StudentCategoryProgressRepository
 import com.jfsd.exit_portal_backend.Repository.StudentCategoryProgressRepository.CategoryAggregate;
 import com.jfsd.exit_portal_backend.Repository.StudentRepository;
 import com.jfsd.exit_portal_backend.Repository.StudentGradeRepository;
+import com.jfsd.exit_portal_backend.Repository.StudentCompletionSummaryRepository;
 import com.jfsd.exit_portal_backend.Repository.ProgramCourseCategoryRepository;
 import com.jfsd.exit_portal_backend.Repository.ProgramCategoryRequirementRepository;
 import com.jfsd.exit_portal_backend.Repository.CategoriesRepository;
@@ -57,7 +58,24 @@ public class AdminInsightsService {
     @Autowired
     private CoursesRepository coursesRepository;
 
-    private static final double HONORS_EPSILON = 1e-6;
+    @Autowired
+    private DataVersionService dataVersionService;
+
+    @Autowired
+    private StudentCompletionSummaryRepository completionSummaryRepository;
+
+    @Autowired
+    private StudentCategoryProgressService studentCategoryProgressService;
+
+    @Autowired
+    private ProgressSnapshotService progressSnapshotService;
+
+    @Autowired
+    private AutocompleteIndexService autocompleteIndexService;
+
+    @Autowired
+    private RegistrationProjectionService registrationProjectionService;
+
     private static final int MAX_CATEGORY_STUDENT_LIST = Integer.MAX_VALUE; // Return all students for comprehensive insights
 
     @Cacheable(cacheNames = "admin_api", key = "'buildDashboard:' + #userType + ':' + T(java.util.Objects).toString(#programId)")
@@ -78,7 +96,7 @@ public class AdminInsightsService {
         }
 
         // Stats using optimized aggregates (avoid loading large progress tables)
-        long completedStudents = progressRepository.countCompletedStudents(programId);
+        long completedStudents = completionSummaryRepository.countCompletedStudents(programId);
 
         long totalStudents;
         if ("SUPER_ADMIN".equalsIgnoreCase(userType) && programId != null) {
@@ -139,8 +157,8 @@ public class AdminInsightsService {
     // ===== Projected Category Summaries (registered treated as completed) =====
     @Cacheable(cacheNames = "admin_api", key = "'aggregateByCategoryProjected:' + T(java.util.Objects).toString(#programId)")
     public List<Map<String, Object>> listCategorySummariesProjected(Long programId) {
-        List<StudentCategoryProgressRepository.CategoryAggregateProjected> rows =
-                progressRepository.aggregateByCategoryProjected(programId);
+        List<RegistrationProjectionService.CategoryProjection> rows =
+                registrationProjectionService.summarizeCategories(programId);
         return rows.stream().map(a -> {
             long total = a.getTotal();
             long metA = a.getMetActual();
@@ -160,40 +178,35 @@ public class AdminInsightsService {
     }
 
     public Map<String, Object> getHonorsOverview(Long programId) {
-        List<ProgramCategoryRequirement> honorsRequirements = (programId != null)
-                ? programCategoryRequirementRepository.findHonorsRequirementsByProgramId(programId)
-                : programCategoryRequirementRepository.findByHonorsMinCreditsIsNotNull();
+        ProgressSnapshotService.Snapshot snap = progressSnapshotService.getSnapshot();
+        Collection<ProgressSnapshotService.ProgramProgress> scope;
+        if (programId != null) {
+            ProgressSnapshotService.ProgramProgress pp = snap.getProgram(programId);
+            scope = pp != null ? List.of(pp) : Collections.emptyList();
+        } else {
+            scope = snap.getPrograms();
+        }
 
-        LinkedHashMap<String, ProgramCategoryRequirement> requirementByCategory = new LinkedHashMap<>();
+        // Later requirements for same category should overwrite earlier ones to reflect latest state
         LinkedHashMap<String, HonorsCategoryStats> categoryStats = new LinkedHashMap<>();
-        List<String> differenceCategoryDisplay = new ArrayList<>();
-
-        if (!honorsRequirements.isEmpty()) {
-            for (ProgramCategoryRequirement requirement : honorsRequirements) {
-                if (requirement == null || requirement.getCategory() == null || requirement.getCategory().getCategoryName() == null) {
-                    continue;
-                }
-                String categoryName = requirement.getCategory().getCategoryName();
-                String normalized = normalizeCategory(categoryName);
+        for (ProgressSnapshotService.ProgramProgress pp : scope) {
+            String[] categoryNames = pp.getCategoryNames();
+            double[] honorsMins = pp.getEvaluator().getHonorsMinCredits();
+            double[] regularMins = pp.getEvaluator().getMinCredits();
+            for (int c = 0; c < pp.getCategoryCount(); c++) {
+                if (Double.isNaN(honorsMins[c])) continue;
+                String normalized = normalizeCategory(categoryNames[c]);
                 if (normalized == null) continue;
-                // Later requirements for same category should overwrite earlier ones to reflect latest state
-                requirementByCategory.put(normalized, requirement);
+                Double minCredits = Double.isNaN(regularMins[c]) ? null : regularMins[c];
+                Double honorsMinCredits = honorsMins[c];
+                categoryStats.put(normalized, new HonorsCategoryStats(categoryNames[c], minCredits, honorsMinCredits,
+                        RequirementEvaluator.differs(honorsMinCredits, minCredits)));
             }
         }
-
-        for (ProgramCategoryRequirement requirement : requirementByCategory.values()) {
-            String categoryName = requirement.getCategory().getCategoryName();
-            Double minCredits = requirement.getMinCredits();
-            Double honorsMinCredits = requirement.getHonorsMinCredits();
-            boolean differs = differsFromRegular(honorsMinCredits, minCredits);
-            if (differs) {
-                differenceCategoryDisplay.add(categoryName);
-            }
-            categoryStats.put(
-                    normalizeCategory(categoryName),
-                    new HonorsCategoryStats(categoryName, minCredits, honorsMinCredits, differs)
-            );
-        }
+        List<String> differenceCategoryDisplay = categoryStats.values().stream()
+                .filter(cs -> cs.differsFromRegular)
+                .map(cs -> cs.categoryName)
+                .collect(Collectors.toList());
 
         if (categoryStats.isEmpty()) {
             Map<String, Object> empty = new LinkedHashMap<>();
@@ -215,58 +228,57 @@ public class AdminInsightsService {
             return empty;
         }
 
-        List<Student> students = (programId != null)
-                ? studentRepository.findByProgram_ProgramId(programId)
-                : studentRepository.findAll();
-
         LinkedHashMap<String, HonorsStudentAccumulator> studentAccumulators = new LinkedHashMap<>();
-        for (Student student : students) {
-            if (student == null || student.getStudentId() == null) continue;
-            HonorsStudentAccumulator acc = new HonorsStudentAccumulator(
-                    student.getStudentId(),
-                    student.getStudentName(),
-                    student.isHasAnyFailure()
-            );
-            studentAccumulators.put(student.getStudentId(), acc);
+        for (ProgressSnapshotService.ProgramProgress pp : scope) {
+            String[] studentIds = pp.getStudentIds();
+            String[] studentNames = pp.getStudentNames();
+            boolean[] hasFailure = pp.getHasFailure();
+            for (int s = 0; s < studentIds.length; s++) {
+                studentAccumulators.put(studentIds[s], new HonorsStudentAccumulator(studentIds[s], studentNames[s], hasFailure[s]));
+            }
         }
 
-        List<StudentCategoryProgressRepository.StudentCategoryCellProjection> cells = progressRepository.findStudentCategoryCells(programId);
-        for (StudentCategoryProgressRepository.StudentCategoryCellProjection cell : cells) {
-            if (cell == null || cell.getStudentId() == null) continue;
-            String studentId = cell.getStudentId();
-            HonorsStudentAccumulator acc = studentAccumulators.computeIfAbsent(
-                    studentId,
-                    id -> new HonorsStudentAccumulator(id, cell.getStudentName(), false)
-            );
-            if (cell.getStudentName() != null && (acc.studentName == null || acc.studentName.isBlank())) {
-                acc.studentName = cell.getStudentName();
+        for (ProgressSnapshotService.ProgramProgress pp : scope) {
+            int categoryCount = pp.getCategoryCount();
+            String[] studentIds = pp.getStudentIds();
+            String[] normalizedNames = new String[categoryCount];
+            HonorsCategoryStats[] statsByOrdinal = new HonorsCategoryStats[categoryCount];
+            for (int c = 0; c < categoryCount; c++) {
+                normalizedNames[c] = normalizeCategory(pp.getCategoryNames()[c]);
+                statsByOrdinal[c] = normalizedNames[c] == null ? null : categoryStats.get(normalizedNames[c]);
             }
+            boolean[] present = pp.getPresent();
+            double[] completedCreditsCells = pp.getCompletedCredits();
+            for (int s = 0, base = 0; s < studentIds.length; s++, base += categoryCount) {
+                String studentId = studentIds[s];
+                HonorsStudentAccumulator acc = studentAccumulators.get(studentId);
+                for (int c = 0; c < categoryCount; c++) {
+                    int idx = base + c;
+                    if (!present[idx] || normalizedNames[c] == null) continue;
+                    double completedCredits = completedCreditsCells[idx];
+                    acc.completedCreditsByCategory.put(normalizedNames[c], completedCredits);
+
+                    HonorsCategoryStats stats = statsByOrdinal[c];
+                    if (stats == null) continue;
+                    double honorsMin = stats.honorsMinCredits != null ? stats.honorsMinCredits : 0.0;
+                    double regularMin = stats.minCredits != null ? stats.minCredits : 0.0;
+                    boolean meetsHonors = stats.honorsMinCredits != null && RequirementEvaluator.covers(completedCredits, honorsMin);
+                    boolean meetsRegular = RequirementEvaluator.covers(completedCredits, regularMin);
+
+                    if (meetsHonors) {
+                        stats.metHonorsStudentIds.add(studentId);
+                        stats.notMetHonorsStudentIds.remove(studentId);
+                    } else if (stats.honorsMinCredits != null && !stats.metHonorsStudentIds.contains(studentId)) {
+                        stats.notMetHonorsStudentIds.add(studentId);
+                    }
 
-            String normalizedCategory = normalizeCategory(cell.getCategoryName());
-            if (normalizedCategory == null) continue;
-            double completedCredits = cell.getCompletedCredits() != null ? cell.getCompletedCredits() : 0.0;
-            acc.completedCreditsByCategory.put(normalizedCategory, completedCredits);
-
-            HonorsCategoryStats stats = categoryStats.get(normalizedCategory);
-            if (stats != null) {
-                double honorsMin = stats.honorsMinCredits != null ? stats.honorsMinCredits : 0.0;
-                double regularMin = stats.minCredits != null ? stats.minCredits : 0.0;
-                boolean meetsHonors = stats.honorsMinCredits != null && completedCredits + HONORS_EPSILON >= honorsMin;
-                boolean meetsRegular = completedCredits + HONORS_EPSILON >= regularMin;
-
-                if (meetsHonors) {
-                    stats.metHonorsStudentIds.add(studentId);
-                    stats.notMetHonorsStudentIds.remove(studentId);
-                } else if (stats.honorsMinCredits != null && !stats.metHonorsStudentIds.contains(studentId)) {
-                    stats.notMetHonorsStudentIds.add(studentId);
-                }
-
-                if (meetsRegular) {
-                    stats.metRegularStudentIds.add(studentId);
-                }
+                    if (meetsRegular) {
+                        stats.metRegularStudentIds.add(studentId);
+                    }
 
-                if (acc.hasFailure) {
-                    stats.failedStudentIds.add(studentId);
+                    if (acc.hasFailure) {
+                        stats.failedStudentIds.add(studentId);
+                    }
                 }
             }
         }
@@ -288,10 +300,11 @@ public class AdminInsightsService {
                 Double honorsMin = stats.honorsMinCredits;
                 if (honorsMin == null) continue;
                 double completed = acc.completedCreditsByCategory.getOrDefault(entry.getKey(), 0.0);
-                if (stats.differsFromRegular && completed + HONORS_EPSILON < honorsMin) {
+                boolean covered = RequirementEvaluator.covers(completed, honorsMin);
+                if (stats.differsFromRegular && !covered) {
                     meetsDifference = false;
                 }
-                if (completed + HONORS_EPSILON < honorsMin) {
+                if (!covered) {
                     meetsAllHonors = false;
                 }
             }
@@ -330,8 +343,8 @@ public class AdminInsightsService {
                 if (honorsMin != null) {
                     double honorsGap = Math.max(0, honorsMin - completed);
                     double regularGap = regularMin != null ? Math.max(0, regularMin - completed) : 0;
-                    boolean meetsHonors = completed + HONORS_EPSILON >= honorsMin;
-                    boolean meetsRegular = regularMin != null && completed + HONORS_EPSILON >= regularMin;
+                    boolean meetsHonors = RequirementEvaluator.covers(completed, honorsMin);
+                    boolean meetsRegular = regularMin != null && RequirementEvaluator.covers(completed, regularMin);
                     
                     Map<String, Object> gap = new LinkedHashMap<>();
                     gap.put("categoryName", stats.categoryName);
@@ -384,6 +397,7 @@ public class AdminInsightsService {
                 .collect(Collectors.toList()));
         // Add comprehensive detailed analysis
         response.put("detailedStudentAnalysis", detailedStudentAnalysis);
+        if (progressSnapshotService.isStale(snap)) response.put("stale", true);
 
         return response;
     }
@@ -394,11 +408,6 @@ public class AdminInsightsService {
         return normalized.isEmpty() ? null : normalized;
     }
 
-    private static boolean differsFromRegular(Double honorsMin, Double regularMin) {
-        if (honorsMin == null || regularMin == null) return false;
-        return Math.abs(honorsMin - regularMin) > HONORS_EPSILON;
-    }
-
     private static List<Map<String, Object>> summarizeStudents(Collection<String> studentIds,
                                                                Map<String, HonorsStudentAccumulator> accumulators,
                                                                int limit) {
@@ -521,29 +530,42 @@ public class AdminInsightsService {
     // Build dashboard strictly for a given program (used by SUPER_ADMIN drill-down)
     @Cacheable(cacheNames = "admin_api", key = "'buildDashboardForProgram:' + T(java.util.Objects).toString(#programId)")
     public Map<String, Object> buildDashboardForProgram(Long programId) {
-        System.out.println("AdminInsightsService.buildDashboardForProgram - programId: " + programId);
         if (programId == null) return Collections.emptyMap();
-        Optional<Program> pOpt = programRepository.findById(programId);
-        if (pOpt.isEmpty()) return Collections.emptyMap();
-        Program p = pOpt.get();
-        String code = p.getCode();
-        System.out.println("AdminInsightsService.buildDashboardForProgram - program code: " + code);
+        ProgressSnapshotService.Snapshot snap = progressSnapshotService.getSnapshot();
+        ProgressSnapshotService.ProgramProgress pp = snap.getProgram(programId);
+        if (pp == null) return Collections.emptyMap();
 
         Map<String, Object> dashboard = new LinkedHashMap<>();
         dashboard.put("userType", "SUPER_ADMIN");
-        dashboard.put("programId", p.getProgramId());
-        dashboard.put("programCode", code);
-        dashboard.put("programName", p.getName());
-
-        List<StudentCategoryProgress> rows = progressRepository.findByProgramCode(code);
-        System.out.println("AdminInsightsService.buildDashboardForProgram - progress rows found: " + rows.size());
-        Map<String, List<StudentCategoryProgress>> byStudent = rows.stream()
-                .collect(Collectors.groupingBy(StudentCategoryProgress::getUniversityId));
-
-        long completedStudents = byStudent.values().stream().filter(AdminInsightsService::isStudentComplete).count();
-        long totalStudents = studentRepository.countByProgram_ProgramId(programId);
+        dashboard.put("programId", pp.getProgramId());
+        dashboard.put("programCode", pp.getCode());
+        dashboard.put("programName", pp.getName());
+
+        // Single pass over the columnar cells: per-student completion and per-category aggregates
+        int studentCount = pp.getStudentCount();
+        int categoryCount = pp.getCategoryCount();
+        boolean[] present = pp.getPresent();
+        boolean[] met = pp.getMet();
+        double[] completedCredits = pp.getCompletedCredits();
+        double[] minCredits = pp.getMinRequiredCredits();
+        RequirementEvaluator evaluator = pp.getEvaluator();
+        CategorySummary[] summaries = new CategorySummary[categoryCount];
+        for (int c = 0; c < categoryCount; c++) summaries[c] = new CategorySummary();
+        long completedStudents = 0;
+        for (int s = 0, base = 0; s < studentCount; s++, base += categoryCount) {
+            for (int c = 0; c < categoryCount; c++) {
+                int idx = base + c;
+                if (!present[idx]) continue;
+                CategorySummary cs = summaries[c];
+                cs.total++;
+                if (met[idx]) cs.met++;
+                double denom = minCredits[idx];
+                if (denom > 0) cs.creditCompletionSum += Math.min(1.0, completedCredits[idx] / denom);
+            }
+            if (evaluator.isComplete(present, met, s)) completedStudents++;
+        }
+        long totalStudents = studentCount;
         long inProgressStudents = Math.max(0, totalStudents - completedStudents);
-        System.out.println("AdminInsightsService.buildDashboardForProgram - totalStudents: " + totalStudents + ", completedStudents: " + completedStudents);
 
         Map<String, Object> stats = new LinkedHashMap<>();
         stats.put("totalStudents", totalStudents);
@@ -552,27 +574,20 @@ public class AdminInsightsService {
         dashboard.put("stats", stats);
 
         // Category summaries within this program
-        Map<String, CategorySummary> categoryMap = new LinkedHashMap<>();
-        for (StudentCategoryProgress scp : rows) {
-            String cat = scp.getCategoryName();
-            if (cat == null) continue;
-            CategorySummary cs = categoryMap.computeIfAbsent(cat, k -> new CategorySummary());
-            cs.total++;
-            if (meetsRequirement(scp)) cs.met++;
-            double denom = scp.getMinRequiredCredits() != null && scp.getMinRequiredCredits() > 0 ? scp.getMinRequiredCredits() : 0.0;
-            double ratio = denom > 0 ? Math.min(1.0, (scp.getCompletedCredits() != null ? scp.getCompletedCredits() : 0.0) / denom) : 0.0;
-            cs.creditCompletionSum += ratio;
+        String[] categoryNames = pp.getCategoryNames();
+        List<Map<String, Object>> categorySummaries = new ArrayList<>();
+        for (int c = 0; c < categoryCount; c++) {
+            if (summaries[c].total == 0 || categoryNames[c] == null) continue;
+            categorySummaries.add(summaries[c].toMap(categoryNames[c]));
         }
-        List<Map<String, Object>> categorySummaries = categoryMap.entrySet().stream()
-                .map(e -> e.getValue().toMap(e.getKey()))
-                .sorted(Comparator.comparing((Map<String, Object> m) -> (Double) m.get("metRate")))
-                .collect(Collectors.toList());
+        categorySummaries.sort(Comparator.comparing((Map<String, Object> m) -> (Double) m.get("metRate")));
         dashboard.put("categorySummaries", categorySummaries);
         List<Map<String, Object>> bottlenecks = categorySummaries.stream()
-                .sorted(Comparator.comparing((Map<String, Object> m) -> (Double) m.get("metRate")))
                 .limit(3)
                 .collect(Collectors.toList());
         dashboard.put("bottlenecks", bottlenecks);
+        // Served from the previous snapshot while the rebuild for the latest import runs
+        if (progressSnapshotService.isStale(snap)) dashboard.put("stale", true);
 
         return dashboard;
     }
@@ -594,19 +609,15 @@ public class AdminInsightsService {
     // Rank programs by completion rate; worstFirst=true returns lowest first
     @Cacheable(cacheNames = "admin_api", key = "'rankPrograms:' + #limit + ':' + #worstFirst")
     public List<Map<String, Object>> rankPrograms(int limit, boolean worstFirst) {
-        List<Program> programs = programRepository.findAll();
         List<Map<String, Object>> rows = new ArrayList<>();
-        for (Program p : programs) {
-            List<StudentCategoryProgress> scps = progressRepository.findByProgramCode(p.getCode());
-            Map<String, List<StudentCategoryProgress>> byStudent = scps.stream()
-                    .collect(Collectors.groupingBy(StudentCategoryProgress::getUniversityId));
-            long completed = byStudent.values().stream().filter(AdminInsightsService::isStudentComplete).count();
-            long total = studentRepository.countByProgram_ProgramId(p.getProgramId());
+        for (ProgressSnapshotService.ProgramProgress pp : progressSnapshotService.getSnapshot().getPrograms()) {
+            long completed = pp.getEvaluator().countComplete(pp.getPresent(), pp.getMet(), pp.getStudentCount());
+            long total = pp.getStudentCount();
             double rate = total > 0 ? (double) completed / (double) total : 0.0;
             Map<String, Object> m = new LinkedHashMap<>();
-            m.put("programId", p.getProgramId());
-            m.put("programCode", p.getCode());
-            m.put("programName", p.getName());
+            m.put("programId", pp.getProgramId());
+            m.put("programCode", pp.getCode());
+            m.put("programName", pp.getName());
             m.put("totalStudents", total);
             m.put("completedStudents", completed);
             m.put("completionRate", Math.round(rate * 1000.0) / 1000.0);
@@ -720,6 +731,7 @@ public class AdminInsightsService {
                 .orElseGet(() -> new ProgramCourseCategory(program, savedCourse, category));
         mapping.setCategory(category);
         programCourseCategoryRepository.save(mapping);
+        dataVersionService.bump("course mapping upsert");
 
         Map<String, Object> response = new LinkedHashMap<>(toCourseMap(savedCourse));
         response.put("categoryName", category.getCategoryName());
@@ -753,6 +765,7 @@ public class AdminInsightsService {
             return false;
         }
         programCourseCategoryRepository.delete(mapping);
+        dataVersionService.bump("course mapping removal");
         return true;
     }
 
@@ -811,6 +824,10 @@ public class AdminInsightsService {
         }
 
         ProgramCategoryRequirement saved = programCategoryRequirementRepository.save(requirement);
+        if (honorsMinCredits != null && saved.getProgram() != null) {
+            studentCategoryProgressService.refreshHonorsEligibility(saved.getProgram().getProgramId());
+        }
+        dataVersionService.bump("requirement update");
         return toRequirementMap(saved);
     }
 
@@ -821,6 +838,7 @@ public class AdminInsightsService {
         }
 
         List<Map<String, Object>> results = new ArrayList<>();
+        Set<Long> touchedPrograms = new LinkedHashSet<>();
         for (HonorsRequirementUpdateRequest update : updates) {
             if (update == null || update.getRequirementId() == null) {
                 continue;
@@ -834,9 +852,14 @@ public class AdminInsightsService {
             requirement.setHonorsMinCredits(update.getHonorsMinCredits());
 
             ProgramCategoryRequirement saved = programCategoryRequirementRepository.save(requirement);
+            if (saved.getProgram() != null) touchedPrograms.add(saved.getProgram().getProgramId());
             results.add(toRequirementMap(saved));
         }
 
+        for (Long programId : touchedPrograms) {
+            studentCategoryProgressService.refreshHonorsEligibility(programId);
+        }
+        if (!results.isEmpty()) dataVersionService.bump("honors requirement update");
         return results;
     }
 
@@ -1013,62 +1036,69 @@ public class AdminInsightsService {
     @Cacheable(cacheNames = "admin_api", key = "'studentCategoryMatrix:' + T(java.util.Objects).toString(#programId)")
     public Map<String, Object> getStudentCategoryMatrix(Long programId) {
         Map<String, Object> out = new LinkedHashMap<>();
+        ProgressSnapshotService.Snapshot snap = progressSnapshotService.getSnapshot();
 
         // Resolve categories for this program (ensures headers even if a student lacks a row unexpectedly)
-        List<String> categories;
+        Collection<ProgressSnapshotService.ProgramProgress> scope;
         if (programId != null) {
-            Optional<Program> p = programRepository.findById(programId);
-            if (p.isEmpty()) {
+            ProgressSnapshotService.ProgramProgress pp = snap.getProgram(programId);
+            if (pp == null) {
                 out.put("categories", List.of());
                 out.put("rows", List.of());
                 return out;
             }
-            categories = categoriesRepository.findByProgram(p.get()).stream()
-                    .map(Categories::getCategoryName)
-                    .sorted(String::compareToIgnoreCase)
-                    .collect(Collectors.toList());
+            scope = List.of(pp);
         } else {
             // If not scoped, fall back to all categories
-            categories = categoriesRepository.findAll().stream()
-                    .map(Categories::getCategoryName)
-                    .distinct()
-                    .sorted(String::compareToIgnoreCase)
-                    .collect(Collectors.toList());
+            scope = snap.getPrograms();
         }
+        List<String> categories = scope.stream()
+                .flatMap(pp -> Arrays.stream(pp.getCategoryNames()))
+                .filter(Objects::nonNull)
+                .distinct()
+                .sorted(String::compareToIgnoreCase)
+                .collect(Collectors.toList());
 
-        List<StudentCategoryProgressRepository.StudentCategoryCellProjection> cells =
-                progressRepository.findStudentCategoryCells(programId);
-
-        // Group by student
-        Map<String, Map<String, Object>> rowByStudent = new LinkedHashMap<>();
-        for (StudentCategoryProgressRepository.StudentCategoryCellProjection c : cells) {
-            String sid = c.getStudentId();
-            if (sid == null) continue;
-            Map<String, Object> row = rowByStudent.computeIfAbsent(sid, k -> {
-                Map<String, Object> r = new LinkedHashMap<>();
-                r.put("studentId", c.getStudentId());
-                r.put("studentName", c.getStudentName());
-                r.put("cells", new LinkedHashMap<String, Map<String, Object>>());
-                return r;
-            });
-            @SuppressWarnings("unchecked")
-            Map<String, Map<String, Object>> cellMap = (Map<String, Map<String, Object>>) row.get("cells");
-            String cat = c.getCategoryName();
-            if (cat == null) continue;
-            Map<String, Object> cell = cellMap.computeIfAbsent(cat, k -> new LinkedHashMap<>());
-            cell.put("completedCourses", c.getCompletedCourses());
-            cell.put("minRequiredCourses", c.getMinRequiredCourses());
-            cell.put("completedCredits", c.getCompletedCredits());
-            cell.put("minRequiredCredits", c.getMinRequiredCredits());
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (ProgressSnapshotService.ProgramProgress pp : scope) {
+            int categoryCount = pp.getCategoryCount();
+            String[] studentIds = pp.getStudentIds();
+            String[] studentNames = pp.getStudentNames();
+            String[] categoryNames = pp.getCategoryNames();
+            boolean[] present = pp.getPresent();
+            int[] completedCourses = pp.getCompletedCourses();
+            int[] minCourses = pp.getMinRequiredCourses();
+            double[] completedCredits = pp.getCompletedCredits();
+            double[] minCredits = pp.getMinRequiredCredits();
+            for (int s = 0, base = 0; s < studentIds.length; s++, base += categoryCount) {
+                Map<String, Map<String, Object>> cellMap = null;
+                for (int c = 0; c < categoryCount; c++) {
+                    int idx = base + c;
+                    if (!present[idx] || categoryNames[c] == null) continue;
+                    if (cellMap == null) cellMap = new LinkedHashMap<>();
+                    Map<String, Object> cell = new LinkedHashMap<>();
+                    cell.put("completedCourses", completedCourses[idx]);
+                    cell.put("minRequiredCourses", minCourses[idx]);
+                    cell.put("completedCredits", completedCredits[idx]);
+                    cell.put("minRequiredCredits", minCredits[idx]);
+                    cellMap.put(categoryNames[c], cell);
+                }
+                // Only students with progress rows appear in the matrix
+                if (cellMap == null) continue;
+                Map<String, Object> row = new LinkedHashMap<>();
+                row.put("studentId", studentIds[s]);
+                row.put("studentName", studentNames[s]);
+                row.put("cells", cellMap);
+                rows.add(row);
+            }
         }
 
         // Finalize rows in deterministic order by studentId
-        List<Map<String, Object>> rows = rowByStudent.values().stream()
-                .sorted(Comparator.comparing(m -> String.valueOf(m.get("studentId"))))
-                .collect(Collectors.toList());
+        rows.sort(Comparator.comparing(m -> String.valueOf(m.get("studentId"))));
 
         out.put("categories", categories);
         out.put("rows", rows);
+        if (progressSnapshotService.isStale(snap)) out.put("stale", true);
         return out;
     }
 
@@ -1235,24 +1265,6 @@ public class AdminInsightsService {
         return m;
     }
 
-    private static boolean isStudentComplete(List<StudentCategoryProgress> rows) {
-        if (rows == null || rows.isEmpty()) return false;
-        for (StudentCategoryProgress scp : rows) {
-            if (!meetsRequirement(scp)) return false;
-        }
-        return true;
-    }
-
-    private static boolean meetsRequirement(StudentCategoryProgress scp) {
-        Integer minCourses = scp.getMinRequiredCourses();
-        Double minCredits = scp.getMinRequiredCredits();
-        Integer doneCourses = scp.getCompletedCourses();
-        Double doneCredits = scp.getCompletedCredits();
-        boolean coursesOk = (minCourses == null || minCourses <= 0) || (doneCourses != null && doneCourses >= minCourses);
-        boolean creditsOk = (minCredits == null || minCredits <= 0) || (doneCredits != null && doneCredits >= minCredits);
-        return coursesOk && creditsOk;
-    }
-
     private static class CategorySummary {
         long total = 0;
         long met = 0;
@@ -1279,12 +1291,11 @@ public class AdminInsightsService {
     @Cacheable(cacheNames = "admin_api", key = "'getRiskSummary:' + T(java.util.Objects).toString(#programId)")
     public Map<String, Object> getRiskSummary(Long programId) {
         Map<String, Object> m = new LinkedHashMap<>();
-        long exact0 = progressRepository.countCompletedStudents(programId);
-        long leq5 = progressRepository.countStudentsWithNotMetCategoriesAtMost(programId, 5);
+        // Indexed range counts over the per-student summary maintained by the progress recompute
+        long exact0 = completionSummaryRepository.countCompletedStudents(programId);
+        long leq5 = completionSummaryRepository.countStudentsWithNotMetCategoriesAtMost(programId, 5);
         long closeLeq5 = Math.max(0, leq5 - exact0); // students with 1..5 unmet categories
-        long nonPass = (programId != null)
-                ? studentGradeRepository.countDistinctStudentsWithAnyNonPassByProgram(programId)
-                : studentGradeRepository.countDistinctStudentsWithAnyNonPass();
+        long nonPass = completionSummaryRepository.countStudentsWithAnyNonPass(programId);
         m.put("exact0", exact0);
         m.put("closeLeq5", closeLeq5);
         m.put("nonPassAny", nonPass);
@@ -1378,36 +1389,9 @@ public class AdminInsightsService {
     }
 
     // ===== Search helpers for autocomplete and details =====
+    // Served from the in-memory trigram index (ranked: id/name prefix first, then substring)
     public List<Map<String, Object>> searchStudents(Long programId, String q, int limit) {
-        if (q == null || q.isBlank()) return Collections.emptyList();
-        String query = q.trim();
-        List<Student> byId;
-        List<Student> byName;
-        if (programId != null) {
-            byId = studentRepository.findByProgram_ProgramIdAndStudentIdContainingIgnoreCase(programId, query);
-            byName = studentRepository.findByProgram_ProgramIdAndStudentNameContainingIgnoreCase(programId, query);
-        } else {
-            byId = studentRepository.findByStudentIdContainingIgnoreCase(query);
-            byName = studentRepository.findByStudentNameContainingIgnoreCase(query);
-        }
-        // Merge and distinct by studentId
-        Map<String, Student> merged = new LinkedHashMap<>();
-        for (Student s : byId) merged.putIfAbsent(s.getStudentId(), s);
-        for (Student s : byName) merged.putIfAbsent(s.getStudentId(), s);
-        return merged.values().stream()
-                .limit(Math.max(1, limit))
-                .map(s -> {
-                    Map<String, Object> m = new LinkedHashMap<>();
-                    m.put("studentId", s.getStudentId());
-                    m.put("studentName", s.getStudentName());
-                    if (s.getProgram() != null) {
-                        m.put("programId", s.getProgram().getProgramId());
-                        m.put("programCode", s.getProgram().getCode());
-                        m.put("programName", s.getProgram().getName());
-                    }
-                    return m;
-                })
-                .collect(Collectors.toList());
+        return autocompleteIndexService.searchStudents(programId, q, limit);
     }
 
     public Map<String, Object> getStudentBasic(String studentId) {
@@ -1427,30 +1411,7 @@ public class AdminInsightsService {
     }
 
     public List<Map<String, Object>> searchCategories(Long programId, String q, int limit) {
-        if (q == null || q.isBlank()) return Collections.emptyList();
-        String query = q.trim();
-        List<Categories> cats;
-        if (programId != null) {
-            Optional<Program> p = programRepository.findById(programId);
-            cats = p.map(pr -> categoriesRepository.findByProgramAndCategoryNameContainingIgnoreCase(pr, query))
-                    .orElse(Collections.emptyList());
-        } else {
-            cats = categoriesRepository.findByCategoryNameContainingIgnoreCase(query);
-        }
-        return cats.stream()
-                .limit(Math.max(1, limit))
-                .map(c -> {
-                    Map<String, Object> m = new LinkedHashMap<>();
-                    m.put("categoryId", c.getCategoryID());
-                    m.put("categoryName", c.getCategoryName());
-                    if (c.getProgram() != null) {
-                        m.put("programId", c.getProgram().getProgramId());
-                        m.put("programCode", c.getProgram().getCode());
-                        m.put("programName", c.getProgram().getName());
-                    }
-                    return m;
-                })
-                .collect(Collectors.toList());
+        return autocompleteIndexService.searchCategories(programId, q, limit);
     }
 
     // ===== Course stats: grade and promotion distributions, registered count =====
@@ -1,75 +1,284 @@
 package com.jfsd.exit_portal_backend.Service;
 
+import com.jfsd.exit_portal_backend.Model.ProgramDeletionJob;
+import com.jfsd.exit_portal_backend.Repository.ProgramDeletionJobRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.event.EventListener;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 @Service
 public class AdminMaintenanceService {
 
+    private static final Logger log = LoggerFactory.getLogger(AdminMaintenanceService.class);
+
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private DataVersionService dataVersionService;
+
+    @Autowired
+    private ProgramDeletionJobRepository jobRepository;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private CurriculumCacheService curriculumCacheService;
+
+    @Value("${maintenance.delete.chunk-size:2000}")
+    private int chunkSize;
+
+    @Value("${maintenance.delete.pause-ms:200}")
+    private long pauseMs;
+
+    private static final List<String> ACTIVE_STATUSES =
+            List.of(ProgramDeletionJob.STATUS_PENDING, ProgramDeletionJob.STATUS_RUNNING);
+
+    // One deletion at a time keeps lock pressure predictable for concurrent imports/dashboards
+    private final ExecutorService deletionExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "program-deletion");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Child-to-parent order. Each step selects a bounded batch of primary keys for the program and
+    // deletes exactly those rows, so every chunk is a short autocommit statement and re-running a
+    // step after a crash simply continues with whatever is left.
+    private static final class Step {
+        private final String name;
+        private final String selectKeysSql;
+        private final String deleteByKeysSql;
+
+        private Step(String name, String selectKeysSql, String deleteByKeysSql) {
+            this.name = name;
+            this.selectKeysSql = selectKeysSql;
+            this.deleteByKeysSql = deleteByKeysSql;
+        }
+    }
+
+    private static final String ORPHAN_COURSES_STEP = "orphan courses";
+
+    private static final List<Step> STEPS = List.of(
+        new Step("student_category_progress",
+            "SELECT id FROM student_category_progress WHERE program_id = ? ORDER BY id LIMIT ?",
+            "DELETE FROM student_category_progress WHERE id IN (%s)"),
+        new Step("student_completion_summary",
+            "SELECT university_id FROM student_completion_summary WHERE program_id = ? ORDER BY university_id LIMIT ?",
+            "DELETE FROM student_completion_summary WHERE university_id IN (%s)"),
+        new Step("student_grades",
+            "SELECT sg.sno FROM student_grades sg JOIN students s ON s.student_id = sg.university_id " +
+            "WHERE s.program_id = ? ORDER BY sg.sno LIMIT ?",
+            "DELETE FROM student_grades WHERE sno IN (%s)"),
+        // password reset tokens for students in program (avoid FK violations when deleting students)
+        new Step("password_reset_token",
+            "SELECT t.id FROM password_reset_token t JOIN students s ON s.student_id = t.student_id " +
+            "WHERE s.program_id = ? ORDER BY t.id LIMIT ?",
+            "DELETE FROM password_reset_token WHERE id IN (%s)"),
+        new Step("students",
+            "SELECT student_id FROM students WHERE program_id = ? ORDER BY student_id LIMIT ?",
+            "DELETE FROM students WHERE student_id IN (%s)"),
+        new Step("program_course_category",
+            "SELECT id FROM program_course_category WHERE program_id = ? ORDER BY id LIMIT ?",
+            "DELETE FROM program_course_category WHERE id IN (%s)"),
+        new Step("program_category_requirement",
+            "SELECT id FROM program_category_requirement WHERE program_id = ? ORDER BY id LIMIT ?",
+            "DELETE FROM program_category_requirement WHERE id IN (%s)"),
+        // remove truly orphan courses: no program mapping AND no student_grades referencing them
+        // (avoids FK violations against student_grades.course_id); swept in course_id ranges
+        new Step(ORPHAN_COURSES_STEP, null, null),
+        new Step("categories",
+            "SELECT category_id FROM categories WHERE program_id = ? ORDER BY category_id LIMIT ?",
+            "DELETE FROM categories WHERE category_id IN (%s)")
+    );
+
     /**
-     * Deletes all data for a program by program code or program name.
-     * If both are provided, code takes precedence. Throws IllegalArgumentException if no program is found.
+     * Starts (or returns the already running) background deletion of all data for a program,
+     * resolved by program code or program name. If both are provided, code takes precedence.
+     * Throws IllegalArgumentException if no program is found.
      */
-    @Transactional
-    public String deleteProgramCascade(String programCode, String programName) {
+    public ProgramDeletionJob startProgramDeletion(String programCode, String programName, String requestedBy) {
         Long programId = resolveProgramId(programCode, programName);
         if (programId == null) {
             throw new IllegalArgumentException("Program not found for provided code/name");
         }
-        return performCascadeDeletion(programId);
+        return startProgramDeletionById(programId, requestedBy);
     }
 
-    @Transactional
-    public String deleteProgramCascadeById(Long programId) {
+    public synchronized ProgramDeletionJob startProgramDeletionById(Long programId, String requestedBy) {
         if (programId == null) {
             throw new IllegalArgumentException("Program ID is required");
         }
-        return performCascadeDeletion(programId);
+        Optional<ProgramDeletionJob> active = jobRepository.findFirstByProgramIdAndStatusIn(programId, ACTIVE_STATUSES);
+        if (active.isPresent()) {
+            return active.get();
+        }
+        ProgramDeletionJob job = jobRepository.save(new ProgramDeletionJob(programId, requestedBy));
+        submit(job.getId());
+        return job;
+    }
+
+    public Optional<ProgramDeletionJob> findJob(Long jobId) {
+        return jobId == null ? Optional.empty() : jobRepository.findById(jobId);
     }
 
-    private String performCascadeDeletion(Long programId) {
-        // Execute the deletion steps in child-to-parent order.
-        // 1) student_category_progress by program_id
-        jdbcTemplate.update("DELETE FROM student_category_progress WHERE program_id = ?", programId);
+    public Map<String, Object> toJobMap(ProgramDeletionJob job) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("jobId", job.getId());
+        m.put("programId", job.getProgramId());
+        m.put("status", job.getStatus());
+        m.put("currentStep", job.getCurrentStep());
+        m.put("totalSteps", STEPS.size());
+        m.put("stepName", job.getCurrentStep() < STEPS.size() ? STEPS.get(job.getCurrentStep()).name : null);
+        m.put("rowsDeleted", job.getRowsDeleted());
+        m.put("lastError", job.getLastError());
+        m.put("createdAt", job.getCreatedAt());
+        m.put("updatedAt", job.getUpdatedAt());
+        m.put("finishedAt", job.getFinishedAt());
+        return m;
+    }
 
-        // 2) student_grades by students in program
-        jdbcTemplate.update(
-            "DELETE FROM student_grades WHERE university_id IN (SELECT student_id FROM students WHERE program_id = ?)",
-            programId
-        );
+    // Resume jobs interrupted by a restart/crash from their recorded step
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeUnfinishedJobs() {
+        try {
+            for (ProgramDeletionJob job : jobRepository.findByStatusInOrderByIdAsc(ACTIVE_STATUSES)) {
+                log.info("Resuming program deletion job {} for program {} at step {}", job.getId(), job.getProgramId(), job.getCurrentStep());
+                submit(job.getId());
+            }
+        } catch (Exception ex) {
+            log.warn("Could not resume program deletion jobs: {}", ex.getMessage());
+        }
+    }
 
-        // 2a) password reset tokens for students in program (avoid FK violations when deleting students)
-        jdbcTemplate.update(
-            "DELETE FROM password_reset_token WHERE student_id IN (SELECT student_id FROM students WHERE program_id = ?)",
-            programId
-        );
+    @PreDestroy
+    public void shutdown() {
+        deletionExecutor.shutdownNow();
+    }
+
+    private void submit(Long jobId) {
+        deletionExecutor.submit(() -> runJob(jobId));
+    }
 
-        // 3) students by program_id
-        jdbcTemplate.update("DELETE FROM students WHERE program_id = ?", programId);
+    private void runJob(Long jobId) {
+        ProgramDeletionJob job = jobRepository.findById(jobId).orElse(null);
+        if (job == null || !ACTIVE_STATUSES.contains(job.getStatus())) return;
+        Long programId = job.getProgramId();
+        long tStart = System.currentTimeMillis();
+        job.setStatus(ProgramDeletionJob.STATUS_RUNNING);
+        touch(job);
+        try {
+            for (int stepIndex = job.getCurrentStep(); stepIndex < STEPS.size(); stepIndex++) {
+                Step step = STEPS.get(stepIndex);
+                long stepRows = ORPHAN_COURSES_STEP.equals(step.name)
+                        ? sweepOrphanCourses(job)
+                        : deleteInChunks(job, step, programId);
+                log.info("Program deletion job {}: step '{}' removed {} rows", jobId, step.name, stepRows);
+                job.setCurrentStep(stepIndex + 1);
+                touch(job);
+            }
+            job.setStatus(ProgramDeletionJob.STATUS_COMPLETED);
+            job.setFinishedAt(new Date());
+            job.setLastError(null);
+            touch(job);
+            evictCaches();
+            dataVersionService.bump("program deletion");
+            log.info("Program deletion job {} for program {} completed: {} rows in {} ms",
+                    jobId, programId, job.getRowsDeleted(), (System.currentTimeMillis() - tStart));
+        } catch (InterruptedException ie) {
+            // Shutdown: leave the job RUNNING so the next start resumes it
+            Thread.currentThread().interrupt();
+        } catch (Exception ex) {
+            log.error("Program deletion job {} failed at step {}: {}", jobId, job.getCurrentStep(), ex.getMessage());
+            String msg = ex.getMessage() == null ? ex.getClass().getSimpleName() : ex.getMessage();
+            job.setStatus(ProgramDeletionJob.STATUS_FAILED);
+            job.setLastError(msg.length() > 1000 ? msg.substring(0, 1000) : msg);
+            touch(job);
+            // Partial deletes are already committed; make sure nobody keeps serving them from cache
+            evictCaches();
+            dataVersionService.bump("program deletion (partial)");
+        }
+    }
 
-        // 4) program_course_category by program_id
-        jdbcTemplate.update("DELETE FROM program_course_category WHERE program_id = ?", programId);
+    private long deleteInChunks(ProgramDeletionJob job, Step step, Long programId) throws InterruptedException {
+        int limit = Math.max(1, chunkSize);
+        long total = 0;
+        while (true) {
+            List<Object> keys = jdbcTemplate.queryForList(step.selectKeysSql, Object.class, programId, limit);
+            if (keys.isEmpty()) break;
+            String placeholders = String.join(", ", Collections.nCopies(keys.size(), "?"));
+            int deleted = jdbcTemplate.update(String.format(step.deleteByKeysSql, placeholders), keys.toArray());
+            total += deleted;
+            job.setRowsDeleted(job.getRowsDeleted() + deleted);
+            touch(job);
+            if (keys.size() < limit) break;
+            pause();
+        }
+        return total;
+    }
 
-        // 5) program_category_requirement by program_id
-        jdbcTemplate.update("DELETE FROM program_category_requirement WHERE program_id = ?", programId);
+    private long sweepOrphanCourses(ProgramDeletionJob job) throws InterruptedException {
+        int limit = Math.max(1, chunkSize);
+        long total = 0;
+        int lastId = Integer.MIN_VALUE;
+        while (true) {
+            List<Integer> ids = jdbcTemplate.queryForList(
+                "SELECT course_id FROM courses WHERE course_id > ? ORDER BY course_id LIMIT ?",
+                Integer.class, lastId, limit);
+            if (ids.isEmpty()) break;
+            int from = ids.get(0);
+            int to = ids.get(ids.size() - 1);
+            int deleted = jdbcTemplate.update(
+                "DELETE FROM courses c \n" +
+                "WHERE c.course_id BETWEEN ? AND ? \n" +
+                "  AND NOT EXISTS (SELECT 1 FROM program_course_category pcc WHERE pcc.course_id = c.course_id) \n" +
+                "  AND NOT EXISTS (SELECT 1 FROM student_grades sg WHERE sg.course_id = c.course_id)",
+                from, to);
+            total += deleted;
+            if (deleted > 0) {
+                job.setRowsDeleted(job.getRowsDeleted() + deleted);
+                touch(job);
+            }
+            lastId = to;
+            if (ids.size() < limit) break;
+            pause();
+        }
+        return total;
+    }
 
-        // 6) remove truly orphan courses: no program mapping AND no student_grades referencing them
-        //    This avoids foreign key violations against student_grades.course_id -> courses.course_id
-        jdbcTemplate.update(
-            "DELETE FROM courses c \n" +
-            "WHERE NOT EXISTS (SELECT 1 FROM program_course_category pcc WHERE pcc.course_id = c.course_id) \n" +
-            "  AND NOT EXISTS (SELECT 1 FROM student_grades sg WHERE sg.course_id = c.course_id)"
-        );
+    private void pause() throws InterruptedException {
+        if (pauseMs > 0) Thread.sleep(pauseMs);
+    }
 
-        // 7) categories by program_id
-        jdbcTemplate.update("DELETE FROM categories WHERE program_id = ?", programId);
+    private void touch(ProgramDeletionJob job) {
+        job.setUpdatedAt(new Date());
+        jobRepository.save(job);
+    }
 
-        return "Successfully deleted program " + programId + " and all related records";
+    private void evictCaches() {
+        curriculumCacheService.evict("program deletion");
+        if (cacheManager == null) return;
+        for (String name : List.of("admin_api", "student_api")) {
+            if (cacheManager.getCache(name) != null) {
+                cacheManager.getCache(name).clear();
+            }
+        }
     }
 
     private Long resolveProgramId(String programCode, String programName) {
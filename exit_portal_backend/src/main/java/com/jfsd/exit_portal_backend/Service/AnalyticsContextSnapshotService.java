@@ -0,0 +1,252 @@
+package com.jfsd.exit_portal_backend.Service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * In-memory snapshot of the metadata the analytics prompts need (programs, courses with enrollment
+ * stats, categories/requirements/mapping counts per program, grade and term distributions).
+ * Rebuilt in the background after each import or admin write so prompt assembly needs no DB round-trips.
+ * Keyed on the source data version: a progress recompute alone does not rebuild it, so the progress
+ * samples may lag a recompute until the next source change.
+ */
+@Service
+public class AnalyticsContextSnapshotService {
+
+    private static final Logger log = LoggerFactory.getLogger(AnalyticsContextSnapshotService.class);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DataVersionService dataVersionService;
+
+    // An import bumps the version twice (at write time and after commit); wait briefly so both
+    // bumps are served by one rebuild
+    private static final long REFRESH_DELAY_MS = 500;
+    private static final int RECENT_GRADES_SCAN_ROWS = 2000;
+    private static final int RECENT_GRADES_PER_TERM = 15;
+
+    private volatile Snapshot snapshot;
+    private final AtomicBoolean refreshScheduled = new AtomicBoolean(false);
+
+    // One refresher thread: bumps arriving while a rebuild runs are coalesced into the next run
+    private final ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "nl-context-snapshot-refresh");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public static final class Snapshot {
+        private final long version;
+        private final List<Map<String, Object>> programs;
+        private final List<Map<String, Object>> courses;
+        private final Map<Long, List<Map<String, Object>>> categoriesByProgram;
+        private final Map<Long, List<Map<String, Object>>> requirementsByProgram;
+        private final Map<Long, List<Map<String, Object>>> mappingCountsByProgram;
+        private final List<Map<String, Object>> gradePatterns;
+        private final List<Map<String, Object>> terms;
+        private final List<Map<String, Object>> recentGrades;
+        private final List<Map<String, Object>> progressSamples;
+
+        private Snapshot(long version,
+                         List<Map<String, Object>> programs,
+                         List<Map<String, Object>> courses,
+                         Map<Long, List<Map<String, Object>>> categoriesByProgram,
+                         Map<Long, List<Map<String, Object>>> requirementsByProgram,
+                         Map<Long, List<Map<String, Object>>> mappingCountsByProgram,
+                         List<Map<String, Object>> gradePatterns,
+                         List<Map<String, Object>> terms,
+                         List<Map<String, Object>> recentGrades,
+                         List<Map<String, Object>> progressSamples) {
+            this.version = version;
+            this.programs = programs;
+            this.courses = courses;
+            this.categoriesByProgram = categoriesByProgram;
+            this.requirementsByProgram = requirementsByProgram;
+            this.mappingCountsByProgram = mappingCountsByProgram;
+            this.gradePatterns = gradePatterns;
+            this.terms = terms;
+            this.recentGrades = recentGrades;
+            this.progressSamples = progressSamples;
+        }
+
+        public long getVersion() { return version; }
+        public List<Map<String, Object>> getPrograms() { return programs; }
+        public List<Map<String, Object>> getCourses() { return courses; }
+        public Map<Long, List<Map<String, Object>>> getCategoriesByProgram() { return categoriesByProgram; }
+        public Map<Long, List<Map<String, Object>>> getRequirementsByProgram() { return requirementsByProgram; }
+        public Map<Long, List<Map<String, Object>>> getMappingCountsByProgram() { return mappingCountsByProgram; }
+        public List<Map<String, Object>> getGradePatterns() { return gradePatterns; }
+        public List<Map<String, Object>> getTerms() { return terms; }
+        public List<Map<String, Object>> getRecentGrades() { return recentGrades; }
+        public List<Map<String, Object>> getProgressSamples() { return progressSamples; }
+    }
+
+    // Returns the current snapshot, building it synchronously only when none exists yet
+    // (or it is stale and no background refresh is already on the way).
+    public Snapshot getSnapshot() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            return refresh();
+        }
+        if (current.version != dataVersionService.currentSource()) {
+            scheduleRefresh();
+        }
+        return current;
+    }
+
+    // Derived bumps (the progress recompute) leave the source version alone and need no rebuild
+    @EventListener
+    public void onDataChanged(DataVersionService.DataChangedEvent event) {
+        Snapshot current = snapshot;
+        if (current != null && current.version == dataVersionService.currentSource()) return;
+        scheduleRefresh();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refresher.shutdownNow();
+    }
+
+    private void scheduleRefresh() {
+        if (!refreshScheduled.compareAndSet(false, true)) return;
+        refresher.schedule(this::runScheduledRefresh, REFRESH_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private void runScheduledRefresh() {
+        // Cleared before the build so a bump during it queues exactly one follow-up run
+        refreshScheduled.set(false);
+        try {
+            refresh();
+        } catch (Exception ex) {
+            log.warn("Analytics context snapshot refresh failed: {}", ex.getMessage());
+            return;
+        }
+        // The version can move without an event (the write-time bump); catch up on that as well
+        Snapshot built = snapshot;
+        if (built != null && built.version != dataVersionService.currentSource()) {
+            scheduleRefresh();
+        }
+    }
+
+    public synchronized Snapshot refresh() {
+        long version = dataVersionService.currentSource();
+        Snapshot current = snapshot;
+        if (current != null && current.version == version) {
+            return current;
+        }
+        long t0 = System.currentTimeMillis();
+
+        List<Map<String, Object>> programs = jdbcTemplate.queryForList(
+                "SELECT program_id, code, name FROM programs ORDER BY code");
+
+        List<Map<String, Object>> courses = jdbcTemplate.queryForList(
+                "SELECT c.course_id, c.course_code, c.course_title, c.course_credits, " +
+                "COUNT(DISTINCT sg.university_id) AS total_enrolled, " +
+                "SUM(CASE WHEN sg.grade IS NOT NULL AND sg.grade != '' THEN 1 ELSE 0 END) AS graded_count, " +
+                "SUM(CASE WHEN sg.promotion = 'R' THEN 1 ELSE 0 END) AS pending_results " +
+                "FROM courses c LEFT JOIN student_grades sg ON c.course_id = sg.course_id " +
+                "GROUP BY c.course_id, c.course_code, c.course_title, c.course_credits ORDER BY c.course_code");
+
+        Map<Long, List<Map<String, Object>>> categoriesByProgram = groupByProgram(jdbcTemplate.queryForList(
+                "SELECT cat.category_id, cat.category_name, cat.program_id, p.name AS program_name " +
+                "FROM categories cat JOIN programs p ON cat.program_id = p.program_id " +
+                "ORDER BY cat.program_id, cat.category_name"));
+
+        Map<Long, List<Map<String, Object>>> requirementsByProgram = groupByProgram(jdbcTemplate.queryForList(
+                "SELECT r.program_id, r.category_id, r.min_courses, r.min_credits, r.honors_min_credits, c.category_name " +
+                "FROM program_category_requirement r JOIN categories c ON r.category_id = c.category_id " +
+                "ORDER BY r.program_id, c.category_name"));
+
+        Map<Long, List<Map<String, Object>>> mappingCountsByProgram = groupByProgram(jdbcTemplate.queryForList(
+                "SELECT p.program_id, p.category_id, COUNT(*) AS mapped_courses " +
+                "FROM program_course_category p GROUP BY p.program_id, p.category_id " +
+                "ORDER BY p.program_id, p.category_id"));
+
+        List<Map<String, Object>> gradePatterns = jdbcTemplate.queryForList(
+                "SELECT grade, grade_point, promotion, COUNT(*) AS count FROM student_grades " +
+                "GROUP BY grade, grade_point, promotion ORDER BY count DESC LIMIT 15");
+
+        List<Map<String, Object>> terms = jdbcTemplate.queryForList(
+                "SELECT academic_year, semester, COUNT(*) AS count FROM student_grades " +
+                "GROUP BY academic_year, semester ORDER BY academic_year DESC, semester LIMIT 20");
+
+        // A few rows per term so samples can still be filtered by year/semester in memory. Read from the
+        // newest rows only (a bounded backward primary-key scan) instead of windowing the whole table
+        List<Map<String, Object>> recentGrades = perTerm(jdbcTemplate.queryForList(
+                "SELECT sg.university_id, c.course_code, c.course_title, sg.grade, sg.grade_point, sg.promotion, sg.academic_year, sg.semester " +
+                "FROM student_grades sg JOIN courses c ON sg.course_id = c.course_id " +
+                "ORDER BY sg.sno DESC LIMIT " + RECENT_GRADES_SCAN_ROWS), RECENT_GRADES_PER_TERM);
+
+        List<Map<String, Object>> progressSamples;
+        try {
+            progressSamples = jdbcTemplate.queryForList(
+                    "SELECT university_id, program_id, category_id, category_name, completed_courses, completed_credits, " +
+                    "min_required_courses, min_required_credits FROM student_category_progress LIMIT 10");
+        } catch (Exception ignored) {
+            progressSamples = Collections.emptyList();
+        }
+
+        Snapshot built = new Snapshot(version,
+                Collections.unmodifiableList(programs),
+                Collections.unmodifiableList(courses),
+                categoriesByProgram,
+                requirementsByProgram,
+                mappingCountsByProgram,
+                Collections.unmodifiableList(gradePatterns),
+                Collections.unmodifiableList(terms),
+                Collections.unmodifiableList(recentGrades),
+                Collections.unmodifiableList(progressSamples));
+        snapshot = built;
+        log.info("Analytics context snapshot v{} built in {} ms ({} programs, {} courses)",
+                version, (System.currentTimeMillis() - t0), programs.size(), courses.size());
+        return built;
+    }
+
+    // Keeps the first perTerm rows of each (academic_year, semester), newest term first
+    private static List<Map<String, Object>> perTerm(List<Map<String, Object>> newestFirst, int perTerm) {
+        Map<List<Object>, List<Map<String, Object>>> byTerm = new LinkedHashMap<>();
+        for (Map<String, Object> row : newestFirst) {
+            List<Map<String, Object>> term = byTerm.computeIfAbsent(
+                    Arrays.asList(row.get("academic_year"), row.get("semester")), k -> new ArrayList<>());
+            if (term.size() < perTerm) term.add(row);
+        }
+        List<Map<String, Object>> out = new ArrayList<>();
+        byTerm.values().forEach(out::addAll);
+        // Same order as SQL's ORDER BY academic_year DESC, course_code (NULL years last, NULL codes first)
+        out.sort(Comparator.comparing((Map<String, Object> r) -> Objects.toString(r.get("academic_year"), null),
+                        Comparator.nullsLast(Comparator.<String>reverseOrder()))
+                .thenComparing(r -> Objects.toString(r.get("course_code"), null), Comparator.nullsFirst(Comparator.<String>naturalOrder())));
+        return out;
+    }
+
+    private Map<Long, List<Map<String, Object>>> groupByProgram(List<Map<String, Object>> rows) {
+        Map<Long, List<Map<String, Object>>> out = new LinkedHashMap<>();
+        for (Map<String, Object> row : rows) {
+            Object pid = row.get("program_id");
+            if (!(pid instanceof Number)) continue;
+            out.computeIfAbsent(((Number) pid).longValue(), k -> new ArrayList<>()).add(row);
+        }
+        out.replaceAll((k, v) -> Collections.unmodifiableList(v));
+        return Collections.unmodifiableMap(out);
+    }
+}
@@ -0,0 +1,296 @@
+package com.jfsd.exit_portal_backend.Service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * In-memory trigram index over student ids/names and category names for admin autocomplete.
+ * Queries of three or more characters intersect via the rarest trigram's posting list and are
+ * verified with a substring check; shorter queries scan the (program-scoped) entry list.
+ * Matches are ranked: exact/prefix id, prefix name, word-prefix name, then plain substring; only
+ * the best `limit` are kept while scanning.
+ * Students are matched on id and name, categories on name only. Loaded straight from students and
+ * categories (including rows without a program) and reloaded in the background on data changes;
+ * searches meanwhile use the previous index.
+ */
+@Service
+public class AutocompleteIndexService {
+
+    private static final Logger log = LoggerFactory.getLogger(AutocompleteIndexService.class);
+
+    private static final int GRAM = 3;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DataVersionService dataVersionService;
+
+    private volatile Indexes indexes;
+    private final AtomicBoolean rebuildScheduled = new AtomicBoolean(false);
+
+    private final ExecutorService rebuilder = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "autocomplete-index-rebuild");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private static final class Indexes {
+        private final long version;
+        private final TrigramIndex students;
+        private final TrigramIndex categories;
+
+        private Indexes(long version, TrigramIndex students, TrigramIndex categories) {
+            this.version = version;
+            this.students = students;
+            this.categories = categories;
+        }
+    }
+
+    private static final class Entry {
+        private final String id;
+        private final String name;
+        private final String idLower;
+        private final String nameLower;
+        // null for rows not assigned to a program
+        private final Long programId;
+        private final String programCode;
+        private final String programName;
+
+        private Entry(String id, String name, Long programId, String programCode, String programName) {
+            this.id = id;
+            this.name = name;
+            this.idLower = id == null ? "" : id.toLowerCase(Locale.ROOT);
+            this.nameLower = name == null ? "" : name.toLowerCase(Locale.ROOT);
+            this.programId = programId;
+            this.programCode = programCode;
+            this.programName = programName;
+        }
+    }
+
+    private static final class TrigramIndex {
+        private final Entry[] entries;
+        // Whether the id is searchable text (student ids) or just a key (numeric category ids)
+        private final boolean matchIds;
+        private final Map<Long, int[]> entriesByProgram;
+        private final Map<String, int[]> postings;
+
+        private TrigramIndex(List<Entry> list, boolean matchIds) {
+            this.entries = list.toArray(new Entry[0]);
+            this.matchIds = matchIds;
+            Map<Long, IntList> byProgram = new HashMap<>();
+            Map<String, IntList> grams = new HashMap<>();
+            for (int i = 0; i < entries.length; i++) {
+                Entry e = entries[i];
+                if (e.programId != null) byProgram.computeIfAbsent(e.programId, k -> new IntList()).add(i);
+                // Each entry is added once per distinct gram across its searchable fields
+                Map<String, Boolean> seen = new HashMap<>();
+                if (matchIds) addGrams(e.idLower, seen);
+                addGrams(e.nameLower, seen);
+                for (String g : seen.keySet()) {
+                    grams.computeIfAbsent(g, k -> new IntList()).add(i);
+                }
+            }
+            this.entriesByProgram = new HashMap<>();
+            byProgram.forEach((k, v) -> entriesByProgram.put(k, v.toArray()));
+            this.postings = new HashMap<>(grams.size() * 2);
+            grams.forEach((k, v) -> postings.put(k, v.toArray()));
+        }
+
+        private static void addGrams(String text, Map<String, Boolean> out) {
+            for (int i = 0; i + GRAM <= text.length(); i++) {
+                out.put(text.substring(i, i + GRAM), Boolean.TRUE);
+            }
+        }
+
+        private List<Entry> search(Long programId, String q, int limit) {
+            int[] candidates;
+            if (q.length() >= GRAM) {
+                candidates = null;
+                for (int i = 0; i + GRAM <= q.length(); i++) {
+                    int[] posting = postings.get(q.substring(i, i + GRAM));
+                    if (posting == null) return Collections.emptyList();
+                    if (candidates == null || posting.length < candidates.length) candidates = posting;
+                }
+            } else if (programId != null) {
+                candidates = entriesByProgram.getOrDefault(programId, new int[0]);
+            } else {
+                candidates = null;
+            }
+
+            // Best `limit` matches only: a max-heap whose head is the worst match kept so far, so a short
+            // unscoped query costs O(n log limit) instead of sorting every match
+            Comparator<int[]> order = Comparator.<int[]>comparingInt(m -> m[1])
+                    .thenComparing(m -> matchIds ? entries[m[0]].idLower : entries[m[0]].nameLower);
+            PriorityQueue<int[]> best = new PriorityQueue<>(Math.min(limit, 1024) + 1, order.reversed()); // {entry, rank}
+            int n = candidates == null ? entries.length : candidates.length;
+            for (int k = 0; k < n; k++) {
+                int i = candidates == null ? k : candidates[k];
+                Entry e = entries[i];
+                if (programId != null && !programId.equals(e.programId)) continue;
+                int rank = rank(e, q, matchIds);
+                if (rank < 0) continue;
+                // Cheap reject before building the candidate: worse rank than the worst kept match
+                if (best.size() == limit && rank > best.peek()[1]) continue;
+                int[] match = {i, rank};
+                if (best.size() < limit) {
+                    best.add(match);
+                } else if (order.compare(match, best.peek()) < 0) {
+                    best.poll();
+                    best.add(match);
+                }
+            }
+            int[][] top = best.toArray(new int[0][]);
+            Arrays.sort(top, order);
+            List<Entry> out = new ArrayList<>(top.length);
+            for (int[] m : top) out.add(entries[m[0]]);
+            return out;
+        }
+
+        private static int rank(Entry e, String q, boolean matchIds) {
+            if (matchIds && e.idLower.startsWith(q)) return 0;
+            if (e.nameLower.startsWith(q)) return 1;
+            int pos = e.nameLower.indexOf(q);
+            if (pos > 0 && !Character.isLetterOrDigit(e.nameLower.charAt(pos - 1))) return 2;
+            if (matchIds && e.idLower.contains(q)) return 3;
+            if (pos >= 0) return 4;
+            return -1;
+        }
+    }
+
+    private static final class IntList {
+        private int[] data = new int[4];
+        private int size;
+
+        private void add(int v) {
+            if (size == data.length) data = Arrays.copyOf(data, size * 2);
+            data[size++] = v;
+        }
+
+        private int[] toArray() {
+            return Arrays.copyOf(data, size);
+        }
+    }
+
+    public List<Map<String, Object>> searchStudents(Long programId, String q, int limit) {
+        if (q == null || q.isBlank()) return Collections.emptyList();
+        List<Entry> hits = getIndexes().students.search(programId, q.trim().toLowerCase(Locale.ROOT), Math.max(1, limit));
+        List<Map<String, Object>> out = new ArrayList<>(hits.size());
+        for (Entry e : hits) {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("studentId", e.id);
+            m.put("studentName", e.name);
+            putProgram(m, e);
+            out.add(m);
+        }
+        return out;
+    }
+
+    public List<Map<String, Object>> searchCategories(Long programId, String q, int limit) {
+        if (q == null || q.isBlank()) return Collections.emptyList();
+        List<Entry> hits = getIndexes().categories.search(programId, q.trim().toLowerCase(Locale.ROOT), Math.max(1, limit));
+        List<Map<String, Object>> out = new ArrayList<>(hits.size());
+        for (Entry e : hits) {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("categoryId", Integer.valueOf(e.id));
+            m.put("categoryName", e.name);
+            putProgram(m, e);
+            out.add(m);
+        }
+        return out;
+    }
+
+    private static void putProgram(Map<String, Object> m, Entry e) {
+        if (e.programId == null) return;
+        m.put("programId", e.programId);
+        m.put("programCode", e.programCode);
+        m.put("programName", e.programName);
+    }
+
+    @EventListener
+    public void onDataChanged(DataVersionService.DataChangedEvent event) {
+        if (indexes != null) scheduleRebuild();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rebuilder.shutdownNow();
+    }
+
+    // Only the first search builds inline; after that a stale index is served while it reloads
+    private Indexes getIndexes() {
+        Indexes current = indexes;
+        if (current == null) {
+            return rebuild();
+        }
+        if (current.version != dataVersionService.current()) {
+            scheduleRebuild();
+        }
+        return current;
+    }
+
+    private void scheduleRebuild() {
+        if (!rebuildScheduled.compareAndSet(false, true)) return;
+        rebuilder.execute(() -> {
+            rebuildScheduled.set(false);
+            try {
+                rebuild();
+            } catch (Exception ex) {
+                log.warn("Autocomplete index rebuild failed: {}", ex.getMessage());
+            }
+        });
+    }
+
+    private synchronized Indexes rebuild() {
+        long version = dataVersionService.current();
+        Indexes current = indexes;
+        if (current != null && current.version == version) {
+            return current;
+        }
+        long t0 = System.currentTimeMillis();
+        List<Entry> students = new ArrayList<>();
+        jdbcTemplate.query(
+                "SELECT s.student_id, s.student_name, s.program_id, p.code, p.name FROM students s\n" +
+                "LEFT JOIN programs p ON p.program_id = s.program_id",
+                rs -> {
+                    long pid = rs.getLong("program_id");
+                    Long programId = rs.wasNull() ? null : pid;
+                    students.add(new Entry(rs.getString("student_id"), rs.getString("student_name"),
+                            programId, rs.getString("code"), rs.getString("name")));
+                });
+        List<Entry> categories = new ArrayList<>();
+        jdbcTemplate.query(
+                "SELECT c.category_id, c.category_name, c.program_id, p.code, p.name FROM categories c\n" +
+                "LEFT JOIN programs p ON p.program_id = c.program_id",
+                rs -> {
+                    long pid = rs.getLong("program_id");
+                    Long programId = rs.wasNull() ? null : pid;
+                    categories.add(new Entry(String.valueOf(rs.getInt("category_id")), rs.getString("category_name"),
+                            programId, rs.getString("code"), rs.getString("name")));
+                });
+        Indexes built = new Indexes(version, new TrigramIndex(students, true), new TrigramIndex(categories, false));
+        indexes = built;
+        log.info("Autocomplete index v{} built in {} ms ({} students, {} categories)",
+                built.version, (System.currentTimeMillis() - t0), students.size(), categories.size());
+        return built;
+    }
+}
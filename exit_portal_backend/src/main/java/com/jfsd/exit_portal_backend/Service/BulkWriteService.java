@@ -0,0 +1,184 @@
+package com.jfsd.exit_portal_backend.Service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.stereotype.Service;
+
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shared JDBC batch writer for the importers. Batch sizes are derived rather than hard-coded:
+ * the rewritten multi-row statement (rewriteBatchedStatements) must fit well inside the server's
+ * max_allowed_packet, so a sample of rows is measured first; within that ceiling the size then
+ * tracks a target per-batch latency, growing while batches are fast and shrinking when they slow
+ * down (lock waits, busy server). The size reached is remembered per statement for the next import.
+ */
+@Service
+public class BulkWriteService {
+
+    private static final Logger log = LoggerFactory.getLogger(BulkWriteService.class);
+
+    private static final int SAMPLE_ROWS = 200;
+    // Fraction of max_allowed_packet a batch may use (escaping and protocol overhead)
+    private static final double PACKET_HEADROOM = 0.5;
+    private static final long DEFAULT_PACKET_BYTES = 4L * 1024 * 1024; // MySQL 5.7 default
+    private static final int MAX_IN_LIST = 10_000;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${import.bulk.target-batch-ms:1000}")
+    private long targetBatchMs;
+
+    @Value("${import.bulk.min-rows:200}")
+    private int minRows;
+
+    @Value("${import.bulk.max-rows:20000}")
+    private int maxRows;
+
+    private volatile Long maxAllowedPacket;
+    private final Map<String, Integer> learnedBatchRows = new ConcurrentHashMap<>();
+
+    /** Rows/batches/time of one or more bulk writes; add() several to report a whole import. */
+    public static final class Throughput {
+        private long rows;
+        private int batches;
+        private long nanos;
+
+        public Throughput add(Throughput other) {
+            rows += other.rows;
+            batches += other.batches;
+            nanos += other.nanos;
+            return this;
+        }
+
+        public long getRows() { return rows; }
+        public int getBatches() { return batches; }
+        public long getMillis() { return nanos / 1_000_000; }
+
+        public long rowsPerSecond() {
+            return nanos <= 0 ? rows : Math.round(rows * 1_000_000_000.0 / nanos);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%d rows in %d batches, %d ms (%d rows/s)", rows, batches, getMillis(), rowsPerSecond());
+        }
+    }
+
+    // Runs sql once per row in adaptively sized JDBC batches on the caller's connection/transaction
+    public <T> Throughput write(String sql, List<T> rows, ParameterizedPreparedStatementSetter<T> setter) {
+        Throughput result = new Throughput();
+        if (rows == null || rows.isEmpty()) return result;
+
+        int ceiling = packetCeilingRows(sql, rows, setter);
+        // The packet ceiling wins over minRows: a batch above it would not fit in max_allowed_packet
+        int size = Math.min(ceiling, Math.max(minRows, learnedBatchRows.getOrDefault(sql, maxRows / 4)));
+        long tStart = System.nanoTime();
+        int done = 0;
+        while (done < rows.size()) {
+            int end = Math.min(rows.size(), done + size);
+            List<T> batch = rows.subList(done, end);
+            long tBatch = System.nanoTime();
+            jdbcTemplate.batchUpdate(sql, batch, batch.size(), setter);
+            long batchMs = Math.max(1, (System.nanoTime() - tBatch) / 1_000_000);
+            done = end;
+            result.batches++;
+            int remaining = rows.size() - done;
+            ImportProgress.batchWritten(result.batches, result.batches + (remaining + size - 1) / size);
+            // Only full-size batches say something about the size; the last one is usually short
+            if (batch.size() == size) {
+                double factor = Math.max(0.5, Math.min(2.0, (double) targetBatchMs / batchMs));
+                size = (int) Math.min(ceiling, Math.max(minRows, Math.round(size * factor)));
+            }
+            log.debug("Bulk write batch {} ({} rows) in {} ms, next size {}", result.batches, batch.size(), batchMs, size);
+        }
+        result.rows = rows.size();
+        result.nanos = System.nanoTime() - tStart;
+        learnedBatchRows.put(sql, size);
+        log.info("Bulk write {}: {} (packet ceiling {} rows)", abbreviate(sql), result, ceiling);
+        return result;
+    }
+
+    // IN-list length for chunked "... IN (?, ?, ...)" statements over ids, bounded by the packet size
+    public int inListChunkSize(List<String> ids) {
+        int maxLen = 1;
+        for (int i = 0; i < ids.size() && i < SAMPLE_ROWS; i++) {
+            String id = ids.get(i);
+            if (id != null) maxLen = Math.max(maxLen, id.length());
+        }
+        long budget = (long) (packetBytes() * PACKET_HEADROOM);
+        return (int) Math.max(1, Math.min(MAX_IN_LIST, budget / (maxLen + 4)));
+    }
+
+    // Largest batch whose rewritten statement stays within the packet budget, from a sample of rows
+    private <T> int packetCeilingRows(String sql, List<T> rows, ParameterizedPreparedStatementSetter<T> setter) {
+        long[] measured = new long[2]; // {bytes of the current row, parameter count}
+        PreparedStatement probe = (PreparedStatement) Proxy.newProxyInstance(
+                PreparedStatement.class.getClassLoader(), new Class<?>[]{PreparedStatement.class},
+                (proxy, method, args) -> {
+                    if (method.getName().startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                        measured[0] += literalBytes(args[1]);
+                        measured[1] = Math.max(measured[1], (Integer) args[0]);
+                    }
+                    Class<?> rt = method.getReturnType();
+                    if (rt == boolean.class) return false;
+                    if (rt == int.class) return 0;
+                    if (rt == long.class) return 0L;
+                    return null;
+                });
+        long maxRowBytes = 1;
+        for (int i = 0; i < rows.size() && i < SAMPLE_ROWS; i++) {
+            measured[0] = 0;
+            try {
+                setter.setValues(probe, rows.get(i));
+            } catch (SQLException ex) {
+                break;
+            }
+            maxRowBytes = Math.max(maxRowBytes, measured[0]);
+        }
+        // Multi-row INSERT repeats only "(?, ?, ...)," per row; other statements are sent whole per row
+        boolean rewrittenValues = sql.trim().regionMatches(true, 0, "INSERT", 0, 6);
+        long perRow = maxRowBytes + (rewrittenValues ? measured[1] + 3 : sql.length());
+        long budget = (long) (packetBytes() * PACKET_HEADROOM);
+        return (int) Math.max(1, Math.min(maxRows, budget / perRow));
+    }
+
+    private static long literalBytes(Object value) {
+        if (value == null) return 4; // NULL
+        if (value instanceof CharSequence s) return s.length() * 3L + 2; // worst-case UTF-8 + quotes
+        if (value instanceof byte[] b) return b.length * 2L + 3;
+        return String.valueOf(value).length();
+    }
+
+    private long packetBytes() {
+        Long packet = maxAllowedPacket;
+        if (packet == null) {
+            try {
+                packet = jdbcTemplate.queryForObject("SELECT @@max_allowed_packet", Long.class);
+            } catch (DataAccessException ex) {
+                log.warn("Could not read max_allowed_packet, assuming {} bytes: {}", DEFAULT_PACKET_BYTES, ex.getMessage());
+            }
+            if (packet == null || packet <= 0) packet = DEFAULT_PACKET_BYTES;
+            maxAllowedPacket = packet;
+            log.info("Bulk writes sized for max_allowed_packet={} bytes", packet);
+        }
+        return packet;
+    }
+
+    private static String abbreviate(String sql) {
+        String s = sql.replaceAll("\\s+", " ").trim();
+        return s.length() <= 60 ? s : s.substring(0, 60) + "...";
+    }
+}
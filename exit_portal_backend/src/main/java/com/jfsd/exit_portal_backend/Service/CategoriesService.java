@@ -12,11 +12,10 @@ import java.io.BufferedReader;
 import java.io.InputStreamReader;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
-import java.util.Objects;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.Collectors;
 import java.util.Optional;
 
 @Service
@@ -35,39 +34,13 @@ public class CategoriesService {
         AtomicInteger rowNumberCounter = new AtomicInteger(1);
 
         try (BufferedReader br = new BufferedReader(new InputStreamReader(file.getInputStream()))) {
-            List<String> lines = br.lines().collect(Collectors.toList());
-
-            List<Categories> categoriesToSave = lines.parallelStream()
-                .skip(1) // Skip header row
-                .map(line -> {
-                    int rowNumber = rowNumberCounter.incrementAndGet();
-                    String[] values = parseCsvLine(line);
-
-                    if (values.length < 4) {
-                        messages.add("Skipping row " + rowNumber + ": Not enough columns.");
-                        return null;
-                    }
-
-                    String categoryName = values[1].trim();
-                    Optional<Categories> existingCategoryOpt = categoriesRepository.findByCategoryNameIgnoreCase(categoryName);
-
-                    Categories category;
-                    if (existingCategoryOpt.isPresent()) {
-                        category = existingCategoryOpt.get();
-                        updatedRecords.incrementAndGet();
-                    } else {
-                        category = new Categories();
-                        category.setCategoryName(categoryName);
-                        createdRecords.incrementAndGet();
-                    }
-
-                    // Note: Min courses and credits are now handled by ProgramCategoryRequirement
-                    // This service now only handles category names and program relationships
-
-                    return category;
-                })
-                .filter(Objects::nonNull)
-                .collect(Collectors.toList());
+            br.readLine(); // Skip header row
+            // Rows are handled as they are read; the file is never held in memory
+            List<Categories> categoriesToSave = new ArrayList<>();
+            for (String line = br.readLine(); line != null; line = br.readLine()) {
+                Categories parsed = parseRow(line, rowNumberCounter.incrementAndGet(), messages, updatedRecords, createdRecords);
+                if (parsed != null) categoriesToSave.add(parsed);
+            }
 
             if (!categoriesToSave.isEmpty()) {
                 categoriesRepository.saveAll(categoriesToSave);
@@ -83,6 +56,34 @@ public class CategoriesService {
         return new ArrayList<>(messages);
     }
 
+    private Categories parseRow(String line, int rowNumber, Collection<String> messages,
+                                AtomicInteger updatedRecords, AtomicInteger createdRecords) {
+        String[] values = parseCsvLine(line);
+
+        if (values.length < 4) {
+            messages.add("Skipping row " + rowNumber + ": Not enough columns.");
+            return null;
+        }
+
+        String categoryName = values[1].trim();
+        Optional<Categories> existingCategoryOpt = categoriesRepository.findByCategoryNameIgnoreCase(categoryName);
+
+        Categories category;
+        if (existingCategoryOpt.isPresent()) {
+            category = existingCategoryOpt.get();
+            updatedRecords.incrementAndGet();
+        } else {
+            category = new Categories();
+            category.setCategoryName(categoryName);
+            createdRecords.incrementAndGet();
+        }
+
+        // Note: Min courses and credits are now handled by ProgramCategoryRequirement
+        // This service now only handles category names and program relationships
+
+        return category;
+    }
+
     private String[] parseCsvLine(String line) {
         List<String> values = new ArrayList<>();
         StringBuilder sb = new StringBuilder();
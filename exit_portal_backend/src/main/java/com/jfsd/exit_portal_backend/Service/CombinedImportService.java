@@ -3,16 +3,23 @@ package com.jfsd.exit_portal_backend.Service;
 import com.jfsd.exit_portal_backend.Model.*;
 import com.jfsd.exit_portal_backend.Repository.*;
 import com.opencsv.CSVReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.InputStreamReader;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -21,30 +28,37 @@ import java.util.Set;
 @Service
 public class CombinedImportService {
 
+    private static final Logger log = LoggerFactory.getLogger(CombinedImportService.class);
+
     @Autowired
-    private CategoriesRepository categoriesRepository;
+    private ProgramRepository programRepository;
 
     @Autowired
-    private CoursesRepository coursesRepository;
+    private JdbcTemplate jdbcTemplate;
 
     @Autowired
-    private ProgramRepository programRepository;
+    private DataVersionService dataVersionService;
 
     @Autowired
-    private ProgramCourseCategoryRepository programCourseCategoryRepository;
+    private CurriculumCacheService curriculumCacheService;
 
     @Autowired
-    private JdbcTemplate jdbcTemplate;
+    private SchemaMigrationService schemaMigrationService;
+
+    @Autowired
+    private BulkWriteService bulkWriteService;
 
+    @Autowired
+    private StudentCategoryProgressService studentCategoryProgressService;
+
+    // Set-based curriculum import: the CSV is parsed into per-entity maps (last occurrence wins), staged
+    // into TEMP tables, each staged row is classified against the live table (0 = unchanged, 1 = new,
+    // 2 = changed) and each entity is merged with one statement that touches only new/changed rows.
+    // Progress is then recomputed for the program's students affected by what actually changed.
     @Transactional
     public List<String> importCombinedCsv(MultipartFile file, String programCode, Double defaultCredits) {
         List<String> messages = new ArrayList<>();
-        int createdCategories = 0;
-        int updatedCategories = 0;
-        int createdCourses = 0;
-        int updatedCourses = 0;
-        int createdMappings = 0;
-        int updatedMappings = 0;
+        long tStart = System.currentTimeMillis();
 
         Double fallbackCredits = defaultCredits != null ? defaultCredits : 0.0;
 
@@ -55,21 +69,20 @@ public class CombinedImportService {
             return messages;
         }
         Program program = programOpt.get();
+        Long programId = program.getProgramId();
 
         try (CSVReader reader = new CSVReader(new InputStreamReader(file.getInputStream()))) {
+            ImportProgress.stage("parsing");
             String[] line;
             // Skip header
             reader.readNext();
 
-            Categories currentCategory = null;
+            String currentCategory = null;
             int row = 1;
 
-            // Collectors for fast batch upserts
-            Map<String, String> courseTitles = new HashMap<>();
-            Map<String, Double> courseCredits = new HashMap<>();
-            Map<String, Integer> courseToCategoryId = new HashMap<>();
-            List<int[]> requirementRows = new ArrayList<>(); // [categoryId, minCourses], minCredits handled separately
-            List<Double> requirementCredits = new ArrayList<>(); // parallel list for minCredits
+            // category name -> {minCourses, minCredits}; course code -> {title, credits, category name}
+            Map<String, Object[]> categoryRows = new LinkedHashMap<>();
+            Map<String, Object[]> courseRows = new LinkedHashMap<>();
 
             while ((line = reader.readNext()) != null) {
                 row++;
@@ -83,20 +96,6 @@ public class CombinedImportService {
                 boolean isCategoryRow = categoryName != null && !categoryName.isEmpty();
 
                 if (isCategoryRow) {
-                    // Find or create category for this program
-                    Optional<Categories> existing = categoriesRepository.findByProgramAndCategoryName(program, categoryName);
-                    Categories category = existing.orElseGet(Categories::new);
-                    if (existing.isPresent()) {
-                        updatedCategories++;
-                    } else {
-                        category.setCategoryName(categoryName);
-                        category.setProgram(program);
-                        createdCategories++;
-                    }
-
-                    currentCategory = categoriesRepository.save(category);
-
-                    // Queue ProgramCategoryRequirement upsert (batch later via native SQL)
                     int minCourses;
                     double minCredits;
                     try {
@@ -111,13 +110,12 @@ public class CombinedImportService {
                         minCredits = 0.0;
                         messages.add("Row " + row + ": invalid minCredits. Using 0.0.");
                     }
-                    requirementRows.add(new int[]{ currentCategory.getCategoryID(), minCourses });
-                    requirementCredits.add(minCredits);
+                    categoryRows.put(categoryName, new Object[]{ minCourses, minCredits });
+                    currentCategory = categoryName;
                 }
 
                 // Course row when there is a currentCategory and valid code/title
                 if (currentCategory != null && courseCode != null && !courseCode.isEmpty() && courseTitle != null && !courseTitle.isEmpty()) {
-                    courseTitles.put(courseCode, courseTitle);
                     double credits;
                     try {
                         credits = (creditStr == null || creditStr.isEmpty()) ? fallbackCredits : Double.parseDouble(creditStr);
@@ -125,96 +123,189 @@ public class CombinedImportService {
                         credits = fallbackCredits;
                         messages.add("Row " + row + ": invalid credit value for course '" + courseCode + "'. Using default " + fallbackCredits);
                     }
-                    courseCredits.put(courseCode, credits);
-                    // last occurrence wins for mapping
-                    courseToCategoryId.put(courseCode, currentCategory.getCategoryID());
+                    // last occurrence wins for title, credits and mapping
+                    courseRows.put(courseCode, new Object[]{ courseTitle, credits, currentCategory });
                 }
             }
 
-            // ---------- Batch UPSERT: Courses ----------
-            List<String> codes = new ArrayList<>(courseTitles.keySet());
-            if (!codes.isEmpty()) {
-                // Prefetch existing courses to compute created/updated counts
-                List<Courses> existingCourses = coursesRepository.findByCourseCodeIn(codes);
-                Set<String> existingCodes = new HashSet<>();
-                for (Courses c : existingCourses) existingCodes.add(c.getCourseCode());
-                createdCourses = Math.max(0, codes.size() - existingCodes.size());
-                updatedCourses = existingCodes.size();
-
-                String sqlCourses = "INSERT INTO courses (course_code, course_title, course_credits) " +
-                        "VALUES (?, ?, ?) " +
-                        "ON DUPLICATE KEY UPDATE course_title = VALUES(course_title), course_credits = VALUES(course_credits)";
-                List<Object[]> batchArgsCourses = new ArrayList<>(codes.size());
-                for (String code : codes) {
-                    batchArgsCourses.add(new Object[]{ code, courseTitles.get(code), courseCredits.getOrDefault(code, fallbackCredits) });
-                }
-                jdbcTemplate.batchUpdate(sqlCourses, batchArgsCourses);
-            }
+            ImportProgress.parsedRows(row - 1);
+            ImportProgress.stage("staging");
 
-            // Refetch all courses to get IDs for mapping
-            Map<String, Integer> courseIdByCode = new HashMap<>();
-            if (!codes.isEmpty()) {
-                for (Courses c : coursesRepository.findByCourseCodeIn(codes)) {
-                    courseIdByCode.put(c.getCourseCode(), c.getCourseID());
-                }
+            // ---------- Stage ----------
+            // Names/codes compare with the column collation (as the old per-row lookups did), so
+            // staging rows that collide under it collapse to the last one
+            schemaMigrationService.createTempTable("tmp_curr_categories");
+            bulkWriteService.write(
+                    "INSERT INTO tmp_curr_categories (category_name, min_courses, min_credits) VALUES (?, ?, ?) " +
+                    "ON DUPLICATE KEY UPDATE min_courses = VALUES(min_courses), min_credits = VALUES(min_credits)",
+                    new ArrayList<>(categoryRows.entrySet()), (ps, e) -> {
+                        ps.setString(1, e.getKey());
+                        ps.setInt(2, (Integer) e.getValue()[0]);
+                        ps.setDouble(3, (Double) e.getValue()[1]);
+                    });
+            schemaMigrationService.createTempTable("tmp_curr_courses");
+            bulkWriteService.write(
+                    "INSERT INTO tmp_curr_courses (course_code, course_title, course_credits, category_name) VALUES (?, ?, ?, ?) " +
+                    "ON DUPLICATE KEY UPDATE course_title = VALUES(course_title), course_credits = VALUES(course_credits), category_name = VALUES(category_name)",
+                    new ArrayList<>(courseRows.entrySet()), (ps, e) -> {
+                        ps.setString(1, e.getKey());
+                        ps.setString(2, (String) e.getValue()[0]);
+                        ps.setDouble(3, (Double) e.getValue()[1]);
+                        ps.setString(4, (String) e.getValue()[2]);
+                    });
+
+            ImportProgress.stage("merging");
+
+            // ---------- Categories: insert missing, then resolve ids ----------
+            int createdCategories = jdbcTemplate.update(
+                    "INSERT INTO categories (category_name, program_id) " +
+                    "SELECT t.category_name, ? FROM tmp_curr_categories t " +
+                    "WHERE NOT EXISTS (SELECT 1 FROM categories c WHERE c.program_id = ? AND c.category_name = t.category_name)",
+                    programId, programId);
+            jdbcTemplate.update(
+                    "UPDATE tmp_curr_categories t " +
+                    "JOIN (SELECT category_name, MIN(category_id) AS category_id FROM categories WHERE program_id = ? GROUP BY category_name) c " +
+                    "ON c.category_name = t.category_name SET t.category_id = c.category_id",
+                    programId);
+
+            // ---------- Requirements ----------
+            jdbcTemplate.update(
+                    "UPDATE tmp_curr_categories t " +
+                    "LEFT JOIN program_category_requirement r ON r.program_id = ? AND r.category_id = t.category_id " +
+                    "SET t.req_op = CASE WHEN r.id IS NULL THEN 1 " +
+                    "  WHEN r.min_courses = t.min_courses AND r.min_credits = t.min_credits THEN 0 ELSE 2 END",
+                    programId);
+            int[] reqCounts = opCounts("tmp_curr_categories", "req_op");
+            if (reqCounts[0] + reqCounts[1] > 0) {
+                jdbcTemplate.update(
+                        "INSERT INTO program_category_requirement (program_id, category_id, min_courses, min_credits) " +
+                        "SELECT ?, t.category_id, t.min_courses, t.min_credits FROM tmp_curr_categories t WHERE t.req_op <> 0 " +
+                        "ON DUPLICATE KEY UPDATE min_courses = t.min_courses, min_credits = t.min_credits",
+                        programId);
             }
 
-            // ---------- Compute mapping counters (existing vs. new category) ----------
-            Map<String, Integer> existingMapByCode = new HashMap<>();
-            List<ProgramCourseCategory> existingMappingsAll = programCourseCategoryRepository.findByProgramIdWithCourseAndCategory(program.getProgramId());
-            for (ProgramCourseCategory pcc : existingMappingsAll) {
-                if (pcc.getCourse() != null && pcc.getCourse().getCourseCode() != null && pcc.getCategory() != null) {
-                    existingMapByCode.put(pcc.getCourse().getCourseCode(), pcc.getCategory().getCategoryID());
-                }
+            // ---------- Courses ----------
+            jdbcTemplate.update(
+                    "UPDATE tmp_curr_courses t " +
+                    "LEFT JOIN courses c ON c.course_code = t.course_code " +
+                    "SET t.op = CASE WHEN c.course_id IS NULL THEN 1 " +
+                    "  WHEN c.course_title = t.course_title AND c.course_credits = t.course_credits THEN 0 ELSE 2 END, " +
+                    "t.credits_changed = (c.course_id IS NOT NULL AND c.course_credits <> t.course_credits)");
+            int[] courseCounts = opCounts("tmp_curr_courses", "op");
+            if (courseCounts[0] + courseCounts[1] > 0) {
+                jdbcTemplate.update(
+                        "INSERT INTO courses (course_code, course_title, course_credits) " +
+                        "SELECT t.course_code, t.course_title, t.course_credits FROM tmp_curr_courses t WHERE t.op <> 0 " +
+                        "ON DUPLICATE KEY UPDATE course_title = t.course_title, course_credits = t.course_credits");
             }
 
-            for (Map.Entry<String, Integer> e : courseToCategoryId.entrySet()) {
-                String code = e.getKey();
-                Integer newCatId = e.getValue();
-                Integer oldCatId = existingMapByCode.get(code);
-                if (oldCatId == null) createdMappings++; else if (!oldCatId.equals(newCatId)) updatedMappings++;
+            // ---------- Course-category mappings ----------
+            jdbcTemplate.update(
+                    "UPDATE tmp_curr_courses t " +
+                    "JOIN courses c ON c.course_code = t.course_code " +
+                    "JOIN tmp_curr_categories k ON k.category_name = t.category_name " +
+                    "LEFT JOIN program_course_category m ON m.program_id = ? AND m.course_id = c.course_id " +
+                    "SET t.course_id = c.course_id, t.category_id = k.category_id, " +
+                    "t.map_op = CASE WHEN m.id IS NULL THEN 1 WHEN m.category_id = k.category_id THEN 0 ELSE 2 END",
+                    programId);
+            int[] mapCounts = opCounts("tmp_curr_courses", "map_op");
+            if (mapCounts[0] + mapCounts[1] > 0) {
+                jdbcTemplate.update(
+                        "INSERT INTO program_course_category (program_id, course_id, category_id) " +
+                        "SELECT ?, t.course_id, t.category_id FROM tmp_curr_courses t WHERE t.map_op <> 0 " +
+                        "ON DUPLICATE KEY UPDATE category_id = t.category_id",
+                        programId);
             }
 
-            // ---------- Batch UPSERT: ProgramCourseCategory ----------
-            if (!courseToCategoryId.isEmpty()) {
-                String sqlPcc = "INSERT INTO program_course_category (program_id, course_id, category_id) " +
-                        "VALUES (?, ?, ?) " +
-                        "ON DUPLICATE KEY UPDATE category_id = VALUES(category_id)";
-                List<Object[]> batchArgsPcc = new ArrayList<>(courseToCategoryId.size());
-                for (Map.Entry<String, Integer> e : courseToCategoryId.entrySet()) {
-                    Integer courseId = courseIdByCode.get(e.getKey());
-                    if (courseId != null) {
-                        batchArgsPcc.add(new Object[]{ program.getProgramId(), courseId, e.getValue() });
-                    }
-                }
-                if (!batchArgsPcc.isEmpty()) jdbcTemplate.batchUpdate(sqlPcc, batchArgsPcc);
+            // ---------- Students whose progress can differ ----------
+            // New categories or changed requirements touch every student of the program; otherwise
+            // only those with grades in courses that were (re)mapped or changed credits
+            Set<String> affectedStudents = new HashSet<>();
+            boolean programWide = createdCategories > 0 || reqCounts[0] + reqCounts[1] > 0;
+            if (programWide) {
+                affectedStudents.addAll(jdbcTemplate.queryForList(
+                        "SELECT student_id FROM students WHERE program_id = ?", String.class, programId));
+            } else if (mapCounts[0] + mapCounts[1] > 0 || courseCounts[1] > 0) {
+                affectedStudents.addAll(jdbcTemplate.queryForList(
+                        "SELECT DISTINCT sg.university_id FROM tmp_curr_courses t " +
+                        "JOIN student_grades sg ON sg.course_id = t.course_id " +
+                        "JOIN students s ON s.student_id = sg.university_id AND s.program_id = ? " +
+                        "WHERE t.map_op <> 0 OR t.credits_changed = 1",
+                        String.class, programId));
             }
 
-            // ---------- Batch UPSERT: ProgramCategoryRequirement ----------
-            if (!requirementRows.isEmpty()) {
-                String sqlReq = "INSERT INTO program_category_requirement (program_id, category_id, min_courses, min_credits) " +
-                        "VALUES (?, ?, ?, ?) " +
-                        "ON DUPLICATE KEY UPDATE min_courses = VALUES(min_courses), min_credits = VALUES(min_credits)";
-                List<Object[]> batchArgsReq = new ArrayList<>(requirementRows.size());
-                for (int i = 0; i < requirementRows.size(); i++) {
-                    int[] ints = requirementRows.get(i);
-                    Double minCred = requirementCredits.get(i);
-                    batchArgsReq.add(new Object[]{ program.getProgramId(), ints[0], ints[1], minCred });
-                }
-                jdbcTemplate.batchUpdate(sqlReq, batchArgsReq);
+            boolean changed = createdCategories > 0 || reqCounts[0] + reqCounts[1] > 0
+                    || courseCounts[0] + courseCounts[1] > 0 || mapCounts[0] + mapCounts[1] > 0;
+            if (changed) {
+                // Upserts above bypass Hibernate, so cached curriculum entities/queries must be dropped
+                curriculumCacheService.evict("curriculum import");
+                dataVersionService.bump("curriculum import");
+            }
+            if (!affectedStudents.isEmpty()) {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        new Thread(ImportProgress.propagate("recompute", () -> {
+                            try {
+                                log.info("Starting category progress recompute for {} students after curriculum import", affectedStudents.size());
+                                studentCategoryProgressService.calculateAndUpdateProgressForStudents(affectedStudents);
+                                log.info("Completed category progress recompute after curriculum import");
+                            } catch (Exception ex) {
+                                log.error("Progress recalculation error after curriculum import: {}", ex.getMessage());
+                            }
+                        }), "progress-recompute-after-curriculum").start();
+                    }
+                });
             }
 
             messages.add("Combined CSV processed successfully.");
-            messages.add("Categories - created: " + createdCategories + ", updated: " + updatedCategories);
-            messages.add("Courses - created: " + createdCourses + ", updated: " + updatedCourses);
-            messages.add("Course-Category mappings - created: " + createdMappings + ", updated: " + updatedMappings);
+            int stagedCategories = reqCounts[0] + reqCounts[1] + reqCounts[2];
+            messages.add("Categories - created: " + createdCategories + ", existing: " + (stagedCategories - createdCategories));
+            messages.add("Category requirements - created: " + reqCounts[0] + ", updated: " + reqCounts[1] + ", unchanged: " + reqCounts[2]);
+            messages.add("Courses - created: " + courseCounts[0] + ", updated: " + courseCounts[1] + ", unchanged: " + courseCounts[2]);
+            messages.add("Course-Category mappings - created: " + mapCounts[0] + ", updated: " + mapCounts[1] + ", unchanged: " + mapCounts[2]);
+            messages.add(affectedStudents.isEmpty()
+                    ? "No student progress affected."
+                    : "Progress recompute queued for " + affectedStudents.size() + " students" + (programWide ? " (program-wide change)." : "."));
+            log.info("Curriculum import for {}: categories +{}, requirements {}, courses {}, mappings {}, {} students to recompute, in {} ms",
+                    programCode, createdCategories, Arrays.toString(reqCounts), Arrays.toString(courseCounts),
+                    Arrays.toString(mapCounts), affectedStudents.size(), System.currentTimeMillis() - tStart);
         } catch (Exception ex) {
+            // Roll the whole import back: nothing partial commits, so there is no recompute or
+            // cache eviction to owe, and the error message marks the job FAILED
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+            log.error("Curriculum import for {} failed, rolled back: {}", programCode, ex.getMessage());
             messages.add("Error processing CSV: " + ex.getMessage());
+        } finally {
+            dropStaging("tmp_curr_courses");
+            dropStaging("tmp_curr_categories");
         }
 
         return messages;
     }
 
+    // TEMP tables live as long as the pooled connection, so they go on every path
+    private void dropStaging(String table) {
+        try {
+            schemaMigrationService.dropTempTable(table);
+        } catch (DataAccessException ex) {
+            log.warn("Could not drop staging table {}: {}", table, ex.getMessage());
+        }
+    }
+
+    // {new, changed, unchanged} from a staged op column
+    private int[] opCounts(String table, String opColumn) {
+        int[] counts = new int[3];
+        jdbcTemplate.query("SELECT " + opColumn + " AS op, COUNT(*) AS n FROM " + table + " GROUP BY " + opColumn, rs -> {
+            int op = rs.getInt("op");
+            int n = rs.getInt("n");
+            if (op == 1) counts[0] = n;
+            else if (op == 2) counts[1] = n;
+            else counts[2] = n;
+        });
+        return counts;
+    }
+
     private String get(String[] arr, int idx) {
         if (arr == null || idx >= arr.length) return "";
         String v = arr[idx] == null ? "" : arr[idx].trim();
@@ -12,11 +12,10 @@ import java.io.BufferedReader;
 import java.io.InputStreamReader;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
-import java.util.Objects;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.Collectors;
 import java.util.Optional;
 
 @Service
@@ -45,48 +44,13 @@ public class CoursesService {
         AtomicInteger rowNumberCounter = new AtomicInteger(1);
 
         try (BufferedReader br = new BufferedReader(new InputStreamReader(file.getInputStream()))) {
-            List<String> lines = br.lines().collect(Collectors.toList());
-
-            List<Courses> coursesToSave = lines.parallelStream()
-                .skip(1) // Skip header row
-                .map(line -> {
-                    int rowNumber = rowNumberCounter.incrementAndGet();
-                    String[] values = parseCsvLine(line);
-
-                    if (values.length < 4) {
-                        messages.add("Skipping row " + rowNumber + ": Not enough columns.");
-                        return null;
-                    }
-
-                    String courseCode = values[0].trim();
-                    Optional<Courses> existingCourseOpt = coursesRepository.findFirstByCourseCode(courseCode);
-
-                    Courses course = existingCourseOpt.orElseGet(Courses::new);
-                    if (!existingCourseOpt.isPresent()) {
-                        course.setCourseCode(courseCode);
-                    }
-
-                    course.setCourseTitle(values[1].trim().replace("\"", ""));
-                    try {
-                        course.setCourseCredits(Double.parseDouble(values[2].trim()));
-                    } catch (NumberFormatException e) {
-                        messages.add("Skipping row " + rowNumber + ": Invalid credit value for course " + courseCode + ".");
-                        return null;
-                    }
-
-                    // Note: Category relationship is now handled by ProgramCourseCategory
-                    // This service now only handles global course data (code, title, credits)
-
-                    if (existingCourseOpt.isPresent()) {
-                        updatedRecords.incrementAndGet();
-                    } else {
-                        createdRecords.incrementAndGet();
-                    }
-
-                    return course;
-                })
-                .filter(Objects::nonNull)
-                .collect(Collectors.toList());
+            br.readLine(); // Skip header row
+            // Rows are handled as they are read; the file is never held in memory
+            List<Courses> coursesToSave = new ArrayList<>();
+            for (String line = br.readLine(); line != null; line = br.readLine()) {
+                Courses parsed = parseRow(line, rowNumberCounter.incrementAndGet(), messages, updatedRecords, createdRecords);
+                if (parsed != null) coursesToSave.add(parsed);
+            }
 
             if (!coursesToSave.isEmpty()) {
                 coursesRepository.saveAll(coursesToSave);
@@ -102,6 +66,43 @@ public class CoursesService {
         return new ArrayList<>(messages);
     }
 
+    private Courses parseRow(String line, int rowNumber, Collection<String> messages,
+                             AtomicInteger updatedRecords, AtomicInteger createdRecords) {
+        String[] values = parseCsvLine(line);
+
+        if (values.length < 4) {
+            messages.add("Skipping row " + rowNumber + ": Not enough columns.");
+            return null;
+        }
+
+        String courseCode = values[0].trim();
+        Optional<Courses> existingCourseOpt = coursesRepository.findFirstByCourseCode(courseCode);
+
+        Courses course = existingCourseOpt.orElseGet(Courses::new);
+        if (!existingCourseOpt.isPresent()) {
+            course.setCourseCode(courseCode);
+        }
+
+        course.setCourseTitle(values[1].trim().replace("\"", ""));
+        try {
+            course.setCourseCredits(Double.parseDouble(values[2].trim()));
+        } catch (NumberFormatException e) {
+            messages.add("Skipping row " + rowNumber + ": Invalid credit value for course " + courseCode + ".");
+            return null;
+        }
+
+        // Note: Category relationship is now handled by ProgramCourseCategory
+        // This service now only handles global course data (code, title, credits)
+
+        if (existingCourseOpt.isPresent()) {
+            updatedRecords.incrementAndGet();
+        } else {
+            createdRecords.incrementAndGet();
+        }
+
+        return course;
+    }
+
     private String[] parseCsvLine(String line) {
         List<String> values = new ArrayList<>();
         StringBuilder sb = new StringBuilder();
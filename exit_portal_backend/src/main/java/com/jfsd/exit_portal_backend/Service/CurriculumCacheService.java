@@ -0,0 +1,65 @@
+package com.jfsd.exit_portal_backend.Service;
+
+import com.jfsd.exit_portal_backend.Model.Categories;
+import com.jfsd.exit_portal_backend.Model.Courses;
+import com.jfsd.exit_portal_backend.Model.Program;
+import com.jfsd.exit_portal_backend.Model.ProgramCategoryRequirement;
+import com.jfsd.exit_portal_backend.Model.ProgramCourseCategory;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+/**
+ * Evicts the Hibernate second-level cache regions holding curriculum data. JPA saves keep those
+ * regions consistent on their own; this is for writes that go straight through JDBC.
+ */
+@Service
+public class CurriculumCacheService {
+
+    private static final Logger log = LoggerFactory.getLogger(CurriculumCacheService.class);
+
+    // Region named in the @QueryHints of the curriculum repositories
+    public static final String QUERY_REGION = "curriculum_queries";
+
+    private static final List<Class<?>> ENTITIES = List.of(
+            Program.class, Categories.class, Courses.class,
+            ProgramCourseCategory.class, ProgramCategoryRequirement.class);
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    // Evict now and, inside a transaction, again after commit so a reader racing the commit
+    // cannot re-populate the cache with pre-commit rows.
+    public void evict(String reason) {
+        evictNow(reason);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evictNow(reason);
+                }
+            });
+        }
+    }
+
+    private void evictNow(String reason) {
+        try {
+            Cache cache = entityManagerFactory.unwrap(SessionFactory.class).getCache();
+            for (Class<?> entity : ENTITIES) {
+                cache.evictEntityData(entity);
+            }
+            cache.evictQueryRegion(QUERY_REGION);
+            log.debug("Curriculum second-level cache evicted ({})", reason);
+        } catch (Exception ex) {
+            log.warn("Curriculum cache eviction failed ({}): {}", reason, ex.getMessage());
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.jfsd.exit_portal_backend.Service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Monotonic version of the academic data set (grades, registrations, curriculum, progress).
+ * Imports, recomputes and admin write paths bump it; in-memory caches key on it so stale
+ * entries simply stop being hit instead of needing explicit eviction. A second counter, the
+ * source version, ignores bumps of derived data (progress recompute), for checks like "has any
+ * imported data changed since" that must not be reset by the recompute their own import started.
+ */
+@Service
+public class DataVersionService {
+
+    private static final Logger log = LoggerFactory.getLogger(DataVersionService.class);
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    private final AtomicLong version = new AtomicLong(1);
+    private final AtomicLong sourceVersion = new AtomicLong(1);
+
+    // Published once the change is visible to other connections (after commit when inside a transaction)
+    public static class DataChangedEvent {
+        private final long version;
+        private final String reason;
+
+        public DataChangedEvent(long version, String reason) {
+            this.version = version;
+            this.reason = reason;
+        }
+
+        public long getVersion() { return version; }
+        public String getReason() { return reason; }
+    }
+
+    public long current() {
+        return version.get();
+    }
+
+    public long currentSource() {
+        return sourceVersion.get();
+    }
+
+    // Bump now and, when called inside a transaction, once more after commit so that readers
+    // racing the commit cannot pin pre-commit rows under the new version.
+    public void bump(String reason) {
+        bump(reason, true);
+    }
+
+    // For data derived from what is already stored (progress rows, summaries): moves only current()
+    public void bumpDerived(String reason) {
+        bump(reason, false);
+    }
+
+    private void bump(String reason, boolean source) {
+        long v = version.incrementAndGet();
+        if (source) sourceVersion.incrementAndGet();
+        log.debug("Data version bumped to {} ({})", v, reason);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    if (source) sourceVersion.incrementAndGet();
+                    publish(version.incrementAndGet(), reason);
+                }
+            });
+        } else {
+            publish(v, reason);
+        }
+    }
+
+    private void publish(long v, String reason) {
+        try {
+            eventPublisher.publishEvent(new DataChangedEvent(v, reason));
+        } catch (Exception ex) {
+            log.warn("Data change listeners failed for version {} ({}): {}", v, reason, ex.getMessage());
+        }
+    }
+}
@@ -0,0 +1,389 @@
+package com.jfsd.exit_portal_backend.Service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bulk ingestion from a server-side drop directory (import.drop-dir; disabled when blank). Files are
+ * dispatched by name once their size has stopped changing, read in place through memory-mapped
+ * windows, and run on the ImportJobService executor like any other import job:
+ *
+ *   results__&lt;PROGRAM&gt;[__upsert].csv|.xlsx|.csv.gz
+ *   registrations[__anything].csv|.xlsx|.csv.gz
+ *   combined__&lt;PROGRAM&gt;.csv|.csv.gz
+ *
+ * A settled file is first moved to processing/ and imported from there, so it can never be picked
+ * up twice; afterwards it moves to archive/ (or failed/, when the job fails the same way an uploaded
+ * import job does) next to a &lt;name&gt;.manifest.json with the job outcome. Anything still in
+ * processing/ at startup was interrupted and goes to failed/ without being re-imported. Names
+ * starting with '.' or ending in .part/.tmp are ignored until renamed.
+ */
+@Service
+public class DropDirectoryIngestService {
+
+    private static final Logger log = LoggerFactory.getLogger(DropDirectoryIngestService.class);
+
+    private static final String REQUESTED_BY = "drop-directory";
+    // Mapped window size; files of any length are read window by window
+    private static final long MAP_WINDOW_BYTES = 256L * 1024 * 1024;
+
+    @Autowired
+    private ImportJobService importJobService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${import.drop-dir:}")
+    private String dropDir;
+
+    // A file is picked up once its size is unchanged for this long (still being copied otherwise)
+    @Value("${import.drop.settle-ms:3000}")
+    private long settleMs;
+
+    @Value("${import.upload.max-decompressed-bytes:4294967296}")
+    private long maxDecompressedBytes;
+
+    private volatile WatchService watchService;
+    private Path dropPath;
+    private Path processingPath;
+    private Path archivePath;
+    private Path failedPath;
+
+    // Files seen but not yet stable: path -> {size, lastChangeMillis}
+    private final Map<Path, long[]> candidates = new ConcurrentHashMap<>();
+
+    private static final class Dispatch {
+        final String type;
+        final String programCode;
+        final boolean mergeMode;
+        final boolean gzip;
+
+        Dispatch(String type, String programCode, boolean mergeMode, boolean gzip) {
+            this.type = type;
+            this.programCode = programCode;
+            this.mergeMode = mergeMode;
+            this.gzip = gzip;
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (dropDir == null || dropDir.isBlank()) return;
+        try {
+            dropPath = Paths.get(dropDir).toAbsolutePath();
+            archivePath = dropPath.resolve("archive");
+            failedPath = dropPath.resolve("failed");
+            processingPath = dropPath.resolve("processing");
+            Files.createDirectories(archivePath);
+            Files.createDirectories(failedPath);
+            Files.createDirectories(processingPath);
+            watchService = dropPath.getFileSystem().newWatchService();
+            dropPath.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException ex) {
+            log.error("Drop directory ingestion disabled, cannot watch {}: {}", dropDir, ex.getMessage());
+            return;
+        }
+        Thread watcher = new Thread(this::watchLoop, "import-drop-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+        log.info("Watching drop directory {} for import files", dropPath);
+    }
+
+    @PreDestroy
+    public void stop() {
+        WatchService ws = watchService;
+        if (ws == null) return;
+        try {
+            ws.close();
+        } catch (IOException ignored) {
+            // shutting down
+        }
+    }
+
+    private void watchLoop() {
+        failInterrupted();
+        // Files copied while the server was down
+        try (DirectoryStream<Path> existing = Files.newDirectoryStream(dropPath)) {
+            for (Path p : existing) track(p);
+        } catch (IOException ex) {
+            log.warn("Could not scan drop directory {}: {}", dropPath, ex.getMessage());
+        }
+        while (true) {
+            try {
+                WatchKey key = watchService.poll(settleMs, TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    key.pollEvents().forEach(event -> {
+                        if (event.context() instanceof Path name) track(dropPath.resolve(name));
+                    });
+                    key.reset();
+                }
+                dispatchSettled();
+            } catch (ClosedWatchServiceException | InterruptedException ex) {
+                return;
+            } catch (Exception ex) {
+                log.warn("Drop directory watcher error: {}", ex.getMessage());
+            }
+        }
+    }
+
+    private void track(Path path) {
+        String name = path.getFileName().toString();
+        if (name.startsWith(".") || name.endsWith(".part") || name.endsWith(".tmp")) return;
+        if (!Files.isRegularFile(path)) return;
+        candidates.putIfAbsent(path, new long[]{-1L, System.currentTimeMillis()});
+    }
+
+    private void dispatchSettled() {
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<Path, long[]>> it = candidates.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Path, long[]> e = it.next();
+            Path path = e.getKey();
+            long[] state = e.getValue();
+            long size;
+            try {
+                size = Files.size(path);
+            } catch (IOException ex) {
+                it.remove(); // deleted or moved away
+                continue;
+            }
+            if (size != state[0]) {
+                state[0] = size;
+                state[1] = now;
+                continue;
+            }
+            if (now - state[1] < settleMs) continue;
+
+            Dispatch dispatch = parseName(path.getFileName().toString());
+            if (dispatch == null) {
+                log.warn("Drop file {} does not match a naming convention; moving to failed/", path.getFileName());
+                it.remove();
+                archive(path, failedPath, manifest(path, size, null, "Unrecognised file name"));
+                continue;
+            }
+            // Claimed before the import starts: once moved, a restart or a failed archive move cannot import it again
+            Path claimed = processingPath.resolve(path.getFileName());
+            try {
+                Files.move(path, claimed);
+            } catch (IOException ex) {
+                log.error("Could not move drop file {} to processing/, skipping it: {}", path.getFileName(), ex.getMessage());
+                it.remove();
+                continue;
+            }
+            try {
+                MultipartFile input = new MappedMultipartFile(claimed, size, dispatch.gzip ? maxDecompressedBytes : -1);
+                importJobService.submitLocal(dispatch.type, input, dispatch.programCode, null, dispatch.mergeMode,
+                        REQUESTED_BY, job -> finished(claimed, size, job));
+                it.remove();
+                log.info("Dispatched drop file {} ({} bytes) as {} import", path.getFileName(), size, dispatch.type);
+            } catch (IllegalStateException ex) {
+                // Executor queue full: put the file back and retry on the next tick
+                try {
+                    Files.move(claimed, path);
+                    state[1] = now;
+                } catch (IOException moveBack) {
+                    log.error("Could not return drop file {} from processing/: {}", path.getFileName(), moveBack.getMessage());
+                    it.remove();
+                    archive(claimed, failedPath, manifest(claimed, size, null, "Import queue full and file could not be requeued"));
+                }
+            }
+        }
+    }
+
+    // job.getError() is set by ImportJobService for exceptions and for importer "Abort:"/"Error..." messages alike
+    private void finished(Path claimed, long size, ImportJobService.ImportJob job) {
+        String error = job.getError();
+        archive(claimed, error == null ? archivePath : failedPath, manifest(claimed, size, job, error));
+    }
+
+    // Files left in processing/ by a crash or a failed archive move; their outcome is unknown, so
+    // they are set aside for an operator instead of being imported again
+    private void failInterrupted() {
+        try (DirectoryStream<Path> leftovers = Files.newDirectoryStream(processingPath)) {
+            for (Path p : leftovers) {
+                if (!Files.isRegularFile(p)) continue;
+                log.warn("Drop file {} was still in processing/ at startup; moving to failed/ without re-importing", p.getFileName());
+                long size = Files.size(p);
+                archive(p, failedPath, manifest(p, size, null, "Import interrupted (server stopped or archive move failed); not re-imported"));
+            }
+        } catch (IOException ex) {
+            log.warn("Could not scan {}: {}", processingPath, ex.getMessage());
+        }
+    }
+
+    // "results__CSE__upsert.csv" -> results / CSE / upsert; null when the name fits no convention
+    static Dispatch parseName(String fileName) {
+        String lower = fileName.toLowerCase();
+        boolean gzip = lower.endsWith(".gz");
+        String base = gzip ? fileName.substring(0, fileName.length() - 3) : fileName;
+        String lowerBase = base.toLowerCase();
+        if (!(lowerBase.endsWith(".csv") || lowerBase.endsWith(".xlsx"))) return null;
+        if (gzip && lowerBase.endsWith(".xlsx")) return null;
+        String stem = base.substring(0, base.lastIndexOf('.'));
+        String[] parts = stem.split("__");
+        String type = parts[0].trim().toLowerCase();
+        switch (type) {
+            case ImportJobService.TYPE_RESULTS: {
+                String program = parts.length > 1 && !parts[1].isBlank() ? parts[1].trim() : null;
+                boolean merge = ImportJobService.isMergeMode(parts.length > 2 ? parts[2] : null);
+                return new Dispatch(type, program, merge, gzip);
+            }
+            case ImportJobService.TYPE_REGISTRATIONS:
+                return new Dispatch(type, null, false, gzip);
+            case ImportJobService.TYPE_COMBINED:
+                if (parts.length < 2 || parts[1].isBlank() || lowerBase.endsWith(".xlsx")) return null;
+                return new Dispatch(type, parts[1].trim(), false, gzip);
+            default:
+                return null;
+        }
+    }
+
+    private Map<String, Object> manifest(Path path, long size, ImportJobService.ImportJob job, String error) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("file", path.getFileName().toString());
+        m.put("bytes", size);
+        m.put("status", error == null ? "IMPORTED" : "FAILED");
+        m.put("error", error);
+        if (job != null) {
+            m.put("job", job.toMap());
+        }
+        m.put("archivedAt", new Date());
+        return m;
+    }
+
+    // Moves the file to targetDir as <timestamp>__<name> and writes <that>.manifest.json beside it
+    private void archive(Path path, Path targetDir, Map<String, Object> manifest) {
+        String stamp = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+        Path target = targetDir.resolve(stamp + "__" + path.getFileName());
+        try {
+            Files.move(path, target, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException ex) {
+            // The manifest still lands in targetDir; a file left in processing/ is set aside at the next startup
+            log.error("Could not archive drop file {}: {}", path, ex.getMessage());
+        }
+        Path manifestPath = targetDir.resolve(target.getFileName() + ".manifest.json");
+        try {
+            objectMapper.copy().enable(SerializationFeature.INDENT_OUTPUT)
+                    .writeValue(manifestPath.toFile(), manifest);
+        } catch (IOException ex) {
+            log.error("Could not write manifest {}: {}", manifestPath, ex.getMessage());
+        }
+    }
+
+    // InputStream over a file read through successive read-only memory-mapped windows
+    private static final class MappedInputStream extends InputStream {
+        private final FileChannel channel;
+        private final long size;
+        private long windowStart;
+        private MappedByteBuffer window;
+
+        private MappedInputStream(Path path) throws IOException {
+            this.channel = FileChannel.open(path, StandardOpenOption.READ);
+            this.size = channel.size();
+        }
+
+        private boolean ensureWindow() throws IOException {
+            if (window != null && window.hasRemaining()) return true;
+            long next = window == null ? 0 : windowStart + window.capacity();
+            if (next >= size) return false;
+            windowStart = next;
+            window = channel.map(FileChannel.MapMode.READ_ONLY, next, Math.min(MAP_WINDOW_BYTES, size - next));
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return ensureWindow() ? (window.get() & 0xff) : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            if (!ensureWindow()) return -1;
+            int n = Math.min(len, window.remaining());
+            window.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            window = null;
+            channel.close();
+        }
+    }
+
+    // Read-only MultipartFile view so the import services consume drop files unchanged
+    private static final class MappedMultipartFile implements MultipartFile {
+        private final Path path;
+        private final long size;
+        // Negative for plain files, otherwise the decompressed-size limit of a .gz file
+        private final long maxDecompressedBytes;
+
+        private MappedMultipartFile(Path path, long size, long maxDecompressedBytes) {
+            this.path = path;
+            this.size = size;
+            this.maxDecompressedBytes = maxDecompressedBytes;
+        }
+
+        @Override public String getName() { return "file"; }
+        @Override public String getOriginalFilename() {
+            String name = path.getFileName().toString();
+            return maxDecompressedBytes >= 0 ? name.substring(0, name.length() - 3) : name;
+        }
+        @Override public String getContentType() { return null; }
+        @Override public boolean isEmpty() { return size == 0; }
+        @Override public long getSize() { return size; }
+
+        @Override
+        public byte[] getBytes() throws IOException {
+            try (InputStream in = getInputStream()) {
+                return in.readAllBytes();
+            }
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            InputStream in = new MappedInputStream(path);
+            return maxDecompressedBytes < 0 ? in : ImportJobService.gunzip(in, maxDecompressedBytes);
+        }
+
+        @Override
+        public void transferTo(File dest) throws IOException {
+            try (InputStream in = getInputStream()) {
+                Files.copy(in, dest.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+    }
+}
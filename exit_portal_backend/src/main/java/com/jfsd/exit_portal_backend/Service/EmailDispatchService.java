@@ -0,0 +1,257 @@
+package com.jfsd.exit_portal_backend.Service;
+
+import com.jfsd.exit_portal_backend.Model.OutboundEmail;
+import com.jfsd.exit_portal_backend.Repository.OutboundEmailRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Drains the outbound_email queue. A single dispatcher thread claims due rows in batches and
+ * hands them to a small worker pool; each worker sends its slice over one SMTP connection.
+ * Failures are retried with exponential backoff until max attempts, then marked FAILED.
+ */
+@Service
+public class EmailDispatchService {
+
+    private static final Logger log = LoggerFactory.getLogger(EmailDispatchService.class);
+
+    @Autowired
+    private OutboundEmailRepository outboundEmailRepository;
+
+    @Autowired
+    private JavaMailSender mailSender;
+
+    @Value("${spring.mail.username}")
+    private String fromEmail;
+
+    @Value("${mail.queue.workers:2}")
+    private int workers;
+
+    @Value("${mail.queue.batch-size:20}")
+    private int batchSize;
+
+    @Value("${mail.queue.poll-interval-ms:5000}")
+    private long pollIntervalMs;
+
+    @Value("${mail.queue.max-attempts:6}")
+    private int maxAttempts;
+
+    private static final long BASE_BACKOFF_MS = 30_000L;
+    private static final long MAX_BACKOFF_MS = 30 * 60_000L;
+    private static final long SLICE_TIMEOUT_MS = 5 * 60_000L;
+    // A claim older than this has no live worker: its process died mid-send (timed-out slices are closed out as UNKNOWN)
+    private static final long STALE_CLAIM_MS = 3 * SLICE_TIMEOUT_MS;
+
+    private final Object signal = new Object();
+    private boolean pending = false;
+    private volatile boolean running = false;
+    private ExecutorService workerPool;
+    private Thread dispatcher;
+
+    @PostConstruct
+    public void start() {
+        workerPool = Executors.newFixedThreadPool(Math.max(1, workers), r -> {
+            Thread t = new Thread(r, "mail-worker");
+            t.setDaemon(true);
+            return t;
+        });
+        running = true;
+        dispatcher = new Thread(this::dispatchLoop, "mail-dispatcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        wakeUp();
+        workerPool.shutdown();
+    }
+
+    // Signal the dispatcher once the enqueuing transaction is visible
+    public void wakeUpAfterCommit() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    wakeUp();
+                }
+            });
+        } else {
+            wakeUp();
+        }
+    }
+
+    public void wakeUp() {
+        synchronized (signal) {
+            pending = true;
+            signal.notifyAll();
+        }
+    }
+
+    private void dispatchLoop() {
+        while (running) {
+            int claimed = 0;
+            try {
+                claimed = drainOnce();
+            } catch (Exception ex) {
+                log.error("Mail queue: dispatch round failed: {}", ex.getMessage());
+            }
+            // A full batch means more is probably waiting; otherwise sleep until poked or the next poll
+            if (claimed < Math.max(1, batchSize)) {
+                synchronized (signal) {
+                    if (!pending && running) {
+                        try {
+                            signal.wait(Math.max(100L, pollIntervalMs));
+                        } catch (InterruptedException ie) {
+                            Thread.currentThread().interrupt();
+                            return;
+                        }
+                    }
+                    pending = false;
+                }
+            }
+        }
+    }
+
+    private int drainOnce() {
+        Date now = new Date();
+        int expired = outboundEmailRepository.expireOverdue(now, OutboundEmail.REDACTED_BODY);
+        if (expired > 0) log.info("Mail queue: dropped {} messages whose link expired before delivery", expired);
+        int reclaimed = outboundEmailRepository.releaseStaleClaims(new Date(now.getTime() - STALE_CLAIM_MS));
+        if (reclaimed > 0) log.warn("Mail queue: re-queued {} messages from abandoned sends", reclaimed);
+
+        String claimToken = UUID.randomUUID().toString();
+        int claimed = outboundEmailRepository.claimDue(claimToken, now, Math.max(1, batchSize));
+        if (claimed == 0) return 0;
+
+        List<OutboundEmail> batch = outboundEmailRepository.findByClaimTokenAndStatus(claimToken, OutboundEmail.STATUS_SENDING);
+        int slices = Math.min(Math.max(1, workers), batch.size());
+        int sliceSize = (batch.size() + slices - 1) / slices;
+        List<List<OutboundEmail>> slicesSent = new ArrayList<>();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int start = 0; start < batch.size(); start += sliceSize) {
+            List<OutboundEmail> slice = batch.subList(start, Math.min(start + sliceSize, batch.size()));
+            slicesSent.add(slice);
+            futures.add(workerPool.submit(() -> sendSlice(slice)));
+        }
+        // Only slices whose worker finished are saved. cancel() cannot pull a worker out of send(), so a
+        // timed-out slice may still be delivered: it is marked UNKNOWN rather than re-queued and sent twice
+        List<OutboundEmail> finished = new ArrayList<>();
+        long deadline = System.currentTimeMillis() + SLICE_TIMEOUT_MS;
+        for (int i = 0; i < futures.size(); i++) {
+            Future<?> f = futures.get(i);
+            try {
+                f.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                finished.addAll(slicesSent.get(i));
+            } catch (TimeoutException ex) {
+                f.cancel(true);
+                int unknown = markOutcomeUnknown(claimToken, slicesSent.get(i));
+                log.error("Mail queue: worker timed out on a slice of {} messages, marked {} as outcome unknown", slicesSent.get(i).size(), unknown);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                f.cancel(true);
+            } catch (Exception ex) {
+                log.error("Mail queue: worker did not finish its slice: {}", ex.getMessage());
+            }
+        }
+        outboundEmailRepository.saveAll(finished);
+        log.info("Mail queue: processed {} of {} claimed messages", finished.size(), batch.size());
+        return claimed;
+    }
+
+    private int markOutcomeUnknown(String claimToken, List<OutboundEmail> slice) {
+        List<Long> ids = new ArrayList<>(slice.size());
+        for (OutboundEmail email : slice) ids.add(email.getId());
+        try {
+            return outboundEmailRepository.markOutcomeUnknown(claimToken, ids,
+                    "Send timed out after " + (SLICE_TIMEOUT_MS / 1000) + " s; delivery unknown", OutboundEmail.REDACTED_BODY);
+        } catch (Exception ex) {
+            log.error("Mail queue: could not close out timed-out messages: {}", ex.getMessage());
+            return 0;
+        }
+    }
+
+    // One send() call per slice: JavaMailSenderImpl reuses a single transport connection for the whole array
+    private void sendSlice(List<OutboundEmail> slice) {
+        Map<SimpleMailMessage, OutboundEmail> byMessage = new IdentityHashMap<>();
+        SimpleMailMessage[] messages = new SimpleMailMessage[slice.size()];
+        for (int i = 0; i < slice.size(); i++) {
+            OutboundEmail email = slice.get(i);
+            SimpleMailMessage message = new SimpleMailMessage();
+            message.setFrom(fromEmail);
+            message.setTo(email.getRecipient());
+            message.setSubject(email.getSubject());
+            message.setText(email.getBody());
+            messages[i] = message;
+            byMessage.put(message, email);
+        }
+
+        Map<Object, Exception> failed = new IdentityHashMap<>();
+        Exception batchError = null;
+        try {
+            mailSender.send(messages);
+        } catch (MailSendException ex) {
+            failed.putAll(ex.getFailedMessages());
+            batchError = ex;
+        } catch (Exception ex) {
+            batchError = ex;
+        }
+
+        Date now = new Date();
+        for (SimpleMailMessage message : messages) {
+            OutboundEmail email = byMessage.get(message);
+            Exception error = failed.get(message);
+            // No per-message detail (e.g. connect/auth failure) -> the whole slice failed
+            if (error == null && batchError != null && failed.isEmpty()) error = batchError;
+            email.setClaimToken(null);
+            if (error == null) {
+                email.setStatus(OutboundEmail.STATUS_SENT);
+                email.setSentAt(now);
+                email.setLastError(null);
+                email.setBody(OutboundEmail.REDACTED_BODY);
+            } else {
+                markFailedAttempt(email, error, now);
+            }
+        }
+    }
+
+    private void markFailedAttempt(OutboundEmail email, Exception error, Date now) {
+        int attempts = email.getAttempts() + 1;
+        email.setAttempts(attempts);
+        String msg = error.getMessage() == null ? error.getClass().getSimpleName() : error.getMessage();
+        email.setLastError(msg.length() > 1000 ? msg.substring(0, 1000) : msg);
+        if (attempts >= Math.max(1, maxAttempts)) {
+            email.setStatus(OutboundEmail.STATUS_FAILED);
+            email.setBody(OutboundEmail.REDACTED_BODY);
+            log.error("Mail queue: giving up on message {} to {} after {} attempts: {}", email.getId(), email.getRecipient(), attempts, msg);
+        } else {
+            long backoff = Math.min(MAX_BACKOFF_MS, BASE_BACKOFF_MS << Math.min(attempts - 1, 16));
+            email.setStatus(OutboundEmail.STATUS_PENDING);
+            email.setNextAttemptAt(new Date(now.getTime() + backoff));
+            log.warn("Mail queue: attempt {} for message {} failed, retrying in {} s: {}", attempts, email.getId(), backoff / 1000, msg);
+        }
+    }
+}
@@ -1,31 +1,36 @@
 package com.jfsd.exit_portal_backend.Service;
 
+import com.jfsd.exit_portal_backend.Model.OutboundEmail;
+import com.jfsd.exit_portal_backend.Repository.OutboundEmailRepository;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.stereotype.Service;
 
+import java.util.Date;
+
 @Service
 public class EmailService {
     @Autowired
-    private JavaMailSender mailSender;
+    private OutboundEmailRepository outboundEmailRepository;
+
+    @Autowired
+    private EmailDispatchService emailDispatchService;
 
-    @Value("${spring.mail.username}")
-    private String fromEmail;
+    private static final String PASSWORD_RESET_SUBJECT = "KL University - Password Reset Request";
+
+    // Persist the reset mail to the outbound queue; the dispatcher sends it after the caller's transaction commits.
+    // Past expiresAt (the token's expiry) the link is useless, so the message is dropped instead of sent late.
+    public void queuePasswordResetEmail(String to, String token, Date expiresAt) {
+        outboundEmailRepository.save(new OutboundEmail(to, PASSWORD_RESET_SUBJECT, passwordResetBody(token), expiresAt));
+        emailDispatchService.wakeUpAfterCommit();
+    }
 
-    public void sendPasswordResetEmail(String to, String token) {
-        SimpleMailMessage message = new SimpleMailMessage();
-        message.setFrom(fromEmail);
-        message.setTo(to);
-        message.setSubject("KL University - Password Reset Request");
-        message.setText("Dear Student,\n\n" +
+    private String passwordResetBody(String token) {
+        return "Dear Student,\n\n" +
                 "We received a request to reset your password for the KL University Exit Portal.\n\n" +
                 "To reset your password, please click on the link below:\n" +
                 "https://exitportal-klu.vercel.app/reset-password?token=" + token + "\n\n" +
                 "This link will expire in 1 hour for security reasons.\n\n" +
                 "If you did not request a password reset, please ignore this email or contact support if you have concerns.\n\n" +
-                "Regards,\nKL University Exit Portal Team");
-        mailSender.send(message);
+                "Regards,\nKL University Exit Portal Team";
     }
 }
@@ -66,7 +66,13 @@ public class FrontendService {
     @Autowired
     private ProgramCourseCategoryRepository programCourseCategoryRepository;
 
-    @Cacheable(cacheNames = "student_api", key = "'getStudentCategoryProgress:' + #universityId")
+    @Autowired
+    private RegistrationProjectionService registrationProjectionService;
+
+    // Not cached while the registration projection is being rebuilt: the fallback response has no
+    // projectedMet on any category, and nothing would evict it once the projection is current
+    @Cacheable(cacheNames = "student_api", key = "'getStudentCategoryProgress:' + #universityId",
+            unless = "!#result.isEmpty() && #result.?[projectedMet != null].isEmpty()")
     public List<StudentCategoryProgressDTO> getStudentCategoryProgress(String universityId) {
         long _startNanos = System.nanoTime();
         // Fetch persisted/enriched progress rows (3NF-aware, program-scoped)
@@ -92,6 +98,9 @@ public class FrontendService {
         Map<String, List<StudentGrade>> gradesByCategory = allGrades.stream()
                 .filter(g -> g.getCategory() != null)
                 .collect(Collectors.groupingBy(g -> g.getCategory().trim().toLowerCase()));
+        // Pending registrations and projected met per category, shared with the admin projected views
+        Map<String, RegistrationProjectionService.StudentCategoryProjection> projectionByCategory =
+                registrationProjectionService.forStudent(universityId);
 
         List<StudentCategoryProgressDTO> result = new ArrayList<>();
         try {
@@ -109,15 +118,23 @@ public class FrontendService {
                         .sum();
 
                 // New: strictly current pending registrations (promotion == 'R')
-                long pendingRegisteredCourses = registeredGrades.stream()
-                        .filter(g -> g.getPromotion() != null && "R".equalsIgnoreCase(g.getPromotion()))
-                        .count();
-                double pendingRegisteredCredits = registeredGrades.stream()
-                        .filter(g -> g.getPromotion() != null && "R".equalsIgnoreCase(g.getPromotion()))
-                        .map(StudentGrade::getCredits)
-                        .filter(Objects::nonNull)
-                        .mapToDouble(Double::doubleValue)
-                        .sum();
+                RegistrationProjectionService.StudentCategoryProjection projection = projectionByCategory.get(normCat);
+                long pendingRegisteredCourses;
+                double pendingRegisteredCredits;
+                if (projection != null) {
+                    pendingRegisteredCourses = projection.getPendingCourses();
+                    pendingRegisteredCredits = projection.getPendingCredits();
+                } else {
+                    pendingRegisteredCourses = registeredGrades.stream()
+                            .filter(g -> g.getPromotion() != null && "R".equalsIgnoreCase(g.getPromotion()))
+                            .count();
+                    pendingRegisteredCredits = registeredGrades.stream()
+                            .filter(g -> g.getPromotion() != null && "R".equalsIgnoreCase(g.getPromotion()))
+                            .map(StudentGrade::getCredits)
+                            .filter(Objects::nonNull)
+                            .mapToDouble(Double::doubleValue)
+                            .sum();
+                }
 
                 int minCourses = (scp.getMinRequiredCourses() != null) ? scp.getMinRequiredCourses() : 0;
                 double minCredits = (scp.getMinRequiredCredits() != null) ? scp.getMinRequiredCredits() : 0.0;
@@ -141,6 +158,7 @@ public class FrontendService {
                 // Backward compatible enrichment with pending registration metrics
                 dto.setPendingRegisteredCourses(pendingRegisteredCourses);
                 dto.setPendingRegisteredCredits(pendingRegisteredCredits);
+                dto.setProjectedMet(projection != null ? projection.isProjectedMet() : null);
                 result.add(dto);
             }
             return result;
@@ -0,0 +1,739 @@
+package com.jfsd.exit_portal_backend.Service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Runs results, registrations and combined uploads as background jobs. The upload is spooled to
+ * local disk (in one request, or as resumable chunks for files beyond the multipart limit, optionally
+ * gzip-compressed), the request returns a job id right away, and the import runs on a bounded executor.
+ * Stage-level progress (parsed rows, batches written, recompute) is kept on the job and pushed to
+ * subscribers via Server-Sent Events. Jobs live in memory; finished ones are pruned after a while.
+ */
+@Service
+public class ImportJobService {
+
+    private static final Logger log = LoggerFactory.getLogger(ImportJobService.class);
+
+    public static final String STATUS_QUEUED = "QUEUED";
+    public static final String STATUS_RUNNING = "RUNNING";
+    public static final String STATUS_COMPLETED = "COMPLETED";
+    public static final String STATUS_FAILED = "FAILED";
+
+    // Finished jobs stay queryable this long
+    private static final long RETAIN_FINISHED_MS = 60 * 60 * 1000L;
+    private static final long SSE_TIMEOUT_MS = 30 * 60 * 1000L;
+    // Upload sessions without a chunk for this long are discarded
+    private static final long ABANDONED_UPLOAD_MS = 24 * 60 * 60 * 1000L;
+    private static final long TRANSFER_CHUNK_BYTES = 8L * 1024 * 1024;
+
+    public static final String TYPE_RESULTS = "results";
+    public static final String TYPE_REGISTRATIONS = "registrations";
+    public static final String TYPE_COMBINED = "combined";
+
+    @Autowired
+    private StudentGradeBatchImportService studentGradeBatchImportService;
+
+    @Autowired
+    private CombinedImportService combinedImportService;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Value("${import.spool-dir:}")
+    private String spoolDir;
+
+    private final ThreadPoolExecutor importExecutor;
+
+    private final Map<String, ImportJob> jobs = new LinkedHashMap<>();
+
+    private final Map<String, UploadSession> uploads = new ConcurrentHashMap<>();
+
+    @Value("${import.upload.max-bytes:2147483648}")
+    private long maxUploadBytes;
+
+    // Size a gzip upload may expand to while it is read; a small archive can otherwise inflate without bound
+    @Value("${import.upload.max-decompressed-bytes:4294967296}")
+    private long maxDecompressedBytes;
+
+    public ImportJobService(@Value("${import.executor.threads:2}") int threads,
+                            @Value("${import.executor.queue-capacity:8}") int queueCapacity) {
+        AtomicInteger seq = new AtomicInteger();
+        this.importExecutor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+                    Thread t = new Thread(r, "import-job-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    public static final class UploadSession {
+        private final String id = UUID.randomUUID().toString();
+        private final String type;
+        private final String fileName;
+        private final boolean gzip;
+        private final String programCode;
+        private final Double defaultCredits;
+        private final boolean mergeMode;
+        private final String requestedBy;
+        private final Path path;
+        private final Date createdAt = new Date();
+        private volatile Date updatedAt = createdAt;
+        private volatile long receivedBytes;
+        private boolean completed;
+
+        private UploadSession(String type, String fileName, boolean gzip, String programCode, Double defaultCredits,
+                              boolean mergeMode, String requestedBy, Path path) {
+            this.type = type;
+            this.fileName = fileName;
+            this.gzip = gzip;
+            this.programCode = programCode;
+            this.defaultCredits = defaultCredits;
+            this.mergeMode = mergeMode;
+            this.requestedBy = requestedBy;
+            this.path = path;
+        }
+
+        public String getId() { return id; }
+        public String getRequestedBy() { return requestedBy; }
+        public long getReceivedBytes() { return receivedBytes; }
+
+        public Map<String, Object> toMap() {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("uploadId", id);
+            m.put("type", type);
+            m.put("fileName", fileName);
+            m.put("gzip", gzip);
+            m.put("programCode", programCode);
+            m.put("receivedBytes", receivedBytes);
+            m.put("createdAt", createdAt);
+            m.put("updatedAt", updatedAt);
+            return m;
+        }
+    }
+
+    // Chunk offset does not match what the server holds; the client resumes from expectedOffset
+    public static class UploadOffsetException extends RuntimeException {
+        private final long expectedOffset;
+
+        public UploadOffsetException(long expectedOffset) {
+            super("Chunk offset mismatch; expected offset " + expectedOffset);
+            this.expectedOffset = expectedOffset;
+        }
+
+        public long getExpectedOffset() { return expectedOffset; }
+    }
+
+    public static final class ImportJob {
+        private final String id;
+        private final String type;
+        private final String programCode;
+        private final String fileName;
+        private final String requestedBy;
+        private final Date createdAt = new Date();
+        private volatile String status = STATUS_QUEUED;
+        private volatile String stage = "queued";
+        private volatile long parsedRows;
+        private volatile int batchesWritten;
+        private volatile int totalBatches;
+        private volatile String recomputeStatus;
+        private volatile List<String> messages = List.of();
+        private volatile String error;
+        private volatile Date updatedAt = createdAt;
+        private volatile Date finishedAt;
+        private volatile boolean mainDone;
+        private final AtomicInteger pendingBackground = new AtomicInteger();
+        private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+
+        private ImportJob(String type, String programCode, String fileName, String requestedBy) {
+            this.id = UUID.randomUUID().toString();
+            this.type = type;
+            this.programCode = programCode;
+            this.fileName = fileName;
+            this.requestedBy = requestedBy;
+        }
+
+        public String getId() { return id; }
+        public String getType() { return type; }
+        public String getProgramCode() { return programCode; }
+        public String getRequestedBy() { return requestedBy; }
+        public String getStatus() { return status; }
+        public List<String> getMessages() { return messages; }
+        public String getError() { return error; }
+        public boolean isFinished() { return STATUS_COMPLETED.equals(status) || STATUS_FAILED.equals(status); }
+
+        public Map<String, Object> toMap() {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("jobId", id);
+            m.put("type", type);
+            m.put("programCode", programCode);
+            m.put("fileName", fileName);
+            m.put("requestedBy", requestedBy);
+            m.put("status", status);
+            m.put("stage", stage);
+            m.put("parsedRows", parsedRows);
+            m.put("batchesWritten", batchesWritten);
+            m.put("totalBatches", totalBatches);
+            m.put("recomputeStatus", recomputeStatus);
+            m.put("messages", messages);
+            m.put("error", error);
+            m.put("createdAt", createdAt);
+            m.put("updatedAt", updatedAt);
+            m.put("finishedAt", finishedAt);
+            return m;
+        }
+
+        void stage(String stage) {
+            this.stage = stage;
+            changed();
+        }
+
+        void parsedRows(long rows) {
+            this.parsedRows = rows;
+            changed();
+        }
+
+        void batchWritten(int done, int total) {
+            this.batchesWritten = done;
+            this.totalBatches = total;
+            changed();
+        }
+
+        void backgroundQueued(String stage) {
+            pendingBackground.incrementAndGet();
+            this.recomputeStatus = "PENDING";
+            changed();
+        }
+
+        void backgroundStarted(String stage) {
+            this.recomputeStatus = "RUNNING";
+            this.stage = stage;
+            changed();
+        }
+
+        // mainDone is written before pendingBackground is read in mainFinished, so one side always completes the job
+        void backgroundFinished(String stage, boolean ok) {
+            this.recomputeStatus = ok ? "COMPLETED" : "FAILED";
+            if (pendingBackground.decrementAndGet() == 0 && mainDone) {
+                finish(STATUS_COMPLETED);
+            } else {
+                changed();
+            }
+        }
+
+        private synchronized void mainFinished(List<String> messages, String error) {
+            this.messages = messages == null ? List.of() : List.copyOf(messages);
+            this.error = error;
+            this.mainDone = true;
+            if (error != null) {
+                finish(STATUS_FAILED);
+            } else if (pendingBackground.get() == 0) {
+                finish(STATUS_COMPLETED);
+            } else {
+                changed();
+            }
+        }
+
+        private synchronized void finish(String finalStatus) {
+            if (isFinished()) return;
+            this.status = finalStatus;
+            this.stage = "done";
+            this.finishedAt = new Date();
+            changed();
+            for (SseEmitter emitter : emitters) {
+                try {
+                    emitter.send(SseEmitter.event().name("done").data(toMap()));
+                    emitter.complete();
+                } catch (Exception ignored) {
+                    // client went away
+                }
+            }
+            emitters.clear();
+        }
+
+        private void changed() {
+            this.updatedAt = new Date();
+            if (emitters.isEmpty()) return;
+            Map<String, Object> snapshot = toMap();
+            for (SseEmitter emitter : emitters) {
+                try {
+                    emitter.send(SseEmitter.event().name("progress").data(snapshot));
+                } catch (Exception ex) {
+                    emitters.remove(emitter);
+                }
+            }
+        }
+    }
+
+    public ImportJob submitResults(MultipartFile file, String programCode, Double defaultCredits, boolean mergeMode, String requestedBy) {
+        return submit(TYPE_RESULTS, file, programCode, requestedBy, importerFor(TYPE_RESULTS, programCode, defaultCredits, mergeMode));
+    }
+
+    public ImportJob submitRegistrations(MultipartFile file, String requestedBy) {
+        return submit(TYPE_REGISTRATIONS, file, null, requestedBy, importerFor(TYPE_REGISTRATIONS, null, null, false));
+    }
+
+    public ImportJob submitCombined(MultipartFile file, String programCode, Double defaultCredits, String requestedBy) {
+        return submit(TYPE_COMBINED, file, programCode, requestedBy, importerFor(TYPE_COMBINED, programCode, defaultCredits, false));
+    }
+
+    private Function<MultipartFile, List<String>> importerFor(String type, String programCode, Double defaultCredits, boolean mergeMode) {
+        switch (type) {
+            case TYPE_RESULTS:
+                return spooled -> studentGradeBatchImportService.importResultsCsv(spooled, programCode, defaultCredits, mergeMode);
+            case TYPE_REGISTRATIONS:
+                return spooled -> studentGradeBatchImportService.importRegistrationsCsv(spooled);
+            case TYPE_COMBINED:
+                return spooled -> {
+                    List<String> messages = combinedImportService.importCombinedCsv(spooled, programCode, defaultCredits);
+                    // Same as the synchronous endpoint: dashboards reflect the new curriculum immediately
+                    if (cacheManager != null && cacheManager.getCache("admin_api") != null) {
+                        cacheManager.getCache("admin_api").clear();
+                    }
+                    return messages;
+                };
+            default:
+                throw new IllegalArgumentException("Unknown import type: " + type);
+        }
+    }
+
+    // ---------- Chunked, resumable uploads ----------
+
+    // Starts an upload session; chunks are then appended with appendChunk and the import is queued by completeUpload
+    public UploadSession startUpload(String type, String fileName, boolean gzip, String programCode,
+                                     Double defaultCredits, boolean mergeMode, String requestedBy) {
+        importerFor(type, programCode, defaultCredits, mergeMode); // validates the type
+        if (TYPE_COMBINED.equals(type) && (programCode == null || programCode.isBlank())) {
+            throw new IllegalArgumentException("programCode is required for combined imports");
+        }
+        pruneAbandonedUploads();
+        Path path;
+        try {
+            path = newSpoolFile();
+        } catch (IOException ex) {
+            throw new IllegalStateException("Could not create spool file: " + ex.getMessage(), ex);
+        }
+        boolean compressed = gzip || (fileName != null && fileName.toLowerCase().endsWith(".gz"));
+        UploadSession session = new UploadSession(type, fileName, compressed, programCode, defaultCredits, mergeMode, requestedBy, path);
+        uploads.put(session.id, session);
+        log.info("Upload session {} ({}) started for {}{}", session.id, type, fileName, compressed ? " (gzip)" : "");
+        return session;
+    }
+
+    public UploadSession findUpload(String uploadId) {
+        return uploadId == null ? null : uploads.get(uploadId);
+    }
+
+    // Appends one chunk at the given offset and returns the new size. A retried chunk (offset below
+    // the current size) overwrites from that offset; a gap (offset above it) is rejected.
+    public long appendChunk(UploadSession session, long offset, InputStream body) throws IOException {
+        synchronized (session) {
+            if (session.completed) {
+                throw new IllegalStateException("Upload " + session.id + " is already complete");
+            }
+            try (FileChannel channel = FileChannel.open(session.path, StandardOpenOption.WRITE)) {
+                long size = channel.size();
+                if (offset < 0 || offset > size) {
+                    throw new UploadOffsetException(size);
+                }
+                if (offset < size) {
+                    channel.truncate(offset);
+                }
+                // Request body goes straight into the spool file channel, no intermediate heap buffer
+                ReadableByteChannel source = Channels.newChannel(body);
+                long position = offset;
+                long transferred;
+                while ((transferred = channel.transferFrom(source, position, TRANSFER_CHUNK_BYTES)) > 0) {
+                    position += transferred;
+                    if (position > maxUploadBytes) {
+                        channel.truncate(offset);
+                        throw new IllegalArgumentException("Upload exceeds the limit of " + maxUploadBytes + " bytes");
+                    }
+                }
+                session.receivedBytes = position;
+                session.updatedAt = new Date();
+                return position;
+            }
+        }
+    }
+
+    // Queues the import straight from the spool file (no second copy); gzip is decoded while reading
+    public ImportJob completeUpload(UploadSession session) {
+        synchronized (session) {
+            if (session.completed) {
+                throw new IllegalStateException("Upload " + session.id + " is already complete");
+            }
+            if (session.receivedBytes == 0) {
+                throw new IllegalArgumentException("No data uploaded.");
+            }
+            session.completed = true;
+        }
+        uploads.remove(session.id);
+        MultipartFile spooledFile = new SpooledMultipartFile(session.path, "file", session.fileName, "text/csv",
+                session.gzip ? maxDecompressedBytes : -1);
+        ImportJob job = enqueue(session.type, spooledFile, session.path, session.programCode, session.requestedBy,
+                importerFor(session.type, session.programCode, session.defaultCredits, session.mergeMode), null);
+        log.info("Upload session {} completed ({} bytes) as import job {}", session.id, session.receivedBytes, job.id);
+        return job;
+    }
+
+    public void abortUpload(UploadSession session) {
+        synchronized (session) {
+            session.completed = true;
+        }
+        uploads.remove(session.id);
+        deleteQuietly(session.path);
+    }
+
+    public ImportJob findJob(String jobId) {
+        if (jobId == null) return null;
+        synchronized (jobs) {
+            return jobs.get(jobId);
+        }
+    }
+
+    // Newest first
+    public List<ImportJob> listJobs() {
+        List<ImportJob> list;
+        synchronized (jobs) {
+            list = new ArrayList<>(jobs.values());
+        }
+        Collections.reverse(list);
+        return list;
+    }
+
+    // Sends the current state right away; finished jobs get a single "done" event
+    public SseEmitter subscribe(ImportJob job) {
+        SseEmitter emitter = new SseEmitter(SSE_TIMEOUT_MS);
+        try {
+            // Under the job lock so a concurrent finish() either sees this emitter or we see it finished
+            synchronized (job) {
+                if (job.isFinished()) {
+                    emitter.send(SseEmitter.event().name("done").data(job.toMap()));
+                    emitter.complete();
+                    return emitter;
+                }
+                job.emitters.add(emitter);
+            }
+            emitter.onCompletion(() -> job.emitters.remove(emitter));
+            emitter.onTimeout(() -> job.emitters.remove(emitter));
+            emitter.onError(e -> job.emitters.remove(emitter));
+            emitter.send(SseEmitter.event().name("progress").data(job.toMap()));
+        } catch (IOException ex) {
+            job.emitters.remove(emitter);
+            emitter.completeWithError(ex);
+        }
+        return emitter;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        importExecutor.shutdownNow();
+    }
+
+    private ImportJob submit(String type, MultipartFile file, String programCode, String requestedBy,
+                             Function<MultipartFile, List<String>> importer) {
+        if (file == null || file.isEmpty()) {
+            throw new IllegalArgumentException("No file uploaded.");
+        }
+        Path spooled;
+        try {
+            spooled = newSpoolFile();
+            file.transferTo(spooled);
+        } catch (IOException ex) {
+            throw new IllegalStateException("Could not spool upload to disk: " + ex.getMessage(), ex);
+        }
+        String name = file.getOriginalFilename();
+        boolean gzip = name != null && name.toLowerCase().endsWith(".gz");
+        MultipartFile spooledFile = new SpooledMultipartFile(spooled, "file", name, file.getContentType(), gzip ? maxDecompressedBytes : -1);
+        return enqueue(type, spooledFile, spooled, programCode, requestedBy, importer, null);
+    }
+
+    // Queues an import over a file that already sits on local disk (drop directory). The file is
+    // read in place and left where it is; onFinished runs on the worker once the import returns.
+    public ImportJob submitLocal(String type, MultipartFile localFile, String programCode, Double defaultCredits,
+                                 boolean mergeMode, String requestedBy, Consumer<ImportJob> onFinished) {
+        return enqueue(type, localFile, null, programCode, requestedBy,
+                importerFor(type, programCode, defaultCredits, mergeMode), onFinished);
+    }
+
+    // spooled (nullable) is deleted once the import has run
+    private ImportJob enqueue(String type, MultipartFile input, Path spooled, String programCode, String requestedBy,
+                              Function<MultipartFile, List<String>> importer, Consumer<ImportJob> onFinished) {
+        ImportJob job = new ImportJob(type, programCode, input.getOriginalFilename(), requestedBy);
+        synchronized (jobs) {
+            pruneFinished();
+            jobs.put(job.id, job);
+        }
+        try {
+            importExecutor.execute(() -> runJob(job, input, spooled, importer, onFinished));
+        } catch (RejectedExecutionException ex) {
+            synchronized (jobs) {
+                jobs.remove(job.id);
+            }
+            if (spooled != null) deleteQuietly(spooled);
+            throw new IllegalStateException("Import queue is full; try again shortly.");
+        }
+        log.info("Import job {} ({}) queued for {} ({} bytes on disk)", job.id, type, input.getOriginalFilename(), input.getSize());
+        return job;
+    }
+
+    private void runJob(ImportJob job, MultipartFile spooledFile, Path spooled,
+                        Function<MultipartFile, List<String>> importer, Consumer<ImportJob> onFinished) {
+        long t0 = System.currentTimeMillis();
+        job.status = STATUS_RUNNING;
+        job.stage("started");
+        ImportProgress.bind(job);
+        try {
+            List<String> messages = importer.apply(spooledFile);
+            String failure = failureOf(messages);
+            job.mainFinished(messages, failure);
+            if (failure != null) {
+                log.warn("Import job {} ({}) failed after {} ms: {}", job.id, job.type, (System.currentTimeMillis() - t0), failure);
+            } else {
+                log.info("Import job {} ({}) finished main phase in {} ms", job.id, job.type, (System.currentTimeMillis() - t0));
+            }
+        } catch (Exception ex) {
+            log.error("Import job {} ({}) failed: {}", job.id, job.type, ex.getMessage());
+            job.mainFinished(List.of(), ex.getMessage() != null ? ex.getMessage() : ex.getClass().getSimpleName());
+        } finally {
+            ImportProgress.unbind();
+            if (spooled != null) deleteQuietly(spooled);
+        }
+        if (onFinished != null) {
+            try {
+                onFinished.accept(job);
+            } catch (Exception ex) {
+                log.warn("Import job {} completion callback failed: {}", job.id, ex.getMessage());
+            }
+        }
+    }
+
+    // The importers report aborts and read/processing errors as messages rather than exceptions;
+    // the first such message is the job's error (null when the import went through)
+    public static String failureOf(List<String> messages) {
+        if (messages == null) return null;
+        for (String m : messages) {
+            if (m != null && (m.startsWith("Abort:") || m.startsWith("Error"))) return m;
+        }
+        return null;
+    }
+
+    // Results imports merge by default (only new/changed rows are written); mode=upsert rewrites every row
+    public static boolean isMergeMode(String mode) {
+        return mode == null || mode.isBlank() || !"upsert".equalsIgnoreCase(mode.trim());
+    }
+
+    // Decodes gzip and fails the read once more than maxBytes have come out
+    public static InputStream gunzip(InputStream in, long maxBytes) throws IOException {
+        try {
+            return new DecompressedLimitInputStream(new GZIPInputStream(in, 64 * 1024), maxBytes);
+        } catch (IOException ex) {
+            in.close();
+            throw ex;
+        }
+    }
+
+    // Fails the read once more than maxBytes have come out of an already-decoding stream (zip entries)
+    static InputStream limitDecompressed(InputStream in, long maxBytes) {
+        return new DecompressedLimitInputStream(in, maxBytes);
+    }
+
+    // import.spool-dir, or a directory under java.io.tmpdir when unset
+    static Path spoolDirectory(String configured) {
+        return (configured == null || configured.isBlank())
+                ? Paths.get(System.getProperty("java.io.tmpdir"), "exit-portal-imports")
+                : Paths.get(configured);
+    }
+
+    private Path spoolDirectory() {
+        return spoolDirectory(spoolDir);
+    }
+
+    private Path newSpoolFile() throws IOException {
+        Path dir = spoolDirectory();
+        Files.createDirectories(dir);
+        return Files.createTempFile(dir, "upload-", ".part");
+    }
+
+    // Upload sessions and queued jobs live in memory, so every spool file left from before a
+    // restart (or a crash) belongs to nothing and would otherwise stay on disk for good
+    @EventListener(ApplicationReadyEvent.class)
+    public void deleteOrphanedSpoolFiles() {
+        Path dir = spoolDirectory();
+        if (!Files.isDirectory(dir)) return;
+        int deleted = 0;
+        // .part: spooled uploads; .xlsx: workbook copies made by XlsxRowReader
+        try (DirectoryStream<Path> orphans = Files.newDirectoryStream(dir, "upload-*.{part,xlsx}")) {
+            for (Path p : orphans) {
+                if (Files.deleteIfExists(p)) deleted++;
+            }
+        } catch (IOException ex) {
+            log.warn("Could not clean spool directory {}: {}", dir, ex.getMessage());
+        }
+        if (deleted > 0) log.info("Deleted {} orphaned spool files from {}", deleted, dir);
+    }
+
+    private void pruneAbandonedUploads() {
+        long cutoff = System.currentTimeMillis() - ABANDONED_UPLOAD_MS;
+        for (UploadSession u : uploads.values()) {
+            if (u.updatedAt.getTime() < cutoff) {
+                log.info("Discarding abandoned upload session {} ({} bytes)", u.id, u.receivedBytes);
+                abortUpload(u);
+            }
+        }
+    }
+
+    private void pruneFinished() {
+        long cutoff = System.currentTimeMillis() - RETAIN_FINISHED_MS;
+        Iterator<ImportJob> it = jobs.values().iterator();
+        while (it.hasNext()) {
+            ImportJob j = it.next();
+            if (j.isFinished() && j.finishedAt != null && j.finishedAt.getTime() < cutoff) it.remove();
+        }
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ex) {
+            log.warn("Could not delete spooled upload {}: {}", path, ex.getMessage());
+        }
+    }
+
+    private static final class DecompressedLimitInputStream extends FilterInputStream {
+        private final long maxBytes;
+        private long total;
+
+        private DecompressedLimitInputStream(InputStream in, long maxBytes) {
+            super(in);
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) count(1);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) count(n);
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            if (skipped > 0) count(skipped);
+            return skipped;
+        }
+
+        private void count(long n) throws IOException {
+            total += n;
+            if (total > maxBytes) {
+                throw new IOException("Decompressed upload exceeds the limit of " + maxBytes + " bytes");
+            }
+        }
+    }
+
+    // Read-only MultipartFile view over a spooled upload so the import services run unchanged
+    private static final class SpooledMultipartFile implements MultipartFile {
+        private final Path path;
+        private final String name;
+        private final String originalFilename;
+        private final String contentType;
+        // Negative for plain uploads, otherwise the decompressed-size limit of a gzip upload
+        private final long maxDecompressedBytes;
+
+        private SpooledMultipartFile(Path path, String name, String originalFilename, String contentType, long maxDecompressedBytes) {
+            this.path = path;
+            this.name = name;
+            this.originalFilename = originalFilename;
+            this.contentType = contentType;
+            this.maxDecompressedBytes = maxDecompressedBytes;
+        }
+
+        @Override public String getName() { return name; }
+        @Override public String getOriginalFilename() { return originalFilename; }
+        @Override public String getContentType() { return contentType; }
+
+        @Override
+        public boolean isEmpty() {
+            return getSize() == 0;
+        }
+
+        // Size on disk (compressed size for gzip uploads)
+        @Override
+        public long getSize() {
+            try {
+                return Files.size(path);
+            } catch (IOException ex) {
+                return 0;
+            }
+        }
+
+        @Override
+        public byte[] getBytes() throws IOException {
+            try (InputStream in = getInputStream()) {
+                return in.readAllBytes();
+            }
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            InputStream in = Files.newInputStream(path);
+            return maxDecompressedBytes < 0 ? in : gunzip(in, maxDecompressedBytes);
+        }
+
+        @Override
+        public void transferTo(File dest) throws IOException {
+            try (InputStream in = getInputStream()) {
+                Files.copy(in, dest.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+    }
+}
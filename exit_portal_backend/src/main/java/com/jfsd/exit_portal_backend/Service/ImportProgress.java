@@ -0,0 +1,56 @@
+package com.jfsd.exit_portal_backend.Service;
+
+/**
+ * Thread-bound progress hook for import services. When an import runs as an ImportJobService job,
+ * the worker binds the job to its thread and the calls below update it (and its SSE subscribers);
+ * for plain synchronous uploads nothing is bound and every call is a no-op.
+ */
+public final class ImportProgress {
+
+    private static final ThreadLocal<ImportJobService.ImportJob> CURRENT = new ThreadLocal<>();
+
+    private ImportProgress() {}
+
+    static void bind(ImportJobService.ImportJob job) {
+        CURRENT.set(job);
+    }
+
+    static void unbind() {
+        CURRENT.remove();
+    }
+
+    public static void stage(String stage) {
+        ImportJobService.ImportJob job = CURRENT.get();
+        if (job != null) job.stage(stage);
+    }
+
+    public static void parsedRows(long rows) {
+        ImportJobService.ImportJob job = CURRENT.get();
+        if (job != null) job.parsedRows(rows);
+    }
+
+    public static void batchWritten(int done, int total) {
+        ImportJobService.ImportJob job = CURRENT.get();
+        if (job != null) job.batchWritten(done, total);
+    }
+
+    // Wraps work handed to another thread (e.g. the after-commit progress recompute) so it reports
+    // into the same job; the job completes only once such work has finished.
+    public static Runnable propagate(String stage, Runnable task) {
+        ImportJobService.ImportJob job = CURRENT.get();
+        if (job == null) return task;
+        job.backgroundQueued(stage);
+        return () -> {
+            CURRENT.set(job);
+            job.backgroundStarted(stage);
+            boolean ok = false;
+            try {
+                task.run();
+                ok = true;
+            } finally {
+                CURRENT.remove();
+                job.backgroundFinished(stage, ok);
+            }
+        };
+    }
+}
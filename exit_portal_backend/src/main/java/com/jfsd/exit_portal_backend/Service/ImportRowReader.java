@@ -0,0 +1,43 @@
+package com.jfsd.exit_portal_backend.Service;
+
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.function.Function;
+
+/**
+ * Rows of an import upload, handed to the importer one at a time: the header first, then each data
+ * row, null at the end. Workbooks deliver their cells straight from the sheet XML; CSV text is read
+ * line by line and split by the importer's own line parser.
+ */
+public interface ImportRowReader extends Closeable {
+
+    String[] nextRow() throws IOException;
+
+    // Workbooks are copied into spoolDir for random access and each of their entries may expand to
+    // at most maxWorkbookEntryBytes
+    static ImportRowReader open(MultipartFile file, Function<String, String[]> lineParser,
+                                Path spoolDir, long maxWorkbookEntryBytes) throws IOException {
+        if (XlsxRowReader.isXlsx(file)) {
+            return XlsxRowReader.open(file, spoolDir, maxWorkbookEntryBytes);
+        }
+        BufferedReader br = new BufferedReader(new InputStreamReader(file.getInputStream(), StandardCharsets.UTF_8));
+        return new ImportRowReader() {
+            @Override
+            public String[] nextRow() throws IOException {
+                String line = br.readLine();
+                return line == null ? null : lineParser.apply(line);
+            }
+
+            @Override
+            public void close() throws IOException {
+                br.close();
+            }
+        };
+    }
+}
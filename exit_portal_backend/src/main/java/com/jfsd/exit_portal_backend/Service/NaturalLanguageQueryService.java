@@ -4,6 +4,8 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.ColumnMapRowMapper;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
@@ -22,6 +24,12 @@ public class NaturalLanguageQueryService {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private DataVersionService dataVersionService;
+
+    @Autowired
+    private AnalyticsContextSnapshotService contextSnapshotService;
+
     @Value("${groq.api.key:}")
     private String groqApiKey;
 
@@ -32,8 +40,23 @@ public class NaturalLanguageQueryService {
     
     // Cache for common queries and patterns to reduce API calls
     private final Map<String, String> queryCache = new HashMap<>();
-    private final Map<String, Map<String, Object>> contextCache = new HashMap<>();
     private final Set<String> simplePatterns = new HashSet<>();
+
+    // Result rows for generated SQL, keyed by normalized SQL + data version. LRU bounded by the total
+    // number of cached rows (not entries, which may hold up to max-rows each); emptied when the data
+    // version moves. Guarded by itself.
+    private final LinkedHashMap<String, QueryResult> resultCache = new LinkedHashMap<>(64, 0.75f, true);
+    private long resultCacheRows = 0;
+    @Value("${analytics.query.cache-max-rows:50000}")
+    private long resultCacheMaxRows;
+
+    // Hard limits for any generated query: rows materialized, statement timeout, fetch size
+    @Value("${analytics.query.max-rows:5000}")
+    private int maxResultRows;
+    @Value("${analytics.query.timeout-seconds:15}")
+    private int queryTimeoutSeconds;
+    // Connector/J only streams row by row with this fetch size (any other value buffers the whole result)
+    private static final int QUERY_FETCH_SIZE = Integer.MIN_VALUE;
     
     // Rate limiting to prevent quota exhaustion
     private long lastApiCall = 0;
@@ -64,35 +87,55 @@ public class NaturalLanguageQueryService {
         Set<String> getCategoryTokens() { return categoryTokens; }
         Set<String> getYears() { return years; }
         Set<String> getSemesters() { return semesters; }
+    }
+
+    // Immutable, row-capped result of a generated query; shared between cache and responses
+    private static final class QueryResult {
+        private final List<Map<String, Object>> rows;
+        private final boolean truncated;
 
-        String toCacheSegments() {
-            return String.join("|",
-                String.join(",", new TreeSet<>(programTokens)),
-                String.join(",", new TreeSet<>(courseTokens)),
-                String.join(",", new TreeSet<>(categoryTokens)),
-                String.join(",", new TreeSet<>(years)),
-                String.join(",", new TreeSet<>(semesters))
-            );
+        private QueryResult(List<Map<String, Object>> rows, boolean truncated) {
+            this.rows = Collections.unmodifiableList(rows);
+            this.truncated = truncated;
         }
     }
 
+    // Template SQL chosen by the local intent router, with its bind parameters
+    private static final class LocalRoute {
+        private final String intent;
+        private final String sql;
+        private final Object[] params;
+
+        private LocalRoute(String intent, String sql, List<Object> params) {
+            this.intent = intent;
+            this.sql = sql;
+            this.params = params.toArray();
+        }
+    }
+
+    // Persisted "met" flag written by the progress recompute (indexed with program/category)
+    private static final String SCP_NOT_MET = "scp.met = 0";
+
+    // Intent cues for the local router, matched as whole words ("fail" must not hit "failsafe")
+    private static final Pattern COUNT_INTENT = Pattern.compile("^(how\\s+many|count|number\\s+of)\\b");
+    private static final Pattern PASS_RATE_INTENT = Pattern.compile("\\bpass(?:ing)?\\s*(?:rate|percentage|%)");
+    private static final Pattern HONORS_INTENT = Pattern.compile("\\bhono(?:u)?rs?\\b");
+    private static final Pattern ELIGIBLE_INTENT = Pattern.compile("\\b(?:eligible|eligibility|qualif(?:y|ies|ied|ication))\\b");
+    private static final Pattern FAILURE_INTENT = Pattern.compile("\\b(?:fail(?:s|ed|ing|ure|ures)?|backlogs?)\\b");
+    // "students with no failures" is the opposite question; leave it to the LLM
+    private static final Pattern NEGATED_FAILURE = Pattern.compile(
+            "\\b(?:no|not|never|without|zero)\\s+(?:any\\s+)?(?:fail(?:s|ed|ing|ure|ures)?|backlogs?)\\b");
+    private static final Pattern MISSING_INTENT = Pattern.compile(
+            "\\b(?:missing|not\\s+(?:yet\\s+)?(?:met|completed|satisfied)|incomplete|pending|haven'?t|have\\s+not|short\\s+(?:of|on|in))\\b");
+
     private static final String SCHEMA_CONTEXT = """
-        Database Schema (3NF normalized):
+        Database Schema (3NF normalized; live programs/courses/categories/requirements are listed in the data context):
         
         TABLE programs:
         - program_id (BIGINT, PRIMARY KEY)
         - code (VARCHAR(20), UNIQUE)
         - name (VARCHAR(100))
 
-        sample-data : 
-        program_id,code,name
-        1,BT-CS,"B Tech - CSE"
-        2,BT-AIDS,"B Tech - AIDS"
-        3,BT-EEE,"B Tech - EEE"
-        4,BT-ECE,"B Tech - ECE"
-        5,BT-MECH,"B Tech - MECH"
-        6,BT-CIVIL,"B Tech - CIVIL"
-
         
         TABLE students:
         - student_id (VARCHAR(64), PRIMARY KEY)
@@ -105,12 +148,6 @@ public class NaturalLanguageQueryService {
         - category_name (VARCHAR)
         - program_id (BIGINT, FOREIGN KEY -> programs.program_id)
 
-        sample-data : 
-        category_id,category_name,program_id
-        62,"Audit Courses (AUC)",2
-        47,"Basic Sciences (BSC)",2
-        48,"Engineering Sciences (ESC)",2
-
         
         TABLE courses:
         - course_id (INT, PRIMARY KEY)
@@ -118,12 +155,6 @@ public class NaturalLanguageQueryService {
         - course_title (VARCHAR)
         - course_credits (DOUBLE)
 
-        sample-data : 
-        course_id,course_code,course_credits,course_title
-        3001,22SDM3507M,3,"INTELLIGENT SOCIAL MEDIA MONITORING SYSTEMS"
-        3002,22IE4054R,6,"ENGINEERING CAPSTONE PROJECT - PHASE 2"
-        3003,22AD2001,3,"DATA DRIVEN ARTIFICIAL INTELLIGENT SYSTEMS"
-
         
         TABLE student_grades:
         - sno (BIGINT, PRIMARY KEY)
@@ -152,12 +183,6 @@ public class NaturalLanguageQueryService {
         - course_id (INT, FOREIGN KEY -> courses.course_id)
         - category_id (INT, FOREIGN KEY -> categories.category_id)
 
-        sample-data : 
-        id,category_id,course_id,program_id
-        3001,57,3001,2
-        3002,58,3002,2
-        3003,49,3003,2
-
         
         TABLE program_category_requirement:
         - id (BIGINT, PRIMARY KEY)
@@ -166,19 +191,6 @@ public class NaturalLanguageQueryService {
         - min_courses (INT)
         - min_credits (DOUBLE)
 
-        sample-data : 
-        id,min_courses,min_credits,category_id,program_id
-        264,11,18,44,2
-        265,1,2,45,2
-        266,1,2,46,2
-
-        
-        RELATIONSHIPS:
-        - Students belong to programs
-        - Categories are program-specific
-        - Courses are mapped to categories per program via program_course_category
-        - Each program-category has minimum requirements in program_category_requirement
-        - Student grades link students to courses with academic performance data
         
         RELATIONSHIPS:
         - Students belong to programs
@@ -223,21 +235,21 @@ public class NaturalLanguageQueryService {
     );
 
     public Map<String, Object> processNaturalLanguageQuery(String naturalLanguageQuery) throws Exception {
-        if (groqApiKey == null || groqApiKey.trim().isEmpty()) {
-            throw new IllegalStateException("GROQ API key not configured");
-        }
+        return processNaturalLanguageQuery(naturalLanguageQuery, null, null);
+    }
 
+    // page/size are optional; when absent the whole (row-capped) result is returned as a single page
+    public Map<String, Object> processNaturalLanguageQuery(String naturalLanguageQuery, Integer page, Integer size) throws Exception {
         String queryKey = naturalLanguageQuery.toLowerCase().trim();
         
         // OPTIMIZATION 1: Check cache first
         if (queryCache.containsKey(queryKey)) {
             String cachedSql = queryCache.get(queryKey);
             try {
-                List<Map<String, Object>> results = jdbcTemplate.queryForList(cachedSql);
+                QueryResult result = runBoundedQuery(cachedSql);
                 Map<String, Object> response = new HashMap<>();
                 response.put("type", "results");
-                response.put("results", results);
-                response.put("count", results.size());
+                putPagedResults(response, result, page, size);
                 response.put("sql", cachedSql);
                 response.put("cached", true);
                 return response;
@@ -251,12 +263,11 @@ public class NaturalLanguageQueryService {
         String simpleSql = handleSimplePatterns(naturalLanguageQuery);
         if (simpleSql != null) {
             try {
-                List<Map<String, Object>> results = jdbcTemplate.queryForList(simpleSql);
+                QueryResult result = runBoundedQuery(simpleSql);
                 queryCache.put(queryKey, simpleSql); // Cache for future use
                 Map<String, Object> response = new HashMap<>();
                 response.put("type", "results");
-                response.put("results", results);
-                response.put("count", results.size());
+                putPagedResults(response, result, page, size);
                 response.put("sql", simpleSql);
                 response.put("pattern_matched", true);
                 return response;
@@ -265,8 +276,31 @@ public class NaturalLanguageQueryService {
             }
         }
 
-        // OPTIMIZATION 3: Entity-aware ambiguity skipping
+        // OPTIMIZATION 3: Local intent router - parameterized templates for frequent question shapes
         Entities extracted = extractEntities(naturalLanguageQuery);
+        LocalRoute route = routeLocalIntent(naturalLanguageQuery, extracted);
+        if (route != null) {
+            try {
+                QueryResult result = runBoundedQuery(route.sql, route.params);
+                Map<String, Object> response = new HashMap<>();
+                response.put("query", naturalLanguageQuery);
+                response.put("type", "results");
+                putPagedResults(response, result, page, size);
+                response.put("sql", route.sql);
+                response.put("intent", route.intent);
+                response.put("pattern_matched", true);
+                return response;
+            } catch (Exception e) {
+                System.err.println("Local intent '" + route.intent + "' failed, falling back to AI: " + e.getMessage());
+            }
+        }
+
+        // Only the LLM path below needs the key; cached, simple and routed questions are answered without it
+        if (groqApiKey == null || groqApiKey.trim().isEmpty()) {
+            throw new IllegalStateException("GROQ API key not configured");
+        }
+
+        // OPTIMIZATION 4: Entity-aware ambiguity skipping
         boolean hasSpecificEntities = !extracted.getProgramTokens().isEmpty()
                 || !extracted.getCourseTokens().isEmpty()
                 || !extracted.getCategoryTokens().isEmpty()
@@ -283,8 +317,8 @@ public class NaturalLanguageQueryService {
             }
         }
 
-        // STEP 2: Intelligent Relevant Data Fetching (with caching)
-        Map<String, Object> relevantData = fetchRelevantDataIntelligentlyWithCache(naturalLanguageQuery);
+        // STEP 2: Intelligent Relevant Data Fetching (from the in-memory context snapshot)
+        Map<String, Object> relevantData = fetchRelevantDataIntelligently(naturalLanguageQuery);
         // attach extracted entities for downstream use (prompt context and caching)
         relevantData.putIfAbsent("entities", extracted);
         
@@ -293,7 +327,7 @@ public class NaturalLanguageQueryService {
         
         // STEP 4: Execute with iterative AI fix as fallback (bounded attempts)
         Map<String, Object> exec = executeQueryWithLimitedRetry(naturalLanguageQuery, sqlQuery, relevantData);
-        @SuppressWarnings("unchecked") List<Map<String, Object>> results = (List<Map<String, Object>>) exec.get("results");
+        QueryResult result = (QueryResult) exec.get("result");
         String finalSql = (String) exec.get("sql");
         boolean fixed = Boolean.TRUE.equals(exec.get("fixed"));
 
@@ -303,14 +337,124 @@ public class NaturalLanguageQueryService {
         Map<String, Object> response = new HashMap<>();
         response.put("query", naturalLanguageQuery);
         response.put("sql", finalSql);
-        response.put("results", results);
-        response.put("count", results.size());
+        putPagedResults(response, result, page, size);
         response.put("type", "results");
         if (fixed) response.put("ai_fix_applied", true);
         
         return response;
     }
 
+    // BOUNDED EXECUTION
+
+    // Runs a read-only query with a row cap, statement timeout and streaming fetch, serving repeats
+    // from the result cache until the next import/recompute bumps the data version.
+    private QueryResult runBoundedQuery(String sql, Object... params) {
+        long version = dataVersionService.current();
+        String cacheKey = normalizeSql(sql) + (params.length == 0 ? "" : "|" + Arrays.toString(params))
+                + "#v" + version;
+        QueryResult cached;
+        synchronized (resultCache) {
+            cached = resultCache.get(cacheKey);
+        }
+        if (cached != null) {
+            return cached;
+        }
+
+        final int cap = Math.max(1, maxResultRows);
+        QueryResult result = jdbcTemplate.query(con -> {
+            java.sql.PreparedStatement ps = con.prepareStatement(sql,
+                    java.sql.ResultSet.TYPE_FORWARD_ONLY, java.sql.ResultSet.CONCUR_READ_ONLY);
+            // cap + 1 lets us detect truncation without reading the rest of the result set
+            ps.setMaxRows(cap + 1);
+            ps.setQueryTimeout(Math.max(1, queryTimeoutSeconds));
+            ps.setFetchSize(QUERY_FETCH_SIZE);
+            for (int i = 0; i < params.length; i++) {
+                ps.setObject(i + 1, params[i]);
+            }
+            return ps;
+        }, rs -> {
+            ColumnMapRowMapper mapper = new ColumnMapRowMapper();
+            List<Map<String, Object>> rows = new ArrayList<>();
+            int rowNum = 0;
+            while (rs.next()) {
+                if (rowNum >= cap) {
+                    return new QueryResult(rows, true);
+                }
+                rows.add(mapper.mapRow(rs, rowNum++));
+            }
+            return new QueryResult(rows, false);
+        });
+        cacheResult(cacheKey, result, version);
+        return result;
+    }
+
+    private void cacheResult(String cacheKey, QueryResult result, long version) {
+        int rows = result.rows.size();
+        if (rows > resultCacheMaxRows) return;
+        synchronized (resultCache) {
+            // A bump during the query already purged this version; do not bring it back
+            if (version != dataVersionService.current()) return;
+            QueryResult previous = resultCache.put(cacheKey, result);
+            if (previous != null) resultCacheRows -= previous.rows.size();
+            resultCacheRows += rows;
+            Iterator<QueryResult> eldest = resultCache.values().iterator();
+            while (resultCacheRows > resultCacheMaxRows && eldest.hasNext()) {
+                resultCacheRows -= eldest.next().rows.size();
+                eldest.remove();
+            }
+        }
+    }
+
+    // Entries of older data versions can never be hit again
+    @EventListener
+    public void onDataChanged(DataVersionService.DataChangedEvent event) {
+        synchronized (resultCache) {
+            resultCache.clear();
+            resultCacheRows = 0;
+        }
+    }
+
+    private void putPagedResults(Map<String, Object> response, QueryResult result, Integer page, Integer size) {
+        int total = result.rows.size();
+        int pageSize = (size == null || size <= 0) ? Math.max(1, total) : Math.min(size, Math.max(1, maxResultRows));
+        int pageIndex = (page == null || page < 0) ? 0 : page;
+        int from = (int) Math.min(total, (long) pageIndex * pageSize);
+        int to = Math.min(total, from + pageSize);
+        response.put("results", result.rows.subList(from, to));
+        response.put("count", total);
+        response.put("page", pageIndex);
+        response.put("size", pageSize);
+        response.put("totalPages", total == 0 ? 0 : (total + pageSize - 1) / pageSize);
+        response.put("truncated", result.truncated);
+        if (result.truncated) response.put("rowLimit", maxResultRows);
+    }
+
+    // Lowercase and collapse whitespace outside of quotes, drop trailing semicolons
+    private String normalizeSql(String sql) {
+        String s = enforceLowercaseSQL(sql);
+        StringBuilder sb = new StringBuilder(s.length());
+        boolean inSingle = false, inDouble = false, inBacktick = false, pendingSpace = false;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            boolean quoted = inSingle || inDouble || inBacktick;
+            if (!quoted && Character.isWhitespace(c)) {
+                pendingSpace = sb.length() > 0;
+                continue;
+            }
+            if (pendingSpace) {
+                sb.append(' ');
+                pendingSpace = false;
+            }
+            if (c == '\'' && !inDouble && !inBacktick) inSingle = !inSingle;
+            else if (c == '"' && !inSingle && !inBacktick) inDouble = !inDouble;
+            else if (c == '`' && !inSingle && !inDouble) inBacktick = !inBacktick;
+            sb.append(c);
+        }
+        int end = sb.length();
+        while (end > 0 && sb.charAt(end - 1) == ';') end--;
+        return sb.substring(0, end).trim();
+    }
+
 
     // OPTIMIZATION METHODS
     
@@ -343,6 +487,133 @@ public class NaturalLanguageQueryService {
         return null; // No simple pattern matched
     }
     
+    // LOCAL INTENT ROUTER
+
+    // Classifies the question into one of the frequent shapes and fills the matching template from
+    // resolved entities. Returns null (-> LLM) for unknown shapes or when an entity is ambiguous.
+    private LocalRoute routeLocalIntent(String query, Entities ents) {
+        String q = query == null ? "" : query.toLowerCase().trim();
+        // Term filters are not templated; leave those to the LLM
+        if (!ents.getYears().isEmpty() || !ents.getSemesters().isEmpty()) return null;
+
+        Long programId = resolveProgramId(ents);
+        if (programId != null && programId < 0) return null;
+        String courseCode = resolveCourseCode(ents);
+        String categoryName = resolveCategoryName(ents);
+
+        boolean countOnly = COUNT_INTENT.matcher(q).find();
+        List<Object> params = new ArrayList<>();
+        String intent;
+        String sql;
+
+        if (PASS_RATE_INTENT.matcher(q).find() && courseCode != null) {
+            intent = "course_pass_rate";
+            sql = "select c.course_code, c.course_title, " +
+                  "sum(case when sg.promotion is not null and upper(sg.promotion) <> 'R' then 1 else 0 end) as graded, " +
+                  "sum(case when upper(sg.promotion) = 'P' then 1 else 0 end) as passed, " +
+                  "round(100.0 * sum(case when upper(sg.promotion) = 'P' then 1 else 0 end) / " +
+                  "nullif(sum(case when sg.promotion is not null and upper(sg.promotion) <> 'R' then 1 else 0 end), 0), 2) as pass_rate " +
+                  "from student_grades sg join courses c on c.course_id = sg.course_id " +
+                  "join students s on s.student_id = sg.university_id " +
+                  "where c.course_code = ?" + (programId != null ? " and s.program_id = ?" : "") + " " +
+                  "group by c.course_code, c.course_title";
+            params.add(courseCode);
+            if (programId != null) params.add(programId);
+            countOnly = false;
+        } else if (HONORS_INTENT.matcher(q).find() && ELIGIBLE_INTENT.matcher(q).find()) {
+            // honors_eligible is maintained by the progress recompute (see StudentCategoryProgressService)
+            intent = "honors_eligible";
+            sql = "select s.student_id, s.student_name, p.code as program_code " +
+                  "from student_completion_summary scs join students s on s.student_id = scs.university_id " +
+                  "join programs p on p.program_id = s.program_id " +
+                  "where scs.honors_eligible = 1" + (programId != null ? " and scs.program_id = ?" : "") + " " +
+                  "order by p.code, s.student_id";
+            if (programId != null) params.add(programId);
+        } else if (FAILURE_INTENT.matcher(q).find()) {
+            if (NEGATED_FAILURE.matcher(q).find()) return null;
+            intent = "students_with_failures";
+            if (courseCode != null) {
+                sql = "select sg.university_id, s.student_name, p.code as program_code, c.course_code, sg.grade, sg.academic_year, sg.semester " +
+                      "from student_grades sg join students s on s.student_id = sg.university_id " +
+                      "join programs p on p.program_id = s.program_id " +
+                      "join courses c on c.course_id = sg.course_id " +
+                      "where c.course_code = ? and upper(coalesce(sg.promotion,'')) = 'F'" +
+                      (programId != null ? " and s.program_id = ?" : "") + " " +
+                      "order by sg.university_id";
+                params.add(courseCode);
+            } else {
+                sql = "select s.student_id, s.student_name, p.code as program_code " +
+                      "from students s join programs p on p.program_id = s.program_id " +
+                      "where s.has_any_failure = 1" + (programId != null ? " and s.program_id = ?" : "") + " " +
+                      "order by p.code, s.student_id";
+            }
+            if (programId != null) params.add(programId);
+        } else if (categoryName != null && MISSING_INTENT.matcher(q).find()) {
+            intent = "students_missing_category";
+            sql = "select scp.university_id, scp.student_name, p.code as program_code, scp.category_name, " +
+                  "scp.completed_courses, scp.min_required_courses, scp.completed_credits, scp.min_required_credits " +
+                  "from student_category_progress scp join programs p on p.program_id = scp.program_id " +
+                  "where scp.category_name = ? and " + SCP_NOT_MET +
+                  (programId != null ? " and scp.program_id = ?" : "") + " " +
+                  "order by p.code, scp.university_id";
+            params.add(categoryName);
+            if (programId != null) params.add(programId);
+        } else {
+            return null;
+        }
+
+        if (countOnly) {
+            sql = "select count(*) as total from (" + sql + ") t";
+        }
+        return new LocalRoute(intent, sql, params);
+    }
+
+    // null = no program mentioned, -1 = mentioned but not uniquely resolvable
+    private Long resolveProgramId(Entities ents) {
+        if (ents.getProgramTokens().isEmpty()) return null;
+        Set<Long> matched = new HashSet<>();
+        for (Map<String, Object> row : contextSnapshotService.getSnapshot().getPrograms()) {
+            String code = String.valueOf(row.get("code")).toLowerCase();
+            String name = String.valueOf(row.get("name")).toLowerCase();
+            for (String token : ents.getProgramTokens()) {
+                if (code.equals(token) || code.endsWith("-" + token) || name.endsWith(" " + token)) {
+                    matched.add(((Number) row.get("program_id")).longValue());
+                }
+            }
+        }
+        return matched.size() == 1 ? matched.iterator().next() : -1L;
+    }
+
+    private String resolveCourseCode(Entities ents) {
+        Set<String> matched = new HashSet<>();
+        for (Map<String, Object> row : contextSnapshotService.getSnapshot().getCourses()) {
+            String code = String.valueOf(row.get("course_code"));
+            if (ents.getCourseTokens().contains(code.toLowerCase())) matched.add(code);
+        }
+        return matched.size() == 1 ? matched.iterator().next() : null;
+    }
+
+    private String resolveCategoryName(Entities ents) {
+        if (ents.getCategoryTokens().isEmpty()) return null;
+        Set<String> names = new HashSet<>();
+        for (List<Map<String, Object>> cats : contextSnapshotService.getSnapshot().getCategoriesByProgram().values()) {
+            for (Map<String, Object> row : cats) names.add(String.valueOf(row.get("category_name")));
+        }
+        Set<String> matched = new HashSet<>();
+        for (String name : names) {
+            String lower = name.toLowerCase();
+            StringBuilder initials = new StringBuilder();
+            for (String w : lower.split("[^a-z]+")) { if (!w.isEmpty()) initials.append(w.charAt(0)); }
+            for (String token : ents.getCategoryTokens()) {
+                if (lower.equals(token) || lower.contains("(" + token + ")") || initials.toString().equals(token)
+                        || (token.contains(" ") && lower.contains(token))) {
+                    matched.add(name);
+                }
+            }
+        }
+        return matched.size() == 1 ? matched.iterator().next() : null;
+    }
+    
     private boolean needsAmbiguityCheck(String query) {
         String queryLower = query.toLowerCase().trim();
         
@@ -359,30 +630,6 @@ public class NaturalLanguageQueryService {
                queryLower.contains("performance") || queryLower.contains("analysis");
     }
     
-    private Map<String, Object> fetchRelevantDataIntelligentlyWithCache(String naturalLanguageQuery) throws Exception {
-        String cacheKey = generateCacheKey(naturalLanguageQuery);
-        
-        // Check cache first
-        if (contextCache.containsKey(cacheKey)) {
-            return contextCache.get(cacheKey);
-        }
-        
-        // Use existing method but cache the result
-        Map<String, Object> relevantData = fetchRelevantDataIntelligently(naturalLanguageQuery);
-        contextCache.put(cacheKey, relevantData);
-        
-        return relevantData;
-    }
-    
-    private String generateCacheKey(String query) {
-        String q = query == null ? "" : query.toLowerCase().trim();
-        Entities ents = extractEntities(q);
-        String type = q.contains("student") ? "students" : q.contains("course") ? "courses" :
-                q.contains("program") ? "programs" : q.contains("grade") ? "grades" :
-                q.contains("category") ? "categories" : "general";
-        return type + "|" + ents.toCacheSegments();
-    }
-    
     private String generateOptimizedQueryDirectly(String naturalLanguageQuery, Map<String, Object> relevantData) throws Exception {
         // Build comprehensive context from ALL fetched relevant data
         StringBuilder contextInfo = new StringBuilder();
@@ -430,6 +677,18 @@ public class NaturalLanguageQueryService {
             }
         }
         
+        // Term distribution so year/semester literals match stored values
+        if (relevantData.containsKey("terms")) {
+            contextInfo.append("\nTERMS (academic_year, semester, rows):\n");
+            @SuppressWarnings("unchecked")
+            List<Map<String, Object>> terms = (List<Map<String, Object>>) relevantData.get("terms");
+            for (Map<String, Object> term : terms) {
+                contextInfo.append("- ").append(term.get("academic_year"))
+                          .append(", ").append(term.get("semester"))
+                          .append(", ").append(term.get("count")).append("\n");
+            }
+        }
+
         // Include sample grade records
         if (relevantData.containsKey("sampleGrades")) {
             contextInfo.append("\nSAMPLE GRADE RECORDS:\n");
@@ -583,10 +842,10 @@ public class NaturalLanguageQueryService {
                 throw new IllegalArgumentException("Query contains forbidden operations");
             }
             
-            // Execute the query
-            List<Map<String, Object>> rows = jdbcTemplate.queryForList(sqlQuery);
+            // Execute the query (row-capped, timed out, cached per data version)
+            QueryResult result = runBoundedQuery(sqlQuery);
             Map<String, Object> out = new HashMap<>();
-            out.put("results", rows);
+            out.put("result", result);
             out.put("sql", sqlQuery);
             out.put("fixed", false);
             return out;
@@ -596,9 +855,9 @@ public class NaturalLanguageQueryService {
             
             // Iterative fix with full context until a working query is returned (bounded attempts)
             String fixedQuery = tryFixQueryIteratively(originalQuery, sqlQuery, e.getMessage(), relevantData, 3);
-            List<Map<String, Object>> rows = jdbcTemplate.queryForList(fixedQuery);
+            QueryResult result = runBoundedQuery(fixedQuery);
             Map<String, Object> out = new HashMap<>();
-            out.put("results", rows);
+            out.put("result", result);
             out.put("sql", fixedQuery);
             out.put("fixed", true);
             return out;
@@ -720,8 +979,8 @@ public class NaturalLanguageQueryService {
                 if (!isQuerySafe(candidate)) {
                     throw new IllegalArgumentException("Fixed query contains forbidden operations");
                 }
-                // Try executing
-                jdbcTemplate.queryForList(candidate);
+                // Try executing (result stays cached for the caller's re-run)
+                runBoundedQuery(candidate);
                 return candidate; // success
             } catch (Exception execEx) {
                 lastEx = execEx;
@@ -779,7 +1038,7 @@ public class NaturalLanguageQueryService {
 
     // Removed unused: checkForClarification
 
-    // STEP 2: Intelligent Relevant Data Fetching
+    // STEP 2: Intelligent Relevant Data Fetching (served from the precomputed context snapshot)
     private Map<String, Object> fetchRelevantDataIntelligently(String naturalLanguageQuery) throws Exception {
         Map<String, Object> relevantData = new HashMap<>();
         String q = naturalLanguageQuery == null ? "" : naturalLanguageQuery.toLowerCase();
@@ -791,138 +1050,87 @@ public class NaturalLanguageQueryService {
         Set<String> semesters = ents.getSemesters();
 
         try {
+            AnalyticsContextSnapshotService.Snapshot snap = contextSnapshotService.getSnapshot();
+
             boolean needsPrograms = q.contains("program") || q.contains("student") || !programTokens.isEmpty();
             boolean needsCourses = q.contains("course") || q.contains("subject") || q.contains("class") || q.contains("grade") || !courseTokens.isEmpty();
             boolean needsGrades = q.contains("grade") || q.contains("gpa") || q.contains("score") || q.contains("promotion") || q.contains("result") || !years.isEmpty() || !semesters.isEmpty();
             boolean needsCategories = q.contains("category") || q.contains("elective") || q.contains("core") || !categoryTokens.isEmpty();
             boolean needsEligibility = q.contains("eligibility") || q.contains("eligible") || q.contains("graduate") || q.contains("graduation");
 
-            // Programs: filter by tokens if present, else sample
-            if (needsPrograms) {
-                List<Object> params = new ArrayList<>();
-                StringBuilder sql = new StringBuilder("SELECT program_id, code, name FROM programs ");
-                if (!programTokens.isEmpty()) {
-                    sql.append("WHERE ");
-                    List<String> ors = new ArrayList<>();
-                    for (String t : programTokens) {
-                        ors.add("(LOWER(code) LIKE ? OR LOWER(name) LIKE ?)");
-                        String like = "%" + t + "%";
-                        params.add(like);
-                        params.add(like);
-                    }
-                    sql.append(String.join(" OR ", ors));
+            // Programs matching tokens scope every per-program section below (all programs otherwise)
+            List<Map<String, Object>> matchedPrograms = new ArrayList<>();
+            for (Map<String, Object> p : snap.getPrograms()) {
+                if (programTokens.isEmpty() || containsAnyToken(programTokens, p.get("code"), p.get("name"))) {
+                    matchedPrograms.add(p);
                 }
-                sql.append(" ORDER BY code LIMIT 10");
-                List<Map<String, Object>> programs = params.isEmpty() ?
-                        jdbcTemplate.queryForList(sql.toString()) :
-                        jdbcTemplate.queryForList(sql.toString(), params.toArray());
-                relevantData.put("programs", programs);
+            }
+            List<Long> programScope = new ArrayList<>();
+            for (Map<String, Object> p : matchedPrograms) {
+                programScope.add(((Number) p.get("program_id")).longValue());
+            }
+
+            if (needsPrograms) {
+                relevantData.put("programs", matchedPrograms.subList(0, Math.min(10, matchedPrograms.size())));
             }
 
-            // Courses: filter by tokens; include lightweight enrollment stats; cap results
             if (needsCourses) {
-                List<Object> params = new ArrayList<>();
-                StringBuilder sql = new StringBuilder(
-                        "SELECT c.course_id, c.course_code, c.course_title, c.course_credits, " +
-                        "COUNT(DISTINCT sg.university_id) AS total_enrolled, " +
-                        "SUM(CASE WHEN sg.grade IS NOT NULL AND sg.grade != '' THEN 1 ELSE 0 END) AS graded_count, " +
-                        "SUM(CASE WHEN sg.promotion = 'R' THEN 1 ELSE 0 END) AS pending_results " +
-                        "FROM courses c LEFT JOIN student_grades sg ON c.course_id = sg.course_id ");
-                if (!courseTokens.isEmpty()) {
-                    sql.append("WHERE ");
-                    List<String> ors = new ArrayList<>();
-                    for (String t : courseTokens) {
-                        ors.add("(LOWER(c.course_code) LIKE ? OR LOWER(c.course_title) LIKE ?)");
-                        String like = "%" + t + "%";
-                        params.add(like);
-                        params.add(like);
+                List<Map<String, Object>> courses = new ArrayList<>();
+                for (Map<String, Object> c : snap.getCourses()) {
+                    if (courses.size() >= 30) break;
+                    if (courseTokens.isEmpty() || containsAnyToken(courseTokens, c.get("course_code"), c.get("course_title"))) {
+                        courses.add(c);
                     }
-                    sql.append(String.join(" OR ", ors));
                 }
-                sql.append(" GROUP BY c.course_id, c.course_code, c.course_title, c.course_credits ORDER BY c.course_code LIMIT 30");
-                List<Map<String, Object>> courses = params.isEmpty() ?
-                        jdbcTemplate.queryForList(sql.toString()) :
-                        jdbcTemplate.queryForList(sql.toString(), params.toArray());
                 relevantData.put("courses", courses);
             }
 
-            // Grades: patterns and samples filtered by years/semesters if present; small caps
             if (needsGrades) {
-                List<Map<String, Object>> gradePatterns = jdbcTemplate.queryForList(
-                        "SELECT grade, grade_point, promotion, COUNT(*) AS count FROM student_grades " +
-                                "GROUP BY grade, grade_point, promotion ORDER BY count DESC LIMIT 15");
-                relevantData.put("gradePatterns", gradePatterns);
-
-                List<Object> params = new ArrayList<>();
-                StringBuilder sql = new StringBuilder(
-                        "SELECT sg.university_id, c.course_code, c.course_title, sg.grade, sg.grade_point, sg.promotion, sg.academic_year " +
-                                "FROM student_grades sg JOIN courses c ON sg.course_id = c.course_id ");
-                List<String> where = new ArrayList<>();
-                if (!years.isEmpty()) {
-                    List<String> ors = new ArrayList<>();
-                    for (String y : years) { ors.add("LOWER(sg.academic_year) LIKE ?"); params.add("%" + y + "%"); }
-                    where.add("(" + String.join(" OR ", ors) + ")");
-                }
-                if (!semesters.isEmpty()) {
-                    List<String> ors = new ArrayList<>();
-                    for (String s : semesters) { ors.add("LOWER(sg.semester) LIKE ?"); params.add("%" + s + "%"); }
-                    where.add("(" + String.join(" OR ", ors) + ")");
+                relevantData.put("gradePatterns", snap.getGradePatterns());
+                relevantData.put("terms", snap.getTerms());
+                List<Map<String, Object>> sampleGrades = new ArrayList<>();
+                for (Map<String, Object> g : snap.getRecentGrades()) {
+                    if (sampleGrades.size() >= 15) break;
+                    if ((years.isEmpty() || containsAnyToken(years, g.get("academic_year")))
+                            && (semesters.isEmpty() || containsAnyToken(semesters, g.get("semester")))) {
+                        sampleGrades.add(g);
+                    }
                 }
-                if (!where.isEmpty()) sql.append("WHERE ").append(String.join(" AND ", where)).append(' ');
-                sql.append("ORDER BY sg.academic_year DESC, c.course_code LIMIT 15");
-                List<Map<String, Object>> sampleGrades = params.isEmpty() ?
-                        jdbcTemplate.queryForList(sql.toString()) :
-                        jdbcTemplate.queryForList(sql.toString(), params.toArray());
                 relevantData.put("sampleGrades", sampleGrades);
             }
 
-            // Categories: filter by tokens if present; else sample
             if (needsCategories) {
-                List<Object> params = new ArrayList<>();
-                StringBuilder sql = new StringBuilder(
-                        "SELECT cat.category_id, cat.category_name, cat.program_id, p.name AS program_name " +
-                                "FROM categories cat JOIN programs p ON cat.program_id = p.program_id ");
-                if (!categoryTokens.isEmpty()) {
-                    sql.append("WHERE ");
-                    List<String> ors = new ArrayList<>();
-                    for (String t : categoryTokens) {
-                        ors.add("LOWER(cat.category_name) LIKE ?");
-                        params.add("%" + t + "%");
+                List<Map<String, Object>> categories = new ArrayList<>();
+                for (Long pid : programScope) {
+                    for (Map<String, Object> cat : snap.getCategoriesByProgram().getOrDefault(pid, List.of())) {
+                        if (categories.size() >= 30) break;
+                        if (categoryTokens.isEmpty() || containsAnyToken(categoryTokens, cat.get("category_name"))) {
+                            categories.add(cat);
+                        }
                     }
-                    sql.append(String.join(" OR ", ors));
                 }
-                sql.append(" ORDER BY cat.program_id, cat.category_name LIMIT 30");
-                List<Map<String, Object>> categories = params.isEmpty() ?
-                        jdbcTemplate.queryForList(sql.toString()) :
-                        jdbcTemplate.queryForList(sql.toString(), params.toArray());
                 relevantData.put("categories", categories);
             }
 
             // Requirements and mapping counts to inform eligibility/category completion queries
             if (needsCategories || needsPrograms || needsEligibility) {
-                // Program category requirements summary
-                List<Map<String, Object>> requirements = jdbcTemplate.queryForList(
-                        "SELECT r.program_id, r.category_id, r.min_courses, r.min_credits, c.category_name " +
-                                "FROM program_category_requirement r JOIN categories c ON r.category_id = c.category_id " +
-                                "ORDER BY r.program_id, c.category_name LIMIT 50");
+                List<Map<String, Object>> requirements = new ArrayList<>();
+                List<Map<String, Object>> mappingCounts = new ArrayList<>();
+                for (Long pid : programScope) {
+                    for (Map<String, Object> r : snap.getRequirementsByProgram().getOrDefault(pid, List.of())) {
+                        if (requirements.size() >= 50) break;
+                        if (categoryTokens.isEmpty() || containsAnyToken(categoryTokens, r.get("category_name"))) {
+                            requirements.add(r);
+                        }
+                    }
+                    for (Map<String, Object> m : snap.getMappingCountsByProgram().getOrDefault(pid, List.of())) {
+                        if (mappingCounts.size() >= 50) break;
+                        mappingCounts.add(m);
+                    }
+                }
                 relevantData.put("requirements", requirements);
-
-                // Mapping counts per category to know available courses volume
-                List<Map<String, Object>> mappingCounts = jdbcTemplate.queryForList(
-                        "SELECT p.program_id, p.category_id, COUNT(*) AS mapped_courses " +
-                                "FROM program_course_category p GROUP BY p.program_id, p.category_id " +
-                                "ORDER BY p.program_id, p.category_id LIMIT 50");
                 relevantData.put("mappingCounts", mappingCounts);
-
-                // Very small sample of student_category_progress to show structure
-                try {
-                    List<Map<String, Object>> scpSamples = jdbcTemplate.queryForList(
-                            "SELECT university_id, program_id, category_id, completed_courses, completed_credits, is_completed " +
-                                    "FROM student_category_progress LIMIT 10");
-                    relevantData.put("categoryProgressSamples", scpSamples);
-                } catch (Exception ignored) {
-                    // table may not exist in some environments; ignore
-                }
+                relevantData.put("categoryProgressSamples", snap.getProgressSamples());
             }
 
         } catch (Exception e) {
@@ -934,6 +1142,17 @@ public class NaturalLanguageQueryService {
         return relevantData;
     }
 
+    private boolean containsAnyToken(Set<String> tokens, Object... values) {
+        for (Object v : values) {
+            if (v == null) continue;
+            String lower = v.toString().toLowerCase();
+            for (String t : tokens) {
+                if (lower.contains(t)) return true;
+            }
+        }
+        return false;
+    }
+
     // Removed unused: generateFinalQueryWithContext
 
     // STEP 4: Query Optimization
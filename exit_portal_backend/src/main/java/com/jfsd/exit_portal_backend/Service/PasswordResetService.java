@@ -7,6 +7,7 @@ import com.jfsd.exit_portal_backend.Repository.StudentRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Calendar;
 import java.util.UUID;
@@ -26,6 +27,7 @@ public class PasswordResetService {
     @Autowired
     private PasswordEncoder passwordEncoder;
 
+    @Transactional
     public void createPasswordResetTokenForUser(String universityId) {
         Student student = studentRepository.findByStudentId(universityId)
                 .orElseThrow(() -> new RuntimeException("User not found"));
@@ -40,7 +42,8 @@ public class PasswordResetService {
         myToken.updateToken(UUID.randomUUID().toString());
         tokenRepository.save(myToken);
 
-        emailService.sendPasswordResetEmail(student.getStudentId() + "@kluniversity.in", myToken.getToken());
+        // Queued with the token in one transaction; SMTP happens on the mail dispatcher, not the request thread
+        emailService.queuePasswordResetEmail(student.getStudentId() + "@kluniversity.in", myToken.getToken(), myToken.getExpiryDate());
     }
 
     public String validatePasswordResetToken(String token) {
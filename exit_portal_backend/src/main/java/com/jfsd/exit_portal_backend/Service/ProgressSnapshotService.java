@@ -0,0 +1,321 @@
+package com.jfsd.exit_portal_backend.Service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Read-optimized, per-program columnar copy of student_category_progress. Cells are stored in
+ * primitive arrays indexed by (student ordinal * categoryCount + category ordinal), alongside the
+ * program's students (with failure flag) and categories (with their compiled RequirementEvaluator).
+ * Built in the background after each data change and swapped in atomically, so dashboard,
+ * ranking, matrix and honors endpoints run as loops over arrays with no database round-trips.
+ * Readers never wait for a rebuild: until the new snapshot is in, they get the previous one
+ * (see isStale) and the admin_api entries computed from it are evicted once it is replaced.
+ */
+@Service
+public class ProgressSnapshotService {
+
+    private static final Logger log = LoggerFactory.getLogger(ProgressSnapshotService.class);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DataVersionService dataVersionService;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    private volatile Snapshot snapshot;
+    private final AtomicBoolean refreshScheduled = new AtomicBoolean(false);
+    // Set when a stale snapshot was handed out; its results may sit in admin_api until the rebuild lands
+    private final AtomicBoolean servedStale = new AtomicBoolean(false);
+
+    private final ExecutorService refresher = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "progress-snapshot-refresh");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public static final class Snapshot {
+        private final long version;
+        private final Map<Long, ProgramProgress> programs;
+
+        private Snapshot(long version, Map<Long, ProgramProgress> programs) {
+            this.version = version;
+            this.programs = programs;
+        }
+
+        public long getVersion() { return version; }
+        public ProgramProgress getProgram(Long programId) { return programId == null ? null : programs.get(programId); }
+        // Ordered by program id
+        public Collection<ProgramProgress> getPrograms() { return programs.values(); }
+    }
+
+    public static final class ProgramProgress {
+        private final long programId;
+        private final String code;
+        private final String name;
+        // Students of the program (students table), ordered by student id
+        private final String[] studentIds;
+        private final String[] studentNames;
+        private final boolean[] hasFailure;
+        // Categories of the program, ordered by category id
+        private final int[] categoryIds;
+        private final String[] categoryNames;
+        // Compiled program_category_requirement rules over the category ordinals
+        private final RequirementEvaluator evaluator;
+        // Dense cells, index = student * categoryCount + category
+        private final boolean[] present;
+        private final boolean[] met;
+        private final int[] completedCourses;
+        private final int[] minRequiredCourses;
+        private final double[] completedCredits;
+        private final double[] minRequiredCredits;
+
+        // Package-private for the benchmark, which fills the cell arrays directly
+        ProgramProgress(long programId, String code, String name,
+                                List<String> studentIds, List<String> studentNames, List<Boolean> hasFailure,
+                                List<Integer> categoryIds, List<String> categoryNames, List<Integer> requirementMinCourses,
+                                List<Double> requirementMinCredits, List<Double> honorsMinCredits) {
+            this.programId = programId;
+            this.code = code;
+            this.name = name;
+            int s = studentIds.size();
+            int c = categoryIds.size();
+            this.studentIds = studentIds.toArray(new String[0]);
+            this.studentNames = studentNames.toArray(new String[0]);
+            this.hasFailure = new boolean[s];
+            for (int i = 0; i < s; i++) this.hasFailure[i] = hasFailure.get(i);
+            this.categoryIds = new int[c];
+            int[] minCourses = new int[c];
+            double[] minCredits = new double[c];
+            double[] honorsMins = new double[c];
+            for (int j = 0; j < c; j++) {
+                this.categoryIds[j] = categoryIds.get(j);
+                Integer courses = requirementMinCourses.get(j);
+                Double regular = requirementMinCredits.get(j);
+                Double honors = honorsMinCredits.get(j);
+                minCourses[j] = courses == null ? 0 : courses;
+                minCredits[j] = regular == null ? Double.NaN : regular;
+                honorsMins[j] = honors == null ? Double.NaN : honors;
+            }
+            this.categoryNames = categoryNames.toArray(new String[0]);
+            this.evaluator = new RequirementEvaluator(programId, this.categoryIds, this.categoryNames,
+                    minCourses, minCredits, honorsMins);
+            int cells = s * c;
+            this.present = new boolean[cells];
+            this.met = new boolean[cells];
+            this.completedCourses = new int[cells];
+            this.minRequiredCourses = new int[cells];
+            this.completedCredits = new double[cells];
+            this.minRequiredCredits = new double[cells];
+        }
+
+        public long getProgramId() { return programId; }
+        public String getCode() { return code; }
+        public String getName() { return name; }
+        public int getStudentCount() { return studentIds.length; }
+        public int getCategoryCount() { return categoryIds.length; }
+        public String[] getStudentIds() { return studentIds; }
+        public String[] getStudentNames() { return studentNames; }
+        public boolean[] getHasFailure() { return hasFailure; }
+        public int[] getCategoryIds() { return categoryIds; }
+        public String[] getCategoryNames() { return categoryNames; }
+        public RequirementEvaluator getEvaluator() { return evaluator; }
+        public boolean[] getPresent() { return present; }
+        public boolean[] getMet() { return met; }
+        public int[] getCompletedCourses() { return completedCourses; }
+        public int[] getMinRequiredCourses() { return minRequiredCourses; }
+        public double[] getCompletedCredits() { return completedCredits; }
+        public double[] getMinRequiredCredits() { return minRequiredCredits; }
+    }
+
+    // Returns the latest built snapshot without waiting; a stale one schedules a rebuild. Only the
+    // very first call (nothing built yet) builds inline.
+    public Snapshot getSnapshot() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            return refresh();
+        }
+        if (current.version != dataVersionService.current()) {
+            servedStale.set(true);
+            scheduleRefresh();
+        }
+        return current;
+    }
+
+    // True while a newer data version exists than the one the snapshot was built from
+    public boolean isStale(Snapshot snap) {
+        return snap != null && snap.version != dataVersionService.current();
+    }
+
+    // Program from the held snapshot only if it is current; never triggers a rebuild
+    public ProgramProgress getCurrentProgram(Long programId) {
+        Snapshot current = snapshot;
+        if (current == null || current.version != dataVersionService.current()) {
+            return null;
+        }
+        return current.getProgram(programId);
+    }
+
+    @EventListener
+    public void onDataChanged(DataVersionService.DataChangedEvent event) {
+        scheduleRefresh();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refresher.shutdownNow();
+    }
+
+    // Coalesces: at most one rebuild queued, and it runs again if the version moved while it built
+    private void scheduleRefresh() {
+        if (!refreshScheduled.compareAndSet(false, true)) return;
+        refresher.execute(() -> {
+            refreshScheduled.set(false);
+            Snapshot built;
+            try {
+                built = refresh();
+            } catch (Exception ex) {
+                log.warn("Progress snapshot refresh failed: {}", ex.getMessage());
+                return;
+            }
+            if (built.version != dataVersionService.current()) {
+                scheduleRefresh();
+            } else if (servedStale.getAndSet(false)) {
+                evictAdminCache();
+            }
+        });
+    }
+
+    private void evictAdminCache() {
+        if (cacheManager != null && cacheManager.getCache("admin_api") != null) {
+            cacheManager.getCache("admin_api").clear();
+        }
+    }
+
+    public synchronized Snapshot refresh() {
+        long version = dataVersionService.current();
+        Snapshot current = snapshot;
+        if (current != null && current.version == version) {
+            return current;
+        }
+        long t0 = System.currentTimeMillis();
+
+        // Pass 1: dimensions (programs, students, categories) so cell arrays can be sized exactly
+        Map<Long, ProgramBuilder> builders = new TreeMap<>();
+        jdbcTemplate.query("SELECT program_id, code, name FROM programs", rs -> {
+            builders.put(rs.getLong("program_id"), new ProgramBuilder(rs.getString("code"), rs.getString("name")));
+        });
+        jdbcTemplate.query(
+                "SELECT student_id, student_name, program_id, has_any_failure FROM students\n" +
+                "WHERE program_id IS NOT NULL ORDER BY program_id, student_id",
+                rs -> {
+                    ProgramBuilder b = builders.get(rs.getLong("program_id"));
+                    if (b == null) return;
+                    b.studentIds.add(rs.getString("student_id"));
+                    b.studentNames.add(rs.getString("student_name"));
+                    b.hasFailure.add(rs.getBoolean("has_any_failure"));
+                });
+        jdbcTemplate.query(
+                "SELECT c.category_id, c.category_name, c.program_id, pcr.min_courses, pcr.min_credits, pcr.honors_min_credits\n" +
+                "FROM categories c\n" +
+                "LEFT JOIN program_category_requirement pcr ON pcr.program_id = c.program_id AND pcr.category_id = c.category_id\n" +
+                "WHERE c.program_id IS NOT NULL ORDER BY c.program_id, c.category_id",
+                rs -> {
+                    ProgramBuilder b = builders.get(rs.getLong("program_id"));
+                    if (b == null) return;
+                    b.categoryIds.add(rs.getInt("category_id"));
+                    b.categoryNames.add(rs.getString("category_name"));
+                    int minCourses = rs.getInt("min_courses");
+                    b.requirementMinCourses.add(rs.wasNull() ? null : minCourses);
+                    double minCredits = rs.getDouble("min_credits");
+                    b.requirementMinCredits.add(rs.wasNull() ? null : minCredits);
+                    double honorsMin = rs.getDouble("honors_min_credits");
+                    b.honorsMinCredits.add(rs.wasNull() ? null : honorsMin);
+                });
+
+        Map<Long, ProgramProgress> programs = new TreeMap<>();
+        Map<Long, Map<String, Integer>> studentOrdinals = new HashMap<>();
+        Map<Long, Map<Integer, Integer>> categoryOrdinals = new HashMap<>();
+        for (Map.Entry<Long, ProgramBuilder> e : builders.entrySet()) {
+            ProgramBuilder b = e.getValue();
+            programs.put(e.getKey(), new ProgramProgress(e.getKey(), b.code, b.name,
+                    b.studentIds, b.studentNames, b.hasFailure,
+                    b.categoryIds, b.categoryNames, b.requirementMinCourses, b.requirementMinCredits, b.honorsMinCredits));
+            Map<String, Integer> so = new HashMap<>(b.studentIds.size() * 2);
+            for (int i = 0; i < b.studentIds.size(); i++) so.put(b.studentIds.get(i), i);
+            Map<Integer, Integer> co = new HashMap<>();
+            for (int j = 0; j < b.categoryIds.size(); j++) co.put(b.categoryIds.get(j), j);
+            studentOrdinals.put(e.getKey(), so);
+            categoryOrdinals.put(e.getKey(), co);
+        }
+
+        // Pass 2: stream progress rows straight into the cell arrays
+        long[] cellCount = {0};
+        jdbcTemplate.query(
+                "SELECT program_id, university_id, category_id, completed_courses, min_required_courses,\n" +
+                "       completed_credits, min_required_credits, met\n" +
+                "FROM student_category_progress WHERE program_id IS NOT NULL AND category_id IS NOT NULL",
+                rs -> {
+                    long pid = rs.getLong("program_id");
+                    ProgramProgress p = programs.get(pid);
+                    if (p == null) return;
+                    Integer s = studentOrdinals.get(pid).get(rs.getString("university_id"));
+                    Integer c = categoryOrdinals.get(pid).get(rs.getInt("category_id"));
+                    if (s == null || c == null) return;
+                    int idx = s * p.categoryIds.length + c;
+                    p.present[idx] = true;
+                    p.met[idx] = rs.getBoolean("met");
+                    p.completedCourses[idx] = rs.getInt("completed_courses");
+                    p.minRequiredCourses[idx] = rs.getInt("min_required_courses");
+                    p.completedCredits[idx] = rs.getDouble("completed_credits");
+                    p.minRequiredCredits[idx] = rs.getDouble("min_required_credits");
+                    cellCount[0]++;
+                });
+
+        Snapshot built = new Snapshot(version, Collections.unmodifiableMap(programs));
+        snapshot = built;
+        log.info("Progress snapshot v{} built in {} ms ({} programs, {} students, {} cells)",
+                version, (System.currentTimeMillis() - t0), programs.size(),
+                programs.values().stream().mapToInt(ProgramProgress::getStudentCount).sum(),
+                cellCount[0]);
+        return built;
+    }
+
+    private static final class ProgramBuilder {
+        private final String code;
+        private final String name;
+        private final List<String> studentIds = new ArrayList<>();
+        private final List<String> studentNames = new ArrayList<>();
+        private final List<Boolean> hasFailure = new ArrayList<>();
+        private final List<Integer> categoryIds = new ArrayList<>();
+        private final List<String> categoryNames = new ArrayList<>();
+        private final List<Integer> requirementMinCourses = new ArrayList<>();
+        private final List<Double> requirementMinCredits = new ArrayList<>();
+        private final List<Double> honorsMinCredits = new ArrayList<>();
+
+        private ProgramBuilder(String code, String name) {
+            this.code = code;
+            this.name = name;
+        }
+    }
+}
@@ -0,0 +1,392 @@
+package com.jfsd.exit_portal_backend.Service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * "What-if" projection: every student's pending registrations (promotion 'R') are loaded once
+ * into per-program cell vectors next to the completed vectors of the progress snapshot, and
+ * "met / complete if all registered courses pass" is computed for the whole program in parallel
+ * (fork/join over student shards) with the program's RequirementEvaluator. The admin projected
+ * summaries, the projected category completion lists and the student progress view all read
+ * this one precomputed result. Rebuilt in the background whenever the data version changes;
+ * requests never trigger a rebuild (except the very first admin one). Meanwhile admin views get
+ * the previous projection, and the student view falls back to the student's own grades.
+ */
+@Service
+public class RegistrationProjectionService {
+
+    private static final Logger log = LoggerFactory.getLogger(RegistrationProjectionService.class);
+
+    // Students per fork/join leaf task
+    private static final int SHARD_SIZE = 256;
+
+    @Autowired
+    private ProgressSnapshotService progressSnapshotService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DataVersionService dataVersionService;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    private volatile Projection projection;
+    private final AtomicBoolean refreshScheduled = new AtomicBoolean(false);
+    // A previous projection was served to the (cached) admin views since the last rebuild
+    private final AtomicBoolean servedStale = new AtomicBoolean(false);
+
+    private final ExecutorService refresher = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "registration-projection-refresh");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private static final class Projection {
+        private final long version;
+        private final Map<Long, ProgramProjection> programs;
+        private final Map<String, ProgramProjection> programByStudent;
+
+        private Projection(long version, Map<Long, ProgramProjection> programs, Map<String, ProgramProjection> programByStudent) {
+            this.version = version;
+            this.programs = programs;
+            this.programByStudent = programByStudent;
+        }
+    }
+
+    public static final class ProgramProjection {
+        private final ProgressSnapshotService.ProgramProgress progress;
+        private final Map<String, Integer> studentOrdinals;
+        // Pending registrations per cell (index = student * categoryCount + category)
+        private final int[] pendingCourses;
+        private final double[] pendingCredits;
+        private final boolean[] projectedMet;
+        private final boolean[] projectedComplete;
+
+        private ProgramProjection(ProgressSnapshotService.ProgramProgress progress) {
+            this.progress = progress;
+            int cells = progress.getStudentCount() * progress.getCategoryCount();
+            this.pendingCourses = new int[cells];
+            this.pendingCredits = new double[cells];
+            this.projectedMet = new boolean[cells];
+            this.projectedComplete = new boolean[progress.getStudentCount()];
+            String[] ids = progress.getStudentIds();
+            this.studentOrdinals = new HashMap<>(ids.length * 2);
+            for (int s = 0; s < ids.length; s++) studentOrdinals.put(ids[s], s);
+        }
+
+        // Projected met: already met, or met once pending courses/credits are added to the completed ones
+        private void project(int fromStudent, int toStudent) {
+            RequirementEvaluator evaluator = progress.getEvaluator();
+            int categoryCount = progress.getCategoryCount();
+            boolean[] present = progress.getPresent();
+            boolean[] met = progress.getMet();
+            int[] completedCourses = progress.getCompletedCourses();
+            double[] completedCredits = progress.getCompletedCredits();
+            for (int s = fromStudent; s < toStudent; s++) {
+                int base = s * categoryCount;
+                for (int c = 0; c < categoryCount; c++) {
+                    int idx = base + c;
+                    projectedMet[idx] = present[idx] && (met[idx] || evaluator.meets(c,
+                            completedCourses[idx] + pendingCourses[idx], completedCredits[idx] + pendingCredits[idx]));
+                }
+                projectedComplete[s] = evaluator.isComplete(present, projectedMet, s);
+            }
+        }
+
+        public ProgressSnapshotService.ProgramProgress getProgress() { return progress; }
+        public int[] getPendingCourses() { return pendingCourses; }
+        public double[] getPendingCredits() { return pendingCredits; }
+        public boolean[] getProjectedMet() { return projectedMet; }
+        public boolean[] getProjectedComplete() { return projectedComplete; }
+
+        public long countProjectedComplete() {
+            long n = 0;
+            for (boolean b : projectedComplete) if (b) n++;
+            return n;
+        }
+    }
+
+    private static final class ProjectShard extends RecursiveAction {
+        private final ProgramProjection program;
+        private final int from;
+        private final int to;
+
+        private ProjectShard(ProgramProjection program, int from, int to) {
+            this.program = program;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SHARD_SIZE) {
+                program.project(from, to);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new ProjectShard(program, from, mid), new ProjectShard(program, mid, to));
+        }
+    }
+
+    // Per-category projected counts; same shape as the former aggregateByCategoryProjected rows
+    public static final class CategoryProjection {
+        private final String categoryName;
+        private long total;
+        private long metActual;
+        private long metProjected;
+
+        private CategoryProjection(String categoryName) {
+            this.categoryName = categoryName;
+        }
+
+        public String getCategoryName() { return categoryName; }
+        public long getTotal() { return total; }
+        public long getMetActual() { return metActual; }
+        public long getMetProjected() { return metProjected; }
+    }
+
+    // One student's pending registrations and projected state for a category
+    public static final class StudentCategoryProjection {
+        private final int pendingCourses;
+        private final double pendingCredits;
+        private final boolean projectedMet;
+
+        private StudentCategoryProjection(int pendingCourses, double pendingCredits, boolean projectedMet) {
+            this.pendingCourses = pendingCourses;
+            this.pendingCredits = pendingCredits;
+            this.projectedMet = projectedMet;
+        }
+
+        public int getPendingCourses() { return pendingCourses; }
+        public double getPendingCredits() { return pendingCredits; }
+        public boolean isProjectedMet() { return projectedMet; }
+    }
+
+    // Category summaries grouped by category name across the programs in scope
+    public List<CategoryProjection> summarizeCategories(Long programId) {
+        Map<String, CategoryProjection> byName = new LinkedHashMap<>();
+        for (ProgramProjection p : scope(programId)) {
+            ProgressSnapshotService.ProgramProgress pp = p.progress;
+            int categoryCount = pp.getCategoryCount();
+            String[] categoryNames = pp.getCategoryNames();
+            boolean[] present = pp.getPresent();
+            boolean[] met = pp.getMet();
+            CategoryProjection[] rows = new CategoryProjection[categoryCount];
+            for (int c = 0; c < categoryCount; c++) {
+                rows[c] = byName.computeIfAbsent(categoryNames[c], CategoryProjection::new);
+            }
+            for (int s = 0, base = 0; s < pp.getStudentCount(); s++, base += categoryCount) {
+                for (int c = 0; c < categoryCount; c++) {
+                    int idx = base + c;
+                    if (!present[idx]) continue;
+                    CategoryProjection row = rows[c];
+                    row.total++;
+                    if (met[idx]) row.metActual++;
+                    if (p.projectedMet[idx]) row.metProjected++;
+                }
+            }
+        }
+        List<CategoryProjection> out = new ArrayList<>();
+        for (CategoryProjection row : byName.values()) {
+            if (row.total > 0) out.add(row);
+        }
+        return out;
+    }
+
+    // Students who have not met the category yet but would once their registered courses pass
+    public Set<String> projectedOnlyStudentIds(Long programId, String categoryName) {
+        String key = normalize(categoryName);
+        if (key == null) return Collections.emptySet();
+        Set<String> out = new HashSet<>();
+        for (ProgramProjection p : scope(programId)) {
+            ProgressSnapshotService.ProgramProgress pp = p.progress;
+            int categoryCount = pp.getCategoryCount();
+            String[] categoryNames = pp.getCategoryNames();
+            String[] studentIds = pp.getStudentIds();
+            boolean[] met = pp.getMet();
+            for (int c = 0; c < categoryCount; c++) {
+                if (!key.equals(normalize(categoryNames[c]))) continue;
+                for (int s = 0, idx = c; s < studentIds.length; s++, idx += categoryCount) {
+                    if (p.projectedMet[idx] && !met[idx]) out.add(studentIds[s]);
+                }
+            }
+        }
+        return out;
+    }
+
+    // Per-category projection for one student keyed by trimmed, lower-cased category name; empty
+    // when the student has no program or the projection is not built for the current data version
+    // (the caller then derives pending registrations from the student's own grades and does not cache
+    // that response)
+    public Map<String, StudentCategoryProjection> forStudent(String universityId) {
+        if (universityId == null) return Collections.emptyMap();
+        Projection current = projection;
+        if (current == null || current.version != dataVersionService.current()) {
+            scheduleRefresh();
+            return Collections.emptyMap();
+        }
+        ProgramProjection p = current.programByStudent.get(universityId);
+        if (p == null) return Collections.emptyMap();
+        int s = p.studentOrdinals.get(universityId);
+        ProgressSnapshotService.ProgramProgress pp = p.progress;
+        int categoryCount = pp.getCategoryCount();
+        String[] categoryNames = pp.getCategoryNames();
+        Map<String, StudentCategoryProjection> out = new HashMap<>();
+        for (int c = 0; c < categoryCount; c++) {
+            String key = normalize(categoryNames[c]);
+            if (key == null) continue;
+            int idx = s * categoryCount + c;
+            out.putIfAbsent(key, new StudentCategoryProjection(p.pendingCourses[idx], p.pendingCredits[idx], p.projectedMet[idx]));
+        }
+        return out;
+    }
+
+    public ProgramProjection getProgram(Long programId) {
+        return programId == null ? null : getProjection().programs.get(programId);
+    }
+
+    private Collection<ProgramProjection> scope(Long programId) {
+        Projection current = getProjection();
+        if (programId == null) return current.programs.values();
+        ProgramProjection p = current.programs.get(programId);
+        return p == null ? Collections.emptyList() : List.of(p);
+    }
+
+    private static String normalize(String categoryName) {
+        if (categoryName == null) return null;
+        String trimmed = categoryName.trim();
+        return trimmed.isEmpty() ? null : trimmed.toLowerCase(Locale.ROOT);
+    }
+
+    @EventListener
+    public void onDataChanged(DataVersionService.DataChangedEvent event) {
+        scheduleRefresh();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refresher.shutdownNow();
+    }
+
+    // Coalesced like the progress snapshot refresh; the background thread may wait for that snapshot
+    private void scheduleRefresh() {
+        if (!refreshScheduled.compareAndSet(false, true)) return;
+        refresher.execute(() -> {
+            refreshScheduled.set(false);
+            Projection built;
+            try {
+                built = rebuild(progressSnapshotService.refresh());
+            } catch (Exception ex) {
+                log.warn("Registration projection refresh failed: {}", ex.getMessage());
+                return;
+            }
+            if (built.version != dataVersionService.current()) {
+                scheduleRefresh();
+            } else if (servedStale.getAndSet(false)) {
+                evictAdminCache();
+            }
+        });
+    }
+
+    private void evictAdminCache() {
+        if (cacheManager != null && cacheManager.getCache("admin_api") != null) {
+            cacheManager.getCache("admin_api").clear();
+        }
+    }
+
+    // Admin views: the latest built projection, never rebuilt inline once one exists
+    private Projection getProjection() {
+        Projection current = projection;
+        if (current == null) {
+            return rebuild(progressSnapshotService.getSnapshot());
+        }
+        if (current.version != dataVersionService.current()) {
+            servedStale.set(true);
+            scheduleRefresh();
+        }
+        return current;
+    }
+
+    private synchronized Projection rebuild(ProgressSnapshotService.Snapshot snap) {
+        Projection current = projection;
+        if (current != null && current.version == snap.getVersion()) {
+            return current;
+        }
+        long t0 = System.currentTimeMillis();
+        Map<Long, ProgramProjection> programs = new LinkedHashMap<>();
+        Map<String, ProgramProjection> programByStudent = new HashMap<>();
+        Map<Long, Map<Integer, Integer>> categoryOrdinals = new HashMap<>();
+        for (ProgressSnapshotService.ProgramProgress pp : snap.getPrograms()) {
+            ProgramProjection p = new ProgramProjection(pp);
+            programs.put(pp.getProgramId(), p);
+            for (String id : pp.getStudentIds()) programByStudent.put(id, p);
+            Map<Integer, Integer> co = new HashMap<>();
+            int[] categoryIds = pp.getCategoryIds();
+            for (int c = 0; c < categoryIds.length; c++) co.put(categoryIds[c], c);
+            categoryOrdinals.put(pp.getProgramId(), co);
+        }
+
+        // Pending vectors: registered courses mapped to a category of the student's own program
+        long[] pendingRows = {0};
+        jdbcTemplate.query(
+                "SELECT st.program_id, sg.university_id, pcc.category_id,\n" +
+                "       COUNT(*) AS pending_courses, SUM(co.course_credits) AS pending_credits\n" +
+                "FROM student_grades sg\n" +
+                "JOIN students st ON st.student_id = sg.university_id\n" +
+                "JOIN courses co ON co.course_id = sg.course_id\n" +
+                "JOIN program_course_category pcc ON pcc.course_id = co.course_id AND pcc.program_id = st.program_id\n" +
+                "WHERE sg.promotion = 'R'\n" +
+                "GROUP BY st.program_id, sg.university_id, pcc.category_id",
+                rs -> {
+                    long pid = rs.getLong("program_id");
+                    ProgramProjection p = programs.get(pid);
+                    if (p == null) return;
+                    Integer s = p.studentOrdinals.get(rs.getString("university_id"));
+                    Integer c = categoryOrdinals.get(pid).get(rs.getInt("category_id"));
+                    if (s == null || c == null) return;
+                    int idx = s * p.progress.getCategoryCount() + c;
+                    p.pendingCourses[idx] = rs.getInt("pending_courses");
+                    p.pendingCredits[idx] = rs.getDouble("pending_credits");
+                    pendingRows[0]++;
+                });
+        long tLoaded = System.currentTimeMillis();
+
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        for (ProgramProjection p : programs.values()) {
+            pool.invoke(new ProjectShard(p, 0, p.progress.getStudentCount()));
+        }
+
+        Projection built = new Projection(snap.getVersion(), Collections.unmodifiableMap(programs),
+                Collections.unmodifiableMap(programByStudent));
+        projection = built;
+        log.info("Registration projection v{} built in {} ms (load:{}ms, project:{}ms, {} programs, {} pending cells)",
+                built.version, (System.currentTimeMillis() - t0), (tLoaded - t0), (System.currentTimeMillis() - tLoaded),
+                programs.size(), pendingRows[0]);
+        return built;
+    }
+}
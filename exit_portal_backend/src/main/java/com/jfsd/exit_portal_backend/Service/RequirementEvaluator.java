@@ -0,0 +1,130 @@
+package com.jfsd.exit_portal_backend.Service;
+
+import java.util.Arrays;
+
+/**
+ * Compiled, immutable form of one program's category requirements (min courses, min credits,
+ * honors min credits) over category ordinals, categories ordered by id as in the
+ * ProgressSnapshotService cells. This is the single Java definition of "met", "complete" and
+ * "honors eligible"; the generated met column (SchemaMigrationService) and the honors CASE
+ * expressions in the progress recompute SQL mirror it.
+ * Obtain instances from RequirementEvaluatorService or ProgressSnapshotService.ProgramProgress.
+ */
+public final class RequirementEvaluator {
+
+    // Tolerance for credit sums compared against honors / credit thresholds
+    public static final double CREDIT_EPSILON = 1e-6;
+
+    private final long programId;
+    private final int[] categoryIds;
+    private final String[] categoryNames;
+    // 0 when there is no requirement row or no course minimum
+    private final int[] minCourses;
+    // NaN when there is no requirement row / honors threshold
+    private final double[] minCredits;
+    private final double[] honorsMinCredits;
+    // Ordinals with an honors threshold, so honors checks skip the rest
+    private final int[] honorsOrdinals;
+
+    // categoryIds must be ascending; all arrays are indexed by the same category ordinal
+    public RequirementEvaluator(long programId, int[] categoryIds, String[] categoryNames,
+                                int[] minCourses, double[] minCredits, double[] honorsMinCredits) {
+        int c = categoryIds.length;
+        if (categoryNames.length != c || minCourses.length != c || minCredits.length != c || honorsMinCredits.length != c) {
+            throw new IllegalArgumentException("Requirement arrays must all have " + c + " categories");
+        }
+        this.programId = programId;
+        this.categoryIds = categoryIds.clone();
+        this.categoryNames = categoryNames.clone();
+        this.minCourses = minCourses.clone();
+        this.minCredits = minCredits.clone();
+        this.honorsMinCredits = honorsMinCredits.clone();
+        int honorsCount = 0;
+        for (double h : honorsMinCredits) if (!Double.isNaN(h)) honorsCount++;
+        this.honorsOrdinals = new int[honorsCount];
+        for (int j = 0, k = 0; j < c; j++) {
+            if (!Double.isNaN(honorsMinCredits[j])) honorsOrdinals[k++] = j;
+        }
+    }
+
+    public long getProgramId() { return programId; }
+    public int getCategoryCount() { return categoryIds.length; }
+    public int[] getCategoryIds() { return categoryIds; }
+    public String[] getCategoryNames() { return categoryNames; }
+    public int[] getMinCourses() { return minCourses; }
+    public double[] getMinCredits() { return minCredits; }
+    public double[] getHonorsMinCredits() { return honorsMinCredits; }
+    public int[] getHonorsOrdinals() { return honorsOrdinals; }
+    public boolean hasHonors() { return honorsOrdinals.length > 0; }
+
+    // Category ordinal for a category id, or -1 when the category is not part of the program
+    public int ordinalOf(int categoryId) {
+        int idx = Arrays.binarySearch(categoryIds, categoryId);
+        return idx >= 0 ? idx : -1;
+    }
+
+    public static boolean covers(double completedCredits, double requiredCredits) {
+        return completedCredits + CREDIT_EPSILON >= requiredCredits;
+    }
+
+    // True when two credit thresholds are meaningfully different (both present)
+    public static boolean differs(Double a, Double b) {
+        if (a == null || b == null) return false;
+        return Math.abs(a - b) > CREDIT_EPSILON;
+    }
+
+    // Regular rule: every positive minimum is reached (missing minimums are always satisfied)
+    public boolean meets(int c, int completedCourses, double completedCredits) {
+        int courses = minCourses[c];
+        double credits = minCredits[c];
+        return (courses <= 0 || completedCourses >= courses) && (!(credits > 0) || completedCredits >= credits);
+    }
+
+    // Regular rule over a dense student x category block (index = s * categoryCount + c)
+    public void evaluate(int[] completedCourses, double[] completedCredits, int studentCount, boolean[] out) {
+        int categoryCount = categoryIds.length;
+        for (int s = 0, base = 0; s < studentCount; s++, base += categoryCount) {
+            for (int c = 0; c < categoryCount; c++) {
+                out[base + c] = meets(c, completedCourses[base + c], completedCredits[base + c]);
+            }
+        }
+    }
+
+    public boolean meetsHonors(int c, double completedCredits) {
+        double required = honorsMinCredits[c];
+        return !Double.isNaN(required) && covers(completedCredits, required);
+    }
+
+    // Honors rule: no failures and every honors threshold covered; categories without a progress
+    // row count as zero credits. A program without honors thresholds only needs no failures.
+    public boolean isHonorsEligible(boolean hasFailure, boolean[] present, double[] completedCredits, int s) {
+        if (hasFailure) return false;
+        int base = s * categoryIds.length;
+        for (int c : honorsOrdinals) {
+            int idx = base + c;
+            double credits = present[idx] ? completedCredits[idx] : 0.0;
+            if (!covers(credits, honorsMinCredits[c])) return false;
+        }
+        return true;
+    }
+
+    // Completion rule: at least one category row and every row met
+    public boolean isComplete(boolean[] present, boolean[] met, int s) {
+        int base = s * categoryIds.length;
+        boolean any = false;
+        for (int idx = base; idx < base + categoryIds.length; idx++) {
+            if (!present[idx]) continue;
+            if (!met[idx]) return false;
+            any = true;
+        }
+        return any;
+    }
+
+    public long countComplete(boolean[] present, boolean[] met, int studentCount) {
+        long completed = 0;
+        for (int s = 0; s < studentCount; s++) {
+            if (isComplete(present, met, s)) completed++;
+        }
+        return completed;
+    }
+}
@@ -0,0 +1,117 @@
+package com.jfsd.exit_portal_backend.Service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-program cache of compiled RequirementEvaluators for request paths that work on a single
+ * student (student report, honors status). Entries belong to one data version; any import,
+ * recompute or requirement edit bumps the version and the next lookup recompiles.
+ * Reuses the progress snapshot's evaluator when that snapshot is already current. Concurrent
+ * lookups of one program share a single compile, which runs outside the map's locks.
+ */
+@Service
+public class RequirementEvaluatorService {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DataVersionService dataVersionService;
+
+    @Autowired
+    private ProgressSnapshotService progressSnapshotService;
+
+    private volatile Generation generation = new Generation(-1);
+
+    private static final class Generation {
+        private final long version;
+        private final Map<Long, CompletableFuture<RequirementEvaluator>> evaluators = new ConcurrentHashMap<>();
+
+        private Generation(long version) {
+            this.version = version;
+        }
+    }
+
+    // Returns null when programId is null
+    public RequirementEvaluator forProgram(Long programId) {
+        if (programId == null) return null;
+        long version = dataVersionService.current();
+        Generation g = generation;
+        if (g.version != version) {
+            g = new Generation(version);
+            generation = g;
+        }
+        CompletableFuture<RequirementEvaluator> pending = g.evaluators.get(programId);
+        if (pending == null) {
+            CompletableFuture<RequirementEvaluator> mine = new CompletableFuture<>();
+            pending = g.evaluators.putIfAbsent(programId, mine);
+            if (pending == null) {
+                // This thread owns the compile; the JDBC query runs without holding a map bin lock
+                try {
+                    mine.complete(compile(programId));
+                } catch (RuntimeException ex) {
+                    g.evaluators.remove(programId, mine);
+                    mine.completeExceptionally(ex);
+                    throw ex;
+                }
+                pending = mine;
+            }
+        }
+        try {
+            return pending.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException re) throw re;
+            throw ex;
+        }
+    }
+
+    private RequirementEvaluator compile(Long programId) {
+        ProgressSnapshotService.ProgramProgress pp = progressSnapshotService.getCurrentProgram(programId);
+        if (pp != null) {
+            return pp.getEvaluator();
+        }
+        List<Integer> categoryIds = new ArrayList<>();
+        List<String> categoryNames = new ArrayList<>();
+        List<Integer> minCourses = new ArrayList<>();
+        List<Double> minCredits = new ArrayList<>();
+        List<Double> honorsMinCredits = new ArrayList<>();
+        jdbcTemplate.query(
+                "SELECT c.category_id, c.category_name, pcr.min_courses, pcr.min_credits, pcr.honors_min_credits\n" +
+                "FROM categories c\n" +
+                "LEFT JOIN program_category_requirement pcr ON pcr.program_id = c.program_id AND pcr.category_id = c.category_id\n" +
+                "WHERE c.program_id = ? ORDER BY c.category_id",
+                rs -> {
+                    categoryIds.add(rs.getInt("category_id"));
+                    categoryNames.add(rs.getString("category_name"));
+                    int courses = rs.getInt("min_courses");
+                    minCourses.add(rs.wasNull() ? 0 : courses);
+                    double credits = rs.getDouble("min_credits");
+                    minCredits.add(rs.wasNull() ? Double.NaN : credits);
+                    double honors = rs.getDouble("honors_min_credits");
+                    honorsMinCredits.add(rs.wasNull() ? Double.NaN : honors);
+                },
+                programId);
+
+        int c = categoryIds.size();
+        int[] ids = new int[c];
+        int[] courses = new int[c];
+        double[] credits = new double[c];
+        double[] honors = new double[c];
+        for (int j = 0; j < c; j++) {
+            ids[j] = categoryIds.get(j);
+            courses[j] = minCourses.get(j);
+            credits[j] = minCredits.get(j);
+            honors[j] = honorsMinCredits.get(j);
+        }
+        return new RequirementEvaluator(programId, ids, categoryNames.toArray(new String[0]), courses, credits, honors);
+    }
+}
@@ -0,0 +1,330 @@
+package com.jfsd.exit_portal_backend.Service;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Owns the DDL that Hibernate's ddl-auto does not: secondary indexes, the student_grades upsert
+ * key, the result_fingerprint and category progress met generated columns and the TEMP staging
+ * tables used by the importers.
+ *
+ * Numbered migrations run once, in order, before any importer bean is usable (they are recorded
+ * with a checksum in schema_migrations). The resulting indexes/columns are then verified with a
+ * single metadata pass and fingerprinted, so imports only read the flags below and never touch
+ * INFORMATION_SCHEMA or issue ALTER TABLE mid-request. New DDL goes in as a new migration number;
+ * applied migrations must not be edited.
+ */
+@Service
+@DependsOn("entityManagerFactory") // ddl-auto must have created the entity tables first
+public class SchemaMigrationService {
+
+    private static final Logger log = LoggerFactory.getLogger(SchemaMigrationService.class);
+
+    // MD5 over the Results-owned columns; NULL and '' hash differently. Used verbatim by both
+    // student_grades and tmp_results so the stored and staged fingerprints are comparable.
+    static final String RESULT_FINGERPRINT_EXPR =
+            "UNHEX(MD5(CONCAT_WS('|', IFNULL(grade, '\\0'), IFNULL(grade_point, '\\0'), " +
+            "IFNULL(promotion, '\\0'), IFNULL(category, '\\0'))))";
+
+    // student_category_progress.met, the SQL form of RequirementEvaluator.meets over the row's stored
+    // minimums and completed totals; a STORED generated column so the (program, category, met) indexes cover it
+    static final String CATEGORY_MET_EXPR =
+            "CASE WHEN (COALESCE(min_required_courses, 0) <= 0 OR COALESCE(completed_courses, 0) >= min_required_courses) " +
+            "AND (COALESCE(min_required_credits, 0) <= 0 OR COALESCE(completed_credits, 0) >= min_required_credits) " +
+            "THEN 1 ELSE 0 END";
+
+    // MySQL: ER_DUP_FIELDNAME / ER_DUP_KEYNAME - the object already exists (created before migrations were tracked)
+    private static final int ER_DUP_FIELDNAME = 1060;
+    private static final int ER_DUP_KEYNAME = 1061;
+    // ER_CANT_DROP_FIELD_OR_KEY - the object to drop is already gone (fresh schema)
+    private static final int ER_CANT_DROP_FIELD_OR_KEY = 1091;
+
+    private static final class Migration {
+        final int version;
+        final String description;
+        final List<String> statements;
+
+        Migration(int version, String description, String... statements) {
+            this.version = version;
+            this.description = description;
+            this.statements = List.of(statements);
+        }
+    }
+
+    private static final List<Migration> MIGRATIONS = List.of(
+            new Migration(1, "courses(course_code) lookup index",
+                    "ALTER TABLE courses ADD INDEX idx_courses_code (course_code)"),
+            new Migration(2, "program_course_category(course_id, program_id) join index",
+                    "ALTER TABLE program_course_category ADD INDEX idx_pcc_course_program (course_id, program_id)"),
+            new Migration(3, "student_category_progress(university_id) index",
+                    "ALTER TABLE student_category_progress ADD INDEX idx_scp_uid (university_id)"),
+            new Migration(4, "dedup student_grades and add unique (university_id, course_id) for upserts",
+                    "DELETE g FROM student_grades g JOIN (" +
+                    " SELECT university_id, course_id, MAX(sno) AS keep_sno" +
+                    " FROM student_grades GROUP BY university_id, course_id HAVING COUNT(*) > 1" +
+                    ") d ON g.university_id = d.university_id AND g.course_id = d.course_id WHERE g.sno <> d.keep_sno",
+                    "ALTER TABLE student_grades ADD UNIQUE KEY uq_student_grades_uid_course (university_id, course_id)"),
+            new Migration(5, "student_grades.result_fingerprint generated column",
+                    "ALTER TABLE student_grades ADD COLUMN result_fingerprint BINARY(16) AS (" + RESULT_FINGERPRINT_EXPR + ") STORED"),
+            // Rows written before the column existed defaulted to 0 (migration 8 later derives met instead)
+            new Migration(6, "backfill student_category_progress.met for rows written before the column",
+                    "UPDATE student_category_progress SET met = 1 " +
+                    "WHERE met = 0 " +
+                    "AND (COALESCE(min_required_courses, 0) <= 0 OR COALESCE(completed_courses, 0) >= min_required_courses) " +
+                    "AND (COALESCE(min_required_credits, 0) <= 0 OR COALESCE(completed_credits, 0) >= min_required_credits)"),
+            // ddl-auto never drops indexes; this one is a prefix of idx_scp_program_category_met
+            new Migration(7, "drop redundant student_category_progress(program_id, category_id) index",
+                    "ALTER TABLE student_category_progress DROP INDEX idx_scp_program_category"),
+            // ddl-auto creates met as a plain column; the indexes on it are rebuilt from the generated values
+            new Migration(8, "student_category_progress.met generated column",
+                    "ALTER TABLE student_category_progress MODIFY COLUMN met TINYINT(1) AS (" + CATEGORY_MET_EXPR + ") STORED")
+    );
+
+    // TEMP staging tables (per connection, so created per import rather than at startup)
+    private static final Map<String, List<String>> TEMP_TABLES = new HashMap<>();
+    static {
+        TEMP_TABLES.put("tmp_results", List.of(
+                "CREATE TEMPORARY TABLE tmp_results (" +
+                "university_id VARCHAR(64) NOT NULL, " +
+                "course_id INT NOT NULL, " +
+                "grade VARCHAR(255), " +
+                "grade_point DOUBLE, " +
+                "promotion VARCHAR(255), " +
+                "category VARCHAR(255), " +
+                "%s" + // result_fingerprint when available
+                "op TINYINT NOT NULL DEFAULT 0, " +
+                "PRIMARY KEY (university_id, course_id)) ENGINE=InnoDB"));
+        TEMP_TABLES.put("tmp_registrations", List.of(
+                "CREATE TEMPORARY TABLE tmp_registrations (" +
+                "university_id VARCHAR(64) NOT NULL, " +
+                "course_code VARCHAR(50) NOT NULL, " +
+                "academic_year VARCHAR(20), " +
+                "semester VARCHAR(10), " +
+                "PRIMARY KEY (university_id, course_code)) ENGINE=InnoDB",
+                // PK prefix is university_id, so the join to courses needs its own index
+                "CREATE INDEX idx_tmp_reg_course ON tmp_registrations(course_code)"));
+        TEMP_TABLES.put("tmp_reg_students", List.of(
+                "CREATE TEMPORARY TABLE tmp_reg_students (" +
+                "student_id VARCHAR(64) NOT NULL PRIMARY KEY, " +
+                "student_name VARCHAR(255) NOT NULL) ENGINE=InnoDB"));
+        TEMP_TABLES.put("tmp_curr_categories", List.of(
+                "CREATE TEMPORARY TABLE tmp_curr_categories (" +
+                "category_name VARCHAR(255) NOT NULL PRIMARY KEY, " +
+                "min_courses INT NOT NULL, " +
+                "min_credits DOUBLE NOT NULL, " +
+                "category_id INT, " +
+                "req_op TINYINT NOT NULL DEFAULT 0) ENGINE=InnoDB"));
+        TEMP_TABLES.put("tmp_curr_courses", List.of(
+                "CREATE TEMPORARY TABLE tmp_curr_courses (" +
+                "course_code VARCHAR(255) NOT NULL PRIMARY KEY, " +
+                "course_title VARCHAR(255) NOT NULL, " +
+                "course_credits DOUBLE NOT NULL, " +
+                "category_name VARCHAR(255) NOT NULL, " +
+                "course_id INT, " +
+                "category_id INT, " +
+                "op TINYINT NOT NULL DEFAULT 0, " +
+                "credits_changed TINYINT NOT NULL DEFAULT 0, " +
+                "map_op TINYINT NOT NULL DEFAULT 0) ENGINE=InnoDB"));
+        TEMP_TABLES.put("tmp_legacy_grades", List.of(
+                "CREATE TEMPORARY TABLE tmp_legacy_grades (" +
+                "university_id VARCHAR(64) NOT NULL, " +
+                "course_code VARCHAR(50) NOT NULL, " +
+                "grade VARCHAR(255), " +
+                "grade_point DOUBLE, " +
+                "promotion VARCHAR(255), " +
+                "academic_year VARCHAR(255), " +
+                "semester VARCHAR(255), " +
+                "category VARCHAR(255), " +
+                "PRIMARY KEY (university_id, course_code)) ENGINE=InnoDB",
+                "CREATE INDEX idx_tmp_legacy_course ON tmp_legacy_grades(course_code)"));
+        // PK for sql_require_primary_key safety; the second copy works around MySQL's
+        // "can't reopen table" for TEMP tables used twice in one statement
+        TEMP_TABLES.put("tmp_recalc_ids", List.of(
+                "CREATE TEMPORARY TABLE tmp_recalc_ids (university_id VARCHAR(64) NOT NULL PRIMARY KEY) ENGINE=InnoDB"));
+        TEMP_TABLES.put("tmp_recalc_ids2", List.of(
+                "CREATE TEMPORARY TABLE tmp_recalc_ids2 (university_id VARCHAR(64) NOT NULL PRIMARY KEY) ENGINE=InnoDB"));
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${schema.migrations.enabled:true}")
+    private boolean enabled;
+
+    // Verified once at startup; read by the importers instead of probing INFORMATION_SCHEMA
+    private volatile boolean uniqueUpsertKey;
+    private volatile boolean resultFingerprintColumn;
+    private volatile int schemaVersion;
+    private volatile String schemaFingerprint;
+
+    @PostConstruct
+    public void migrate() {
+        long t0 = System.currentTimeMillis();
+        if (enabled) {
+            try {
+                applyMigrations();
+            } catch (DataAccessException ex) {
+                log.error("Schema migrations could not run: {}", ex.getMessage());
+            }
+        } else {
+            log.info("Schema migrations disabled (schema.migrations.enabled=false); verifying only");
+        }
+        verify();
+        log.info("Schema at migration version {} (fingerprint {}), upsert key: {}, result fingerprint column: {}; took {} ms",
+                schemaVersion, schemaFingerprint, uniqueUpsertKey, resultFingerprintColumn, System.currentTimeMillis() - t0);
+    }
+
+    private void applyMigrations() {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS schema_migrations (" +
+                "version INT NOT NULL PRIMARY KEY, " +
+                "description VARCHAR(255) NOT NULL, " +
+                "checksum CHAR(64) NOT NULL, " +
+                "applied_at DATETIME NOT NULL, " +
+                "duration_ms BIGINT NOT NULL) ENGINE=InnoDB");
+        Map<Integer, String> applied = new HashMap<>();
+        jdbcTemplate.query("SELECT version, checksum FROM schema_migrations",
+                rs -> { applied.put(rs.getInt("version"), rs.getString("checksum")); });
+
+        for (Migration m : MIGRATIONS) {
+            String checksum = sha256(String.join(";\n", m.statements));
+            String recorded = applied.get(m.version);
+            if (recorded != null) {
+                if (!recorded.equals(checksum)) {
+                    log.warn("Schema migration {} ({}) was edited after it was applied; the database keeps the original",
+                            m.version, m.description);
+                }
+                continue;
+            }
+            long tStart = System.currentTimeMillis();
+            try {
+                for (String sql : m.statements) {
+                    try {
+                        jdbcTemplate.execute(sql);
+                    } catch (DataAccessException ex) {
+                        int code = mysqlErrorCode(ex);
+                        if (code == ER_CANT_DROP_FIELD_OR_KEY) {
+                            log.info("Schema migration {}: object already absent", m.version);
+                            continue;
+                        }
+                        if (code != ER_DUP_KEYNAME && code != ER_DUP_FIELDNAME) throw ex;
+                        log.info("Schema migration {}: object already present, adopting it", m.version);
+                    }
+                }
+            } catch (DataAccessException ex) {
+                // Later migrations may depend on this one; stop here and let verify() report what is missing
+                log.error("Schema migration {} ({}) failed, later migrations skipped: {}", m.version, m.description, ex.getMessage());
+                return;
+            }
+            long took = System.currentTimeMillis() - tStart;
+            jdbcTemplate.update("INSERT INTO schema_migrations (version, description, checksum, applied_at, duration_ms) VALUES (?, ?, ?, NOW(), ?)",
+                    m.version, m.description, checksum, took);
+            log.info("Applied schema migration {} ({}) in {} ms", m.version, m.description, took);
+        }
+    }
+
+    // One metadata pass over the owned tables: sets the feature flags and a fingerprint of the
+    // index/column layout so schema drift between deployments shows up in the startup log
+    private void verify() {
+        try {
+            Integer version = jdbcTemplate.queryForObject(
+                    "SELECT COALESCE(MAX(version), 0) FROM schema_migrations", Integer.class);
+            schemaVersion = version == null ? 0 : version;
+        } catch (DataAccessException ex) {
+            schemaVersion = 0;
+        }
+        try {
+            StringBuilder layout = new StringBuilder();
+            boolean[] found = new boolean[2];
+            jdbcTemplate.query(
+                    "SELECT TABLE_NAME, INDEX_NAME, NON_UNIQUE, SEQ_IN_INDEX, COLUMN_NAME FROM INFORMATION_SCHEMA.STATISTICS " +
+                    "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME IN ('student_grades', 'courses', 'program_course_category', 'student_category_progress') " +
+                    "ORDER BY TABLE_NAME, INDEX_NAME, SEQ_IN_INDEX",
+                    rs -> {
+                        String index = rs.getString("INDEX_NAME");
+                        layout.append(rs.getString("TABLE_NAME")).append('.').append(index).append('/')
+                                .append(rs.getInt("NON_UNIQUE")).append('/').append(rs.getInt("SEQ_IN_INDEX"))
+                                .append('/').append(rs.getString("COLUMN_NAME")).append('\n');
+                        if ("uq_student_grades_uid_course".equals(index) && rs.getInt("NON_UNIQUE") == 0) found[0] = true;
+                    });
+            jdbcTemplate.query(
+                    "SELECT TABLE_NAME, COLUMN_NAME, COLUMN_TYPE, EXTRA FROM INFORMATION_SCHEMA.COLUMNS " +
+                    "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME IN ('student_grades', 'courses', 'program_course_category', 'student_category_progress') " +
+                    "ORDER BY TABLE_NAME, ORDINAL_POSITION",
+                    rs -> {
+                        String column = rs.getString("COLUMN_NAME");
+                        layout.append(rs.getString("TABLE_NAME")).append(':').append(column).append('/')
+                                .append(rs.getString("COLUMN_TYPE")).append('/').append(rs.getString("EXTRA")).append('\n');
+                        if ("student_grades".equals(rs.getString("TABLE_NAME")) && "result_fingerprint".equals(column)) found[1] = true;
+                    });
+            uniqueUpsertKey = found[0];
+            resultFingerprintColumn = found[1];
+            schemaFingerprint = sha256(layout.toString()).substring(0, 16);
+            if (!uniqueUpsertKey) {
+                log.error("student_grades unique key (university_id, course_id) is missing; grade imports will be refused");
+            }
+        } catch (DataAccessException ex) {
+            log.error("Schema verification failed: {}", ex.getMessage());
+        }
+    }
+
+    // DROP + CREATE one of the registered TEMP staging tables on the current connection
+    public void createTempTable(String name) {
+        List<String> ddl = TEMP_TABLES.get(name);
+        if (ddl == null) throw new IllegalArgumentException("Unknown temp table: " + name);
+        jdbcTemplate.execute("DROP TEMPORARY TABLE IF EXISTS " + name);
+        String generated = resultFingerprintColumn
+                ? "result_fingerprint BINARY(16) AS (" + RESULT_FINGERPRINT_EXPR + ") STORED, "
+                : "";
+        for (String sql : ddl) {
+            jdbcTemplate.execute(sql.contains("%s") ? String.format(sql, generated) : sql);
+        }
+    }
+
+    public void dropTempTable(String name) {
+        if (!TEMP_TABLES.containsKey(name)) throw new IllegalArgumentException("Unknown temp table: " + name);
+        jdbcTemplate.execute("DROP TEMPORARY TABLE IF EXISTS " + name);
+    }
+
+    public boolean hasUniqueUpsertKey() { return uniqueUpsertKey; }
+    public boolean hasResultFingerprintColumn() { return resultFingerprintColumn; }
+
+    public Map<String, Object> status() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("version", schemaVersion);
+        m.put("latestVersion", MIGRATIONS.get(MIGRATIONS.size() - 1).version);
+        m.put("fingerprint", schemaFingerprint);
+        m.put("uniqueUpsertKey", uniqueUpsertKey);
+        m.put("resultFingerprintColumn", resultFingerprintColumn);
+        return m;
+    }
+
+    private static int mysqlErrorCode(DataAccessException ex) {
+        Throwable cause = ex.getMostSpecificCause();
+        return cause instanceof SQLException se ? se.getErrorCode() : -1;
+    }
+
+    private static String sha256(String text) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
@@ -3,9 +3,13 @@ package com.jfsd.exit_portal_backend.Service;
 
 import com.jfsd.exit_portal_backend.Model.*;
 import com.jfsd.exit_portal_backend.Repository.*;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.jdbc.core.JdbcTemplate;
@@ -15,6 +19,8 @@ import java.util.Map;
 import java.util.Set;
 import java.util.HashMap;
 import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -29,12 +35,24 @@ import com.jfsd.exit_portal_backend.dto.honors.StudentHonorsStatusDTO;
 public class StudentCategoryProgressService {
 
     private static final Logger log = LoggerFactory.getLogger(StudentCategoryProgressService.class);
+
+    // Startup backfill runs here; a daemon thread never holds up shutdown
+    private final ExecutorService backfillExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "progress-backfill");
+        t.setDaemon(true);
+        return t;
+    });
+
     @Autowired
     private StudentCategoryProgressRepository progressRepository;
     
     @Autowired
     private JdbcTemplate jdbcTemplate;
     @Autowired
+    private SchemaMigrationService schemaMigrationService;
+    @Autowired
+    private BulkWriteService bulkWriteService;
+    @Autowired
     private StudentGradeRepository studentGradeRepository;
     
     @Autowired
@@ -42,6 +60,18 @@ public class StudentCategoryProgressService {
 
     @Autowired
     private StudentRepository studentRepository;
+
+    @Autowired
+    private DataVersionService dataVersionService;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private RequirementEvaluatorService requirementEvaluatorService;
+
+    @Autowired
+    private RegistrationProjectionService registrationProjectionService;
     
     // categoriesRepository no longer needed after SQL rewrite
 
@@ -55,12 +85,9 @@ public class StudentCategoryProgressService {
         log.info("Recompute(SQL): start for {} students", universityIds.size());
 
         // Stage IDs into TEMP table with PK (sql_require_primary_key safety)
-        jdbcTemplate.execute("DROP TEMPORARY TABLE IF EXISTS tmp_recalc_ids");
-        jdbcTemplate.execute("CREATE TEMPORARY TABLE tmp_recalc_ids (" +
-                "university_id VARCHAR(64) NOT NULL PRIMARY KEY" +
-                ") ENGINE=InnoDB");
+        schemaMigrationService.createTempTable("tmp_recalc_ids");
         final String insIds = "INSERT INTO tmp_recalc_ids (university_id) VALUES (?)";
-        jdbcTemplate.batchUpdate(insIds, universityIds.stream().toList(), universityIds.size(), (ps, id) -> ps.setString(1, id));
+        bulkWriteService.write(insIds, universityIds.stream().toList(), (ps, id) -> ps.setString(1, id));
 
         // Phase 1: delete existing rows via JOIN (faster than large IN list)
         long tDelStart = System.currentTimeMillis();
@@ -69,11 +96,11 @@ public class StudentCategoryProgressService {
         log.info("Recompute(SQL): deleted existing progress for {} students in {} ms", universityIds.size(), (tDelEnd - tDelStart));
 
         // Phase 2: single INSERT ... SELECT using tmp ids in both outer and inner queries
+        // (met is a generated column over the inserted minimums and totals)
         long tInsStart = System.currentTimeMillis();
         // Workaround MySQL limitation: can't reopen the same temp table in a subquery.
         // Duplicate the id list into a second temp table for the inner aggregate.
-        jdbcTemplate.execute("DROP TEMPORARY TABLE IF EXISTS tmp_recalc_ids2");
-        jdbcTemplate.execute("CREATE TEMPORARY TABLE tmp_recalc_ids2 (university_id VARCHAR(64) NOT NULL PRIMARY KEY) ENGINE=InnoDB");
+        schemaMigrationService.createTempTable("tmp_recalc_ids2");
         jdbcTemplate.update("INSERT INTO tmp_recalc_ids2 (university_id) SELECT university_id FROM tmp_recalc_ids");
         String insertSql =
                 "INSERT INTO student_category_progress (\n" +
@@ -112,13 +139,113 @@ public class StudentCategoryProgressService {
         long tInsEnd = System.currentTimeMillis();
         log.info("Recompute(SQL): inserted progress rows in {} ms", (tInsEnd - tInsStart));
 
-        jdbcTemplate.execute("DROP TEMPORARY TABLE IF EXISTS tmp_recalc_ids");
-        jdbcTemplate.execute("DROP TEMPORARY TABLE IF EXISTS tmp_recalc_ids2");
+        // Phase 3: per-student completion summary from the freshly inserted rows
+        long tSumStart = System.currentTimeMillis();
+        jdbcTemplate.update(completionSummaryUpsertSql(
+                "JOIN tmp_recalc_ids t ON t.university_id = st.student_id\n",
+                "  JOIN tmp_recalc_ids2 t2 ON t2.university_id = scp.university_id\n"));
+        long tSumEnd = System.currentTimeMillis();
+
+        schemaMigrationService.dropTempTable("tmp_recalc_ids");
+        schemaMigrationService.dropTempTable("tmp_recalc_ids2");
 
         long tEnd = System.currentTimeMillis();
-        log.info("Recompute(SQL): completed for {} students in {} ms (delete:{}ms, insert:{}ms)",
-                universityIds.size(), (tEnd - tStart), (tDelEnd - tDelStart), (tInsEnd - tInsStart));
+        log.info("Recompute(SQL): completed for {} students in {} ms (delete:{}ms, insert:{}ms, summary:{}ms)",
+                universityIds.size(), (tEnd - tStart), (tDelEnd - tDelStart), (tInsEnd - tInsStart), (tSumEnd - tSumStart));
+
+        dataVersionService.bumpDerived("progress recompute");
+    }
 
+    // SQL form of RequirementEvaluator.isHonorsEligible: no failures and every honors requirement
+    // of the program covered by completed credits (a program without honors requirements only needs no failures)
+    private static final String HONORS_ELIGIBLE_SQL =
+            "CASE WHEN st.has_any_failure = 0 AND NOT EXISTS (\n" +
+            "    SELECT 1 FROM program_category_requirement pcr\n" +
+            "    LEFT JOIN student_category_progress hp ON hp.university_id = st.student_id AND hp.category_id = pcr.category_id\n" +
+            "    WHERE pcr.program_id = st.program_id AND pcr.honors_min_credits IS NOT NULL\n" +
+            "      AND COALESCE(hp.completed_credits, 0) + 0.000001 < pcr.honors_min_credits\n" +
+            "  ) THEN 1 ELSE 0 END";
+
+    // Rebuilds student_completion_summary rows; the joins restrict it to a staged id set (empty = all students)
+    private static String completionSummaryUpsertSql(String studentFilterJoin, String progressFilterJoin) {
+        return "INSERT INTO student_completion_summary (\n" +
+                "  university_id, program_id, category_count, unmet_categories, total_completed_credits,\n" +
+                "  has_any_failure, has_non_pass, honors_eligible, updated_at\n" +
+                ")\n" +
+                "SELECT\n" +
+                "  st.student_id,\n" +
+                "  st.program_id,\n" +
+                "  COALESCE(p.category_count, 0),\n" +
+                "  COALESCE(p.unmet_categories, 0),\n" +
+                "  COALESCE(p.total_completed_credits, 0),\n" +
+                "  st.has_any_failure,\n" +
+                "  CASE WHEN EXISTS (SELECT 1 FROM student_grades sg WHERE sg.university_id = st.student_id\n" +
+                "                    AND UPPER(COALESCE(sg.promotion,'NA')) <> 'P') THEN 1 ELSE 0 END,\n" +
+                "  " + HONORS_ELIGIBLE_SQL + ",\n" +
+                "  NOW()\n" +
+                "FROM students st\n" +
+                studentFilterJoin +
+                "LEFT JOIN (\n" +
+                "  SELECT scp.university_id,\n" +
+                "         COUNT(*) AS category_count,\n" +
+                "         SUM(CASE WHEN scp.met = 1 THEN 0 ELSE 1 END) AS unmet_categories,\n" +
+                "         SUM(COALESCE(scp.completed_credits,0)) AS total_completed_credits\n" +
+                "  FROM student_category_progress scp\n" +
+                progressFilterJoin +
+                "  GROUP BY scp.university_id\n" +
+                ") p ON p.university_id = st.student_id\n" +
+                "ON DUPLICATE KEY UPDATE program_id = VALUES(program_id), category_count = VALUES(category_count),\n" +
+                "  unmet_categories = VALUES(unmet_categories), total_completed_credits = VALUES(total_completed_credits),\n" +
+                "  has_any_failure = VALUES(has_any_failure), has_non_pass = VALUES(has_non_pass),\n" +
+                "  honors_eligible = VALUES(honors_eligible), updated_at = VALUES(updated_at)";
+    }
+
+    // Honors thresholds can change without a progress recompute; re-evaluate only the flag
+    @Transactional
+    public int refreshHonorsEligibility(Long programId) {
+        if (programId == null) return 0;
+        return jdbcTemplate.update(
+                "UPDATE student_completion_summary scs JOIN students st ON st.student_id = scs.university_id\n" +
+                "SET scs.honors_eligible = " + HONORS_ELIGIBLE_SQL + ", scs.updated_at = NOW()\n" +
+                "WHERE scs.program_id = ?",
+                programId);
+    }
+
+    // Build summaries once if the table is still empty, in the background so startup is not delayed.
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillCompletionSummary() {
+        backfillExecutor.execute(this::backfillCompletionSummaryIfEmpty);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        backfillExecutor.shutdownNow();
+    }
+
+    private void backfillCompletionSummaryIfEmpty() {
+        try {
+            Integer summaries = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM (SELECT 1 FROM student_completion_summary LIMIT 1) t", Integer.class);
+            Integer students = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM (SELECT 1 FROM students LIMIT 1) t", Integer.class);
+            if (summaries == null || summaries > 0 || students == null || students == 0) return;
+        } catch (Exception ex) {
+            log.warn("Completion summary backfill check failed: {}", ex.getMessage());
+            return;
+        }
+        try {
+            long t0 = System.currentTimeMillis();
+            int rows = jdbcTemplate.update(completionSummaryUpsertSql("", ""));
+            log.info("Completion summary backfill: {} rows in {} ms", rows, (System.currentTimeMillis() - t0));
+            evictAdminCache();
+            dataVersionService.bumpDerived("completion summary backfill");
+        } catch (Exception ex) {
+            log.error("Completion summary backfill failed: {}", ex.getMessage());
+        }
+    }
+
+    private void evictAdminCache() {
+        if (cacheManager != null && cacheManager.getCache("admin_api") != null) {
+            cacheManager.getCache("admin_api").clear();
+        }
     }
 
     @Transactional
@@ -165,12 +292,7 @@ public class StudentCategoryProgressService {
 
         boolean hasFailure = student.isHasAnyFailure();
         Program program = student.getProgram();
-        List<ProgramCategoryRequirement> honorsRequirements;
-        if (program != null && program.getProgramId() != null) {
-            honorsRequirements = programCategoryRequirementRepository.findHonorsRequirementsByProgramId(program.getProgramId());
-        } else {
-            honorsRequirements = java.util.Collections.emptyList();
-        }
+        RequirementEvaluator evaluator = program != null ? requirementEvaluatorService.forProgram(program.getProgramId()) : null;
 
         List<StudentCategoryProgress> progressRows = existingProgressRows;
         if (progressRows == null) {
@@ -182,16 +304,16 @@ public class StudentCategoryProgressService {
 
         List<HonorsRequirementStatusDTO> statuses = new ArrayList<>();
         boolean meetsHonorsCredits = true;
-        if (!honorsRequirements.isEmpty()) {
-            for (ProgramCategoryRequirement requirement : honorsRequirements) {
-                String categoryName = requirement.getCategory() != null ? requirement.getCategory().getCategoryName() : null;
+        if (evaluator != null) {
+            for (int c : evaluator.getHonorsOrdinals()) {
+                String categoryName = evaluator.getCategoryNames()[c];
                 if (categoryName == null || categoryName.isBlank()) {
                     continue;
                 }
-                double requiredCredits = requirement.getHonorsMinCredits() == null ? 0.0 : requirement.getHonorsMinCredits();
+                double requiredCredits = evaluator.getHonorsMinCredits()[c];
                 StudentCategoryProgress progress = progressByCategory.get(categoryName);
                 double completedCredits = (progress != null && progress.getCompletedCredits() != null) ? progress.getCompletedCredits() : 0.0;
-                boolean met = completedCredits + 1e-6 >= requiredCredits;
+                boolean met = evaluator.meetsHonors(c, completedCredits);
                 if (!met) {
                     meetsHonorsCredits = false;
                 }
@@ -315,7 +437,8 @@ public class StudentCategoryProgressService {
         List<StudentCategoryProgressRepository.IncompleteDetailProjection> incRows =
                 progressRepository.findIncompleteDetails(programId, categoryName);
         Map<String, IncompleteStudentDetailDTO> incompleteDetailsById = new HashMap<>();
-        Set<String> projectedIds = new java.util.HashSet<>();
+        // Projected met (registered courses assumed to pass) comes from the precomputed projection
+        Set<String> projectedIds = registrationProjectionService.projectedOnlyStudentIds(programId, categoryName);
         for (StudentCategoryProgressRepository.IncompleteDetailProjection d : incRows) {
             int minCourses = d.getMinRequiredCourses() == null ? 0 : d.getMinRequiredCourses();
             double minCredits = d.getMinRequiredCredits() == null ? 0.0 : d.getMinRequiredCredits();
@@ -330,12 +453,6 @@ public class StudentCategoryProgressService {
                     minCourses, minCredits, cCourses, cCredits, rCourses, rCredits, missingCourses, missingCredits
             );
             incompleteDetailsById.put(d.getUniversityId(), dto);
-
-            boolean coursesOk = (minCourses <= 0) || (cCourses + rCourses) >= minCourses;
-            boolean creditsOk = (minCredits <= 0.0) || (cCredits + rCredits) >= minCredits;
-            if (coursesOk && creditsOk) {
-                projectedIds.add(d.getUniversityId());
-            }
         }
 
         // Completed details (actual)
@@ -12,9 +12,10 @@ import com.jfsd.exit_portal_backend.Model.Program;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
 import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.transaction.support.TransactionSynchronization;
@@ -26,9 +27,7 @@ import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -50,35 +49,6 @@ public class StudentGradeBatchImportService {
         }
     }
 
-    // Performance helper: ensure helpful non-unique indexes exist (safe no-op if already present)
-    private void ensurePerformanceIndexes() {
-        try {
-            Integer hasCourses = jdbcTemplate.queryForObject(
-                    "SELECT COUNT(1) FROM INFORMATION_SCHEMA.STATISTICS WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME='courses' AND INDEX_NAME='idx_courses_code'",
-                    Integer.class);
-            if (hasCourses == null || hasCourses == 0) {
-                jdbcTemplate.execute("ALTER TABLE courses ADD INDEX idx_courses_code (course_code)");
-            }
-        } catch (Exception ignored) {}
-        try {
-            Integer hasPcc = jdbcTemplate.queryForObject(
-                    "SELECT COUNT(1) FROM INFORMATION_SCHEMA.STATISTICS WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME='program_course_category' AND INDEX_NAME='idx_pcc_course_program'",
-                    Integer.class);
-            if (hasPcc == null || hasPcc == 0) {
-                jdbcTemplate.execute("ALTER TABLE program_course_category ADD INDEX idx_pcc_course_program (course_id, program_id)");
-            }
-        } catch (Exception ignored) {}
-        try {
-            Integer hasScpUid = jdbcTemplate.queryForObject(
-                    "SELECT COUNT(1) FROM INFORMATION_SCHEMA.STATISTICS WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME='student_category_progress' AND INDEX_NAME='idx_scp_uid'",
-                    Integer.class);
-            if (hasScpUid == null || hasScpUid == 0) {
-                jdbcTemplate.execute("ALTER TABLE student_category_progress ADD INDEX idx_scp_uid (university_id)");
-            }
-        } catch (Exception ignored) {}
-        // student_grades unique index is managed by ensureUniqueIndexForUpsert(); avoid adding overlapping non-unique index
-    }
-
     // Fail-fast check for read-only DB to avoid long processing before erroring
     private boolean isDatabaseReadOnly() {
         try {
@@ -121,11 +91,48 @@ public class StudentGradeBatchImportService {
     @Autowired
     private ProgramRepository programRepository;
 
-    private static final int BATCH_SIZE = 20000; // larger batches for fewer DB round-trips
+    @Autowired
+    private DataVersionService dataVersionService;
+
+    @Autowired
+    private SchemaMigrationService schemaMigrationService;
+
+    @Autowired
+    private BulkWriteService bulkWriteService;
+
+    // Workbook uploads are copied next to the spooled uploads and read with the same expansion cap
+    @Value("${import.spool-dir:}")
+    private String spoolDir;
+
+    @Value("${import.upload.max-decompressed-bytes:4294967296}")
+    private long maxDecompressedBytes;
+
+
+    // Last successfully imported Results file per (program, mode) and the source data version right
+    // after it; an identical re-upload with no data change since is a no-op. The source version is
+    // not moved by the progress recompute the import itself triggers.
+    private static final class ImportedFile {
+        final String sha256;
+        final long version;
+        ImportedFile(String sha256, long version) {
+            this.sha256 = sha256;
+            this.version = version;
+        }
+    }
+
+    private final Map<String, ImportedFile> lastResultsImports = new ConcurrentHashMap<>();
 
     @Transactional
     public List<String> importResultsCsv(MultipartFile file, String programCode, Double defaultCredits) {
+        return importResultsCsv(file, programCode, defaultCredits, true);
+    }
+
+    // mergeMode (the default): stage grades in a TEMP table and write only new/changed rows, reporting exact
+    // created/updated/unchanged counts; otherwise every row is upserted and counted as created or updated
+    @Transactional
+    public List<String> importResultsCsv(MultipartFile file, String programCode, Double defaultCredits, boolean mergeMode) {
         List<String> messages = new ArrayList<>();
+        BulkWriteService.Throughput written = new BulkWriteService.Throughput();
         long _svcStartMs = System.currentTimeMillis();
         log.info("Results import started at epoch(ms)={}", _svcStartMs);
         if (file == null || file.isEmpty()) {
@@ -143,35 +150,33 @@ public class StudentGradeBatchImportService {
             log.info("Results import finished at epoch(ms)={} duration(s)={}", _svcEndMs, String.format(java.util.Locale.ROOT, "%.3f", _durSec));
             return messages;
         }
-        // Ensure helpful indexes for fast joins
-        ensurePerformanceIndexes();
+        // Upserts need the (university_id, course_id) unique key; without it they would insert duplicates
+        if (!schemaMigrationService.hasUniqueUpsertKey()) {
+            messages.add("Abort: student_grades unique key (university_id, course_id) is missing; schema migration failed at startup (see server log).");
+            return messages;
+        }
+        // Whole-file short-circuit: same bytes, same program and mode, nothing changed since the last import
+        final String fileKey = "results|" + (programCode == null ? "" : programCode.trim().toUpperCase()) + "|" + (mergeMode ? "merge" : "upsert");
+        final String fileHash = sha256Hex(file);
+        ImportedFile lastImport = lastResultsImports.get(fileKey);
+        if (fileHash != null && lastImport != null && lastImport.sha256.equals(fileHash)
+                && lastImport.version == dataVersionService.currentSource()) {
+            messages.add("Identical Results CSV was already imported and no data has changed since; nothing to do.");
+            long _svcEndMs = System.currentTimeMillis();
+            double _durSec = (_svcEndMs - _svcStartMs) / 1000.0;
+            log.info("Results import skipped (identical file {}) at epoch(ms)={} duration(s)={}", fileHash, _svcEndMs, String.format(java.util.Locale.ROOT, "%.3f", _durSec));
+            return messages;
+        }
 
-        try (BufferedReader br = new BufferedReader(new InputStreamReader(file.getInputStream()))) {
-            List<String> lines = br.lines().collect(Collectors.toList());
-            if (lines.size() <= 1) {
+        try (ImportRowReader rows = ImportRowReader.open(file, this::parseCsvLine, ImportJobService.spoolDirectory(spoolDir), maxDecompressedBytes)) {
+            ImportProgress.stage("parsing");
+            String[] header = rows.nextRow();
+            String[] firstRow = header == null ? null : rows.nextRow();
+            if (firstRow == null) {
                 messages.add("CSV is empty or header-only.");
                 return messages;
             }
 
-            // Detect duplicate student IDs (first column) in the CSV
-            Map<String, Integer> idFreq = new HashMap<>();
-            for (int i = 1; i < lines.size(); i++) {
-                String[] row = parseCsvLine(lines.get(i));
-                if (row.length > 0 && row[0] != null) {
-                    String id = row[0].trim();
-                    if (!id.isEmpty()) idFreq.merge(id, 1, Integer::sum);
-                }
-            }
-            List<String> duplicateIds = idFreq.entrySet().stream()
-                    .filter(e -> e.getValue() > 1)
-                    .map(e -> e.getKey() + " (" + e.getValue() + " times)")
-                    .collect(Collectors.toList());
-            if (!duplicateIds.isEmpty()) {
-                messages.add("Duplicate student IDs in Results CSV" + (programCode != null && !programCode.trim().isEmpty() ? " for program " + programCode.trim() : "") + ": " + String.join(", ", duplicateIds));
-            }
-
-            String headerLine = lines.get(0);
-            String[] header = parseCsvLine(headerLine);
             int obtainedIdx = indexOfHeader(header, "OBTAINED CREDITS");
             if (obtainedIdx < 0) {
                 messages.add("OBTAINED CREDITS column not found in header.");
@@ -221,6 +226,61 @@ public class StudentGradeBatchImportService {
             // Track unmapped course codes encountered in CSV (to be skipped)
             Set<String> skippedCourseCodes = new HashSet<>();
 
+            // One pass over the rows as they are read: only the per-cell updates, ids and names are
+            // kept, never the file's rows. Program-mismatch skipping needs the students loaded
+            // below, so it is applied to the collected updates afterwards.
+            Map<String, Integer> idFreq = new HashMap<>();
+            Map<String, String> nameById = new HashMap<>();
+            Set<String> failedIds = new HashSet<>();
+            List<ParsedUpdate> updates = new ArrayList<>();
+            int parsedRows = 0;
+            long tUpdatesStart = System.nanoTime();
+            for (String[] row = firstRow; row != null; row = rows.nextRow()) {
+                String universityId = row.length > 0 && row[0] != null ? row[0].trim() : "";
+                if (universityId.isEmpty()) continue;
+                idFreq.merge(universityId, 1, Integer::sum);
+                if (row.length > 1) {
+                    String name = row[1] == null ? "" : row[1].trim();
+                    if (!name.isEmpty()) nameById.put(universityId, name);
+                }
+                if (row.length <= firstCourseCol) continue;
+                parsedRows++;
+                if (parsedRows % 10000 == 0) {
+                    log.info("Parsed {} rows from Results CSV...", parsedRows);
+                    ImportProgress.parsedRows(parsedRows);
+                }
+                int rowLen = row.length;
+                for (int j = firstCourseCol; j < header.length && j < rowLen; j++) {
+                    String courseCode = headerCourseCodes[j];
+                    if (courseCode == null || courseCode.isEmpty()) continue;
+                    // If programCode is provided, only allow courses mapped to that program; skip others
+                    if (programCode != null && !programCode.trim().isEmpty()) {
+                        if (!categoryByCourse.containsKey(courseCode)) {
+                            skippedCourseCodes.add(courseCode);
+                            continue;
+                        }
+                    }
+                    String cell = row[j] == null ? "" : row[j].trim();
+                    if (cell.isEmpty()) continue;
+                    String gradeToken = extractGradeToken(cell);
+                    if (gradeToken.isEmpty()) continue;
+                    if (!failedIds.contains(universityId) && hasFailureAttempt(cell)) failedIds.add(universityId);
+                    updates.add(new ParsedUpdate(universityId, courseCode, gradeToken));
+                }
+            }
+            long tUpdatesMs = (System.nanoTime() - tUpdatesStart) / 1_000_000;
+            log.info("Generated {} course-grade updates from {} CSV rows in {} ms", updates.size(), parsedRows, tUpdatesMs);
+            ImportProgress.parsedRows(parsedRows);
+
+            // Detect duplicate student IDs (first column) in the CSV
+            List<String> duplicateIds = idFreq.entrySet().stream()
+                    .filter(e -> e.getValue() > 1)
+                    .map(e -> e.getKey() + " (" + e.getValue() + " times)")
+                    .collect(Collectors.toList());
+            if (!duplicateIds.isEmpty()) {
+                messages.add("Duplicate student IDs in Results CSV" + (programCode != null && !programCode.trim().isEmpty() ? " for program " + programCode.trim() : "") + ": " + String.join(", ", duplicateIds));
+            }
+
             // Resolve Program entity once (if provided)
             Program programEntity = null;
             if (programCode != null && !programCode.trim().isEmpty()) {
@@ -228,13 +288,7 @@ public class StudentGradeBatchImportService {
             }
             final Long programIdForOps = (programEntity != null ? programEntity.getProgramId() : null);
 
-            // Preload existing grades for all students in the CSV for faster upsert
-            Set<String> studentIds = lines.stream().skip(1)
-                    .parallel()
-                    .map(this::parseCsvLine)
-                    .filter(arr -> arr.length > 0 && arr[0] != null && !arr[0].trim().isEmpty())
-                    .map(arr -> arr[0].trim())
-                    .collect(Collectors.toSet());
+            Set<String> studentIds = idFreq.keySet();
             log.info("Unique students in Results CSV: {}", studentIds.size());
 
             // Upsert Students: create any missing (password = BCrypt(studentId)), leave existing unchanged, and set program only if NULL
@@ -242,16 +296,6 @@ public class StudentGradeBatchImportService {
                     .stream().collect(Collectors.toMap(Student::getStudentId, s -> s));
             final ConcurrentHashMap<String, Boolean> failureByStudent = new ConcurrentHashMap<>();
             existingStudents.forEach((sid, student) -> failureByStudent.put(sid, student.isHasAnyFailure()));
-            // build name map from CSV second column if present
-            Map<String, String> nameById = new HashMap<>();
-            for (int i = 1; i < lines.size(); i++) {
-                String[] row = parseCsvLine(lines.get(i));
-                if (row.length > 1) {
-                    String id = row[0] == null ? "" : row[0].trim();
-                    String name = row[1] == null ? "" : row[1].trim();
-                    if (!id.isEmpty() && !name.isEmpty()) nameById.put(id, name);
-                }
-            }
             // Create missing only - each student's password must be hash of their student ID for authentication
             Set<String> toCreateIds = new java.util.HashSet<>(studentIds);
             toCreateIds.removeAll(existingStudents.keySet());
@@ -265,19 +309,19 @@ public class StudentGradeBatchImportService {
                 log.info("Hashed passwords for {} new students in {} ms", toCreateIds.size(), tHashMs);
 
                 List<String> idList = new ArrayList<>(toCreateIds);
-                jdbcTemplate.batchUpdate(insStudents, idList, idList.size(), (ps, sid) -> {
+                written.add(bulkWriteService.write(insStudents, idList, (ps, sid) -> {
                     ps.setString(1, sid);
                     ps.setString(2, nameById.getOrDefault(sid, ""));
                     ps.setString(3, hashedPasswords.get(sid));  // Each student gets hash of their ID
                     ps.setObject(4, programIdForOps);
-                });
+                }));
                 log.info("Created {} new students via JDBC INSERT IGNORE", idList.size());
             }
             toCreateIds.forEach(id -> failureByStudent.putIfAbsent(id, Boolean.FALSE));
             // Set program_id only for students with NULL (existing semantics)
             if (programIdForOps != null && !studentIds.isEmpty()) {
-                final int CHUNK = 1000;
                 List<String> allIdsList = new ArrayList<>(studentIds);
+                final int CHUNK = bulkWriteService.inListChunkSize(allIdsList);
                 for (int i = 0; i < allIdsList.size(); i += CHUNK) {
                     List<String> chunk = allIdsList.subList(i, Math.min(i + CHUNK, allIdsList.size()));
                     String placeholders = String.join(", ", java.util.Collections.nCopies(chunk.size(), "?"));
@@ -306,51 +350,11 @@ public class StudentGradeBatchImportService {
                     messages.add("Skipped students due to program mismatch with " + programCode.trim() + ": " + String.join(", ", skipStudentIds));
                 }
             }
-            // Defer existing grade preload until after we know exactly which (uid, course) pairs are needed
-            // Parse rows in parallel to build updates, logging every 10 rows
-            AtomicInteger parsedRowCounter = new AtomicInteger(0);
-            long tUpdatesStart = System.nanoTime();
-            List<ParsedUpdate> updates = lines.subList(1, lines.size()).parallelStream()
-                    .map(this::parseCsvLine)
-                    .filter(row -> row.length > firstCourseCol && row[0] != null && !row[0].trim().isEmpty())
-                    .flatMap(row -> {
-                        int rowNum = parsedRowCounter.incrementAndGet();
-                        if (rowNum % 10000 == 0) {
-                            log.info("Parsed {} rows from Results CSV...", rowNum);
-                        }
-                        String universityId = row[0].trim();
-                        // Skip updates for students whose existing program differs from selected program
-                        if (programCode != null && !programCode.trim().isEmpty() && skipStudentIds.contains(universityId)) {
-                            return java.util.stream.Stream.<ParsedUpdate>empty();
-                        }
-                        // studentName is captured earlier into nameById map; no need to carry in ParsedUpdate
-                        List<ParsedUpdate> rowUpdates = new ArrayList<>();
-                        int rowLen = row.length;
-                        for (int j = firstCourseCol; j < header.length && j < rowLen; j++) {
-                            String courseCode = headerCourseCodes[j];
-                            if (courseCode == null || courseCode.isEmpty()) continue;
-                            // If programCode is provided, only allow courses mapped to that program; skip others
-                            if (programCode != null && !programCode.trim().isEmpty()) {
-                                if (!categoryByCourse.containsKey(courseCode)) {
-                                    skippedCourseCodes.add(courseCode);
-                                    continue;
-                                }
-                            }
-                            String cell = row[j] == null ? "" : row[j].trim();
-                            if (cell.isEmpty()) continue;
-                            String gradeToken = extractGradeToken(cell);
-                            if (gradeToken.isEmpty()) continue;
-                            if (!failureByStudent.getOrDefault(universityId, Boolean.FALSE)) {
-                                boolean hasFailAttempt = hasFailureAttempt(cell);
-                                if (hasFailAttempt) failureByStudent.put(universityId, Boolean.TRUE);
-                            }
-                            rowUpdates.add(new ParsedUpdate(universityId, courseCode, gradeToken));
-                        }
-                        return rowUpdates.stream();
-                    })
-                    .collect(Collectors.toList());
-            long tUpdatesMs = (System.nanoTime() - tUpdatesStart) / 1_000_000;
-            log.info("Generated {} course-grade updates from CSV in {} ms", updates.size(), tUpdatesMs);
+            if (!skipStudentIds.isEmpty()) {
+                updates.removeIf(u -> skipStudentIds.contains(u.universityId));
+                failedIds.removeAll(skipStudentIds);
+            }
+            failedIds.forEach(id -> failureByStudent.put(id, Boolean.TRUE));
 
             if (programCode != null && !programCode.trim().isEmpty() && !skippedCourseCodes.isEmpty()) {
                 messages.add("Skipped unmapped course codes for program " + programCode.trim() + ": " + String.join(", ", skippedCourseCodes));
@@ -430,48 +434,41 @@ public class StudentGradeBatchImportService {
 
             List<StudentGrade> toSave = new ArrayList<>(upsertsByKey.values());
             // Step 3: Native bulk upsert path using MySQL INSERT ... ON DUPLICATE KEY UPDATE
-            // Ensure unique index exists so upsert updates instead of duplicating
-            ensureUniqueIndexForUpsert();
+            // (relies on uq_student_grades_uid_course, checked up front)
 
             // Students were ensured above; no redundant ensure-exist needed here
 
-            // Bulk upsert in the current transaction (students are flushed above)
-            int totalBatches = (toSave.size() + BATCH_SIZE - 1) / BATCH_SIZE;
-            log.info("Starting native bulk upsert for {} rows in {} batches (batchSize={})", toSave.size(), totalBatches, BATCH_SIZE);
-            int batchIndex = 0;
-            int totalAffected = 0;
-            for (int start = 0; start < toSave.size(); start += BATCH_SIZE) {
-                int end = Math.min(start + BATCH_SIZE, toSave.size());
-                List<StudentGrade> batch = toSave.subList(start, end);
-                int currentBatch = batchIndex + 1;
-                long tBatchStart = System.nanoTime();
-                int[][] counts = bulkUpsertStudentGrades(batch);
-                long batchMs = (System.nanoTime() - tBatchStart) / 1_000_000;
-                int affected = 0;
-                for (int[] arr : counts) {
-                    for (int c : arr) affected += (c >= 0 ? c : 0);
-                }
-                totalAffected += affected;
-                batchIndex++;
-                log.info("Upserted batch {}/{} ({} rows) in {} ms; JDBC reported affected sum {}", currentBatch, totalBatches, batch.size(), batchMs, affected);
-            }
-            log.info("Finished native bulk upsert. Total rows processed: {}, JDBC affected sum: {}", toSave.size(), totalAffected);
+            // Students whose grades were written; in merge mode only those with new/changed rows
+            Set<String> changedStudentIds = affectedStudentIds;
+            boolean dataChanged = true;
+            ImportProgress.stage(mergeMode ? "merging" : "writing");
+            if (mergeMode) {
+                changedStudentIds = new HashSet<>();
+                int[] mergeCounts = mergeStudentGradesViaStaging(toSave, changedStudentIds, written);
+                dataChanged = mergeCounts[0] + mergeCounts[1] > 0;
+                messages.add("Results CSV processed (merge). Created: " + mergeCounts[0] + ", Updated: " + mergeCounts[1] + ", Unchanged: " + mergeCounts[2]);
+            } else {
+                // mode=upsert: every row is written in the current transaction (students are flushed above)
+                // and every student is recomputed; no result_fingerprint classification
+                written.add(bulkWriteService.write(GRADE_UPSERT_SQL, toSave, GRADE_UPSERT_SETTER));
 
-            messages.add("Results CSV processed. Created: " + createdKeys.size() + ", Updated: " + updatedKeys.size());
+                messages.add("Results CSV processed. Created: " + createdKeys.size() + ", Updated: " + updatedKeys.size());
+            }
             messages.add("Note: year/semester will be set after registrations upload.");
 
+            int failureFlagsSet = 0;
             if (!failureByStudent.isEmpty()) {
                 List<String> toUpdateFailure = failureByStudent.entrySet().stream()
                         .filter(Map.Entry::getValue)
                         .map(Map.Entry::getKey)
                         .collect(Collectors.toList());
                 if (!toUpdateFailure.isEmpty()) {
-                    final int chunkSize = 1000;
+                    final int chunkSize = bulkWriteService.inListChunkSize(toUpdateFailure);
                     for (int i = 0; i < toUpdateFailure.size(); i += chunkSize) {
                         List<String> chunk = toUpdateFailure.subList(i, Math.min(i + chunkSize, toUpdateFailure.size()));
                         String placeholders = String.join(", ", java.util.Collections.nCopies(chunk.size(), "?"));
                         String sql = "UPDATE students SET has_any_failure = 1 WHERE has_any_failure = 0 AND student_id IN (" + placeholders + ")";
-                        jdbcTemplate.update(con -> {
+                        failureFlagsSet += jdbcTemplate.update(con -> {
                             java.sql.PreparedStatement ps = con.prepareStatement(sql);
                             int idx = 1;
                             for (String sid : chunk) ps.setString(idx++, sid);
@@ -481,13 +478,18 @@ public class StudentGradeBatchImportService {
                 }
             }
 
+            // A merge that wrote nothing (same file re-uploaded) leaves caches and snapshots valid
+            if (dataChanged || failureFlagsSet > 0) {
+                dataVersionService.bump("results import");
+            }
+
             // Recompute category progress AFTER COMMIT to ensure Step 1 changes are visible
-            Set<String> recomputeIds = new HashSet<>(affectedStudentIds);
+            Set<String> recomputeIds = new HashSet<>(changedStudentIds);
             if (!recomputeIds.isEmpty()) {
                 TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
                     @Override
                     public void afterCommit() {
-                        new Thread(() -> {
+                        new Thread(ImportProgress.propagate("recompute", () -> {
                             try {
                                 log.info("Starting category progress recompute for {} students after Results upload (Step 1)", recomputeIds.size());
                                 studentCategoryProgressService.calculateAndUpdateProgressForStudents(recomputeIds);
@@ -495,18 +497,29 @@ public class StudentGradeBatchImportService {
                             } catch (Exception ex) {
                                 log.error("Progress recalculation error after Results (Step 1): {}", ex.getMessage());
                             }
-                        }, "progress-recompute-after-results").start();
+                        }), "progress-recompute-after-results").start();
                     }
                 });
             } else {
                 log.info("No affected students to recompute progress for after Results upload (Step 1)");
             }
+
+            // Remember the file once committed; registered after bump() so currentSource() is the post-commit version
+            if (fileHash != null) {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        lastResultsImports.put(fileKey, new ImportedFile(fileHash, dataVersionService.currentSource()));
+                    }
+                });
+            }
         } catch (IOException e) {
             messages.add("Error reading file: " + e.getMessage());
         }
+        if (written.getRows() > 0) messages.add("Write throughput: " + written);
         long _svcEndMs = System.currentTimeMillis();
         double _durSec = (_svcEndMs - _svcStartMs) / 1000.0;
-        log.info("Results import finished at epoch(ms)={} duration(s)={}", _svcEndMs, String.format(java.util.Locale.ROOT, "%.3f", _durSec));
+        log.info("Results import finished at epoch(ms)={} duration(s)={} writes: {}", _svcEndMs, String.format(java.util.Locale.ROOT, "%.3f", _durSec), written);
         return messages;
     }
 
@@ -526,6 +539,7 @@ public class StudentGradeBatchImportService {
                 "SET sg.category = c.category_name " +
                 "WHERE (sg.category IS NULL OR sg.category = '') AND p.code = ?";
             int updated = jdbcTemplate.update(sql, programCode.trim());
+            if (updated > 0) dataVersionService.bump("category backfill");
             messages.add("Backfill updated rows: " + updated);
         } catch (Exception ex) {
             messages.add("Backfill error: " + ex.getMessage());
@@ -533,69 +547,104 @@ public class StudentGradeBatchImportService {
         return messages;
     }
 
-    // Ensure unique index on (university_id, course_id) to enable ON DUPLICATE KEY UPDATE
-    private void ensureUniqueIndexForUpsert() {
-        try {
-            // Fast path: skip if index already exists
-            Integer idxCount = jdbcTemplate.queryForObject(
-                    "SELECT COUNT(1) FROM INFORMATION_SCHEMA.STATISTICS " +
-                            "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME='student_grades' AND INDEX_NAME='uq_student_grades_uid_course'",
-                    Integer.class
-            );
-            if (idxCount != null && idxCount > 0) {
-                log.debug("Unique index uq_student_grades_uid_course already exists; skipping creation.");
-                return;
-            }
-            jdbcTemplate.execute("ALTER TABLE student_grades ADD UNIQUE KEY uq_student_grades_uid_course (university_id, course_id)");
-            log.info("Created unique index uq_student_grades_uid_course on (university_id, course_id)");
-        } catch (DataAccessException ex) {
-            String msg = ex.getMessage();
-            if (msg != null && (msg.contains("Duplicate entry") || msg.contains("1062"))) {
-                log.warn("Unique index creation failed due to duplicates. Attempting automatic dedup to keep latest rows per (university_id, course_id)...");
-                try {
-                    jdbcTemplate.execute(
-                        "DELETE g FROM student_grades g JOIN (" +
-                        " SELECT university_id, course_id, MAX(sno) AS keep_sno" +
-                        " FROM student_grades GROUP BY university_id, course_id HAVING COUNT(*) > 1" +
-                        ") d ON g.university_id=d.university_id AND g.course_id=d.course_id WHERE g.sno <> d.keep_sno"
-                    );
-                    log.info("Deduplication completed. Re-attempting unique index creation...");
-                    jdbcTemplate.execute("ALTER TABLE student_grades ADD UNIQUE KEY uq_student_grades_uid_course (university_id, course_id)");
-                    log.info("Unique index created successfully after dedup.");
-                } catch (DataAccessException ex2) {
-                    log.error("Failed to create unique index after dedup: {}. Proceeding without index; upsert may insert duplicates for new rows.", ex2.getMessage());
-                }
-            } else {
-                // Likely index already exists or another benign error; log at info
-                log.info("Unique index uq_student_grades_uid_course likely exists or cannot be created now: {}", ex.getMessage());
-            }
+    // Merge mode for Results: stage rows into a TEMP table, classify each against student_grades by
+    // content fingerprint (0 = unchanged, 1 = new, 2 = changed) and write only new/changed rows in one statement.
+    // academic_year/semester of existing rows are kept (registrations own them).
+    // Returns {created, updated, unchanged}; changedStudentIds receives students with written rows.
+    private int[] mergeStudentGradesViaStaging(List<StudentGrade> rows, Set<String> changedStudentIds,
+                                               BulkWriteService.Throughput written) {
+        long tStart = System.nanoTime();
+        boolean useFingerprint = schemaMigrationService.hasResultFingerprintColumn();
+        schemaMigrationService.createTempTable("tmp_results");
+
+        written.add(bulkWriteService.write(
+                "INSERT INTO tmp_results (university_id, course_id, grade, grade_point, promotion, category) VALUES (?, ?, ?, ?, ?, ?)",
+                rows, (ps, g) -> {
+                    ps.setString(1, g.getStudent() != null ? g.getStudent().getStudentId() : null);
+                    ps.setInt(2, g.getCourse().getCourseID());
+                    ps.setString(3, g.getGrade());
+                    ps.setObject(4, g.getGradePoint());
+                    ps.setString(5, g.getPromotion());
+                    ps.setString(6, g.getCategory());
+                }));
+
+        // Rows whose content hash matches the stored one are left untouched; without the
+        // fingerprint column fall back to a null-safe column-by-column comparison
+        String unchanged = useFingerprint
+                ? "sg.result_fingerprint = t.result_fingerprint"
+                : "sg.grade <=> t.grade AND sg.grade_point <=> t.grade_point " +
+                  "AND sg.promotion <=> t.promotion AND sg.category <=> t.category";
+        jdbcTemplate.update(
+                "UPDATE tmp_results t " +
+                "LEFT JOIN student_grades sg ON sg.university_id = t.university_id AND sg.course_id = t.course_id " +
+                "SET t.op = CASE " +
+                "  WHEN sg.sno IS NULL THEN 1 " +
+                "  WHEN " + unchanged + " THEN 0 " +
+                "  ELSE 2 END");
+
+        int[] counts = new int[3];
+        jdbcTemplate.query("SELECT op, COUNT(*) AS n FROM tmp_results GROUP BY op", rs -> {
+            int op = rs.getInt("op");
+            int n = rs.getInt("n");
+            if (op == 1) counts[0] = n;
+            else if (op == 2) counts[1] = n;
+            else counts[2] = n;
+        });
+
+        if (counts[0] + counts[1] > 0) {
+            changedStudentIds.addAll(jdbcTemplate.queryForList(
+                    "SELECT DISTINCT university_id FROM tmp_results WHERE op <> 0", String.class));
+            int affected = jdbcTemplate.update(
+                    "INSERT INTO student_grades (university_id, course_id, grade, grade_point, promotion, category, academic_year, semester) " +
+                    "SELECT t.university_id, t.course_id, t.grade, t.grade_point, t.promotion, t.category, NULL, NULL " +
+                    "FROM tmp_results t WHERE t.op <> 0 " +
+                    "ON DUPLICATE KEY UPDATE grade = t.grade, grade_point = t.grade_point, promotion = t.promotion, category = t.category");
+            log.info("Results merge: JDBC affected {}", affected);
         }
-    }
+        schemaMigrationService.dropTempTable("tmp_results");
 
-    // Perform chunked INSERT ... ON DUPLICATE KEY UPDATE using JdbcTemplate batchUpdate
-    private int[][] bulkUpsertStudentGrades(List<StudentGrade> rows) {
-        final String sql = "INSERT INTO student_grades (university_id, grade, grade_point, promotion, category, academic_year, semester, course_id) " +
-                "VALUES (?, ?, ?, ?, ?, ?, ?, ?) " +
-                "ON DUPLICATE KEY UPDATE grade=VALUES(grade), grade_point=VALUES(grade_point), promotion=VALUES(promotion), category=VALUES(category), academic_year=VALUES(academic_year), semester=VALUES(semester)";
-
-        // Use Spring's batchUpdate; with rewriteBatchedStatements=true and useServerPrepStmts=false, MySQL will rewrite to multi-row insert
-        int[][] counts = jdbcTemplate.batchUpdate(sql, rows, rows.size(), (ps, g) -> {
-            ps.setString(1, g.getStudent() != null ? g.getStudent().getStudentId() : null);
-            ps.setString(2, g.getGrade());
-            if (g.getGradePoint() == null) ps.setObject(3, null);
-            else ps.setDouble(3, g.getGradePoint());
-            ps.setString(4, g.getPromotion());
-            ps.setString(5, g.getCategory());
-            ps.setString(6, g.getYear()); // may be null here during Results import
-            ps.setString(7, g.getSemester()); // may be null here during Results import
-            ps.setInt(8, g.getCourse().getCourseID());
-        });
+        log.info("Results merge: staged {} rows (created {}, updated {}, unchanged {}) in {} ms",
+                rows.size(), counts[0], counts[1], counts[2], (System.nanoTime() - tStart) / 1_000_000);
         return counts;
     }
 
+    // SHA-256 of the uploaded bytes, or null when the file cannot be read
+    private String sha256Hex(MultipartFile file) {
+        try (java.io.InputStream in = file.getInputStream()) {
+            java.security.MessageDigest md = java.security.MessageDigest.getInstance("SHA-256");
+            byte[] buf = new byte[64 * 1024];
+            int n;
+            while ((n = in.read(buf)) > 0) md.update(buf, 0, n);
+            return java.util.HexFormat.of().formatHex(md.digest());
+        } catch (IOException | java.security.NoSuchAlgorithmException ex) {
+            log.warn("Could not hash uploaded file: {}", ex.getMessage());
+            return null;
+        }
+    }
+
+    // Row-wise INSERT ... ON DUPLICATE KEY UPDATE; with rewriteBatchedStatements=true and
+    // useServerPrepStmts=false each JDBC batch goes out as one multi-row insert
+    private static final String GRADE_UPSERT_SQL =
+            "INSERT INTO student_grades (university_id, grade, grade_point, promotion, category, academic_year, semester, course_id) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE grade=VALUES(grade), grade_point=VALUES(grade_point), promotion=VALUES(promotion), category=VALUES(category), academic_year=VALUES(academic_year), semester=VALUES(semester)";
+
+    private static final ParameterizedPreparedStatementSetter<StudentGrade> GRADE_UPSERT_SETTER = (ps, g) -> {
+        ps.setString(1, g.getStudent() != null ? g.getStudent().getStudentId() : null);
+        ps.setString(2, g.getGrade());
+        if (g.getGradePoint() == null) ps.setObject(3, null);
+        else ps.setDouble(3, g.getGradePoint());
+        ps.setString(4, g.getPromotion());
+        ps.setString(5, g.getCategory());
+        ps.setString(6, g.getYear()); // may be null here during Results import
+        ps.setString(7, g.getSemester()); // may be null here during Results import
+        ps.setInt(8, g.getCourse().getCourseID());
+    };
+
     @Transactional
     public List<String> importRegistrationsCsv(MultipartFile file) {
         List<String> messages = new ArrayList<>();
+        BulkWriteService.Throughput written = new BulkWriteService.Throughput();
         long _svcStartMs = System.currentTimeMillis();
         log.info("Registrations import started at epoch(ms)={}", _svcStartMs);
         if (file == null || file.isEmpty()) {
@@ -613,17 +662,21 @@ public class StudentGradeBatchImportService {
             log.info("Registrations import finished at epoch(ms)={} duration(s)={}", _svcEndMs, String.format(java.util.Locale.ROOT, "%.3f", _durSec));
             return messages;
         }
-        // Ensure helpful indexes for fast joins
-        ensurePerformanceIndexes();
+        // Upserts need the (university_id, course_id) unique key; without it they would insert duplicates
+        if (!schemaMigrationService.hasUniqueUpsertKey()) {
+            messages.add("Abort: student_grades unique key (university_id, course_id) is missing; schema migration failed at startup (see server log).");
+            return messages;
+        }
 
-        try (BufferedReader br = new BufferedReader(new InputStreamReader(file.getInputStream()))) {
-            List<String> lines = br.lines().collect(Collectors.toList());
-            if (lines.size() <= 1) {
+        try (ImportRowReader rows = ImportRowReader.open(file, this::parseCsvLine, ImportJobService.spoolDirectory(spoolDir), maxDecompressedBytes)) {
+            ImportProgress.stage("parsing");
+            String[] header = rows.nextRow();
+            String[] firstRow = header == null ? null : rows.nextRow();
+            if (firstRow == null) {
                 messages.add("CSV is empty or header-only.");
                 return messages;
             }
 
-            String[] header = parseCsvLine(lines.get(0));
             int idxUid = indexOfHeader(header, "University ID");
             int idxCourse = indexOfHeader(header, "CourseCode");
             int idxYear = indexOfHeader(header, "AcademicYear");
@@ -634,23 +687,21 @@ public class StudentGradeBatchImportService {
                 return messages;
             }
 
-            // build name map (optional) for student upsert
+            // One pass as rows are read: name map (optional) for the student upsert and the
+            // latest registration per (uid, course)
+            class RegRow { String uid; String code; String year; String sem; int yearStart; int semRank; }
             Map<String, String> nameById = new HashMap<>();
-            for (int i = 1; i < lines.size(); i++) {
-                String[] row = parseCsvLine(lines.get(i));
+            Map<String, RegRow> latest = new HashMap<>();
+            int minColumns = Math.max(Math.max(idxUid, idxCourse), Math.max(idxYear, idxSem)) + 1;
+            long parsedRows = 0;
+            for (String[] row = firstRow; row != null; row = rows.nextRow()) {
+                if (++parsedRows % 10000 == 0) ImportProgress.parsedRows(parsedRows);
                 if (row.length > Math.max(idxUid, idxName)) {
                     String id = safe(row, idxUid);
                     String name = idxName >= 0 ? safe(row, idxName) : "";
                     if (!id.isEmpty() && !name.isEmpty()) nameById.put(id, name);
                 }
-            }
-
-            // choose latest registration per (uid, course)
-            class RegRow { String uid; String code; String year; String sem; int yearStart; int semRank; }
-            Map<String, RegRow> latest = new HashMap<>();
-            for (int i = 1; i < lines.size(); i++) {
-                String[] row = parseCsvLine(lines.get(i));
-                if (row.length <= Math.max(Math.max(idxUid, idxCourse), Math.max(idxYear, idxSem))) continue;
+                if (row.length < minColumns) continue;
                 String uid = safe(row, idxUid);
                 String code = norm(safe(row, idxCourse));
                 String year = safe(row, idxYear);
@@ -672,6 +723,7 @@ public class StudentGradeBatchImportService {
                     latest.put(key, r);
                 }
             }
+            ImportProgress.parsedRows(parsedRows);
             // preload courses
             Set<String> courseCodes = latest.values().stream().map(r -> r.code).collect(Collectors.toSet());
             Map<String, Courses> courseByCode = coursesRepository.findByCourseCodeIn(new ArrayList<>(courseCodes))
@@ -696,74 +748,72 @@ public class StudentGradeBatchImportService {
 
             // Execute everything in one DB transaction/connection to keep TEMP table alive
             txTemplate.execute(status -> {
-                // 1) Create missing students only; update names separately to avoid hashing existing
+                // 1) Stage the payload's students once; existence and name changes are then set-based
                 List<String> allStudentIds = new ArrayList<>(studentIds);
-                java.util.Set<String> existingIdSet = new java.util.HashSet<>();
-                final int ID_CHUNK = 1000;
-                for (int i = 0; i < allStudentIds.size(); i += ID_CHUNK) {
-                    List<String> chunk = allStudentIds.subList(i, Math.min(i + ID_CHUNK, allStudentIds.size()));
-                    String placeholders = String.join(", ", java.util.Collections.nCopies(chunk.size(), "?"));
-                    String sel = "SELECT student_id FROM students WHERE student_id IN (" + placeholders + ")";
-                    existingIdSet.addAll(jdbcTemplate.query(sel, ps -> {
-                        int idx = 1; for (String s : chunk) ps.setString(idx++, s);
-                    }, (rs, rNum) -> rs.getString(1)));
-                }
-                java.util.Set<String> toCreateIds = new java.util.HashSet<>(studentIds);
-                toCreateIds.removeAll(existingIdSet);
-                if (!toCreateIds.isEmpty()) {
+                schemaMigrationService.createTempTable("tmp_reg_students");
+                written.add(bulkWriteService.write("INSERT INTO tmp_reg_students (student_id, student_name) VALUES (?, ?)",
+                        allStudentIds, (ps, sid) -> {
+                            ps.setString(1, sid);
+                            ps.setString(2, nameById.getOrDefault(sid, ""));
+                        }));
+                // Anti-join: only students not yet in the table need a (costly) password hash
+                List<String> createList = jdbcTemplate.queryForList(
+                        "SELECT t.student_id FROM tmp_reg_students t " +
+                        "LEFT JOIN students s ON s.student_id = t.student_id WHERE s.student_id IS NULL",
+                        String.class);
+                if (!createList.isEmpty()) {
                     long tHashStart = System.nanoTime();
                     // Hash each student ID individually in parallel - required for proper authentication
-                    Map<String, String> hashedPasswords = toCreateIds.parallelStream()
+                    Map<String, String> hashedPasswords = createList.parallelStream()
                         .collect(Collectors.toMap(id -> id, id -> passwordEncoder.encode(id)));
                     long tHashMs = (System.nanoTime() - tHashStart) / 1_000_000;
-                    log.info("Hashed passwords for {} new students in {} ms", toCreateIds.size(), tHashMs);
-                    
-                    List<String> createList = new ArrayList<>(toCreateIds);
+                    log.info("Hashed passwords for {} new students in {} ms", createList.size(), tHashMs);
+
                     final String insSql = "INSERT IGNORE INTO students (student_id, student_name, password) VALUES (?, ?, ?)";
-                    jdbcTemplate.batchUpdate(insSql, createList, createList.size(), (ps, sid) -> {
+                    written.add(bulkWriteService.write(insSql, createList, (ps, sid) -> {
                         ps.setString(1, sid);
                         ps.setString(2, nameById.getOrDefault(sid, ""));
                         ps.setString(3, hashedPasswords.get(sid));  // Each student gets hash of their ID
-                    });
+                    }));
                     log.info("Created {} new students via JDBC INSERT IGNORE", createList.size());
                 }
-                // Update names for all relevant students (no password hashing overhead)
-                jdbcTemplate.batchUpdate("UPDATE students SET student_name=? WHERE student_id=?", allStudentIds, allStudentIds.size(), (ps, sid) -> {
-                    ps.setString(1, nameById.getOrDefault(sid, ""));
-                    ps.setString(2, sid);
-                });
+                // Rename only students whose name actually differs; a blank/missing Name keeps the stored one
+                int renamed = jdbcTemplate.update(
+                        "UPDATE students s JOIN tmp_reg_students t ON t.student_id = s.student_id " +
+                        "SET s.student_name = t.student_name " +
+                        "WHERE t.student_name <> '' AND NOT (s.student_name <=> t.student_name)");
+                log.info("Registrations: {} students in payload, {} created, {} renamed", allStudentIds.size(), createList.size(), renamed);
+                schemaMigrationService.dropTempTable("tmp_reg_students");
 
                 // 2) Stage latest registrations into a TEMP table
-                jdbcTemplate.execute("DROP TEMPORARY TABLE IF EXISTS tmp_registrations");
-                jdbcTemplate.execute("CREATE TEMPORARY TABLE tmp_registrations (" +
-                        "university_id VARCHAR(64) NOT NULL, " +
-                        "course_code VARCHAR(50) NOT NULL, " +
-                        "academic_year VARCHAR(20), " +
-                        "semester VARCHAR(10), " +
-                        "PRIMARY KEY (university_id, course_code)) ENGINE=InnoDB");
-                // Speed up join to courses by indexing course_code (PK prefix is university_id, so add separate index)
-                jdbcTemplate.execute("CREATE INDEX idx_tmp_reg_course ON tmp_registrations(course_code)");
+                ImportProgress.stage("staging");
+                schemaMigrationService.createTempTable("tmp_registrations");
 
                 final String insTmp = "INSERT INTO tmp_registrations (university_id, course_code, academic_year, semester) VALUES (?, ?, ?, ?)";
                 List<RegRow> regs = latest.values().stream()
                         .filter(r -> courseByCode.containsKey(r.code)) // keep only known courses
                         .collect(Collectors.toList());
-                AtomicInteger semNormOrTruncCount = new AtomicInteger(0);
-                jdbcTemplate.batchUpdate(insTmp, regs, regs.size(), (ps, r) -> {
-                    ps.setString(1, r.uid);
-                    ps.setString(2, r.code);
-                    ps.setString(3, r.year);
+                // Normalize semesters up front: the batch writer may bind a row more than once (sizing probe)
+                Map<RegRow, String> semByRow = new IdentityHashMap<>();
+                int semNormOrTruncCount = 0;
+                for (RegRow r : regs) {
                     String nSem = normalizeSemester(r.sem);
                     if (r.sem != null) {
                         String t = r.sem.trim();
                         if (t.length() > 10 && !Objects.equals(nSem, t)) {
-                            semNormOrTruncCount.incrementAndGet();
+                            semNormOrTruncCount++;
                         }
                     }
-                    ps.setString(4, nSem);
-                });
-                if (semNormOrTruncCount.get() > 0) {
-                    log.info("Registrations: normalized/truncated semester for {} rows to fit DB constraints.", semNormOrTruncCount.get());
+                    semByRow.put(r, nSem);
+                }
+                written.add(bulkWriteService.write(insTmp, regs, (ps, r) -> {
+                    ps.setString(1, r.uid);
+                    ps.setString(2, r.code);
+                    ps.setString(3, r.year);
+                    ps.setString(4, semByRow.get(r));
+                }));
+                if (semNormOrTruncCount > 0) {
+                    log.info("Registrations: normalized/truncated semester for {} rows to fit DB constraints.", semNormOrTruncCount);
                 }
                 // Compute counts via SQL after staging
                 Integer total = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM tmp_registrations", Integer.class);
@@ -778,7 +828,7 @@ public class StudentGradeBatchImportService {
                 counts[1] = Math.max(0, tot - upd);
 
                 // 3) Set-based UPDATE of existing rows then INSERT only missing rows
-                ensureUniqueIndexForUpsert();
+                ImportProgress.stage("merging");
                 // Diagnostics: count rows that will end up with empty category (no mapping found)
                 try {
                     String countUnmappedSql = "SELECT COUNT(*) FROM tmp_registrations r " +
@@ -827,17 +877,19 @@ public class StudentGradeBatchImportService {
                 log.info("Registrations: inserted missing rows: {}", insRows);
 
                 // 4) Cleanup temp table
-                jdbcTemplate.execute("DROP TEMPORARY TABLE IF EXISTS tmp_registrations");
+                schemaMigrationService.dropTempTable("tmp_registrations");
                 return null;
             });
 
+            dataVersionService.bump("registrations import");
+
             // Recalculate progress AFTER COMMIT for affected students (Step 2)
             if (!studentIds.isEmpty()) {
                 Set<String> idsForRecalc = new HashSet<>(studentIds);
                 TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
                     @Override
                     public void afterCommit() {
-                        new Thread(() -> {
+                        new Thread(ImportProgress.propagate("recompute", () -> {
                             try {
                                 log.info("Starting category progress recompute for {} students after Registrations upload (Step 2)", idsForRecalc.size());
                                 studentCategoryProgressService.calculateAndUpdateProgressForStudents(idsForRecalc);
@@ -845,7 +897,7 @@ public class StudentGradeBatchImportService {
                             } catch (Exception ex) {
                                 log.error("Progress recalculation error after Registrations (Step 2): {}", ex.getMessage());
                             }
-                        }, "progress-recompute-after-registrations").start();
+                        }), "progress-recompute-after-registrations").start();
                     }
                 });
             } else {
@@ -860,9 +912,10 @@ public class StudentGradeBatchImportService {
         } catch (IOException e) {
             messages.add("Error reading file: " + e.getMessage());
         }
+        if (written.getRows() > 0) messages.add("Write throughput: " + written);
         long _svcEndMs = System.currentTimeMillis();
         double _durSec = (_svcEndMs - _svcStartMs) / 1000.0;
-        log.info("Registrations import finished at epoch(ms)={} duration(s)={}", _svcEndMs, String.format(java.util.Locale.ROOT, "%.3f", _durSec));
+        log.info("Registrations import finished at epoch(ms)={} duration(s)={} writes: {}", _svcEndMs, String.format(java.util.Locale.ROOT, "%.3f", _durSec), written);
         return messages;
     }
 
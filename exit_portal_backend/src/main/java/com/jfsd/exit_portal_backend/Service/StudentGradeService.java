@@ -2,18 +2,13 @@ package com.jfsd.exit_portal_backend.Service;
 
 import com.jfsd.exit_portal_backend.Model.StudentGrade;
 import com.jfsd.exit_portal_backend.Repository.StudentGradeRepository;
-import com.jfsd.exit_portal_backend.Repository.CoursesRepository;
-import com.jfsd.exit_portal_backend.Model.Courses;
-import com.jfsd.exit_portal_backend.Model.Student;
-import com.jfsd.exit_portal_backend.Repository.StudentRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
-import jakarta.persistence.EntityManager;
-import jakarta.persistence.PersistenceContext;
-import org.springframework.transaction.support.TransactionSynchronization;
-import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.support.TransactionTemplate;
@@ -22,19 +17,24 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
 import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
-import java.util.Optional;
-import java.util.Map;
-import java.util.HashMap;
 
 @Service
 public class StudentGradeService {
 
+    private static final Logger log = LoggerFactory.getLogger(StudentGradeService.class);
+
     @Autowired
     private StudentGradeRepository studentGradeRepository;
 
@@ -42,217 +42,192 @@ public class StudentGradeService {
     private StudentCategoryProgressService studentCategoryProgressService;
 
     @Autowired
-    private CoursesRepository coursesRepository;
+    private PasswordEncoder passwordEncoder;
 
     @Autowired
-    private StudentRepository studentRepository;
+    private JdbcTemplate jdbcTemplate;
 
     @Autowired
-    private PasswordEncoder passwordEncoder;
+    private PlatformTransactionManager transactionManager;
 
-    @PersistenceContext
-    private EntityManager entityManager;
+    @Autowired
+    private DataVersionService dataVersionService;
 
     @Autowired
-    private PlatformTransactionManager transactionManager;
+    private SchemaMigrationService schemaMigrationService;
 
-    private static final int BATCH_SIZE = 1000;
+    @Autowired
+    private BulkWriteService bulkWriteService;
+
+    // One staged CSV row; null optional fields mean "column not present" and keep the stored value on update
+    private static class LegacyRow {
+        String universityId;
+        String courseCode;
+        String grade;
+        Double gradePoint;
+        String promotion;
+        String year;
+        String semester;
+        String category;
+    }
 
+    // Set-based path: CSV rows are staged into a TEMP table and merged with one
+    // INSERT ... SELECT ... ON DUPLICATE KEY UPDATE (same engine as the batch importer), no entity hydration
     public List<String> uploadCSV(MultipartFile file) {
         List<String> messages = new ArrayList<>();
-        AtomicInteger updatedRecords = new AtomicInteger(0);
-        AtomicInteger createdRecords = new AtomicInteger(0);
+        long tStart = System.currentTimeMillis();
 
         try (BufferedReader br = new BufferedReader(new InputStreamReader(file.getInputStream()))) {
-            List<String> lines = br.lines().collect(Collectors.toList());
-            if (lines.size() <= 1) {
+            String header = br.readLine();
+            String firstRow = header == null ? null : br.readLine();
+            if (firstRow == null) {
                 messages.add("CSV file is empty or contains only a header.");
                 return messages;
             }
 
-            Set<String> universityIdsInCsv = lines.stream().skip(1)
-                .map(line -> {
-                    String[] values = parseCsvLine(line);
-                    return (values.length > 0) ? values[0].trim() : "";
-                })
-                .filter(id -> !id.isEmpty())
-                .collect(Collectors.toSet());
-
-            if (universityIdsInCsv.isEmpty()) {
-                messages.add("No valid student IDs found in the CSV file.");
-                return messages;
-            }
-
-            // Upsert Students: preload existing and create missing with BCrypt(studentId)
-            Map<String, Student> existingStudents = studentRepository.findAllByStudentIdIn(universityIdsInCsv)
-                .stream().collect(Collectors.toMap(Student::getStudentId, s -> s));
-            // capture a preferred name per student from CSV (column 2 if present)
+            // Parsed as read; last occurrence of a (student, course) pair wins
+            Map<String, LegacyRow> rowsByKey = new LinkedHashMap<>();
+            List<LegacyRow> rowsWithoutCourse = new ArrayList<>();
             Map<String, String> nameById = new HashMap<>();
-            for (int i = 1; i < lines.size(); i++) {
-                String[] vals = parseCsvLine(lines.get(i));
-                if (vals.length > 1) {
-                    String id = vals[0] == null ? "" : vals[0].trim();
-                    String nm = vals[1] == null ? "" : vals[1].trim();
+            int rowNumber = 1;
+            for (String line = firstRow; line != null; line = br.readLine()) {
+                rowNumber++;
+                String[] values = parseCsvLine(line);
+                if (values.length > 1) {
+                    String id = values[0] == null ? "" : values[0].trim();
+                    String nm = values[1] == null ? "" : values[1].trim();
                     if (!id.isEmpty() && !nm.isEmpty()) nameById.put(id, nm);
                 }
-            }
-            List<Student> toCreateStudents = new ArrayList<>();
-            for (String id : universityIdsInCsv) {
-                if (!existingStudents.containsKey(id)) {
-                    String nm = nameById.getOrDefault(id, "");
-                    Student s = new Student(id, nm, passwordEncoder.encode(id));
-                    toCreateStudents.add(s);
-                    existingStudents.put(id, s);
-                }
-            }
-            if (!toCreateStudents.isEmpty()) {
-                studentRepository.saveAll(toCreateStudents);
-            }
-
-            // Preload existing grades for these students once
-            List<StudentGrade> existingGrades = studentGradeRepository.findByStudent_StudentIdIn(universityIdsInCsv);
-            // Key existing grades by (studentId, courseCode)
-            java.util.Map<String, StudentGrade> existingGradesMap = existingGrades.stream()
-                .filter(g -> g.getCourse() != null && g.getCourse().getCourseCode() != null && g.getStudent() != null)
-                .collect(Collectors.toMap(g -> g.getStudent().getStudentId() + "-" + norm(g.getCourse().getCourseCode()), g -> g, (a,b) -> a));
-
-            // Preload all unique course codes referenced in the CSV in one query
-            List<String> csvCourseCodes = lines.stream().skip(1)
-                .map(this::parseCsvLine)
-                .filter(arr -> arr.length > 3 && arr[3] != null && !arr[3].trim().isEmpty())
-                .map(arr -> arr[3].trim())
-                .distinct()
-                .collect(Collectors.toList());
-            java.util.Map<String, Courses> courseByCode = coursesRepository.findByCourseCodeIn(csvCourseCodes)
-                .stream()
-                .filter(c -> c.getCourseCode() != null)
-                .collect(Collectors.toMap(c -> norm(c.getCourseCode()), c -> c, (a, b) -> a));
-
-            List<StudentGrade> gradesToSave = new ArrayList<>();
-            java.util.concurrent.atomic.AtomicInteger totalSaved = new java.util.concurrent.atomic.AtomicInteger(0);
-            // Transaction template for per-batch commits
-            TransactionTemplate txTemplate = new TransactionTemplate(transactionManager);
-            txTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
-            for (int i = 1; i < lines.size(); i++) {
-                String line = lines.get(i);
-                int rowNumber = i + 1;
-                String[] values = parseCsvLine(line);
-
                 if (values.length < 5 || values[0].trim().isEmpty()) {
                     messages.add("Skipping row " + rowNumber + ": Not enough columns or missing University ID.");
                     continue;
                 }
 
-                String universityId = values[0].trim();
-                String courseCode = values[3].trim();
-                String lookupKey = universityId + "-" + norm(courseCode);
-
-                StudentGrade grade = existingGradesMap.get(lookupKey);
-                if (grade != null) {
-                    updatedRecords.incrementAndGet();
-                } else {
-                    grade = new StudentGrade();
-                    Student s = existingStudents.get(universityId);
-                    if (s == null) {
-                        s = new Student(universityId, nameById.getOrDefault(universityId, ""), passwordEncoder.encode(universityId));
-                        s = studentRepository.save(s);
-                        existingStudents.put(universityId, s);
-                    }
-                    grade.setStudent(s);
-                    grade.setCourseCode(courseCode);
-                    createdRecords.incrementAndGet();
-                }
-                grade.setCourseName(values[4].trim());
-
+                LegacyRow row = new LegacyRow();
+                row.universityId = values[0].trim();
+                row.courseCode = norm(values[3]);
                 if (values.length > 5) {
                     String gradeValue = values[5].trim().replace("\"", "");
                     int indexOfParenthesis = gradeValue.indexOf('(');
                     if (indexOfParenthesis != -1) {
                         gradeValue = gradeValue.substring(0, indexOfParenthesis).trim();
                     }
-                    grade.setGrade(gradeValue);
+                    row.grade = gradeValue;
                 }
-
                 try {
-                    if (values.length > 6 && !values[6].trim().isEmpty()) grade.setGradePoint(Double.parseDouble(values[6].trim()));
-                    if (values.length > 7 && !values[7].trim().isEmpty()) grade.setCredits(Double.parseDouble(values[7].trim()));
+                    if (values.length > 6 && !values[6].trim().isEmpty()) row.gradePoint = Double.parseDouble(values[6].trim());
+                    // Credits (column 7) live on the course; still validated for backward compatible messages
+                    if (values.length > 7 && !values[7].trim().isEmpty()) Double.parseDouble(values[7].trim());
                 } catch (NumberFormatException e) {
                     messages.add("Skipping row " + rowNumber + ": Invalid number format for grade point or credits.");
                     continue;
                 }
+                if (values.length > 8) row.promotion = values[8].trim();
+                if (values.length > 9) row.year = values[9].trim();
+                if (values.length > 10) row.semester = values[10].trim();
+                if (values.length > 11) row.category = values[11].trim();
 
-                if (values.length > 8) grade.setPromotion(values[8].trim());
-                if (values.length > 9) grade.setYear(values[9].trim());
-                if (values.length > 10) grade.setSemester(values[10].trim());
-                if (values.length > 11) grade.setCategory(values[11].trim());
-
-                // Resolve and set Course entity using preloaded map (no per-row DB call)
-                if (courseCode != null && !courseCode.isEmpty()) {
-                    Courses course = courseByCode.get(norm(courseCode));
-                    if (course != null) {
-                        grade.setCourse(course);
-                        // Note: Category is now stored directly in StudentGrade CSV
-                        // Course-to-category mapping is handled by ProgramCourseCategory
-                    }
-                }
-
-                // Fallback: Ensure category is never null to satisfy DB NOT NULL until migration is applied
-                if (grade.getCategory() == null) {
-                    grade.setCategory("");
+                if (row.courseCode.isEmpty()) {
+                    rowsWithoutCourse.add(row);
+                } else {
+                    rowsByKey.put(row.universityId + "-" + row.courseCode, row);
                 }
+            }
 
-                gradesToSave.add(grade);
-
-                // Flush in batches and print progress
-                if (gradesToSave.size() >= BATCH_SIZE) {
-                    txTemplate.execute(status -> {
-                        studentGradeRepository.saveAll(gradesToSave);
-                        studentGradeRepository.flush();
-                        entityManager.clear();
-                        totalSaved.addAndGet(gradesToSave.size());
-                        System.out.println("Saved batch. Total saved so far: " + totalSaved.get());
-                        gradesToSave.clear();
-                        return null;
-                    });
-                }
+            Set<String> universityIdsInCsv = new HashSet<>();
+            rowsByKey.values().forEach(r -> universityIdsInCsv.add(r.universityId));
+            rowsWithoutCourse.forEach(r -> universityIdsInCsv.add(r.universityId));
+            if (universityIdsInCsv.isEmpty()) {
+                messages.add("No valid student IDs found in the CSV file.");
+                return messages;
             }
 
-            if (!gradesToSave.isEmpty()) {
-                txTemplate.execute(status -> {
-                    studentGradeRepository.saveAll(gradesToSave);
-                    studentGradeRepository.flush();
-                    entityManager.clear();
-                    totalSaved.addAndGet(gradesToSave.size());
-                    System.out.println("Saved final batch. Total saved: " + totalSaved.get());
-                    return null;
-                });
+            TransactionTemplate txTemplate = new TransactionTemplate(transactionManager);
+            txTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+            int[] counts = new int[2]; // [created, updated]
+            BulkWriteService.Throughput written = new BulkWriteService.Throughput();
+
+            // The merge below is an ON DUPLICATE KEY UPDATE on uq_student_grades_uid_course
+            if (!schemaMigrationService.hasUniqueUpsertKey()) {
+                messages.add("Abort: student_grades unique key (university_id, course_id) is missing; schema migration failed at startup (see server log).");
+                return messages;
             }
 
-            // Recalculate progress AFTER COMMIT to prevent rolling back saved batches if it fails
-            if (totalSaved.get() > 0) {
-                if (TransactionSynchronizationManager.isSynchronizationActive()) {
-                    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
-                        @Override
-                        public void afterCommit() {
-                            try {
-                                studentCategoryProgressService.calculateAndUpdateProgressForStudents(universityIdsInCsv);
-                            } catch (Exception ex) {
-                                System.err.println("Progress calculation failed post-commit: " + ex.getMessage());
-                            }
-                        }
-                    });
-                } else {
-                    try {
-                        studentCategoryProgressService.calculateAndUpdateProgressForStudents(universityIdsInCsv);
-                    } catch (Exception ex) {
-                        System.err.println("Progress calculation failed: " + ex.getMessage());
-                    }
+            // Single transaction/connection so the TEMP table stays visible
+            txTemplate.execute(status -> {
+                written.add(createMissingStudents(universityIdsInCsv, nameById));
+
+                schemaMigrationService.createTempTable("tmp_legacy_grades");
+
+                List<LegacyRow> staged = new ArrayList<>(rowsByKey.values());
+                written.add(bulkWriteService.write(
+                        "INSERT INTO tmp_legacy_grades (university_id, course_code, grade, grade_point, promotion, academic_year, semester, category) " +
+                        "VALUES (?, ?, ?, ?, ?, ?, ?, ?)",
+                        staged, (ps, r) -> bindLegacyRow(ps, r)));
+
+                Integer total = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM tmp_legacy_grades", Integer.class);
+                Integer existing = jdbcTemplate.queryForObject(
+                        "SELECT COUNT(*) FROM tmp_legacy_grades t " +
+                        "JOIN courses c ON c.course_code = t.course_code " +
+                        "JOIN student_grades sg ON sg.university_id = t.university_id AND sg.course_id = c.course_id",
+                        Integer.class);
+                counts[1] = existing == null ? 0 : existing;
+                counts[0] = Math.max(0, (total == null ? 0 : total) - counts[1]);
+
+                // Optional columns missing from the CSV (NULL in staging) keep their stored value on update
+                int merged = jdbcTemplate.update(
+                        "INSERT INTO student_grades (university_id, course_id, grade, grade_point, promotion, category, academic_year, semester) " +
+                        "SELECT t.university_id, c.course_id, t.grade, t.grade_point, t.promotion, COALESCE(t.category, ''), t.academic_year, t.semester " +
+                        "FROM tmp_legacy_grades t " +
+                        "LEFT JOIN courses c ON c.course_code = t.course_code " +
+                        "ON DUPLICATE KEY UPDATE " +
+                        "grade = COALESCE(t.grade, student_grades.grade), " +
+                        "grade_point = COALESCE(t.grade_point, student_grades.grade_point), " +
+                        "promotion = COALESCE(t.promotion, student_grades.promotion), " +
+                        "category = COALESCE(t.category, student_grades.category), " +
+                        "academic_year = COALESCE(t.academic_year, student_grades.academic_year), " +
+                        "semester = COALESCE(t.semester, student_grades.semester)");
+                log.info("Legacy grades upload: merged {} staged rows (JDBC affected {})", total, merged);
+
+                // Rows without a course code cannot be matched and are always inserted (course_id NULL)
+                if (!rowsWithoutCourse.isEmpty()) {
+                    written.add(bulkWriteService.write(
+                            "INSERT INTO student_grades (university_id, course_id, grade, grade_point, promotion, category, academic_year, semester) " +
+                            "VALUES (?, NULL, ?, ?, ?, ?, ?, ?)",
+                            rowsWithoutCourse, (ps, r) -> {
+                                ps.setString(1, r.universityId);
+                                ps.setString(2, r.grade);
+                                ps.setObject(3, r.gradePoint);
+                                ps.setString(4, r.promotion);
+                                ps.setString(5, r.category == null ? "" : r.category);
+                                ps.setString(6, r.year);
+                                ps.setString(7, r.semester);
+                            }));
+                    counts[0] += rowsWithoutCourse.size();
+                }
+
+                schemaMigrationService.dropTempTable("tmp_legacy_grades");
+                return null;
+            });
+
+            int totalSaved = counts[0] + counts[1];
+            log.info("Legacy grades upload: {} rows (created {}, updated {}) in {} ms; writes: {}",
+                    totalSaved, counts[0], counts[1], (System.currentTimeMillis() - tStart), written);
+
+            // Recalculate progress after the merge transaction has committed
+            if (totalSaved > 0) {
+                dataVersionService.bump("legacy grades upload");
+                try {
+                    studentCategoryProgressService.calculateAndUpdateProgressForStudents(universityIdsInCsv);
+                } catch (Exception ex) {
+                    log.error("Progress calculation failed after legacy grades upload: {}", ex.getMessage());
                 }
             }
 
             messages.add("CSV file processed successfully.");
-            messages.add("Created records: " + createdRecords.get());
-            messages.add("Updated records: " + updatedRecords.get());
+            messages.add("Created records: " + counts[0]);
+            messages.add("Updated records: " + counts[1]);
+            messages.add("Write throughput: " + written);
 
         } catch (IOException e) {
             messages.add("Error reading file: " + e.getMessage());
@@ -261,6 +236,47 @@ public class StudentGradeService {
         return messages;
     }
 
+    // Create missing students (password = BCrypt(studentId)); existing students are left unchanged
+    private BulkWriteService.Throughput createMissingStudents(Set<String> studentIds, Map<String, String> nameById) {
+        Set<String> existingIds = new HashSet<>();
+        List<String> allIds = new ArrayList<>(studentIds);
+        final int ID_CHUNK = bulkWriteService.inListChunkSize(allIds);
+        for (int i = 0; i < allIds.size(); i += ID_CHUNK) {
+            List<String> chunk = allIds.subList(i, Math.min(i + ID_CHUNK, allIds.size()));
+            String placeholders = String.join(", ", Collections.nCopies(chunk.size(), "?"));
+            existingIds.addAll(jdbcTemplate.query("SELECT student_id FROM students WHERE student_id IN (" + placeholders + ")",
+                    ps -> {
+                        int idx = 1;
+                        for (String sid : chunk) ps.setString(idx++, sid);
+                    },
+                    (rs, rowNum) -> rs.getString(1)));
+        }
+        List<String> toCreate = allIds.stream().filter(id -> !existingIds.contains(id)).collect(Collectors.toList());
+        if (toCreate.isEmpty()) return new BulkWriteService.Throughput();
+        Map<String, String> hashedPasswords = toCreate.parallelStream()
+                .collect(Collectors.toMap(id -> id, id -> passwordEncoder.encode(id)));
+        BulkWriteService.Throughput written = bulkWriteService.write(
+                "INSERT IGNORE INTO students (student_id, student_name, password) VALUES (?, ?, ?)",
+                toCreate, (ps, sid) -> {
+                    ps.setString(1, sid);
+                    ps.setString(2, nameById.getOrDefault(sid, ""));
+                    ps.setString(3, hashedPasswords.get(sid));
+                });
+        log.info("Legacy grades upload: created {} new students", toCreate.size());
+        return written;
+    }
+
+    private void bindLegacyRow(PreparedStatement ps, LegacyRow r) throws SQLException {
+        ps.setString(1, r.universityId);
+        ps.setString(2, r.courseCode);
+        ps.setString(3, r.grade);
+        ps.setObject(4, r.gradePoint);
+        ps.setString(5, r.promotion);
+        ps.setString(6, r.year);
+        ps.setString(7, r.semester);
+        ps.setString(8, r.category);
+    }
+
     public List<StudentGrade> getAllGrades() {
         return studentGradeRepository.findAll();
     }
@@ -0,0 +1,362 @@
+package com.jfsd.exit_portal_backend.Service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Per-program bitmap index over dense student ordinals: one bitmap per category "met" state,
+ * per category honors threshold, and for failure / honors eligibility / full completion.
+ * Set questions ("met Core and PE but not OE") are answered with AND/OR/NOT over bitmaps;
+ * counts come from cardinality and only the requested page of students is materialized.
+ * Derived from the columnar ProgressSnapshotService snapshot and rebuilt whenever it changes.
+ */
+@Service
+public class StudentSetIndexService {
+
+    private static final Logger log = LoggerFactory.getLogger(StudentSetIndexService.class);
+
+    @Autowired
+    private ProgressSnapshotService progressSnapshotService;
+
+    private volatile Snapshot snapshot;
+
+    private static final class Snapshot {
+        private final long version;
+        // Ordered by program id so unscoped (SUPER_ADMIN) pages are stable
+        private final Map<Long, ProgramIndex> programs;
+
+        private Snapshot(long version, Map<Long, ProgramIndex> programs) {
+            this.version = version;
+            this.programs = programs;
+        }
+    }
+
+    private static final class ProgramIndex {
+        private final String programCode;
+        private final String[] studentIds;
+        private final String[] studentNames;
+        private final BitSet all = new BitSet();
+        private final BitSet hasFailure = new BitSet();
+        private final BitSet honorsEligible = new BitSet();
+        private final BitSet completed = new BitSet();
+        // Keyed by lower-cased category name
+        private final Map<String, BitSet> categoryMet = new HashMap<>();
+        private final Map<String, BitSet> categoryHonorsMet = new HashMap<>();
+        private final Map<String, String> categoryDisplay = new TreeMap<>();
+
+        private ProgramIndex(ProgressSnapshotService.ProgramProgress pp) {
+            this.programCode = pp.getCode();
+            this.studentIds = pp.getStudentIds();
+            this.studentNames = pp.getStudentNames();
+            int studentCount = pp.getStudentCount();
+            int categoryCount = pp.getCategoryCount();
+            String[] categoryNames = pp.getCategoryNames();
+            RequirementEvaluator evaluator = pp.getEvaluator();
+            double[] honorsMins = evaluator.getHonorsMinCredits();
+            boolean[] present = pp.getPresent();
+            boolean[] met = pp.getMet();
+            double[] completedCredits = pp.getCompletedCredits();
+            boolean[] failure = pp.getHasFailure();
+
+            BitSet[] metBits = new BitSet[categoryCount];
+            BitSet[] honorsBits = new BitSet[categoryCount];
+            for (int c = 0; c < categoryCount; c++) {
+                String key = normalize(categoryNames[c]);
+                if (key == null) continue;
+                categoryDisplay.putIfAbsent(key, categoryNames[c].trim());
+                metBits[c] = categoryMet.computeIfAbsent(key, k -> new BitSet(studentCount));
+                if (!Double.isNaN(honorsMins[c])) {
+                    honorsBits[c] = categoryHonorsMet.computeIfAbsent(key, k -> new BitSet(studentCount));
+                }
+            }
+
+            all.set(0, studentCount);
+            for (int s = 0, base = 0; s < studentCount; s++, base += categoryCount) {
+                if (failure[s]) hasFailure.set(s);
+                for (int c = 0; c < categoryCount; c++) {
+                    int idx = base + c;
+                    if (!present[idx]) continue;
+                    if (met[idx] && metBits[c] != null) metBits[c].set(s);
+                    if (honorsBits[c] != null && evaluator.meetsHonors(c, completedCredits[idx])) honorsBits[c].set(s);
+                }
+                if (evaluator.isComplete(present, met, s)) completed.set(s);
+                if (evaluator.isHonorsEligible(failure[s], present, completedCredits, s)) honorsEligible.set(s);
+            }
+        }
+    }
+
+    /**
+     * Evaluates a set expression and returns the count plus one page of students.
+     * Expression grammar (JSON): {"and":[e,...]}, {"or":[e,...]}, {"not":e},
+     * {"met":"Category"}, {"notMet":"Category"}, {"honorsMet":"Category"},
+     * {"flag":"failure"|"honorsEligible"|"completed"|"all"}.
+     * Throws IllegalArgumentException for malformed expressions or unknown categories; unscoped
+     * queries skip programs that lack a category and fail only when no program defines it.
+     */
+    public Map<String, Object> query(Long programId, Object expression, int page, int size) {
+        if (expression == null) {
+            throw new IllegalArgumentException("expr is required");
+        }
+        // Syntax is checked once up front, so only category lookups can fail per program below
+        Set<String> metCategories = new LinkedHashSet<>();
+        Set<String> honorsCategories = new LinkedHashSet<>();
+        validate(expression, metCategories, honorsCategories);
+        Snapshot current = getSnapshot();
+        List<Map.Entry<ProgramIndex, BitSet>> matches = new ArrayList<>();
+        long total = 0;
+        if (programId != null) {
+            ProgramIndex idx = current.programs.get(programId);
+            if (idx != null) {
+                BitSet result = evaluate(idx, expression);
+                matches.add(Map.entry(idx, result));
+                total = result.cardinality();
+            }
+        } else {
+            requireKnownSomewhere(current, metCategories, false);
+            requireKnownSomewhere(current, honorsCategories, true);
+            for (ProgramIndex idx : current.programs.values()) {
+                BitSet result;
+                try {
+                    result = evaluate(idx, expression);
+                } catch (UnknownCategoryException unknownInThisProgram) {
+                    // Category names are program-specific; skip programs that do not define them
+                    continue;
+                }
+                matches.add(Map.entry(idx, result));
+                total += result.cardinality();
+            }
+        }
+
+        int safeSize = Math.max(1, size);
+        int safePage = Math.max(0, page);
+        long skip = (long) safePage * safeSize;
+        List<Map<String, Object>> students = new ArrayList<>();
+        for (Map.Entry<ProgramIndex, BitSet> e : matches) {
+            if (students.size() >= safeSize) break;
+            BitSet bits = e.getValue();
+            int card = bits.cardinality();
+            if (skip >= card) {
+                skip -= card;
+                continue;
+            }
+            ProgramIndex idx = e.getKey();
+            for (int i = bits.nextSetBit(0); i >= 0 && students.size() < safeSize; i = bits.nextSetBit(i + 1)) {
+                if (skip > 0) {
+                    skip--;
+                    continue;
+                }
+                Map<String, Object> row = new LinkedHashMap<>();
+                row.put("universityId", idx.studentIds[i]);
+                row.put("studentName", idx.studentNames[i]);
+                row.put("programCode", idx.programCode);
+                students.add(row);
+            }
+        }
+
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("programId", programId);
+        out.put("count", total);
+        out.put("page", safePage);
+        out.put("size", safeSize);
+        out.put("totalPages", (int) ((total + safeSize - 1) / safeSize));
+        out.put("students", students);
+        out.put("dataVersion", current.version);
+        return out;
+    }
+
+    // Category names usable in expressions for a program
+    public List<String> listCategories(Long programId) {
+        ProgramIndex idx = programId == null ? null : getSnapshot().programs.get(programId);
+        return idx == null ? Collections.emptyList() : new ArrayList<>(idx.categoryDisplay.values());
+    }
+
+    // Thrown for a category the program does not define; other IllegalArgumentExceptions are syntax errors
+    private static final class UnknownCategoryException extends IllegalArgumentException {
+        private UnknownCategoryException(String message) {
+            super(message);
+        }
+    }
+
+    // Checks the expression grammar without an index and collects the category names it references
+    @SuppressWarnings("unchecked")
+    private static void validate(Object expression, Set<String> metCategories, Set<String> honorsCategories) {
+        if (!(expression instanceof Map)) {
+            throw new IllegalArgumentException("Expression nodes must be objects");
+        }
+        Map<String, Object> node = (Map<String, Object>) expression;
+        if (node.size() != 1) {
+            throw new IllegalArgumentException("Expression node must have exactly one operator: " + node.keySet());
+        }
+        Map.Entry<String, Object> op = node.entrySet().iterator().next();
+        String key = op.getKey();
+        Object arg = op.getValue();
+        switch (key) {
+            case "and":
+            case "or":
+                if (!(arg instanceof List) || ((List<Object>) arg).isEmpty()) {
+                    throw new IllegalArgumentException("'" + key + "' expects a non-empty list");
+                }
+                for (Object child : (List<Object>) arg) validate(child, metCategories, honorsCategories);
+                return;
+            case "not":
+                validate(arg, metCategories, honorsCategories);
+                return;
+            case "met":
+            case "notMet":
+            case "honorsMet": {
+                String category = normalize(arg instanceof String ? (String) arg : null);
+                if (category == null) {
+                    throw new IllegalArgumentException("'" + key + "' expects a category name");
+                }
+                ("honorsMet".equals(key) ? honorsCategories : metCategories).add(category);
+                return;
+            }
+            case "flag": {
+                String flag = arg == null ? "" : arg.toString();
+                switch (flag) {
+                    case "failure":
+                    case "honorsEligible":
+                    case "completed":
+                    case "all":
+                        return;
+                    default:
+                        throw new IllegalArgumentException("Unknown flag: " + flag);
+                }
+            }
+            default:
+                throw new IllegalArgumentException("Unknown operator: " + key);
+        }
+    }
+
+    // Unscoped queries skip programs without a category, but a name no program defines is a typo
+    private static void requireKnownSomewhere(Snapshot current, Set<String> categories, boolean honors) {
+        if (current.programs.isEmpty()) return;
+        for (String category : categories) {
+            boolean known = false;
+            for (ProgramIndex idx : current.programs.values()) {
+                if ((honors ? idx.categoryHonorsMet : idx.categoryMet).containsKey(category)) {
+                    known = true;
+                    break;
+                }
+            }
+            if (!known) {
+                throw new IllegalArgumentException((honors ? "Unknown honors category: " : "Unknown category: ") + category);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private BitSet evaluate(ProgramIndex idx, Object expression) {
+        if (!(expression instanceof Map)) {
+            throw new IllegalArgumentException("Expression nodes must be objects");
+        }
+        Map<String, Object> node = (Map<String, Object>) expression;
+        if (node.size() != 1) {
+            throw new IllegalArgumentException("Expression node must have exactly one operator: " + node.keySet());
+        }
+        Map.Entry<String, Object> op = node.entrySet().iterator().next();
+        String key = op.getKey();
+        Object arg = op.getValue();
+        switch (key) {
+            case "and":
+            case "or": {
+                if (!(arg instanceof List) || ((List<Object>) arg).isEmpty()) {
+                    throw new IllegalArgumentException("'" + key + "' expects a non-empty list");
+                }
+                BitSet acc = null;
+                for (Object child : (List<Object>) arg) {
+                    BitSet bits = evaluate(idx, child);
+                    if (acc == null) {
+                        acc = (BitSet) bits.clone();
+                    } else if ("and".equals(key)) {
+                        acc.and(bits);
+                    } else {
+                        acc.or(bits);
+                    }
+                }
+                return acc;
+            }
+            case "not": {
+                BitSet out = (BitSet) idx.all.clone();
+                out.andNot(evaluate(idx, arg));
+                return out;
+            }
+            case "met":
+                return categoryBits(idx.categoryMet, arg);
+            case "notMet": {
+                BitSet out = (BitSet) idx.all.clone();
+                out.andNot(categoryBits(idx.categoryMet, arg));
+                return out;
+            }
+            case "honorsMet":
+                return categoryBits(idx.categoryHonorsMet, arg);
+            case "flag": {
+                String flag = arg == null ? "" : arg.toString();
+                switch (flag) {
+                    case "failure": return idx.hasFailure;
+                    case "honorsEligible": return idx.honorsEligible;
+                    case "completed": return idx.completed;
+                    case "all": return idx.all;
+                    default: throw new IllegalArgumentException("Unknown flag: " + flag);
+                }
+            }
+            default:
+                throw new IllegalArgumentException("Unknown operator: " + key);
+        }
+    }
+
+    private BitSet categoryBits(Map<String, BitSet> byCategory, Object categoryName) {
+        String key = normalize(categoryName == null ? null : categoryName.toString());
+        BitSet bits = key == null ? null : byCategory.get(key);
+        if (bits == null) {
+            throw new UnknownCategoryException("Unknown category: " + categoryName);
+        }
+        return bits;
+    }
+
+    private static String normalize(String categoryName) {
+        if (categoryName == null) return null;
+        String trimmed = categoryName.trim();
+        return trimmed.isEmpty() ? null : trimmed.toLowerCase(Locale.ROOT);
+    }
+
+    private Snapshot getSnapshot() {
+        ProgressSnapshotService.Snapshot progress = progressSnapshotService.getSnapshot();
+        Snapshot current = snapshot;
+        if (current != null && current.version == progress.getVersion()) {
+            return current;
+        }
+        return rebuild(progress);
+    }
+
+    private synchronized Snapshot rebuild(ProgressSnapshotService.Snapshot progress) {
+        Snapshot current = snapshot;
+        if (current != null && current.version == progress.getVersion()) {
+            return current;
+        }
+        long t0 = System.currentTimeMillis();
+        Map<Long, ProgramIndex> programs = new TreeMap<>();
+        for (ProgressSnapshotService.ProgramProgress pp : progress.getPrograms()) {
+            programs.put(pp.getProgramId(), new ProgramIndex(pp));
+        }
+        Snapshot built = new Snapshot(progress.getVersion(), Collections.unmodifiableMap(programs));
+        snapshot = built;
+        log.info("Student set index v{} built in {} ms ({} programs)",
+                built.version, (System.currentTimeMillis() - t0), programs.size());
+        return built;
+    }
+}
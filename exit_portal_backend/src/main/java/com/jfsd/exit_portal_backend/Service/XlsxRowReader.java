@@ -0,0 +1,286 @@
+package com.jfsd.exit_portal_backend.Service;
+
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Reads the first worksheet of an .xlsx workbook row by row for the import pipelines. The sheet XML
+ * is pulled with StAX one row at a time as the importer asks for it, and each row's cells go to the
+ * importer as they are, without being rendered to CSV text and parsed again. Only the shared-string
+ * table is held in memory, never a workbook DOM. Cell values are the stored values (no number/date
+ * formatting is applied), trimmed like the CSV parsers trim fields.
+ */
+public final class XlsxRowReader implements ImportRowReader {
+
+    private static final String XLSX_CONTENT_TYPE = "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
+
+    private final Path tempFile;
+    private final long maxEntryBytes;
+    private final ZipFile zip;
+    private final InputStream sheetStream;
+    private final XMLStreamReader sheet;
+    private final List<String> sharedStrings;
+    // Cells of the row being read, reused across rows
+    private String[] cells = new String[32];
+    private boolean finished;
+
+    // The copy goes into the import spool directory as upload-*.xlsx, so the startup orphan cleanup
+    // in ImportJobService removes it if the process dies mid-import
+    static XlsxRowReader open(MultipartFile file, Path spoolDir, long maxEntryBytes) throws IOException {
+        // ZipFile needs random access (shared strings may come after the sheet in the archive)
+        Files.createDirectories(spoolDir);
+        Path tmp = Files.createTempFile(spoolDir, "upload-", ".xlsx");
+        try {
+            try (InputStream in = file.getInputStream()) {
+                Files.copy(in, tmp, java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+            }
+            return new XlsxRowReader(tmp, maxEntryBytes);
+        } catch (IOException | RuntimeException ex) {
+            Files.deleteIfExists(tmp);
+            throw ex;
+        }
+    }
+
+    public static boolean isXlsx(MultipartFile file) {
+        String name = file.getOriginalFilename();
+        if (name != null && name.toLowerCase().endsWith(".xlsx")) return true;
+        return XLSX_CONTENT_TYPE.equalsIgnoreCase(file.getContentType());
+    }
+
+    private XlsxRowReader(Path tempFile, long maxEntryBytes) throws IOException {
+        this.tempFile = tempFile;
+        this.maxEntryBytes = maxEntryBytes;
+        this.zip = new ZipFile(tempFile.toFile());
+        try {
+            String sheetPath = firstSheetPath();
+            ZipEntry sheetEntry = zip.getEntry(sheetPath);
+            if (sheetEntry == null) {
+                throw new IOException("Worksheet " + sheetPath + " not found in workbook");
+            }
+            this.sharedStrings = readSharedStrings();
+            this.sheetStream = entryStream(sheetEntry);
+            this.sheet = newFactory().createXMLStreamReader(sheetStream);
+        } catch (XMLStreamException ex) {
+            zip.close();
+            throw new IOException("Invalid workbook XML: " + ex.getMessage(), ex);
+        } catch (IOException | RuntimeException ex) {
+            zip.close();
+            throw ex;
+        }
+    }
+
+    // Cells of the next <row>, with "" for columns the sheet skips; null at end of sheet
+    @Override
+    public String[] nextRow() throws IOException {
+        if (finished) return null;
+        try {
+            while (sheet.hasNext()) {
+                int event = sheet.next();
+                if (event == XMLStreamConstants.START_ELEMENT && "row".equals(sheet.getLocalName())) {
+                    return readRow();
+                }
+            }
+            finished = true;
+            return null;
+        } catch (XMLStreamException ex) {
+            throw new IOException("Invalid worksheet XML: " + ex.getMessage(), ex);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            try {
+                sheet.close();
+            } catch (XMLStreamException ignored) {
+                // closing the underlying stream below is what matters
+            }
+            sheetStream.close();
+            zip.close();
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    private String[] readRow() throws XMLStreamException {
+        int count = 0;
+        while (sheet.hasNext()) {
+            int event = sheet.next();
+            if (event == XMLStreamConstants.START_ELEMENT && "c".equals(sheet.getLocalName())) {
+                String ref = sheet.getAttributeValue(null, "r");
+                String type = sheet.getAttributeValue(null, "t");
+                int col = ref == null ? count : columnIndex(ref);
+                String value = cellText(readCell(type));
+                if (col >= cells.length) cells = Arrays.copyOf(cells, Math.max(cells.length * 2, col + 1));
+                while (count < col) cells[count++] = "";
+                cells[col] = value;
+                if (col == count) count++;
+            } else if (event == XMLStreamConstants.END_ELEMENT && "row".equals(sheet.getLocalName())) {
+                break;
+            }
+        }
+        return Arrays.copyOf(cells, count);
+    }
+
+    // Reads a <c> element up to its end tag and returns the cell text
+    private String readCell(String type) throws XMLStreamException {
+        StringBuilder raw = new StringBuilder();
+        boolean inValue = false;
+        while (sheet.hasNext()) {
+            int event = sheet.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                String name = sheet.getLocalName();
+                // <v> for stored values, <t> inside <is> for inline strings
+                inValue = "v".equals(name) || "t".equals(name);
+            } else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA) {
+                if (inValue) raw.append(sheet.getText());
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                String name = sheet.getLocalName();
+                if ("c".equals(name)) break;
+                if ("v".equals(name) || "t".equals(name)) inValue = false;
+            }
+        }
+        String v = raw.toString();
+        if ("s".equals(type)) {
+            try {
+                int idx = Integer.parseInt(v.trim());
+                return idx >= 0 && idx < sharedStrings.size() ? sharedStrings.get(idx) : "";
+            } catch (NumberFormatException ex) {
+                return "";
+            }
+        }
+        if ("b".equals(type)) return "1".equals(v.trim()) ? "TRUE" : "FALSE";
+        if (type == null || "n".equals(type)) return plainNumber(v);
+        return v; // str, inlineStr, e
+    }
+
+    // "2.200030001E9" / "12.0" -> "2200030001" / "12" so ids and credits read like their CSV export
+    private static String plainNumber(String v) {
+        String t = v.trim();
+        if (t.isEmpty()) return t;
+        try {
+            BigDecimal d = new BigDecimal(t).stripTrailingZeros();
+            return d.scale() < 0 ? d.setScale(0).toPlainString() : d.toPlainString();
+        } catch (NumberFormatException ex) {
+            return t;
+        }
+    }
+
+    // Line breaks inside a cell become spaces, as a CSV export of the sheet would read
+    private static String cellText(String value) {
+        return value.replace('\r', ' ').replace('\n', ' ').trim();
+    }
+
+    // "AB12" -> 27
+    private static int columnIndex(String ref) {
+        int col = 0;
+        for (int i = 0; i < ref.length(); i++) {
+            char ch = ref.charAt(i);
+            if (ch < 'A' || ch > 'Z') break;
+            col = col * 26 + (ch - 'A' + 1);
+        }
+        return Math.max(0, col - 1);
+    }
+
+    private List<String> readSharedStrings() throws IOException, XMLStreamException {
+        List<String> strings = new ArrayList<>();
+        ZipEntry entry = zip.getEntry("xl/sharedStrings.xml");
+        if (entry == null) return strings;
+        try (InputStream in = entryStream(entry)) {
+            XMLStreamReader r = newFactory().createXMLStreamReader(in);
+            StringBuilder current = null;
+            boolean inText = false;
+            int phoneticDepth = 0;
+            while (r.hasNext()) {
+                int event = r.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    String name = r.getLocalName();
+                    if ("si".equals(name)) current = new StringBuilder();
+                    else if ("rPh".equals(name)) phoneticDepth++;
+                    else if ("t".equals(name) && phoneticDepth == 0) inText = true;
+                } else if ((event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA) && inText && current != null) {
+                    current.append(r.getText());
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    String name = r.getLocalName();
+                    if ("t".equals(name)) inText = false;
+                    else if ("rPh".equals(name)) phoneticDepth--;
+                    else if ("si".equals(name) && current != null) {
+                        strings.add(current.toString());
+                        current = null;
+                    }
+                }
+            }
+            r.close();
+        }
+        return strings;
+    }
+
+    // Path of the first <sheet> in workbook.xml, resolved through workbook.xml.rels
+    private String firstSheetPath() throws IOException, XMLStreamException {
+        String relId = null;
+        ZipEntry workbook = zip.getEntry("xl/workbook.xml");
+        if (workbook != null) {
+            try (InputStream in = entryStream(workbook)) {
+                XMLStreamReader r = newFactory().createXMLStreamReader(in);
+                while (r.hasNext() && relId == null) {
+                    if (r.next() == XMLStreamConstants.START_ELEMENT && "sheet".equals(r.getLocalName())) {
+                        for (int i = 0; i < r.getAttributeCount(); i++) {
+                            if ("id".equals(r.getAttributeLocalName(i))) relId = r.getAttributeValue(i);
+                        }
+                    }
+                }
+                r.close();
+            }
+        }
+        ZipEntry rels = zip.getEntry("xl/_rels/workbook.xml.rels");
+        if (relId != null && rels != null) {
+            Map<String, String> targets = new HashMap<>();
+            try (InputStream in = entryStream(rels)) {
+                XMLStreamReader r = newFactory().createXMLStreamReader(in);
+                while (r.hasNext()) {
+                    if (r.next() == XMLStreamConstants.START_ELEMENT && "Relationship".equals(r.getLocalName())) {
+                        targets.put(r.getAttributeValue(null, "Id"), r.getAttributeValue(null, "Target"));
+                    }
+                }
+                r.close();
+            }
+            String target = targets.get(relId);
+            if (target != null) {
+                return target.startsWith("/") ? target.substring(1) : "xl/" + target;
+            }
+        }
+        return "xl/worksheets/sheet1.xml";
+    }
+
+    // Entries are deflated, so a small workbook can expand without bound; cap each one like a gzip upload
+    private InputStream entryStream(ZipEntry entry) throws IOException {
+        if (entry.getSize() > maxEntryBytes) {
+            throw new IOException("Workbook entry " + entry.getName() + " exceeds the limit of " + maxEntryBytes + " bytes");
+        }
+        return ImportJobService.limitDecompressed(zip.getInputStream(entry), maxEntryBytes);
+    }
+
+    private static XMLInputFactory newFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return factory;
+    }
+}
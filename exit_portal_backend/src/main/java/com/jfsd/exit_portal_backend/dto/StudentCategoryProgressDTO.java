@@ -14,6 +14,8 @@ public class StudentCategoryProgressDTO {
     // New: strictly current registrations (promotion == 'R')
     private Long pendingRegisteredCourses; // nullable for backward compat
     private Double pendingRegisteredCredits; // nullable for backward compat
+    // Would be met if all pending registrations pass; null when no projection is available
+    private Boolean projectedMet;
 
     public StudentCategoryProgressDTO() {}
 
@@ -69,4 +71,7 @@ public class StudentCategoryProgressDTO {
 
     public Double getPendingRegisteredCredits() { return pendingRegisteredCredits; }
     public void setPendingRegisteredCredits(Double pendingRegisteredCredits) { this.pendingRegisteredCredits = pendingRegisteredCredits; }
+
+    public Boolean getProjectedMet() { return projectedMet; }
+    public void setProjectedMet(Boolean projectedMet) { this.projectedMet = projectedMet; }
 }
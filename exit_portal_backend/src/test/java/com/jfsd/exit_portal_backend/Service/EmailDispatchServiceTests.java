@@ -0,0 +1,122 @@
+package com.jfsd.exit_portal_backend.Service;
+
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.GreenMailUtil;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import com.jfsd.exit_portal_backend.Model.OutboundEmail;
+import com.jfsd.exit_portal_backend.Repository.OutboundEmailRepository;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.mockito.ArgumentCaptor;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.net.ServerSocket;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+// Runs the mail queue dispatcher against an in-process GreenMail SMTP server; the queue table is mocked
+class EmailDispatchServiceTests {
+
+	@RegisterExtension
+	static GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP);
+
+	private final OutboundEmailRepository repository = mock(OutboundEmailRepository.class);
+	private EmailDispatchService dispatcher;
+
+	@AfterEach
+	void stopDispatcher() {
+		if (dispatcher != null) dispatcher.stop();
+	}
+
+	@Test
+	void sendsClaimedMessagesAndRedactsTheirBodies() throws Exception {
+		List<OutboundEmail> queued = List.of(
+				resetMail("2100030001@kluniversity.in", "token-a"),
+				resetMail("2100030002@kluniversity.in", "token-b"));
+		claimOnce(queued);
+
+		dispatcher = startDispatcher(ServerSetupTest.SMTP.getPort());
+
+		assertTrue(greenMail.waitForIncomingEmail(5000, 2));
+		MimeMessage[] received = greenMail.getReceivedMessages();
+		assertEquals(2, received.length);
+		assertTrue(GreenMailUtil.getBody(received[0]).contains("reset-password?token=token-"));
+
+		List<OutboundEmail> saved = awaitSaved();
+		assertEquals(2, saved.size());
+		for (OutboundEmail email : saved) {
+			assertEquals(OutboundEmail.STATUS_SENT, email.getStatus());
+			assertEquals(OutboundEmail.REDACTED_BODY, email.getBody());
+			assertNull(email.getClaimToken());
+			assertNotNull(email.getSentAt());
+		}
+	}
+
+	@Test
+	void unreachableServerSchedulesRetryAndKeepsTheBody() throws Exception {
+		OutboundEmail email = resetMail("2100030003@kluniversity.in", "token-c");
+		claimOnce(List.of(email));
+
+		int closedPort;
+		try (ServerSocket socket = new ServerSocket(0)) {
+			closedPort = socket.getLocalPort();
+		}
+		dispatcher = startDispatcher(closedPort);
+
+		List<OutboundEmail> saved = awaitSaved();
+		assertEquals(1, saved.size());
+		assertEquals(OutboundEmail.STATUS_PENDING, email.getStatus());
+		assertEquals(1, email.getAttempts());
+		assertTrue(email.getNextAttemptAt().after(new Date()));
+		assertTrue(email.getBody().contains("token-c"));
+		assertEquals(0, greenMail.getReceivedMessages().length);
+	}
+
+	private static OutboundEmail resetMail(String to, String token) {
+		return new OutboundEmail(to, "KL University - Password Reset Request",
+				"https://exitportal-klu.vercel.app/reset-password?token=" + token,
+				new Date(System.currentTimeMillis() + 3600_000L));
+	}
+
+	// The first dispatch round claims the given rows, later rounds find nothing due
+	private void claimOnce(List<OutboundEmail> rows) {
+		when(repository.claimDue(anyString(), any(Date.class), anyInt())).thenReturn(rows.size(), 0);
+		when(repository.findByClaimTokenAndStatus(anyString(), eq(OutboundEmail.STATUS_SENDING))).thenReturn(rows);
+	}
+
+	@SuppressWarnings("unchecked")
+	private List<OutboundEmail> awaitSaved() {
+		ArgumentCaptor<List<OutboundEmail>> captor = ArgumentCaptor.forClass(List.class);
+		verify(repository, timeout(10_000)).saveAll(captor.capture());
+		return captor.getValue();
+	}
+
+	private EmailDispatchService startDispatcher(int smtpPort) {
+		JavaMailSenderImpl sender = new JavaMailSenderImpl();
+		sender.setHost("localhost");
+		sender.setPort(smtpPort);
+		Properties props = new Properties();
+		props.put("mail.smtp.connectiontimeout", "2000");
+		props.put("mail.smtp.timeout", "2000");
+		sender.setJavaMailProperties(props);
+
+		EmailDispatchService service = new EmailDispatchService();
+		ReflectionTestUtils.setField(service, "outboundEmailRepository", repository);
+		ReflectionTestUtils.setField(service, "mailSender", sender);
+		ReflectionTestUtils.setField(service, "fromEmail", "exitportal@kluniversity.in");
+		ReflectionTestUtils.setField(service, "workers", 2);
+		ReflectionTestUtils.setField(service, "batchSize", 20);
+		ReflectionTestUtils.setField(service, "pollIntervalMs", 200L);
+		ReflectionTestUtils.setField(service, "maxAttempts", 3);
+		service.start();
+		return service;
+	}
+}
@@ -0,0 +1,150 @@
+package com.jfsd.exit_portal_backend.Service;
+
+import ch.vorburger.mariadb4j.DB;
+import ch.vorburger.mariadb4j.DBConfigurationBuilder;
+import com.jfsd.exit_portal_backend.ExitPortalBackendApplication;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Grade import throughput over both upload endpoints against an embedded MariaDB: the legacy
+// /api/grades/upload path (StudentGradeService.uploadCSV, one row per grade) and the batch importer
+// (StudentGradeBatchImportService.importResultsCsv, one row per student with a column per course),
+// both fed the same grades. Students and courses are seeded once so password hashing is not measured;
+// student_grades is emptied before every invocation. The batch importer recomputes progress on a
+// background thread after commit; batchImport waits for it so both figures include the recompute.
+// Run main() after mvn test-compile (or org.openjdk.jmh.Main GradeImportBenchmark on the test classpath).
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GradeImportBenchmark {
+
+	private static final int COURSES = 40;
+	private static final String[] GRADES = {"O", "A+", "A", "B+", "B", "C", "P"};
+	private static final String RECOMPUTE_THREAD = "progress-recompute-after-results";
+
+	@Param({"1000", "5000"})
+	public int students;
+
+	private DB db;
+	private ConfigurableApplicationContext context;
+	private JdbcTemplate jdbcTemplate;
+	private StudentGradeService legacyService;
+	private StudentGradeBatchImportService batchService;
+	private DataVersionService dataVersionService;
+	private byte[] legacyCsv;
+	private byte[] resultsCsv;
+
+	@Setup(Level.Trial)
+	public void startDatabase() throws Exception {
+		DBConfigurationBuilder config = DBConfigurationBuilder.newBuilder();
+		config.setPort(0);
+		config.addArg("--user=root");
+		db = DB.newEmbeddedDB(config.build());
+		db.start();
+
+		context = new SpringApplicationBuilder(ExitPortalBackendApplication.class)
+				.web(WebApplicationType.NONE)
+				.properties(
+						"DB_URL=jdbc:mysql://localhost:" + db.getConfiguration().getPort()
+								+ "/exit_portal_bench?createDatabaseIfNotExist=true&rewriteBatchedStatements=true&useSSL=false&allowPublicKeyRetrieval=true",
+						"DB_USERNAME=root",
+						"DB_PASSWORD=",
+						"JWT_SECRET=benchmark-secret-benchmark-secret-benchmark-secret-0123456789",
+						"EMAIL_USERNAME=benchmark",
+						"EMAIL_PASSWORD=benchmark",
+						"GEMINI_API_KEY=none",
+						"GROQ_API_KEY=none",
+						"logging.level.com.jfsd=WARN")
+				.run();
+		jdbcTemplate = context.getBean(JdbcTemplate.class);
+		legacyService = context.getBean(StudentGradeService.class);
+		batchService = context.getBean(StudentGradeBatchImportService.class);
+		dataVersionService = context.getBean(DataVersionService.class);
+
+		List<Object[]> courseRows = new ArrayList<>();
+		for (int c = 0; c < COURSES; c++) {
+			courseRows.add(new Object[]{courseCode(c), "Course " + c, 3.0});
+		}
+		jdbcTemplate.batchUpdate("INSERT INTO courses (course_code, course_title, course_credits) VALUES (?, ?, ?)", courseRows);
+		List<Object[]> studentRows = new ArrayList<>();
+		for (int s = 0; s < students; s++) {
+			studentRows.add(new Object[]{studentId(s), "Student " + s, "unused"});
+		}
+		jdbcTemplate.batchUpdate("INSERT INTO students (student_id, student_name, password, has_any_failure) VALUES (?, ?, ?, 0)", studentRows);
+
+		Random random = new Random(42);
+		StringBuilder legacy = new StringBuilder("University ID,Student Name,Course Name,Course Code,Credits Registered,Grade,Grade Point,Credits,Promotion,Academic Year,Semester,Category\n");
+		StringBuilder results = new StringBuilder("University ID,Student Name,OBTAINED CREDITS");
+		for (int c = 0; c < COURSES; c++) results.append(',').append(courseCode(c));
+		results.append('\n');
+		for (int s = 0; s < students; s++) {
+			results.append(studentId(s)).append(",Student ").append(s).append(",120");
+			for (int c = 0; c < COURSES; c++) {
+				String grade = GRADES[random.nextInt(GRADES.length)];
+				legacy.append(studentId(s)).append(",Student ").append(s).append(",Course ").append(c).append(',')
+						.append(courseCode(c)).append(",3,").append(grade).append(",8,3,P,2024-25,ODD,\n");
+				results.append(',').append(grade);
+			}
+			results.append('\n');
+		}
+		legacyCsv = legacy.toString().getBytes(StandardCharsets.UTF_8);
+		resultsCsv = results.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	@Setup(Level.Invocation)
+	public void clearGrades() {
+		jdbcTemplate.execute("TRUNCATE TABLE student_grades");
+		jdbcTemplate.execute("TRUNCATE TABLE student_category_progress");
+		jdbcTemplate.update("UPDATE students SET has_any_failure = 0");
+		// Outside a transaction; defeats the batch importer's identical-file short-circuit
+		dataVersionService.bump("benchmark reset");
+	}
+
+	@Benchmark
+	public void legacyUpload(Blackhole bh) {
+		bh.consume(legacyService.uploadCSV(new MockMultipartFile("file", "grades.csv", "text/csv", legacyCsv)));
+	}
+
+	@Benchmark
+	public void batchImport(Blackhole bh) throws InterruptedException {
+		bh.consume(batchService.importResultsCsv(new MockMultipartFile("file", "results.csv", "text/csv", resultsCsv), null, null));
+		for (Thread thread : Thread.getAllStackTraces().keySet()) {
+			if (RECOMPUTE_THREAD.equals(thread.getName())) thread.join();
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void stopDatabase() throws Exception {
+		if (context != null) context.close();
+		if (db != null) db.stop();
+	}
+
+	private static String studentId(int s) {
+		return String.format("22000%05d", s);
+	}
+
+	private static String courseCode(int c) {
+		return String.format("22CS%03d", c);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(GradeImportBenchmark.class.getSimpleName()).build()).run();
+	}
+}
@@ -0,0 +1,157 @@
+package com.jfsd.exit_portal_backend.Service;
+
+import com.jfsd.exit_portal_backend.Model.StudentCategoryProgress;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+// Program dashboard aggregation: the columnar snapshot loop against the previous path, which grouped
+// StudentCategoryProgress entities from progressRepository.findByProgramCode into maps. The old
+// path's query and entity hydration are not included, so its figures are a lower bound.
+// Run main() after mvn test-compile (or org.openjdk.jmh.Main ProgressSnapshotBenchmark on the test classpath).
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProgressSnapshotBenchmark {
+
+	private static final int CATEGORIES = 12;
+
+	@Param({"2000", "20000"})
+	public int students;
+
+	private ProgressSnapshotService.ProgramProgress snapshot;
+	private List<StudentCategoryProgress> entities;
+
+	@Setup
+	public void setUp() {
+		Random random = new Random(42);
+		List<String> ids = new ArrayList<>();
+		List<String> names = new ArrayList<>();
+		List<Boolean> failures = new ArrayList<>();
+		for (int s = 0; s < students; s++) {
+			ids.add(String.format("22000%05d", s));
+			names.add("Student " + s);
+			failures.add(random.nextInt(10) == 0);
+		}
+		List<Integer> categoryIds = new ArrayList<>();
+		List<String> categoryNames = new ArrayList<>();
+		List<Integer> minCourses = new ArrayList<>();
+		List<Double> minCredits = new ArrayList<>();
+		List<Double> honorsMins = new ArrayList<>();
+		for (int c = 0; c < CATEGORIES; c++) {
+			categoryIds.add(c + 1);
+			categoryNames.add("Category " + c);
+			minCourses.add(2 + c % 4);
+			minCredits.add(6.0 + 2 * (c % 5));
+			honorsMins.add(c % 3 == 0 ? 12.0 + c : null);
+		}
+		snapshot = new ProgressSnapshotService.ProgramProgress(1L, "CSE", "Computer Science", ids, names, failures,
+				categoryIds, categoryNames, minCourses, minCredits, honorsMins);
+
+		entities = new ArrayList<>(students * CATEGORIES);
+		RequirementEvaluator evaluator = snapshot.getEvaluator();
+		for (int s = 0; s < students; s++) {
+			for (int c = 0; c < CATEGORIES; c++) {
+				int idx = s * CATEGORIES + c;
+				int requiredCourses = minCourses.get(c);
+				double requiredCredits = minCredits.get(c);
+				int doneCourses = random.nextInt(requiredCourses + 2);
+				double doneCredits = doneCourses * 3.0;
+				snapshot.getPresent()[idx] = true;
+				snapshot.getCompletedCourses()[idx] = doneCourses;
+				snapshot.getMinRequiredCourses()[idx] = requiredCourses;
+				snapshot.getCompletedCredits()[idx] = doneCredits;
+				snapshot.getMinRequiredCredits()[idx] = requiredCredits;
+				snapshot.getMet()[idx] = evaluator.meets(c, doneCourses, doneCredits);
+				entities.add(new StudentCategoryProgress(ids.get(s), names.get(s), categoryNames.get(c),
+						requiredCredits, requiredCourses, doneCourses, doneCredits));
+			}
+		}
+	}
+
+	@Benchmark
+	public void snapshotLoop(Blackhole bh) {
+		ProgressSnapshotService.ProgramProgress pp = snapshot;
+		int studentCount = pp.getStudentCount();
+		int categoryCount = pp.getCategoryCount();
+		boolean[] present = pp.getPresent();
+		boolean[] met = pp.getMet();
+		double[] completedCredits = pp.getCompletedCredits();
+		double[] minCredits = pp.getMinRequiredCredits();
+		RequirementEvaluator evaluator = pp.getEvaluator();
+		long[] total = new long[categoryCount];
+		long[] metCount = new long[categoryCount];
+		double[] creditSum = new double[categoryCount];
+		long completedStudents = 0;
+		for (int s = 0, base = 0; s < studentCount; s++, base += categoryCount) {
+			for (int c = 0; c < categoryCount; c++) {
+				int idx = base + c;
+				if (!present[idx]) continue;
+				total[c]++;
+				if (met[idx]) metCount[c]++;
+				double denom = minCredits[idx];
+				if (denom > 0) creditSum[c] += Math.min(1.0, completedCredits[idx] / denom);
+			}
+			if (evaluator.isComplete(present, met, s)) completedStudents++;
+		}
+		bh.consume(completedStudents);
+		bh.consume(total);
+		bh.consume(metCount);
+		bh.consume(creditSum);
+	}
+
+	@Benchmark
+	public void entityGrouping(Blackhole bh) {
+		Map<String, List<StudentCategoryProgress>> byStudent = entities.stream()
+				.collect(Collectors.groupingBy(StudentCategoryProgress::getUniversityId));
+		long completedStudents = byStudent.values().stream().filter(ProgressSnapshotBenchmark::isStudentComplete).count();
+		Map<String, double[]> categoryMap = new LinkedHashMap<>();
+		for (StudentCategoryProgress scp : entities) {
+			String cat = scp.getCategoryName();
+			if (cat == null) continue;
+			double[] cs = categoryMap.computeIfAbsent(cat, k -> new double[3]);
+			cs[0]++;
+			if (meetsRequirement(scp)) cs[1]++;
+			double denom = scp.getMinRequiredCredits() != null && scp.getMinRequiredCredits() > 0 ? scp.getMinRequiredCredits() : 0.0;
+			cs[2] += denom > 0 ? Math.min(1.0, (scp.getCompletedCredits() != null ? scp.getCompletedCredits() : 0.0) / denom) : 0.0;
+		}
+		bh.consume(completedStudents);
+		bh.consume(categoryMap);
+	}
+
+	// The per-entity checks AdminInsightsService used before the snapshot
+	private static boolean isStudentComplete(List<StudentCategoryProgress> rows) {
+		if (rows == null || rows.isEmpty()) return false;
+		for (StudentCategoryProgress scp : rows) {
+			if (!meetsRequirement(scp)) return false;
+		}
+		return true;
+	}
+
+	private static boolean meetsRequirement(StudentCategoryProgress scp) {
+		Integer minCourses = scp.getMinRequiredCourses();
+		Double minCredits = scp.getMinRequiredCredits();
+		Integer doneCourses = scp.getCompletedCourses();
+		Double doneCredits = scp.getCompletedCredits();
+		boolean coursesOk = (minCourses == null || minCourses <= 0) || (doneCourses != null && doneCourses >= minCourses);
+		boolean creditsOk = (minCredits == null || minCredits <= 0) || (doneCredits != null && doneCredits >= minCredits);
+		return coursesOk && creditsOk;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(ProgressSnapshotBenchmark.class.getSimpleName()).build()).run();
+	}
+}
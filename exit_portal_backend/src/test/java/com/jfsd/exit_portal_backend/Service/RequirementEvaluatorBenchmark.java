@@ -0,0 +1,135 @@
+package com.jfsd.exit_portal_backend.Service;
+
+import com.jfsd.exit_portal_backend.Model.StudentCategoryProgress;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Met / complete / honors evaluation for a whole program: the compiled RequirementEvaluator over
+// primitive arrays against the per-entity checks it replaced (boxed StudentCategoryProgress rows
+// already grouped by student, honors thresholds looked up by category name).
+// Run main() after mvn test-compile (or org.openjdk.jmh.Main RequirementEvaluatorBenchmark on the test classpath).
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RequirementEvaluatorBenchmark {
+
+	private static final int CATEGORIES = 12;
+	private static final double HONORS_EPSILON = 1e-6;
+
+	@Param({"20000"})
+	public int students;
+
+	private RequirementEvaluator evaluator;
+	private int[] completedCourses;
+	private double[] completedCredits;
+	private boolean[] present;
+	private boolean[] hasFailure;
+	private boolean[] met;
+
+	private List<List<StudentCategoryProgress>> rowsByStudent;
+	private Map<String, Double> honorsMinByCategory;
+
+	@Setup
+	public void setUp() {
+		Random random = new Random(7);
+		int[] categoryIds = new int[CATEGORIES];
+		String[] categoryNames = new String[CATEGORIES];
+		int[] minCourses = new int[CATEGORIES];
+		double[] minCredits = new double[CATEGORIES];
+		double[] honorsMins = new double[CATEGORIES];
+		honorsMinByCategory = new HashMap<>();
+		for (int c = 0; c < CATEGORIES; c++) {
+			categoryIds[c] = c + 1;
+			categoryNames[c] = "Category " + c;
+			minCourses[c] = 2 + c % 4;
+			minCredits[c] = 6.0 + 2 * (c % 5);
+			honorsMins[c] = c % 3 == 0 ? 12.0 + c : Double.NaN;
+			if (!Double.isNaN(honorsMins[c])) honorsMinByCategory.put(categoryNames[c], honorsMins[c]);
+		}
+		evaluator = new RequirementEvaluator(1L, categoryIds, categoryNames, minCourses, minCredits, honorsMins);
+
+		int cells = students * CATEGORIES;
+		completedCourses = new int[cells];
+		completedCredits = new double[cells];
+		present = new boolean[cells];
+		met = new boolean[cells];
+		hasFailure = new boolean[students];
+		rowsByStudent = new ArrayList<>(students);
+		for (int s = 0; s < students; s++) {
+			hasFailure[s] = random.nextInt(10) == 0;
+			List<StudentCategoryProgress> rows = new ArrayList<>(CATEGORIES);
+			for (int c = 0; c < CATEGORIES; c++) {
+				int idx = s * CATEGORIES + c;
+				int courses = random.nextInt(minCourses[c] + 3);
+				completedCourses[idx] = courses;
+				completedCredits[idx] = courses * 3.0;
+				present[idx] = true;
+				rows.add(new StudentCategoryProgress("s" + s, "Student " + s, categoryNames[c],
+						minCredits[c], minCourses[c], courses, courses * 3.0));
+			}
+			rowsByStudent.add(rows);
+		}
+	}
+
+	@Benchmark
+	public void compiledEvaluator(Blackhole bh) {
+		evaluator.evaluate(completedCourses, completedCredits, students, met);
+		long complete = evaluator.countComplete(present, met, students);
+		long honors = 0;
+		for (int s = 0; s < students; s++) {
+			if (evaluator.isHonorsEligible(hasFailure[s], present, completedCredits, s)) honors++;
+		}
+		bh.consume(complete);
+		bh.consume(honors);
+	}
+
+	@Benchmark
+	public void entityChecks(Blackhole bh) {
+		long complete = 0;
+		long honors = 0;
+		for (int s = 0; s < rowsByStudent.size(); s++) {
+			List<StudentCategoryProgress> rows = rowsByStudent.get(s);
+			boolean allMet = !rows.isEmpty();
+			boolean honorsOk = !hasFailure[s];
+			for (StudentCategoryProgress scp : rows) {
+				if (!meetsRequirement(scp)) allMet = false;
+				Double honorsMin = honorsMinByCategory.get(scp.getCategoryName());
+				if (honorsMin != null) {
+					double done = scp.getCompletedCredits() != null ? scp.getCompletedCredits() : 0.0;
+					if (done + HONORS_EPSILON < honorsMin) honorsOk = false;
+				}
+			}
+			if (allMet) complete++;
+			if (honorsOk) honors++;
+		}
+		bh.consume(complete);
+		bh.consume(honors);
+	}
+
+	private static boolean meetsRequirement(StudentCategoryProgress scp) {
+		Integer minCourses = scp.getMinRequiredCourses();
+		Double minCredits = scp.getMinRequiredCredits();
+		Integer doneCourses = scp.getCompletedCourses();
+		Double doneCredits = scp.getCompletedCredits();
+		boolean coursesOk = (minCourses == null || minCourses <= 0) || (doneCourses != null && doneCourses >= minCourses);
+		boolean creditsOk = (minCredits == null || minCredits <= 0) || (doneCredits != null && doneCredits >= minCredits);
+		return coursesOk && creditsOk;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(RequirementEvaluatorBenchmark.class.getSimpleName()).build()).run();
+	}
+}